@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.utils.WildcardMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WildcardFilterBenchmark {
+
+    private final static String[] URLS = {
+            "http://www.example.com/",
+            "http://www.example.com/products/item-1234.html",
+            "http://www.example.com/products/item-1234.html?color=red&size=xl",
+            "https://blog.example.com/2021/10/19/a-long-article-title.html",
+            "http://www.example.org/private/login.php"};
+
+    private Map<WildcardMatcher, WildcardFilter.Status> filters;
+    private WildcardFilter.Status policy;
+
+    @Setup
+    public void setup() {
+        final List<CrawlDefinition.Filter> filterList = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            filterList.add(new CrawlDefinition.Filter("http://www.example.com/section" + i + "/*",
+                    WildcardFilter.Status.reject));
+        filterList.add(new CrawlDefinition.Filter("*.php", WildcardFilter.Status.reject));
+        filterList.add(new CrawlDefinition.Filter("http://www.example.com/*", WildcardFilter.Status.accept));
+        filterList.add(new CrawlDefinition.Filter("https://*.example.com/*", WildcardFilter.Status.accept));
+        filters = WildcardFilter.compileFilters(filterList);
+        policy = WildcardFilter.definePolicy(null, filters);
+    }
+
+    @Benchmark
+    public void match(final Blackhole blackhole) {
+        for (final String url : URLS)
+            blackhole.consume(WildcardFilter.match(url, filters, policy));
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.qwazr.utils.ObjectMappers;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The SMILE serialization of the session statuses, as done by the CrawlManager on each status update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebCrawlSessionStatusBenchmark {
+
+    private WebCrawlSessionStatus status;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        final WebCrawlSessionStatus.Builder builder = WebCrawlSessionStatus.of("http://localhost:9091").start();
+        for (int i = 0; i < 1000; i++)
+            builder.incCrawled();
+        builder.incRejected().incRedirect().incError().lastError("Connection reset");
+        builder.crawl("http://www.example.com/products/item-1234.html", 3);
+        status = builder.build();
+        bytes = ObjectMappers.SMILE.writeValueAsBytes(status);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return ObjectMappers.SMILE.writeValueAsBytes(status);
+    }
+
+    @Benchmark
+    public WebCrawlSessionStatus read() throws IOException {
+        return ObjectMappers.SMILE.readValue(bytes, WebCrawlSessionStatus.class);
+    }
+}
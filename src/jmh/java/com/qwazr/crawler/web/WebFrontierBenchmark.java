@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.qwazr.crawler.common.StorageProfile;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The frontier operations of a web crawl session, stored in MapDB (durable) or on the heap (temporary):
+ * adding a discovered URL, then picking and claiming the next URL to crawl.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebFrontierBenchmark {
+
+    @Param({"durable", "temporary"})
+    public StorageProfile storageProfile;
+
+    private Path rootDirectory;
+    private ExecutorService executorService;
+    private WebCrawlerManager manager;
+    private WebCrawlSession session;
+    private long counter;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException {
+        rootDirectory = Files.createTempDirectory("webcrawler-bench");
+        executorService = Executors.newCachedThreadPool();
+        manager = new WebCrawlerManager(rootDirectory, "http://localhost:9091", executorService, executorService);
+        final WebCrawlDefinition crawlDefinition = WebCrawlDefinition.of()
+                .setEntryUrl("http://www.example.com/")
+                .setStorageProfile(storageProfile)
+                .build();
+        session = new WebCrawlSession("frontier-bench", manager, crawlDefinition,
+                WebCrawlSessionStatus.of("http://localhost:9091"), WebCrawlerManager.doNothing, false);
+        // A frontier which is not empty
+        for (int i = 0; i < 10000; i++)
+            session.addUrltoCrawl(URI.create("http://www.example.com/backlog/" + i + ".html"), 2);
+        counter = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        session.close();
+        manager.close();
+        executorService.shutdown();
+        Files.walk(rootDirectory)
+                .sorted((p1, p2) -> p2.compareTo(p1))
+                .forEach(path -> path.toFile().delete());
+    }
+
+    @Benchmark
+    public boolean addThenClaim() {
+        session.addUrltoCrawl(URI.create("http://www.example.com/page/" + counter++ + ".html"), 1);
+        final Pair<String, Integer> next = session.nextUrlToCrawl();
+        return session.claim(next.getKey(), next.getValue());
+    }
+
+    @Benchmark
+    public boolean isCrawled() {
+        return session.isCrawled("http://www.example.com/backlog/" + (counter++ % 10000) + ".html");
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.qwazr.crawler.common.WildcardFilter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Link transformation (UBuilder) and link extraction from a parsed HTML page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebLinkBenchmark {
+
+    private final static URI PAGE_URI = URI.create("http://www.example.com/catalog/index.html");
+
+    private final static URI[] LINKS = {
+            URI.create("http://www.example.com/"),
+            URI.create("http://www.example.com/products/item.html?id=1234&sessionid=AZERTY&color=red#reviews"),
+            URI.create("http://www.example.com/products;jsessionid=1234/list.html?page=2&utm_source=news"),
+            URI.create("https://blog.example.com/2021/10/19/a-long-article-title.html#comments")};
+
+    private Path rootDirectory;
+    private ExecutorService executorService;
+    private WebCrawlerManager manager;
+    private WebCrawlSession session;
+    private WebCrawlThread crawlThread;
+    private Element documentBody;
+
+    @Setup
+    public void setup() throws IOException {
+        rootDirectory = Files.createTempDirectory("webcrawler-bench");
+        executorService = Executors.newCachedThreadPool();
+        manager = new WebCrawlerManager(rootDirectory, "http://localhost:9091", executorService, executorService);
+        final WebCrawlDefinition crawlDefinition = WebCrawlDefinition.of()
+                .setEntryUrl(PAGE_URI.toString())
+                .setRemoveFragments(true)
+                .addParametersPattern("sessionid=.*")
+                .addParametersPattern("utm_[a-z]+=.*")
+                .addPathCleanerPattern(";jsessionid=[^/]*")
+                .addFilter("http://www.example.com/*", WildcardFilter.Status.accept)
+                .setMaxDepth(5)
+                .build();
+        session = new WebCrawlSession("link-bench", manager, crawlDefinition,
+                WebCrawlSessionStatus.of("http://localhost:9091"), WebCrawlerManager.doNothing, false);
+        crawlThread = new WebCrawlThread(manager, session, crawlDefinition);
+
+        final StringBuilder html = new StringBuilder("<html><body>");
+        for (int i = 0; i < 200; i++) {
+            html.append("<a href=\"/products/item-").append(i).append(".html?sessionid=").append(i)
+                    .append("&color=red#top\">Item ").append(i).append("</a>");
+            html.append("<a href=\"http://other").append(i % 10).append(".example.org/page.html\">Other</a>");
+            html.append("<a href=\"mailto:contact@example.com\">Mail</a>");
+        }
+        html.append("</body></html>");
+        documentBody = Jsoup.parse(html.toString(), PAGE_URI.toString()).body();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        session.close();
+        manager.close();
+        executorService.shutdown();
+        Files.walk(rootDirectory)
+                .sorted((p1, p2) -> p2.compareTo(p1))
+                .forEach(path -> path.toFile().delete());
+    }
+
+    @Benchmark
+    public void transformLink(final Blackhole blackhole) {
+        for (final URI link : LINKS)
+            blackhole.consume(crawlThread.transformLink(link));
+    }
+
+    @Benchmark
+    public void extractLinks(final Blackhole blackhole) {
+        final WebCrawlItemImpl.Builder builder = new WebCrawlItemImpl.Builder(PAGE_URI, 1);
+        crawlThread.extractLinks(documentBody, builder);
+        blackhole.consume(builder);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.robotstxt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RobotsTxtBenchmark {
+
+    private final static String[] PATHS = {
+            "/",
+            "/index.html",
+            "/private/account/settings?tab=security",
+            "/search?q=crawler&page=12",
+            "/public/images/logo.png",
+            "/cgi-bin/script.pl",
+            "/blog/2021/10/19/a-long-article-title-with-many-words.html"};
+
+    private RobotsTxtClauseSet clauseSet;
+
+    @Setup
+    public void setup() throws IOException {
+        final StringBuilder sb = new StringBuilder("User-agent: *\n");
+        for (int i = 0; i < 50; i++)
+            sb.append("Disallow: /section").append(i).append("/*.php$\n");
+        sb.append("Disallow: /private/\n");
+        sb.append("Allow: /private/public/\n");
+        sb.append("Disallow: /*?q=\n");
+        sb.append("Disallow: /cgi-bin/\n");
+        final RobotsTxt robotsTxt = new RobotsTxt(
+                IOUtils.toInputStream(sb.toString(), StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        clauseSet = robotsTxt.getClausesMap().get("*");
+    }
+
+    @Benchmark
+    public void isAllowed(final Blackhole blackhole) {
+        for (final String path : PATHS)
+            blackhole.consume(clauseSet.isAllowed(path));
+    }
+}
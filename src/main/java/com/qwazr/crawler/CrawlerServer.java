@@ -17,6 +17,7 @@ package com.qwazr.crawler;
 
 import com.qwazr.cluster.ClusterManager;
 import com.qwazr.cluster.ClusterServiceInterface;
+import com.qwazr.crawler.common.CrawlThreads;
 import com.qwazr.crawler.file.FileCrawlerManager;
 import com.qwazr.crawler.file.FileCrawlerServiceBuilder;
 import com.qwazr.crawler.file.FileCrawlerServiceInterface;
@@ -52,9 +53,20 @@ public class CrawlerServer implements BaseServer {
     private final FileCrawlerServiceBuilder fileCrawlerServiceBuilder;
     private final FtpCrawlerServiceBuilder ftpCrawlerServiceBuilder;
 
-    private CrawlerServer(final ServerConfiguration configuration, int crawlThreadPoolSize) throws IOException {
+    private CrawlerServer(final ServerConfiguration configuration,
+                          final int crawlThreadPoolSize,
+                          final boolean virtualThreads) throws IOException {
         final ExecutorService executorService = Executors.newCachedThreadPool();
-        final ExecutorService crawlExecutorService = new BlockingExecutorService(crawlThreadPoolSize);
+        final ExecutorService sessionExecutorService;
+        final ExecutorService crawlExecutorService;
+        if (virtualThreads && CrawlThreads.isVirtualAvailable()) {
+            // The sessions and the fetch tasks mostly wait for the network
+            sessionExecutorService = CrawlThreads.newExecutorService("crawl-session", true);
+            crawlExecutorService = CrawlThreads.newExecutorService("crawl-fetch", true);
+        } else {
+            sessionExecutorService = executorService;
+            crawlExecutorService = new BlockingExecutorService(crawlThreadPoolSize);
+        }
         final GenericServerBuilder builder = GenericServer.of(configuration, executorService);
 
         final Set<String> services = new HashSet<>();
@@ -80,7 +92,9 @@ public class CrawlerServer implements BaseServer {
             Files.createDirectory(webCrawlerDirectory);
 
         final WebCrawlerManager webCrawlerManager = new WebCrawlerManager(
-                webCrawlerDirectory, clusterManager, executorService, crawlExecutorService);
+                webCrawlerDirectory, clusterManager, sessionExecutorService, crawlExecutorService);
+        webCrawlerManager.setWorkerBudget(crawlThreadPoolSize);
+        webCrawlerManager.setMaxRunningSessions(SystemUtils.getIntegerProperty("MAX_RUNNING_WEB_SESSIONS", 0));
         builder.shutdownListener(server -> webCrawlerManager.close());
         webServices.singletons(webCrawlerManager.getService());
         webCrawlerServiceBuilder = new WebCrawlerServiceBuilder(clusterManager, webCrawlerManager);
@@ -90,7 +104,9 @@ public class CrawlerServer implements BaseServer {
             Files.createDirectory(fileCrawlerDirectory);
 
         final FileCrawlerManager fileCrawlerManager = new FileCrawlerManager(
-                fileCrawlerDirectory, clusterManager, executorService, crawlExecutorService);
+                fileCrawlerDirectory, clusterManager, sessionExecutorService, crawlExecutorService);
+        fileCrawlerManager.setWorkerBudget(crawlThreadPoolSize);
+        fileCrawlerManager.setMaxRunningSessions(SystemUtils.getIntegerProperty("MAX_RUNNING_FILE_SESSIONS", 0));
         builder.shutdownListener(server -> fileCrawlerManager.close());
         webServices.singletons(fileCrawlerManager.getService());
         fileCrawlerServiceBuilder = new FileCrawlerServiceBuilder(clusterManager, fileCrawlerManager);
@@ -100,7 +116,9 @@ public class CrawlerServer implements BaseServer {
             Files.createDirectory(ftpCrawlerDirectory);
 
         final FtpCrawlerManager ftpCrawlerManager = new FtpCrawlerManager(
-                ftpCrawlerDirectory, clusterManager, executorService, crawlExecutorService);
+                ftpCrawlerDirectory, clusterManager, sessionExecutorService, crawlExecutorService);
+        ftpCrawlerManager.setWorkerBudget(crawlThreadPoolSize);
+        ftpCrawlerManager.setMaxRunningSessions(SystemUtils.getIntegerProperty("MAX_RUNNING_FTP_SESSIONS", 0));
         builder.shutdownListener(server -> ftpCrawlerManager.close());
         webServices.singletons(ftpCrawlerManager.getService());
         ftpCrawlerServiceBuilder = new FtpCrawlerServiceBuilder(clusterManager, ftpCrawlerManager);
@@ -141,7 +159,8 @@ public class CrawlerServer implements BaseServer {
                         .applySystemProperties()
                         .applyCommandLineArgs(args)
                         .build(),
-                SystemUtils.getIntegerProperty("CRAWL_THREAD_POOL_SIZE", Runtime.getRuntime().availableProcessors() * 2 + 1));
+                SystemUtils.getIntegerProperty("CRAWL_THREAD_POOL_SIZE", Runtime.getRuntime().availableProcessors() * 2 + 1),
+                Boolean.parseBoolean(System.getProperty("VIRTUAL_THREADS", System.getenv("VIRTUAL_THREADS"))));
         INSTANCE.start();
     }
 
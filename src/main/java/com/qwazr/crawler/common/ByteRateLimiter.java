@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A token bucket limiting the number of bytes transferred per second.
+ * The bucket holds one second of budget. A transfer larger than the bucket leaves it in debt,
+ * the next transfers wait until the debt is paid back.
+ * The bytes are also counted by the parent limiter, if any: the budget of a session is chained to
+ * the budget of its crawl manager.
+ * The budget can be changed at any time, the waiting transfers follow the new budget.
+ */
+public final class ByteRateLimiter {
+
+    /**
+     * A waiting transfer checks the budget again at least every MAX_WAIT_NANOS
+     */
+    private final static long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ByteRateLimiter parent;
+    private final AtomicLong bytes;
+    private final ReentrantLock bucketLock;
+    private long bytesPerSec;
+    private double tokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param parent         the limiter which also counts the bytes (may be null)
+     * @param maxBytesPerSec the maximum number of bytes per second, null or zero for no limit
+     */
+    public ByteRateLimiter(final ByteRateLimiter parent, final Long maxBytesPerSec) {
+        this.parent = parent;
+        this.bytes = new AtomicLong();
+        this.bucketLock = new ReentrantLock();
+        this.lastRefillNanos = System.nanoTime();
+        setMaxBytesPerSec(maxBytesPerSec);
+    }
+
+    /**
+     * @param maxBytesPerSec the maximum number of bytes per second, null or zero for no limit
+     */
+    public void setMaxBytesPerSec(final Long maxBytesPerSec) {
+        bucketLock.lock();
+        try {
+            final long previous = bytesPerSec;
+            refill(System.nanoTime());
+            bytesPerSec = maxBytesPerSec == null || maxBytesPerSec <= 0 ? 0 : maxBytesPerSec;
+            // A new limit starts with a full bucket
+            tokens = previous == 0 ? bytesPerSec : Math.min(tokens, bytesPerSec);
+        } finally {
+            bucketLock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of bytes per second, or null if there is no limit
+     */
+    public Long getMaxBytesPerSec() {
+        bucketLock.lock();
+        try {
+            return bytesPerSec == 0 ? null : bytesPerSec;
+        } finally {
+            bucketLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of bytes transferred since the creation of the limiter
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public CrawlBandwidth getBandwidth() {
+        return new CrawlBandwidth(getMaxBytesPerSec(), getBytes());
+    }
+
+    /**
+     * Count the transferred bytes, and wait until the budget allows them.
+     *
+     * @param count the number of bytes
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    public void acquire(final long count) throws InterruptedIOException {
+        if (count <= 0)
+            return;
+        bytes.addAndGet(count);
+        if (parent != null)
+            parent.acquire(count);
+        long waitNanos = consume(count);
+        while (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(waitNanos, MAX_WAIT_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the bandwidth budget");
+            }
+            waitNanos = consume(0);
+        }
+    }
+
+    /**
+     * @return the time to wait until the debt of the bucket is paid back
+     */
+    private long consume(final long count) {
+        bucketLock.lock();
+        try {
+            if (bytesPerSec == 0) {
+                tokens = 0;
+                return 0;
+            }
+            refill(System.nanoTime());
+            tokens -= count;
+            return tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / bytesPerSec);
+        } finally {
+            bucketLock.unlock();
+        }
+    }
+
+    private void refill(final long now) {
+        if (bytesPerSec > 0)
+            tokens = Math.min(bytesPerSec,
+                    tokens + (double) (now - lastRefillNanos) * bytesPerSec / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+
+    /**
+     * @param input the stream to read
+     * @return a stream counting the bytes read against the budget
+     */
+    public InputStream limit(final InputStream input) {
+        return new FilterInputStream(input) {
+
+            @Override
+            public int read() throws IOException {
+                final int b = super.read();
+                if (b != -1)
+                    acquire(1);
+                return b;
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                final int read = super.read(buffer, offset, length);
+                acquire(read);
+                return read;
+            }
+
+            @Override
+            public long skip(final long n) throws IOException {
+                final long skipped = super.skip(n);
+                acquire(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * @param output the stream to write
+     * @return a stream counting the bytes written against the budget
+     */
+    public OutputStream limit(final OutputStream output) {
+        return new FilterOutputStream(output) {
+
+            @Override
+            public void write(final int b) throws IOException {
+                acquire(1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(final byte[] buffer, final int offset, final int length) throws IOException {
+                acquire(length);
+                out.write(buffer, offset, length);
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.Equalizer;
+import java.util.Objects;
+
+/**
+ * The bandwidth budget of a crawl session, or of all the sessions of a crawl manager.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        creatorVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        fieldVisibility = JsonAutoDetect.Visibility.PUBLIC_ONLY)
+public class CrawlBandwidth extends Equalizer.Immutable<CrawlBandwidth> {
+
+    /**
+     * The maximum number of bytes per second, null if there is no limit
+     */
+    @JsonProperty("max_bytes_per_sec")
+    final public Long maxBytesPerSec;
+
+    /**
+     * The number of bytes transferred
+     */
+    @JsonProperty("bytes")
+    final public Long bytes;
+
+    @JsonCreator
+    public CrawlBandwidth(@JsonProperty("max_bytes_per_sec") final Long maxBytesPerSec,
+                          @JsonProperty("bytes") final Long bytes) {
+        super(CrawlBandwidth.class);
+        this.maxBytesPerSec = maxBytesPerSec;
+        this.bytes = bytes;
+    }
+
+    @Override
+    protected int computeHashCode() {
+        return Objects.hash(maxBytesPerSec, bytes);
+    }
+
+    @Override
+    protected boolean isEqual(final CrawlBandwidth b) {
+        return Objects.equals(maxBytesPerSec, b.maxBytesPerSec) && Objects.equals(bytes, b.bytes);
+    }
+}
@@ -15,10 +15,37 @@
  **/
 package com.qwazr.crawler.common;
 
+import java.io.Closeable;
+import java.io.IOException;
+
 public interface CrawlCollector<ITEM extends CrawlItem<?>> {
 
     void collect(ITEM crawlItem);
 
+    /**
+     * Collect an item holding resources (like a downloaded body).
+     * The resources are closed as soon as the collector does not need the item anymore.
+     * The default implementation collects synchronously, then closes the resources.
+     *
+     * @param crawlItem the item to collect
+     * @param resources the resources attached to the item (may be null)
+     * @throws IOException if the resources cannot be closed
+     */
+    default void collect(final ITEM crawlItem, final Closeable resources) throws IOException {
+        try {
+            collect(crawlItem);
+        } finally {
+            if (resources != null)
+                resources.close();
+        }
+    }
+
+    /**
+     * Wait until every item already submitted has been collected.
+     */
+    default void flush() {
+    }
+
     void done();
 
 }
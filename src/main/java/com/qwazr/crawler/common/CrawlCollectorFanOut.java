@@ -0,0 +1,316 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.Equalizer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatch the crawled items to several collectors.
+ * Each collector runs in its own branch (a dedicated thread and a bounded queue),
+ * a slow collector only slows down the crawl when its queue is full.
+ */
+public final class CrawlCollectorFanOut<ITEM extends CrawlItem<?>> implements CrawlCollector<ITEM> {
+
+    public final static int DEFAULT_QUEUE_SIZE = 1000;
+
+    private final List<Branch> branches;
+    private final Logger logger;
+    // A ReentrantLock does not pin a virtual thread while it waits
+    private final ReentrantLock inFlightLock;
+    private final Condition inFlightDone;
+    private int inFlight;
+
+    CrawlCollectorFanOut(final Map<String, CrawlCollector<ITEM>> collectors,
+                         final int queueSize,
+                         final ExecutorService executorService,
+                         final Logger logger) {
+        this.logger = logger;
+        this.inFlightLock = new ReentrantLock();
+        this.inFlightDone = inFlightLock.newCondition();
+        this.inFlight = 0;
+        this.branches = new ArrayList<>(collectors.size());
+        collectors.forEach((name, collector) -> branches.add(new Branch(name, collector, queueSize)));
+        branches.forEach(branch -> branch.start(executorService));
+    }
+
+    @Override
+    public void collect(final ITEM crawlItem) {
+        collect(crawlItem, null);
+    }
+
+    @Override
+    public void collect(final ITEM crawlItem, final Closeable resources) {
+        final Pending pending = new Pending(crawlItem, resources, branches.size());
+        inFlightLock.lock();
+        try {
+            inFlight++;
+        } finally {
+            inFlightLock.unlock();
+        }
+        for (final Branch branch : branches)
+            branch.put(pending);
+    }
+
+    @Override
+    public void flush() {
+        inFlightLock.lock();
+        try {
+            while (inFlight > 0) {
+                try {
+                    inFlightDone.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            inFlightLock.unlock();
+        }
+    }
+
+    @Override
+    public void done() {
+        branches.forEach(branch -> branch.put(null));
+        for (final Branch branch : branches) {
+            branch.future.join();
+            logger.info(() -> "Collector " + branch.name + " done: " + branch.getMetrics());
+        }
+    }
+
+    /**
+     * @return the metrics of each collector branch
+     */
+    public Map<String, Metrics> getMetrics() {
+        final Map<String, Metrics> metrics = new LinkedHashMap<>();
+        branches.forEach(branch -> metrics.put(branch.name, branch.getMetrics()));
+        return metrics;
+    }
+
+    private final class Pending {
+
+        private final ITEM item;
+        private final Closeable resources;
+        private final AtomicInteger remainingBranches;
+
+        private Pending(final ITEM item, final Closeable resources, final int branchCount) {
+            this.item = item;
+            this.resources = resources;
+            this.remainingBranches = new AtomicInteger(branchCount);
+        }
+
+        private void release() {
+            if (remainingBranches.decrementAndGet() != 0)
+                return;
+            if (resources != null) {
+                try {
+                    resources.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, e, () -> "Cannot release the resources of " + item.getItem());
+                }
+            }
+            inFlightLock.lock();
+            try {
+                inFlight--;
+                inFlightDone.signalAll();
+            } finally {
+                inFlightLock.unlock();
+            }
+        }
+    }
+
+    private final class Branch implements Runnable {
+
+        private final String name;
+        private final CrawlCollector<ITEM> collector;
+        private final BlockingQueue<Object> queue;
+        private final AtomicLong collected;
+        private final AtomicLong errors;
+        private final AtomicLong busyNanos;
+        private volatile CompletableFuture<Void> future;
+        // Set when the branch thread ended before the end of the stream, the items are no longer enqueued
+        private volatile boolean dead;
+
+        private Branch(final String name, final CrawlCollector<ITEM> collector, final int queueSize) {
+            this.name = name;
+            this.collector = collector;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.collected = new AtomicLong();
+            this.errors = new AtomicLong();
+            this.busyNanos = new AtomicLong();
+        }
+
+        private void start(final ExecutorService executorService) {
+            future = CompletableFuture.runAsync(this, executorService);
+        }
+
+        /**
+         * Enqueue a pending item, a null item is the end of the stream.
+         * The item is released at once if the branch is dead.
+         */
+        private void put(final Pending pending) {
+            final Object next = pending == null ? END_OF_STREAM : pending;
+            try {
+                while (!dead) {
+                    if (queue.offer(next, 100, TimeUnit.MILLISECONDS)) {
+                        // The branch may have died and drained its queue meanwhile
+                        if (dead)
+                            drain();
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (pending != null)
+                pending.release();
+        }
+
+        private void drain() {
+            Object next;
+            while ((next = queue.poll()) != null)
+                if (next != END_OF_STREAM)
+                    ((Pending) next).release();
+        }
+
+        @Override
+        public void run() {
+            boolean ended = false;
+            try {
+                for (; ; ) {
+                    final Object next = queue.take();
+                    if (next == END_OF_STREAM) {
+                        ended = true;
+                        break;
+                    }
+                    collect((Pending) next);
+                }
+            } catch (InterruptedException e) {
+                logger.log(Level.WARNING, e, () -> "Collector " + name + " interrupted");
+                Thread.currentThread().interrupt();
+            } finally {
+                if (!ended) {
+                    dead = true;
+                    drain();
+                }
+                try {
+                    collector.done();
+                } catch (Throwable e) {
+                    logger.log(Level.SEVERE, e, () -> "Collector " + name + " failed on done: " + e.getMessage());
+                }
+            }
+        }
+
+        private void collect(final Pending pending) {
+            final long start = System.nanoTime();
+            try {
+                collector.collect(pending.item);
+                collected.incrementAndGet();
+            } catch (Throwable e) {
+                // An Error thrown by a collector must not kill the branch, the crawl would wait for it forever
+                errors.incrementAndGet();
+                logger.log(Level.WARNING, e, () -> "Collector " + name + " failed on " + pending.item.getItem());
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+                pending.release();
+            }
+        }
+
+        private Metrics getMetrics() {
+            return new Metrics(collected.get(), errors.get(), queue.size(), busyNanos.get() / 1_000_000);
+        }
+    }
+
+    private final static Object END_OF_STREAM = new Object();
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
+            getterVisibility = JsonAutoDetect.Visibility.NONE,
+            creatorVisibility = JsonAutoDetect.Visibility.NONE,
+            isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+            fieldVisibility = JsonAutoDetect.Visibility.PUBLIC_ONLY)
+    public static final class Metrics extends Equalizer.Immutable<Metrics> {
+
+        /**
+         * The number of items successfully collected
+         */
+        final public long collected;
+
+        /**
+         * The number of items which failed
+         */
+        final public long errors;
+
+        /**
+         * The number of items waiting in the queue
+         */
+        final public int queued;
+
+        /**
+         * The time spent in the collector
+         */
+        @JsonProperty("busy_ms")
+        final public long busyMs;
+
+        @JsonCreator
+        public Metrics(@JsonProperty("collected") final long collected,
+                       @JsonProperty("errors") final long errors,
+                       @JsonProperty("queued") final int queued,
+                       @JsonProperty("busy_ms") final long busyMs) {
+            super(Metrics.class);
+            this.collected = collected;
+            this.errors = errors;
+            this.queued = queued;
+            this.busyMs = busyMs;
+        }
+
+        @Override
+        protected int computeHashCode() {
+            return Objects.hash(collected, errors, queued, busyMs);
+        }
+
+        @Override
+        protected boolean isEqual(final Metrics m) {
+            return collected == m.collected && errors == m.errors && queued == m.queued && busyMs == m.busyMs;
+        }
+
+        @Override
+        public String toString() {
+            return "collected: " + collected + " - errors: " + errors + " - queued: " + queued + " - busyMs: " + busyMs;
+        }
+    }
+}
@@ -38,6 +38,13 @@ public abstract class CrawlDefinition<
     @JsonProperty("crawl_collector_factory")
     final public String crawlCollectorFactoryClass;
 
+    /**
+     * The names of additional crawlCollectorFactory classes.
+     * When several collectors are defined, each one runs in its own branch.
+     */
+    @JsonProperty("crawl_collector_factories")
+    final public List<String> crawlCollectorFactoryClasses;
+
     @JsonInclude(Include.NON_EMPTY)
     @JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
             getterVisibility = JsonAutoDetect.Visibility.NONE,
@@ -121,31 +128,63 @@ public abstract class CrawlDefinition<
     @JsonProperty("crawl_wait_ms")
     final public Integer crawlWaitMs;
 
+    /**
+     * The priority of the session when it waits for a free slot. The highest priority starts first.
+     */
+    @JsonProperty("priority")
+    final public Integer priority;
+
+    /**
+     * How the session database is stored (default: durable)
+     */
+    @JsonProperty("storage_profile")
+    final public StorageProfile storageProfile;
+
+    /**
+     * The maximum number of bytes read per second by the session (default: no limit).
+     * The budget can be changed while the session is running.
+     */
+    @JsonProperty("max_bytes_per_sec")
+    final public Long maxBytesPerSec;
+
     protected CrawlDefinition(final Class<DEFINITION> crawldefinitionClass,
                               final @JsonProperty("crawl_collector_factory") String crawlCollectorFactoryClass,
+                              final @JsonProperty("crawl_collector_factories") List<String> crawlCollectorFactoryClasses,
                               final @JsonProperty("variables") List<Variable> variables,
                               final @JsonProperty("filters") List<Filter> filters,
                               final @JsonProperty("filter_policy") WildcardFilter.Status filterPolicy,
                               final @JsonProperty("max_depth") Integer maxDepth,
-                              final @JsonProperty("crawl_wait_ms") Integer crawlWaitMs) {
+                              final @JsonProperty("crawl_wait_ms") Integer crawlWaitMs,
+                              final @JsonProperty("priority") Integer priority,
+                              final @JsonProperty("storage_profile") StorageProfile storageProfile,
+                              final @JsonProperty("max_bytes_per_sec") Long maxBytesPerSec) {
         super(crawldefinitionClass);
         this.crawlCollectorFactoryClass = crawlCollectorFactoryClass;
+        this.crawlCollectorFactoryClasses = crawlCollectorFactoryClasses == null || crawlCollectorFactoryClasses.isEmpty() ?
+                null : List.copyOf(crawlCollectorFactoryClasses);
         this.variables = variables == null ? null : List.copyOf(variables);
         this.filters = filters == null ? null : List.copyOf(filters);
         this.filterPolicy = filterPolicy;
         this.maxDepth = maxDepth;
         this.crawlWaitMs = crawlWaitMs;
+        this.priority = priority;
+        this.storageProfile = storageProfile;
+        this.maxBytesPerSec = maxBytesPerSec;
     }
 
     protected CrawlDefinition(final Class<DEFINITION> crawldefinitionClass,
                               final AbstractBuilder<DEFINITION, ?> builder) {
         this(crawldefinitionClass,
                 builder.crawlCollectorFactoryClass,
+                builder.crawlCollectorFactoryClasses,
                 builder.variables,
                 builder.filters,
                 builder.filterPolicy,
                 builder.maxDepth,
-                builder.crawlWaitMs);
+                builder.crawlWaitMs,
+                builder.priority,
+                builder.storageProfile,
+                builder.maxBytesPerSec);
 
     }
 
@@ -154,6 +193,11 @@ public abstract class CrawlDefinition<
         return crawlCollectorFactoryClass;
     }
 
+    @JsonIgnore
+    final public List<String> getCrawlCollectorFactoryClasses() {
+        return crawlCollectorFactoryClasses;
+    }
+
     final public List<Variable> getVariables() {
         return variables;
     }
@@ -170,6 +214,18 @@ public abstract class CrawlDefinition<
         return crawlWaitMs;
     }
 
+    final public Integer getPriority() {
+        return priority;
+    }
+
+    final public StorageProfile getStorageProfile() {
+        return storageProfile;
+    }
+
+    final public Long getMaxBytesPerSec() {
+        return maxBytesPerSec;
+    }
+
     @Override
     protected int computeHashCode() {
         return Objects.hash(variables, filters, maxDepth, crawlWaitMs);
@@ -178,10 +234,14 @@ public abstract class CrawlDefinition<
     @Override
     protected boolean isEqual(final DEFINITION c) {
         return Objects.equals(crawlCollectorFactoryClass, c.crawlCollectorFactoryClass)
+                && Objects.equals(crawlCollectorFactoryClasses, c.crawlCollectorFactoryClasses)
                 && Objects.deepEquals(variables, c.variables)
                 && Objects.deepEquals(filters, c.filters)
                 && Objects.equals(maxDepth, c.maxDepth)
-                && Objects.equals(crawlWaitMs, c.crawlWaitMs);
+                && Objects.equals(crawlWaitMs, c.crawlWaitMs)
+                && Objects.equals(priority, c.priority)
+                && Objects.equals(storageProfile, c.storageProfile)
+                && Objects.equals(maxBytesPerSec, c.maxBytesPerSec);
     }
 
     public static abstract class AbstractBuilder<
@@ -190,6 +250,8 @@ public abstract class CrawlDefinition<
 
         protected String crawlCollectorFactoryClass;
 
+        protected List<String> crawlCollectorFactoryClasses;
+
         protected List<Variable> variables;
 
         protected List<Filter> filters;
@@ -200,12 +262,24 @@ public abstract class CrawlDefinition<
 
         protected Integer crawlWaitMs;
 
+        protected Integer priority;
+
+        protected StorageProfile storageProfile;
+
+        protected Long maxBytesPerSec;
+
         protected AbstractBuilder() {
         }
 
         protected AbstractBuilder(DEFINITION src) {
+            crawlCollectorFactoryClass = src.crawlCollectorFactoryClass;
+            crawlCollectorFactoryClasses = src.crawlCollectorFactoryClasses == null ?
+                    null : new ArrayList<>(src.crawlCollectorFactoryClasses);
             variables = src.variables == null ? null : List.copyOf(src.variables);
             crawlWaitMs = src.crawlWaitMs;
+            priority = src.priority;
+            storageProfile = src.storageProfile;
+            maxBytesPerSec = src.maxBytesPerSec;
             maxDepth = src.maxDepth;
             filters = src.filters == null || src.filters.isEmpty() ? null : List.copyOf(src.filters);
             filterPolicy = src.filterPolicy;
@@ -218,6 +292,13 @@ public abstract class CrawlDefinition<
             return me();
         }
 
+        public BUILDER addCrawlCollectorFactoryClass(final Class<? extends CrawlCollectorFactory<?, DEFINITION>> crawlCollectorFactoryClass) {
+            if (crawlCollectorFactoryClasses == null)
+                crawlCollectorFactoryClasses = new ArrayList<>();
+            crawlCollectorFactoryClasses.add(crawlCollectorFactoryClass.getName());
+            return me();
+        }
+
         public BUILDER variable(final String name, final String value) {
             if (variables == null)
                 variables = new ArrayList<>();
@@ -250,6 +331,21 @@ public abstract class CrawlDefinition<
             return me();
         }
 
+        public BUILDER setPriority(final Integer priority) {
+            this.priority = priority;
+            return me();
+        }
+
+        public BUILDER setStorageProfile(final StorageProfile storageProfile) {
+            this.storageProfile = storageProfile;
+            return me();
+        }
+
+        public BUILDER setMaxBytesPerSec(final Long maxBytesPerSec) {
+            this.maxBytesPerSec = maxBytesPerSec;
+            return me();
+        }
+
         public abstract DEFINITION build();
 
     }
@@ -25,9 +25,14 @@ import com.qwazr.utils.concurrent.ReadWriteLock;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -56,13 +61,17 @@ public abstract class CrawlManager<
     public final static String CRAWL_DB_NAME = "crawler.db";
     public final static String MAP_SESSION_STATUS_NAME = "status";
     public final static String MAP_SESSION_DEFINITION_NAME = "definition";
+    public final static String SET_RESUMABLE_SESSION_NAME = "resumable";
     public final static String SESSION_DIRECTORY_NAME = "sessions";
 
     private final ConcurrentHashMap<String, THREAD> liveCrawlThreads;
+    private final ConcurrentHashMap<String, CrawlSessionMetrics> lastSessionMetrics;
     private final Class<STATUS> statusClass;
     private final Class<DEFINITION> definitionClass;
     private final HTreeMap<String, byte[]> crawlStatusMap;
     private final HTreeMap<String, byte[]> crawlDefinitionMap;
+    private final HTreeMap.KeySet<String> resumableSessions;
+    private final SessionRegistry<DEFINITION, STATUS> sessionRegistry;
     private final ReadWriteLock mapLock;
 
     private final ExecutorService sessionExecutorService;
@@ -75,6 +84,14 @@ public abstract class CrawlManager<
 
     private final Map<String, Object> attributes;
 
+    private final Object sessionResultsLock;
+
+    private final SessionQueue sessionQueue;
+    final ByteRateLimiter bandwidth;
+    private volatile int maxRunningSessions;
+    private volatile int workerBudget;
+    private volatile boolean closed;
+
     protected CrawlManager(final Path crawlerRootDirectory,
                            final String myAddress,
                            final ExecutorService sessionExecutorService,
@@ -90,6 +107,7 @@ public abstract class CrawlManager<
         if (!Files.exists(sessionsDirectory))
             Files.createDirectory(sessionsDirectory);
         this.liveCrawlThreads = new ConcurrentHashMap<>();
+        this.lastSessionMetrics = new ConcurrentHashMap<>();
         this.myAddress = myAddress;
         this.sessionExecutorService = sessionExecutorService;
         this.crawlExecutorService = crawlExecutorService;
@@ -105,7 +123,20 @@ public abstract class CrawlManager<
                 .keySerializer(Serializer.STRING)
                 .valueSerializer(Serializer.BYTE_ARRAY)
                 .createOrOpen();
+        this.resumableSessions = database.hashSet(SET_RESUMABLE_SESSION_NAME)
+                .serializer(Serializer.STRING)
+                .createOrOpen();
+        this.sessionRegistry = new SessionRegistry<>();
+        crawlStatusMap.forEach((sessionName, bytes) ->
+                sessionRegistry.putStatus(sessionName, decodeSessionStatus(sessionName, bytes)));
+        crawlDefinitionMap.forEach((sessionName, bytes) ->
+                sessionRegistry.putDefinition(sessionName, decodeSessionDefinition(sessionName, bytes)));
         this.attributes = new ConcurrentHashMap<>();
+        this.sessionResultsLock = new Object();
+        this.sessionQueue = new SessionQueue();
+        this.bandwidth = new ByteRateLimiter(null, null);
+        this.maxRunningSessions = Integer.MAX_VALUE;
+        this.workerBudget = Runtime.getRuntime().availableProcessors() * 2 + 1;
     }
 
     public void registerAttribute(final String name, final Object instance) {
@@ -121,34 +152,97 @@ public abstract class CrawlManager<
                                                      final int start,
                                                      final int rows,
                                                      final IntConsumer totalNumber) {
-        return mapLock.read(() -> {
-            final LinkedHashMap<String, STATUS> sessionStatuses = new LinkedHashMap<>();
-            int t = 0;
-            int s = start;
-            final Iterator<String> sessionNamesIterator = crawlStatusMap.getKeys().iterator();
-            while (s != 0 && sessionNamesIterator.hasNext()) {
-                sessionNamesIterator.next();
-                s--;
-            }
-            final WildcardMatcher wildcardMatcher = StringUtils.isBlank(wildcardPattern) ? null : new WildcardMatcher(wildcardPattern);
-            int r = rows;
-            while (r != 0 && sessionNamesIterator.hasNext()) {
-                final String sessionName = sessionNamesIterator.next();
-                if (wildcardMatcher == null || wildcardMatcher.match(sessionName)) {
-                    if (r > 0) {
-                        sessionStatuses.put(sessionName, readSessionStatus(sessionName));
-                        r--;
-                    }
-                    t++;
+        final LinkedHashMap<String, STATUS> sessionStatuses = new LinkedHashMap<>();
+        int t = 0;
+        final Iterator<String> sessionNamesIterator = sessionRegistry.names(start).iterator();
+        final WildcardMatcher wildcardMatcher = StringUtils.isBlank(wildcardPattern) ? null : new WildcardMatcher(wildcardPattern);
+        int r = rows;
+        while (r != 0 && sessionNamesIterator.hasNext()) {
+            final String sessionName = sessionNamesIterator.next();
+            if (wildcardMatcher == null || wildcardMatcher.match(sessionName)) {
+                if (r > 0) {
+                    sessionStatuses.put(sessionName, readSessionStatus(sessionName));
+                    r--;
                 }
+                t++;
             }
-            totalNumber.accept(t);
-            return sessionStatuses;
-        });
+        }
+        totalNumber.accept(t);
+        return sessionStatuses;
+    }
+
+    /**
+     * Returns a page of sessions sorted by name. The page starts after the cursor of the query
+     * (and the skipped matching sessions), the name of its last session is the cursor of the next page.
+     *
+     * @param query         the filters and the position of the page
+     * @param totalConsumer receives the number of sessions matching the filters over the whole registry.
+     *                      Without a name, node nor error filter, the number is read from the counters
+     *                      of the registry, otherwise every session is read.
+     * @return a page of sessions
+     */
+    public LinkedHashMap<String, STATUS> querySessions(final CrawlSessionQuery query,
+                                                       final IntConsumer totalConsumer) {
+        final LinkedHashMap<String, STATUS> sessionStatuses = new LinkedHashMap<>();
+        List<String> sessionNames = sessionRegistry.names(query.cursor);
+        int skip = query.start;
+        if (isUnfiltered(query)) {
+            // Every session matches, the page starts at its position
+            sessionNames = sessionNames.subList(Math.min(Math.max(skip, 0), sessionNames.size()), sessionNames.size());
+            skip = 0;
+        }
+        for (final String sessionName : sessionNames) {
+            if (sessionStatuses.size() >= query.rows)
+                break;
+            if (!query.matches(sessionName))
+                continue;
+            final STATUS status = readSessionStatus(sessionName);
+            if (!query.matches(status))
+                continue;
+            if (skip > 0)
+                skip--;
+            else
+                sessionStatuses.put(sessionName, status);
+        }
+        if (totalConsumer != null)
+            totalConsumer.accept(countSessions(query));
+        return sessionStatuses;
+    }
+
+    private static boolean isUnfiltered(final CrawlSessionQuery query) {
+        return StringUtils.isBlank(query.pattern) && query.state == null && query.node == null && query.error == null;
+    }
+
+    private int countSessions(final CrawlSessionQuery query) {
+        if (StringUtils.isBlank(query.pattern) && query.node == null && query.error == null) {
+            // The registry keeps the stored state of a waiting session, the queue overrides it
+            int total = sessionRegistry.count(query.state);
+            for (final String sessionName : sessionQueue.names()) {
+                if (!sessionRegistry.contains(sessionName))
+                    continue;
+                final STATUS status = sessionRegistry.getStatus(sessionName);
+                if (status != null && (query.state == null || CrawlSessionQuery.State.of(status) == query.state))
+                    total--;
+                if (query.state == null || query.state == CrawlSessionQuery.State.queued)
+                    total++;
+            }
+            return total;
+        }
+        int total = 0;
+        for (final String sessionName : sessionRegistry.names(0))
+            if (query.matches(sessionName) && query.matches(readSessionStatus(sessionName)))
+                total++;
+        return total;
     }
 
     private STATUS readSessionStatus(final String sessionName) {
-        final byte[] bytes = crawlStatusMap.get(sessionName);
+        final Integer queuePosition = sessionQueue.position(sessionName);
+        if (queuePosition != null)
+            return newQueuedStatus(queuePosition);
+        return sessionRegistry.getStatus(sessionName);
+    }
+
+    private STATUS decodeSessionStatus(final String sessionName, final byte[] bytes) {
         try {
             return bytes == null ? null : ObjectMappers.SMILE.readValue(bytes, statusClass);
         } catch (IOException e) {
@@ -158,11 +252,22 @@ public abstract class CrawlManager<
     }
 
     public STATUS getSessionStatus(final String sessionName) {
-        return mapLock.read(() -> readSessionStatus(sessionName));
+        return readSessionStatus(sessionName);
+    }
+
+    /**
+     * @param sessionName the name of the session
+     * @return true if the session is waiting for a free slot
+     */
+    protected boolean isWaitingSession(final String sessionName) {
+        return sessionQueue.contains(sessionName);
     }
 
     private DEFINITION readSessionDefinition(final String sessionName) {
-        final byte[] bytes = crawlDefinitionMap.get(sessionName);
+        return sessionRegistry.getDefinition(sessionName);
+    }
+
+    private DEFINITION decodeSessionDefinition(final String sessionName, final byte[] bytes) {
         try {
             return bytes == null ? null : ObjectMappers.SMILE.readValue(bytes, definitionClass);
         } catch (IOException e) {
@@ -172,7 +277,7 @@ public abstract class CrawlManager<
     }
 
     public DEFINITION getSessionDefinition(final String sessionName) {
-        return mapLock.read(() -> readSessionDefinition(sessionName));
+        return readSessionDefinition(sessionName);
     }
 
     private void putSessionStatus(final String sessionName, final STATUS status) {
@@ -182,6 +287,7 @@ public abstract class CrawlManager<
             throw new InternalServerErrorException(
                     "Error while reading writing status of " + sessionName + " : " + e.getMessage(), e);
         }
+        sessionRegistry.putStatus(sessionName, status);
     }
 
     void setSessionStatus(final String sessionName, final STATUS status) {
@@ -190,8 +296,91 @@ public abstract class CrawlManager<
         });
     }
 
+    /**
+     * Returns the metrics of the running session, or the metrics of the last run.
+     *
+     * @param sessionName the name of the session
+     * @return the metrics, or null if the session did not run since the start of the server
+     */
+    public CrawlSessionMetrics getSessionMetrics(final String sessionName) {
+        final SESSION session = getLiveSession(sessionName);
+        if (session != null)
+            return session.getMetrics();
+        return lastSessionMetrics.get(sessionName);
+    }
+
+    /**
+     * @param sessionName the name of the session
+     * @return the session if it is currently running, null otherwise
+     */
+    protected SESSION getLiveSession(final String sessionName) {
+        final THREAD crawlThread = liveCrawlThreads.get(sessionName);
+        return crawlThread == null ? null : crawlThread.session;
+    }
+
+    /**
+     * Export the results of a session, sorted by item.
+     * The results are read from the session database, either the one of the running session,
+     * or the one left by the last run.
+     *
+     * @param sessionName the name of the session
+     * @param cursor      the last item of the previous page, or null to start from the beginning
+     * @param rows        the maximum number of results
+     * @param consumer    the receiver of the results
+     * @return the number of exported results
+     * @throws IOException if the results cannot be read, or if the consumer failed
+     */
+    public int exportSessionResults(final String sessionName,
+                                    final String cursor,
+                                    final int rows,
+                                    final CrawlResult.Consumer consumer) throws IOException {
+        final SESSION session = getLiveSession(sessionName);
+        if (session != null) {
+            final int count = session.exportResults(cursor, rows, consumer);
+            if (count >= 0)
+                return count;
+        }
+        final Path databaseFile = getSessionResultsFile(sessionName);
+        final DEFINITION crawlDefinition = getSessionDefinition(sessionName);
+        final StorageProfile storageProfile = StorageProfile.of(crawlDefinition == null ? null : crawlDefinition.storageProfile);
+        // The page is copied before the consumer receives it, the session file is not held by a slow consumer
+        final List<CrawlResult> page = new ArrayList<>();
+        synchronized (sessionResultsLock) {
+            try (final DB sessionDB = storageProfile.open(databaseFile)) {
+                new CrawlResults(sessionDB).forEach(cursor, rows, page::add);
+            }
+        }
+        for (final CrawlResult result : page)
+            consumer.accept(result);
+        return page.size();
+    }
+
+    /**
+     * Check that the session has some results
+     *
+     * @param sessionName the name of the session
+     * @return the path to the session database
+     * @throws NotFoundException if the session does not exist or never ran
+     */
+    public Path getSessionResultsFile(final String sessionName) {
+        final Path databaseFile = sessionsDirectory.resolve(sessionName).normalize();
+        if (!sessionsDirectory.normalize().equals(databaseFile.getParent()) || getSessionDefinition(sessionName) == null)
+            throw new NotFoundException("Session not found: " + sessionName);
+        if (!Files.exists(databaseFile))
+            throw new NotFoundException("No results for the session: " + sessionName);
+        return databaseFile;
+    }
+
+    void setSessionMetrics(final String sessionName, final CrawlSessionMetrics metrics) {
+        lastSessionMetrics.put(sessionName, metrics);
+    }
+
     public void abortSession(final String sessionName, final String abortingReason) {
         mapLock.read(() -> {
+            if (sessionQueue.remove(sessionName)) {
+                logger.info(() -> "Remove waiting crawl session: " + sessionName + " - " + abortingReason);
+                return;
+            }
             final THREAD crawlThread = liveCrawlThreads.get(sessionName);
             if (crawlThread == null)
                 throw new NotFoundException("The crawl session was not running: " + sessionName);
@@ -202,22 +391,46 @@ public abstract class CrawlManager<
 
     protected abstract STATUS newInitialStatus();
 
+    /**
+     * @param queuePosition the position of the session in the waiting queue
+     * @return the status of a session waiting for a free slot
+     */
+    protected abstract STATUS newQueuedStatus(final int queuePosition);
+
     protected abstract THREAD newCrawlThread(final String sessionName,
                                              final DEFINITION crawlDefinition);
 
     protected <COLLECTOR_FACTORY extends CrawlCollectorFactory<ITEM, DEFINITION>>
     CrawlCollector<ITEM> newCrawlCollector(final DEFINITION crawlDefinition,
                                            final Class<? extends COLLECTOR_FACTORY> factoryClass) {
-        if (crawlDefinition.crawlCollectorFactoryClass == null)
+        final Set<String> factoryClassNames = new LinkedHashSet<>();
+        if (crawlDefinition.crawlCollectorFactoryClass != null)
+            factoryClassNames.add(crawlDefinition.crawlCollectorFactoryClass);
+        if (crawlDefinition.crawlCollectorFactoryClasses != null)
+            factoryClassNames.addAll(crawlDefinition.crawlCollectorFactoryClasses);
+        if (factoryClassNames.isEmpty())
             return null;
+        if (factoryClassNames.size() == 1)
+            return newCrawlCollector(crawlDefinition, factoryClass, factoryClassNames.iterator().next());
+        final Map<String, CrawlCollector<ITEM>> collectors = new LinkedHashMap<>();
+        for (final String factoryClassName : factoryClassNames)
+            collectors.put(factoryClassName, newCrawlCollector(crawlDefinition, factoryClass, factoryClassName));
+        return new CrawlCollectorFanOut<>(collectors, CrawlCollectorFanOut.DEFAULT_QUEUE_SIZE,
+                sessionExecutorService, logger);
+    }
+
+    private <COLLECTOR_FACTORY extends CrawlCollectorFactory<ITEM, DEFINITION>>
+    CrawlCollector<ITEM> newCrawlCollector(final DEFINITION crawlDefinition,
+                                           final Class<? extends COLLECTOR_FACTORY> factoryClass,
+                                           final String factoryClassName) {
         try {
             COLLECTOR_FACTORY factory = factoryClass.cast(Class
-                    .forName(crawlDefinition.crawlCollectorFactoryClass)
+                    .forName(factoryClassName)
                     .getConstructor()
                     .newInstance());
             return factory.createCrawlCollector(this, crawlDefinition);
         } catch (ReflectiveOperationException e) {
-            throw new InternalServerErrorException("Can't create the factory: " + crawlDefinition.crawlCollectorFactoryClass, e);
+            throw new InternalServerErrorException("Can't create the factory: " + factoryClassName, e);
         }
     }
 
@@ -225,13 +438,18 @@ public abstract class CrawlManager<
                                 final DEFINITION crawlDefinition) {
 
         return mapLock.write(() -> {
-            if (liveCrawlThreads.containsKey(sessionName)) {
+            if (liveCrawlThreads.containsKey(sessionName) || sessionQueue.contains(sessionName)) {
                 throw new ServerException(Response.Status.CONFLICT, "You can't update a crawl while it is running: " + sessionName);
             }
             try {
                 putSessionStatus(sessionName, newInitialStatus());
-                crawlDefinitionMap.put(sessionName, ObjectMappers.SMILE.writeValueAsBytes(crawlDefinition));
+                final byte[] definitionBytes = ObjectMappers.SMILE.writeValueAsBytes(crawlDefinition);
+                crawlDefinitionMap.put(sessionName, definitionBytes);
+                // A new definition starts from scratch
+                resumableSessions.remove(sessionName);
                 database.commit();
+                // The registry keeps the definition as it will be read back from the database
+                sessionRegistry.putDefinition(sessionName, decodeSessionDefinition(sessionName, definitionBytes));
             } catch (JsonProcessingException e) {
                 throw new InternalServerErrorException("Can't read the crawl definition: " + e.getMessage(), e);
             }
@@ -240,30 +458,224 @@ public abstract class CrawlManager<
         });
     }
 
+    /**
+     * Set the maximum number of sessions running at the same time.
+     * The other sessions wait in a queue until a running session ends.
+     *
+     * @param maxRunningSessions the maximum number of running sessions, null or zero for no limit
+     */
+    public void setMaxRunningSessions(final Integer maxRunningSessions) {
+        this.maxRunningSessions = maxRunningSessions == null || maxRunningSessions <= 0 ?
+                Integer.MAX_VALUE : maxRunningSessions;
+        startWaitingSessions();
+    }
+
+    public int getMaxRunningSessions() {
+        return maxRunningSessions;
+    }
+
+    /**
+     * Set the number of fetch tasks which may run at the same time, all sessions included
+     *
+     * @param workerBudget the number of workers, usually the size of the crawl executor
+     */
+    public void setWorkerBudget(final int workerBudget) {
+        this.workerBudget = Math.max(1, workerBudget);
+    }
+
+    /**
+     * Set the maximum number of bytes read per second, all sessions included
+     *
+     * @param maxBytesPerSec the maximum number of bytes per second, null or zero for no limit
+     * @return the new bandwidth budget
+     */
+    public CrawlBandwidth setMaxBytesPerSec(final Long maxBytesPerSec) {
+        bandwidth.setMaxBytesPerSec(maxBytesPerSec);
+        logger.info(() -> "Bandwidth budget: " + (maxBytesPerSec == null ? "no limit" : maxBytesPerSec + " bytes/s"));
+        return bandwidth.getBandwidth();
+    }
+
+    /**
+     * @return the bandwidth budget shared by all the sessions
+     */
+    public CrawlBandwidth getBandwidth() {
+        return bandwidth.getBandwidth();
+    }
+
+    /**
+     * Change the bandwidth budget of a running session.
+     * The budget given by the definition applies again at the next run.
+     *
+     * @param sessionName    the name of the session
+     * @param maxBytesPerSec the maximum number of bytes per second, null or zero for no limit
+     * @return the new bandwidth budget of the session
+     * @throws NotFoundException if the session is not running
+     */
+    public CrawlBandwidth setSessionMaxBytesPerSec(final String sessionName, final Long maxBytesPerSec) {
+        final ByteRateLimiter sessionBandwidth = getLiveSessionBandwidth(sessionName);
+        sessionBandwidth.setMaxBytesPerSec(maxBytesPerSec);
+        logger.info(() -> "Bandwidth budget of " + sessionName + ": " +
+                (maxBytesPerSec == null ? "no limit" : maxBytesPerSec + " bytes/s"));
+        return sessionBandwidth.getBandwidth();
+    }
+
+    /**
+     * @param sessionName the name of the session
+     * @return the bandwidth budget of a running session
+     * @throws NotFoundException if the session is not running
+     */
+    public CrawlBandwidth getSessionBandwidth(final String sessionName) {
+        return getLiveSessionBandwidth(sessionName).getBandwidth();
+    }
+
+    private ByteRateLimiter getLiveSessionBandwidth(final String sessionName) {
+        final SESSION session = getLiveSession(sessionName);
+        if (session == null)
+            throw new NotFoundException("The crawl session is not running: " + sessionName);
+        return session.getBandwidthLimiter();
+    }
+
+    /**
+     * The worker budget is shared evenly between the running sessions
+     *
+     * @return the number of fetch tasks a session may run at the same time
+     */
+    public int getWorkerShare() {
+        return Math.max(1, workerBudget / Math.max(1, liveCrawlThreads.size()));
+    }
+
+    /**
+     * Run a session, or put it in the waiting queue if the maximum number of running sessions is reached.
+     *
+     * @param sessionName the name of the session
+     * @return the status of the session
+     */
     public STATUS runSession(final String sessionName) {
         return mapLock.write(() -> {
-            liveCrawlThreads.compute(sessionName, (key, currentCrawl) -> {
-                if (currentCrawl != null)
-                    throw new ServerException(Response.Status.CONFLICT, "The session already exists: " + sessionName);
-                DEFINITION crawlDefinition = readSessionDefinition(sessionName);
-                if (crawlDefinition == null) {
-                    throw new NotFoundException("There is not crawl definition: " + sessionName);
-                }
+            if (liveCrawlThreads.containsKey(sessionName) || sessionQueue.contains(sessionName))
+                throw new ServerException(Response.Status.CONFLICT, "The session already exists: " + sessionName);
+            final DEFINITION crawlDefinition = readSessionDefinition(sessionName);
+            if (crawlDefinition == null)
+                throw new NotFoundException("There is not crawl definition: " + sessionName);
+            if (liveCrawlThreads.size() < maxRunningSessions)
+                startSession(sessionName, crawlDefinition);
+            else {
+                sessionQueue.add(sessionName, crawlDefinition.priority);
+                logger.info(() -> "Crawl session waiting for a free slot: " + sessionName);
+            }
+            return getSessionStatus(sessionName);
+        });
+    }
+
+    private void startSession(final String sessionName, final DEFINITION crawlDefinition) {
+        final THREAD newCrawlThread = liveCrawlThreads.compute(sessionName, (key, currentCrawl) -> {
+            if (currentCrawl != null)
+                throw new ServerException(Response.Status.CONFLICT, "The session already exists: " + sessionName);
+            if (resumableSessions.contains(sessionName))
+                logger.info(() -> "Resume crawl session: " + sessionName);
+            else {
                 deleteSessionDirectory(sessionName);
                 logger.info(() -> "Start crawl session: " + sessionName);
-                final THREAD newCrawlThread = newCrawlThread(sessionName, crawlDefinition);
-                CompletableFuture.runAsync(newCrawlThread, sessionExecutorService).whenComplete((r, e) -> {
-                    liveCrawlThreads.remove(sessionName);
-                    if (e != null)
-                        logger.log(Level.SEVERE, e,
-                                () -> "Error on crawl session " + sessionName + ": " + e.getMessage());
-                });
-                return newCrawlThread;
-            });
-            return getSessionStatus(sessionName);
+            }
+            return newCrawlThread(sessionName, crawlDefinition);
+        });
+        CompletableFuture.runAsync(newCrawlThread, sessionExecutorService).whenComplete((r, e) -> {
+            liveCrawlThreads.remove(sessionName);
+            if (e != null)
+                logger.log(Level.SEVERE, e,
+                        () -> "Error on crawl session " + sessionName + ": " + e.getMessage());
+            startWaitingSessions();
+            compactSession(sessionName, StorageProfile.of(crawlDefinition.storageProfile));
+        });
+    }
+
+    /**
+     * Rewrite the results of a finished session in a new database file.
+     * The working structures of the session (the URLs to crawl, the retries...) are left behind.
+     * The map lock prevents the session from being restarted during the compaction,
+     * and makes the closing of the manager wait until the compaction is done.
+     * A resumable session keeps its working structures for the next run.
+     */
+    private void compactSession(final String sessionName, final StorageProfile storageProfile) {
+        if (!storageProfile.isPersistent() || closed)
+            return;
+        mapLock.read(() -> {
+            // The manager may have been closed while waiting for the lock
+            if (closed || liveCrawlThreads.containsKey(sessionName) || resumableSessions.contains(sessionName))
+                return;
+            final Path databaseFile = sessionsDirectory.resolve(sessionName);
+            if (!Files.exists(databaseFile))
+                return;
+            synchronized (sessionResultsLock) {
+                Path compactFile = null;
+                try {
+                    compactFile = Files.createTempFile(sessionsDirectory, ".compact-", "");
+                    Files.delete(compactFile);
+                    final long sizeBefore = Files.size(databaseFile);
+                    final int count;
+                    try (final DB sessionDB = storageProfile.open(databaseFile);
+                         final DB compactDB = storageProfile.open(compactFile)) {
+                        count = new CrawlResults(sessionDB).copyTo(new CrawlResults(compactDB));
+                        compactDB.commit();
+                    }
+                    Files.move(compactFile, databaseFile, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    final long sizeAfter = Files.size(databaseFile);
+                    logger.info(() -> "Session " + sessionName + " compacted: " + count + " results, " +
+                            sizeBefore + " -> " + sizeAfter + " bytes");
+                } catch (IOException | RuntimeException e) {
+                    logger.log(Level.WARNING, e, () -> "Cannot compact the session " + sessionName);
+                    if (compactFile != null) {
+                        try {
+                            Files.deleteIfExists(compactFile);
+                        } catch (IOException ioe) {
+                            logger.log(Level.WARNING, ioe, ioe::getMessage);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Start the waiting sessions, by priority, while some slots are free
+     */
+    private void startWaitingSessions() {
+        if (sessionQueue.size() == 0)
+            return;
+        mapLock.write(() -> {
+            while (!closed && liveCrawlThreads.size() < maxRunningSessions) {
+                final String sessionName = sessionQueue.poll();
+                if (sessionName == null)
+                    return;
+                final DEFINITION crawlDefinition = readSessionDefinition(sessionName);
+                if (crawlDefinition == null)
+                    continue;
+                try {
+                    startSession(sessionName, crawlDefinition);
+                } catch (RuntimeException e) {
+                    logger.log(Level.SEVERE, e, () -> "Cannot start the crawl session " + sessionName);
+                }
+            }
         });
     }
 
+    /**
+     * Mark a session whose database must survive until the next run, which continues where this one stopped.
+     *
+     * @param sessionName the name of the session
+     * @param resumable   true if the next run resumes the session, false if it starts from scratch
+     */
+    void setResumable(final String sessionName, final boolean resumable) {
+        // The sessions are also closed while the manager is closing, under the write lock
+        synchronized (resumableSessions) {
+            if (database.isClosed())
+                return;
+            if (resumable ? resumableSessions.add(sessionName) : resumableSessions.remove(sessionName))
+                database.commit();
+        }
+    }
+
     private void deleteSessionDirectory(final String sessionName) {
         try {
             Files.deleteIfExists(sessionsDirectory.resolve(sessionName));
@@ -274,18 +686,32 @@ public abstract class CrawlManager<
 
     void removeSession(final String sessionName) {
         mapLock.write(() -> {
-            if (liveCrawlThreads.containsKey(sessionName))
+            if (liveCrawlThreads.containsKey(sessionName) || sessionQueue.contains(sessionName))
                 throw new NotAcceptableException("The session is currently running: " + sessionName);
             crawlStatusMap.remove(sessionName);
             crawlDefinitionMap.remove(sessionName);
+            sessionRegistry.remove(sessionName);
+            lastSessionMetrics.remove(sessionName);
+            resumableSessions.remove(sessionName);
             deleteSessionDirectory(sessionName);
             database.commit();
+            sessionRemoved(sessionName);
         });
     }
 
+    /**
+     * Called when a session has been removed, to release anything kept about the session.
+     *
+     * @param sessionName the name of the removed session
+     */
+    protected void sessionRemoved(final String sessionName) {
+    }
+
     @Override
     public void close() {
         mapLock.write(() -> {
+            closed = true;
+            sessionQueue.clear();
             liveCrawlThreads.forEach((name, thread) -> thread.session.abort(null));
             try {
                 WaitFor.of()
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+/**
+ * The phases of a crawl which are timed by {@link CrawlTimers}.
+ */
+public enum CrawlPhase {
+
+    /**
+     * The resolution of the host name
+     */
+    dns,
+
+    /**
+     * The establishment of the connection (including the TLS handshake)
+     */
+    connect,
+
+    /**
+     * From the request being sent to the first byte of the response
+     */
+    ttfb,
+
+    /**
+     * The download of the response body
+     */
+    download,
+
+    /**
+     * The parsing of the document
+     */
+    parse,
+
+    /**
+     * The extraction of the links from the parsed document
+     */
+    link_extraction,
+
+    /**
+     * The read and write operations on the URLs to crawl
+     */
+    frontier,
+
+    /**
+     * The commit of the session database
+     */
+    db_commit,
+
+    /**
+     * The hand-off of the crawled item to the collector
+     */
+    collector
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.Equalizer;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * The outcome of the crawl of one item, as stored in the session database.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        creatorVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        fieldVisibility = JsonAutoDetect.Visibility.PUBLIC_ONLY)
+public class CrawlResult extends Equalizer.Immutable<CrawlResult> {
+
+    /**
+     * The crawled item (URL, path)
+     */
+    final public String item;
+
+    final public int depth;
+
+    /**
+     * The HTTP status code (web crawl only)
+     */
+    @JsonProperty("status_code")
+    final public Integer statusCode;
+
+    @JsonProperty("content_type")
+    final public String contentType;
+
+    /**
+     * The location of the redirection (web crawl only)
+     */
+    final public String redirect;
+
+    final public Rejected rejected;
+
+    final public String error;
+
+    @JsonCreator
+    CrawlResult(@JsonProperty("item") final String item,
+                @JsonProperty("depth") final int depth,
+                @JsonProperty("status_code") final Integer statusCode,
+                @JsonProperty("content_type") final String contentType,
+                @JsonProperty("redirect") final String redirect,
+                @JsonProperty("rejected") final Rejected rejected,
+                @JsonProperty("error") final String error) {
+        super(CrawlResult.class);
+        this.item = item;
+        this.depth = depth;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.redirect = redirect;
+        this.rejected = rejected;
+        this.error = error;
+    }
+
+    private CrawlResult(final Builder builder) {
+        this(builder.item, builder.depth, builder.statusCode, builder.contentType, builder.redirect,
+                builder.rejected, builder.error);
+    }
+
+    @Override
+    protected int computeHashCode() {
+        return Objects.hash(item, depth, statusCode);
+    }
+
+    @Override
+    protected boolean isEqual(final CrawlResult r) {
+        return Objects.equals(item, r.item) && depth == r.depth && Objects.equals(statusCode, r.statusCode)
+                && Objects.equals(contentType, r.contentType) && Objects.equals(redirect, r.redirect)
+                && Objects.equals(rejected, r.rejected) && Objects.equals(error, r.error);
+    }
+
+    public static Builder of(final CrawlItem<?> crawlItem) {
+        return new Builder(String.valueOf(crawlItem.getItem()), crawlItem.getDepth())
+                .rejected(crawlItem.getRejected())
+                .error(crawlItem.getError());
+    }
+
+    public static class Builder {
+
+        private final String item;
+        private final int depth;
+        private Integer statusCode;
+        private String contentType;
+        private String redirect;
+        private Rejected rejected;
+        private String error;
+
+        public Builder(final String item, final int depth) {
+            this.item = item;
+            this.depth = depth;
+        }
+
+        public Builder statusCode(final Integer statusCode) {
+            this.statusCode = statusCode;
+            return this;
+        }
+
+        public Builder contentType(final String contentType) {
+            this.contentType = contentType;
+            return this;
+        }
+
+        public Builder redirect(final String redirect) {
+            this.redirect = redirect;
+            return this;
+        }
+
+        public Builder rejected(final Rejected rejected) {
+            this.rejected = rejected;
+            return this;
+        }
+
+        public Builder error(final String error) {
+            this.error = error;
+            return this;
+        }
+
+        public CrawlResult build() {
+            return new CrawlResult(this);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+
+        void accept(CrawlResult result) throws IOException;
+    }
+}
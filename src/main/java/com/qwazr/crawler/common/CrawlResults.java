@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.utils.ObjectMappers;
+import java.io.IOException;
+import java.util.Map;
+import java.util.NavigableMap;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+
+/**
+ * The results of a crawl session, sorted by item, stored in the session database.
+ */
+final class CrawlResults {
+
+    final static String MAP_NAME = "results";
+
+    private final BTreeMap<String, byte[]> results;
+
+    CrawlResults(final DB sessionDB) {
+        results = sessionDB.treeMap(MAP_NAME)
+                .keySerializer(Serializer.STRING)
+                .valueSerializer(Serializer.BYTE_ARRAY)
+                .createOrOpen();
+    }
+
+    void put(final CrawlResult result) throws IOException {
+        results.put(result.item, ObjectMappers.SMILE.writeValueAsBytes(result));
+    }
+
+    /**
+     * Copy every result into another session database
+     *
+     * @param target the results of the other database
+     * @return the number of copied results
+     */
+    int copyTo(final CrawlResults target) {
+        int count = 0;
+        for (final Map.Entry<String, byte[]> entry : results.entrySet()) {
+            target.results.put(entry.getKey(), entry.getValue());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Iterate over the results following the cursor
+     *
+     * @param cursor   the last item of the previous page, or null to start from the beginning
+     * @param rows     the maximum number of results
+     * @param consumer the receiver of the results
+     * @return the number of results
+     * @throws IOException if the results cannot be read, or if the consumer failed
+     */
+    int forEach(final String cursor, final int rows, final CrawlResult.Consumer consumer) throws IOException {
+        final NavigableMap<String, byte[]> page = cursor == null ? results : results.tailMap(cursor, false);
+        int count = 0;
+        for (final Map.Entry<String, byte[]> entry : page.entrySet()) {
+            if (count >= rows)
+                break;
+            consumer.accept(ObjectMappers.SMILE.readValue(entry.getValue(), CrawlResult.class));
+            count++;
+        }
+        return count;
+    }
+}
@@ -15,12 +15,23 @@
  **/
 package com.qwazr.crawler.common;
 
+import com.qwazr.utils.LoggerUtils;
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.mapdb.DB;
-import org.mapdb.DBMaker;
 
 public abstract class CrawlSessionBase<
         SESSION extends CrawlSessionBase<SESSION, THREAD, MANAGER, DEFINITION, STATUS, ITEM>,
@@ -31,6 +42,13 @@ public abstract class CrawlSessionBase<
         ITEM extends CrawlItem<?>
         > implements CrawlSession<DEFINITION, STATUS, ITEM> {
 
+    private final static Logger LOGGER = LoggerUtils.getLogger(CrawlSessionBase.class);
+
+    /**
+     * The results are committed at least every RESULTS_COMMIT_INTERVAL items
+     */
+    private final static int RESULTS_COMMIT_INTERVAL = 1000;
+
     private final MANAGER crawlManager;
     private final DEFINITION crawlDefinition;
     private final String name;
@@ -39,7 +57,17 @@ public abstract class CrawlSessionBase<
     private final CrawlCollector<ITEM> crawlCollector;
     private volatile STATUS crawlStatus;
     private final Path databaseFile;
+    private final StorageProfile storageProfile;
     protected final DB sessionDB;
+    private final AtomicLong lastCommitNanos;
+    protected final CrawlTimers timers;
+    private volatile ObjectName timersObjectName;
+    private final CrawlResults results;
+    private final ReentrantReadWriteLock resultsLock;
+    private final AtomicInteger uncommittedResults;
+    private final ReentrantLock statusLock;
+    private final ReentrantLock collectorLock;
+    private final ByteRateLimiter bandwidth;
 
     protected CrawlSessionBase(final String sessionName,
                                final MANAGER crawlManager,
@@ -47,16 +75,22 @@ public abstract class CrawlSessionBase<
                                final CrawlSessionStatus.AbstractBuilder<STATUS, ?> crawlStatusBuilder,
                                final CrawlCollector<ITEM> crawlCollector) {
         databaseFile = crawlManager.sessionsDirectory.resolve(sessionName);
-        this.sessionDB = DBMaker
-                .fileDB(databaseFile.toFile())
-                .transactionEnable()
-                .make();
+        storageProfile = StorageProfile.of(crawlDefinition.storageProfile);
+        this.sessionDB = storageProfile.open(databaseFile);
+        this.lastCommitNanos = new AtomicLong(System.nanoTime());
         this.crawlManager = crawlManager;
         this.crawlStatusBuilder = crawlStatusBuilder;
         this.crawlDefinition = crawlDefinition;
         this.name = sessionName;
         abort = new AtomicBoolean(false);
         this.crawlCollector = Objects.requireNonNull(crawlCollector);
+        this.timers = new CrawlTimers();
+        this.results = new CrawlResults(sessionDB);
+        this.resultsLock = new ReentrantReadWriteLock();
+        this.uncommittedResults = new AtomicInteger();
+        this.statusLock = new ReentrantLock();
+        this.collectorLock = new ReentrantLock();
+        this.bandwidth = new ByteRateLimiter(crawlManager.bandwidth, crawlDefinition.maxBytesPerSec);
         buildStatus();
     }
 
@@ -72,7 +106,97 @@ public abstract class CrawlSessionBase<
 
     @Override
     public void collect(ITEM crawlItem) {
-        crawlCollector.collect(crawlItem);
+        storeResult(crawlItem);
+        final long start = System.nanoTime();
+        collectorLock.lock();
+        try {
+            crawlCollector.collect(crawlItem);
+        } finally {
+            collectorLock.unlock();
+            timers.recordSince(CrawlPhase.collector, start);
+        }
+    }
+
+    /**
+     * Collect an item and release its resources once every collector is done with it.
+     *
+     * @param crawlItem the item to collect
+     * @param resources the resources attached to the item (may be null)
+     * @throws IOException if the resources cannot be closed
+     */
+    public void collect(final ITEM crawlItem, final Closeable resources) throws IOException {
+        try {
+            storeResult(crawlItem);
+        } catch (RuntimeException e) {
+            // The collectors will never receive the resources
+            if (resources != null)
+                resources.close();
+            throw e;
+        }
+        final long start = System.nanoTime();
+        collectorLock.lock();
+        try {
+            crawlCollector.collect(crawlItem, resources);
+        } finally {
+            collectorLock.unlock();
+            timers.recordSince(CrawlPhase.collector, start);
+        }
+    }
+
+    /**
+     * Build the result stored in the session database for the given item.
+     * Override this method to add the information specific to the crawl type.
+     *
+     * @param crawlItem the crawled item
+     * @return a result builder
+     */
+    protected CrawlResult.Builder newResult(final ITEM crawlItem) {
+        return CrawlResult.of(crawlItem);
+    }
+
+    private void storeResult(final ITEM crawlItem) {
+        try {
+            results.put(newResult(crawlItem).build());
+            if (uncommittedResults.incrementAndGet() >= RESULTS_COMMIT_INTERVAL) {
+                uncommittedResults.set(0);
+                commit();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot store the result of " + crawlItem.getItem());
+        }
+    }
+
+    /**
+     * Read the results of the session while it is running.
+     * The page is copied under the lock, the consumer receives it once the lock is released,
+     * so that a slow consumer does not hold the commits and the closing of the session.
+     *
+     * @param cursor   the last item of the previous page, or null to start from the beginning
+     * @param rows     the maximum number of results
+     * @param consumer the receiver of the results
+     * @return the number of results, or -1 if the session database is already closed
+     * @throws IOException if the results cannot be read, or if the consumer failed
+     */
+    int exportResults(final String cursor, final int rows, final CrawlResult.Consumer consumer) throws IOException {
+        final List<CrawlResult> page = new ArrayList<>();
+        resultsLock.readLock().lock();
+        try {
+            if (sessionDB.isClosed())
+                return -1;
+            results.forEach(cursor, rows, page::add);
+        } finally {
+            resultsLock.readLock().unlock();
+        }
+        for (final CrawlResult result : page)
+            consumer.accept(result);
+        return page.size();
+    }
+
+    /**
+     * Wait until the collector has consumed every submitted item.
+     */
+    public void flushCollector() {
+        crawlCollector.flush();
     }
 
     @Override
@@ -90,8 +214,13 @@ public abstract class CrawlSessionBase<
     public void abort(String reason) {
         if (abort.getAndSet(true))
             return;
-        crawlStatusBuilder.abort(reason);
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.abort(reason);
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
     }
 
     @Override
@@ -100,29 +229,54 @@ public abstract class CrawlSessionBase<
     }
 
     public void incRejectedCount() {
-        crawlStatusBuilder.incRejected();
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.incRejected();
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
     }
 
     public int incCrawledCount() {
-        crawlStatusBuilder.incCrawled();
-        buildStatus();
-        return crawlStatus.crawled;
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.incCrawled();
+            buildStatus();
+            return crawlStatus.crawled;
+        } finally {
+            statusLock.unlock();
+        }
     }
 
     public void incRedirectCount() {
-        crawlStatusBuilder.incRedirect();
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.incRedirect();
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
     }
 
     public void incErrorCount(String errorMessage) {
-        crawlStatusBuilder.lastError(errorMessage).incError();
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.lastError(errorMessage).incError();
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
     }
 
     public void error(Exception e) {
-        crawlStatusBuilder.lastError(ExceptionUtils.getRootCauseMessage(e));
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.lastError(ExceptionUtils.getRootCauseMessage(e));
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
     }
 
     @Override
@@ -131,28 +285,128 @@ public abstract class CrawlSessionBase<
     }
 
     public void setCurrentCrawl(final String currentCrawl, final Integer currentDepth) {
-        crawlStatusBuilder.crawl(currentCrawl, currentDepth);
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.crawl(currentCrawl, currentDepth);
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
     }
 
     public DEFINITION getCrawlDefinition() {
         return crawlDefinition;
     }
 
+    public CrawlTimers getTimers() {
+        return timers;
+    }
+
+    /**
+     * @return the bandwidth budget of the session, chained to the budget of the crawl manager
+     */
+    public ByteRateLimiter getBandwidthLimiter() {
+        return bandwidth;
+    }
+
+    /**
+     * @return the latency of each phase and the activity of the collectors
+     */
+    public CrawlSessionMetrics getMetrics() {
+        return new CrawlSessionMetrics(timers.getPhases(),
+                crawlCollector instanceof CrawlCollectorFanOut ?
+                        ((CrawlCollectorFanOut<?>) crawlCollector).getMetrics() :
+                        null);
+    }
+
+    /**
+     * Commit the session database. With the fast storage profile, the commit is only done by periodic checkpoints.
+     */
+    protected void commit() {
+        if (storageProfile != StorageProfile.durable) {
+            final long last = lastCommitNanos.get();
+            final long now = System.nanoTime();
+            if (!storageProfile.isCommitDue(last, now) || !lastCommitNanos.compareAndSet(last, now))
+                return;
+        }
+        forceCommit();
+    }
+
+    private void forceCommit() {
+        final long start = System.nanoTime();
+        try {
+            sessionDB.commit();
+        } finally {
+            timers.recordSince(CrawlPhase.db_commit, start);
+        }
+    }
+
     void start() {
-        crawlStatusBuilder.start();
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.start();
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
+        timersObjectName = timers.register(getClass().getSimpleName(), name);
+        // Until the session is closed, a crash leaves a database that the next run can resume
+        if (isResumable())
+            crawlManager.setResumable(name, true);
+    }
+
+    /**
+     * @return true if the next run can continue from the database of this session
+     */
+    private boolean isResumable() {
+        return storageProfile.isPersistent() && supportsResume();
+    }
+
+    /**
+     * Override this method if the crawl can continue from the structures left in the session database.
+     *
+     * @return true if the session supports to be resumed
+     */
+    protected boolean supportsResume() {
+        return false;
+    }
+
+    /**
+     * Called before the session database is closed.
+     *
+     * @return true if some work is left that the next run should continue
+     */
+    protected boolean hasPendingWork() {
+        return false;
     }
 
     void done() {
-        crawlStatusBuilder.done();
-        buildStatus();
+        statusLock.lock();
+        try {
+            crawlStatusBuilder.done();
+            buildStatus();
+        } finally {
+            statusLock.unlock();
+        }
         crawlCollector.done();
     }
 
     @Override
     public void close() {
-        if (!sessionDB.isClosed())
-            sessionDB.close();
+        resultsLock.writeLock().lock();
+        try {
+            if (!sessionDB.isClosed()) {
+                final boolean pendingWork = isResumable() && hasPendingWork();
+                forceCommit();
+                sessionDB.close();
+                if (isResumable())
+                    crawlManager.setResumable(name, pendingWork);
+            }
+        } finally {
+            resultsLock.writeLock().unlock();
+        }
+        CrawlTimers.unregister(timersObjectName);
+        timersObjectName = null;
+        crawlManager.setSessionMetrics(name, getMetrics());
     }
 }
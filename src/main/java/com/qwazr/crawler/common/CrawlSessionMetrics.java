@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.Equalizer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The latencies of each phase of a crawl session, and the activity of its collectors.
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+@JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        creatorVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        fieldVisibility = JsonAutoDetect.Visibility.PUBLIC_ONLY)
+public class CrawlSessionMetrics extends Equalizer.Immutable<CrawlSessionMetrics> {
+
+    /**
+     * The latency snapshot of each phase
+     */
+    final public Map<String, CrawlTimer.Snapshot> phases;
+
+    /**
+     * The metrics of each collector, when the items are dispatched to several collectors
+     */
+    final public Map<String, CrawlCollectorFanOut.Metrics> collectors;
+
+    @JsonCreator
+    public CrawlSessionMetrics(@JsonProperty("phases") final Map<String, CrawlTimer.Snapshot> phases,
+                               @JsonProperty("collectors") final Map<String, CrawlCollectorFanOut.Metrics> collectors) {
+        super(CrawlSessionMetrics.class);
+        this.phases = phases == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(phases));
+        this.collectors = collectors == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>(collectors));
+    }
+
+    @Override
+    protected int computeHashCode() {
+        return Objects.hash(phases, collectors);
+    }
+
+    @Override
+    protected boolean isEqual(final CrawlSessionMetrics m) {
+        return Objects.equals(phases, m.phases) && Objects.equals(collectors, m.collectors);
+    }
+}
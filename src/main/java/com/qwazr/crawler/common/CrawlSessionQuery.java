@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.utils.StringUtils;
+import com.qwazr.utils.WildcardMatcher;
+import java.util.Objects;
+
+/**
+ * A page of sessions, sorted by name, selected by server-side filters.
+ * The next page starts after the cursor, which is the name of the last session of the previous page.
+ */
+public final class CrawlSessionQuery {
+
+    public final static int DEFAULT_ROWS = 10;
+
+    public enum State {
+
+        /**
+         * The session never ran
+         */
+        idle,
+
+        /**
+         * The session waits for a free slot
+         */
+        queued,
+
+        /**
+         * The session is running
+         */
+        running,
+
+        /**
+         * The session is done
+         */
+        finished;
+
+        public static State of(final CrawlSessionStatus<?> status) {
+            if (status.queuePosition != null)
+                return queued;
+            if (Boolean.TRUE.equals(status.running))
+                return running;
+            if (status.endTime != null)
+                return finished;
+            return idle;
+        }
+    }
+
+    /**
+     * An optional wildcard filter on the session names
+     */
+    public final String pattern;
+
+    /**
+     * The name of the last session of the previous page, or null to start from the first session
+     * (an empty cursor also starts from the first session)
+     */
+    public final String cursor;
+
+    /**
+     * The number of matching sessions to skip after the cursor
+     */
+    public final int start;
+
+    /**
+     * The maximum number of sessions in the page
+     */
+    public final int rows;
+
+    /**
+     * Keep only the sessions in this state
+     */
+    public final State state;
+
+    /**
+     * Keep only the sessions of this node
+     */
+    public final String node;
+
+    /**
+     * Keep only the sessions with errors (true) or without errors (false)
+     */
+    public final Boolean error;
+
+    private final WildcardMatcher wildcardMatcher;
+
+    private CrawlSessionQuery(final Builder builder) {
+        this.pattern = builder.pattern;
+        this.cursor = builder.cursor == null || builder.cursor.isEmpty() ? null : builder.cursor;
+        this.start = builder.start == null ? 0 : Math.max(0, builder.start);
+        this.rows = builder.rows == null ? DEFAULT_ROWS : Math.max(0, builder.rows);
+        this.state = builder.state;
+        this.node = builder.node;
+        this.error = builder.error;
+        this.wildcardMatcher = StringUtils.isBlank(pattern) ? null : new WildcardMatcher(pattern);
+    }
+
+    /**
+     * @param sessionName the name of the session
+     * @return true if the name matches the wildcard pattern
+     */
+    public boolean matches(final String sessionName) {
+        return wildcardMatcher == null || wildcardMatcher.match(sessionName);
+    }
+
+    /**
+     * @param status the status of the session
+     * @return true if the status matches the filters
+     */
+    public boolean matches(final CrawlSessionStatus<?> status) {
+        if (status == null)
+            return false;
+        if (state != null && state != State.of(status))
+            return false;
+        if (node != null && !Objects.equals(node, status.nodeAddress))
+            return false;
+        if (error != null && error != (status.error > 0 || status.lastError != null))
+            return false;
+        return true;
+    }
+
+    public static Builder of() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private String pattern;
+        private String cursor;
+        private Integer start;
+        private Integer rows;
+        private State state;
+        private String node;
+        private Boolean error;
+
+        public Builder pattern(final String pattern) {
+            this.pattern = pattern;
+            return this;
+        }
+
+        public Builder cursor(final String cursor) {
+            this.cursor = cursor;
+            return this;
+        }
+
+        public Builder start(final Integer start) {
+            this.start = start;
+            return this;
+        }
+
+        public Builder rows(final Integer rows) {
+            this.rows = rows;
+            return this;
+        }
+
+        public Builder state(final State state) {
+            this.state = state;
+            return this;
+        }
+
+        public Builder node(final String node) {
+            this.node = node;
+            return this;
+        }
+
+        public Builder error(final Boolean error) {
+            this.error = error;
+            return this;
+        }
+
+        public CrawlSessionQuery build() {
+            return new CrawlSessionQuery(this);
+        }
+    }
+}
@@ -94,6 +94,12 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
     @JsonProperty("end_time")
     final public Long endTime;
 
+    /**
+     * The position of the session in the waiting queue, starting at 1, or null if the session is not waiting
+     */
+    @JsonProperty("queue_position")
+    final public Integer queuePosition;
+
     protected CrawlSessionStatus(final Class<STATUS> statusClass,
                                  final @JsonProperty("node_address") String nodeAddress,
                                  final @JsonProperty("running") Boolean running,
@@ -107,7 +113,8 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
                                  final @JsonProperty("current_crawl") String currentCrawl,
                                  final @JsonProperty("start_time") Long startTime,
                                  final @JsonProperty("end_time") Long endTime,
-                                 final @JsonProperty("current_depth") Integer currentDepth) {
+                                 final @JsonProperty("current_depth") Integer currentDepth,
+                                 final @JsonProperty("queue_position") Integer queuePosition) {
         super(statusClass);
         this.nodeAddress = nodeAddress;
         this.running = running;
@@ -122,6 +129,7 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
         this.currentDepth = currentDepth;
         this.startTime = startTime;
         this.endTime = endTime;
+        this.queuePosition = queuePosition;
     }
 
     protected CrawlSessionStatus(final Class<STATUS> statusClass,
@@ -140,6 +148,7 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
         this.currentDepth = builder.currentDepth;
         this.startTime = builder.startTime;
         this.endTime = builder.endTime;
+        this.queuePosition = builder.queuePosition;
     }
 
     /**
@@ -224,6 +233,11 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
         return endTime;
     }
 
+    @JsonIgnore
+    public Integer getQueuePosition() {
+        return queuePosition;
+    }
+
     @Override
     protected int computeHashCode() {
         return Objects.hash(nodeAddress, startTime, endTime, currentCrawl, currentDepth, running, aborting);
@@ -242,7 +256,8 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
                 + " - currentCrawl: " + currentCrawl
                 + " - currentDepth: " + currentDepth
                 + " - startTime: " + startTime
-                + " - endTime: " + endTime;
+                + " - endTime: " + endTime
+                + " - queuePosition: " + queuePosition;
     }
 
     @Override
@@ -256,7 +271,8 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
                 && Objects.equals(currentCrawl, s.currentCrawl)
                 && Objects.equals(currentDepth, s.currentDepth)
                 && Objects.equals(startTime, s.startTime)
-                && Objects.equals(endTime, s.endTime);
+                && Objects.equals(endTime, s.endTime)
+                && Objects.equals(queuePosition, s.queuePosition);
     }
 
     public abstract static class AbstractBuilder<
@@ -277,6 +293,7 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
         private Integer currentDepth;
         private Long startTime;
         private Long endTime;
+        private Integer queuePosition;
 
         protected AbstractBuilder(final String nodeAddress) {
             this.nodeAddress = nodeAddress;
@@ -285,9 +302,15 @@ public abstract class CrawlSessionStatus<STATUS extends CrawlSessionStatus<STATU
 
         protected abstract BUILDER me();
 
+        public BUILDER queued(final Integer queuePosition) {
+            this.queuePosition = queuePosition;
+            return me();
+        }
+
         public BUILDER start() {
             if (startTime != null)
                 return me();
+            this.queuePosition = null;
             this.running = true;
             this.startTime = System.currentTimeMillis();
             return me();
@@ -37,6 +37,8 @@ public abstract class CrawlThread<
     private final Map<WildcardMatcher, WildcardFilter.Status> filters;
     @NotNull
     private final WildcardFilter.Status filterPolicy;
+    @NotNull
+    private final WildcardSubtreeFilter subtreeFilter;
 
     protected CrawlThread(final MANAGER manager,
                           final SESSION session,
@@ -47,6 +49,7 @@ public abstract class CrawlThread<
         this.logger = logger;
         this.filters = WildcardFilter.compileFilters(crawlDefinition.filters);
         this.filterPolicy = WildcardFilter.definePolicy(crawlDefinition.filterPolicy, filters);
+        this.subtreeFilter = new WildcardSubtreeFilter(crawlDefinition.filters, filterPolicy);
     }
 
     public String getSessionName() {
@@ -59,6 +62,20 @@ public abstract class CrawlThread<
         return WildcardFilter.match(itemText, filters, filterPolicy);
     }
 
+    /**
+     * Tells if the content of a directory has to be listed: false if the filters reject every file under it.
+     *
+     * @param directoryText the text of the directory, ending with the separator
+     * @param separator     the separator of the path names
+     * @return true if a file under the directory may be accepted
+     */
+    protected boolean mayAcceptFilesUnder(final String directoryText, final char separator) {
+        if (subtreeFilter.mayAcceptFiles(directoryText, separator))
+            return true;
+        // When no file can be accepted at all, the crawl is about the directories: nothing is pruned
+        return !subtreeFilter.mayAcceptFiles("", separator);
+    }
+
     @Override
     final public void run() {
         try {
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.utils.LoggerUtils;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Create the threads running the crawl sessions and the fetch tasks.
+ * On JDK 21 and later, virtual threads can be used. They are reached by reflection, so that the crawler still runs
+ * on older JDKs, where platform threads are used instead.
+ */
+public final class CrawlThreads {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(CrawlThreads.class);
+
+    private final static Method OF_VIRTUAL;
+    private final static Method BUILDER_NAME;
+    private final static Method BUILDER_FACTORY;
+    private final static Method NEW_THREAD_PER_TASK_EXECUTOR;
+    private final static Method IS_VIRTUAL;
+
+    static {
+        Method ofVirtual = null, builderName = null, builderFactory = null, newThreadPerTaskExecutor = null, isVirtual = null;
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            isVirtual = Thread.class.getMethod("isVirtual");
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+        IS_VIRTUAL = isVirtual;
+    }
+
+    private CrawlThreads() {
+    }
+
+    /**
+     * @return true if the JDK supports virtual threads
+     */
+    public static boolean isVirtualAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param thread the thread to check
+     * @return true if the thread is a virtual thread
+     */
+    public static boolean isVirtual(final Thread thread) {
+        if (IS_VIRTUAL == null)
+            return false;
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(thread);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param prefix  the prefix of the thread names
+     * @param virtual true to create virtual threads when the JDK supports them
+     * @return a thread factory
+     */
+    public static ThreadFactory newThreadFactory(final String prefix, final boolean virtual) {
+        if (virtual && isVirtualAvailable()) {
+            try {
+                final Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + '-', 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Cannot create virtual threads, platform threads are used");
+            }
+        }
+        final AtomicLong counter = new AtomicLong();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, prefix + '-' + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns an executor starting a new thread for each task.
+     * With virtual threads, a thread is created for each task, otherwise the idle platform threads are reused.
+     *
+     * @param prefix  the prefix of the thread names
+     * @param virtual true to use virtual threads when the JDK supports them
+     * @return a new executor service
+     */
+    public static ExecutorService newExecutorService(final String prefix, final boolean virtual) {
+        final ThreadFactory threadFactory = newThreadFactory(prefix, virtual);
+        if (virtual && isVirtualAvailable()) {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+            } catch (ReflectiveOperationException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Cannot create a virtual thread executor, platform threads are used");
+            }
+        }
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+}
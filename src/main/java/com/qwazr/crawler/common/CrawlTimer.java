@@ -0,0 +1,218 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.Equalizer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free latency histogram.
+ * The values are recorded in nanoseconds into log-linear buckets (8 buckets per power of two),
+ * the percentiles are then estimated with a relative error below 7%.
+ */
+public final class CrawlTimer {
+
+    private final static int SUB_BUCKET_BITS = 3;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    public CrawlTimer() {
+        buckets = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        total = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKETS)
+            return (int) Math.max(0, value);
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the value in the middle of the bucket
+     */
+    static long bucketValue(final int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        final long lower = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(final long nanos) {
+        if (nanos < 0)
+            return;
+        buckets.incrementAndGet(bucketIndex(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Record the duration elapsed since the given start time
+     *
+     * @param startNanos the start time given by {@link System#nanoTime()}
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public Snapshot getSnapshot() {
+        final long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            n += counts[i] = buckets.get(i);
+        if (n == 0)
+            return new Snapshot(0, 0, 0, 0, 0, 0, 0);
+        final long maxNanos = max.get();
+        return new Snapshot(n,
+                toMs(total.get()),
+                toMs(total.get() / n),
+                toMs(Math.min(maxNanos, percentile(counts, n, 0.50))),
+                toMs(Math.min(maxNanos, percentile(counts, n, 0.90))),
+                toMs(Math.min(maxNanos, percentile(counts, n, 0.99))),
+                toMs(maxNanos));
+    }
+
+    private static long percentile(final long[] counts, final long n, final double percentile) {
+        final long rank = Math.max(1, (long) Math.ceil(n * percentile));
+        long cumulated = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulated += counts[i];
+            if (cumulated >= rank)
+                return bucketValue(i);
+        }
+        return bucketValue(counts.length - 1);
+    }
+
+    private static double toMs(final long nanos) {
+        return Math.round(nanos / 1000d) / 1000d;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
+            getterVisibility = JsonAutoDetect.Visibility.NONE,
+            creatorVisibility = JsonAutoDetect.Visibility.NONE,
+            isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+            fieldVisibility = JsonAutoDetect.Visibility.PUBLIC_ONLY)
+    public static final class Snapshot extends Equalizer.Immutable<Snapshot> {
+
+        final public long count;
+
+        @JsonProperty("total_ms")
+        final public double totalMs;
+
+        @JsonProperty("mean_ms")
+        final public double meanMs;
+
+        @JsonProperty("p50_ms")
+        final public double p50Ms;
+
+        @JsonProperty("p90_ms")
+        final public double p90Ms;
+
+        @JsonProperty("p99_ms")
+        final public double p99Ms;
+
+        @JsonProperty("max_ms")
+        final public double maxMs;
+
+        @JsonCreator
+        public Snapshot(@JsonProperty("count") final long count,
+                        @JsonProperty("total_ms") final double totalMs,
+                        @JsonProperty("mean_ms") final double meanMs,
+                        @JsonProperty("p50_ms") final double p50Ms,
+                        @JsonProperty("p90_ms") final double p90Ms,
+                        @JsonProperty("p99_ms") final double p99Ms,
+                        @JsonProperty("max_ms") final double maxMs) {
+            super(Snapshot.class);
+            this.count = count;
+            this.totalMs = totalMs;
+            this.meanMs = meanMs;
+            this.p50Ms = p50Ms;
+            this.p90Ms = p90Ms;
+            this.p99Ms = p99Ms;
+            this.maxMs = maxMs;
+        }
+
+        // The getters are used by the JMX MXBean mapping
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getTotalMs() {
+            return totalMs;
+        }
+
+        public double getMeanMs() {
+            return meanMs;
+        }
+
+        public double getP50Ms() {
+            return p50Ms;
+        }
+
+        public double getP90Ms() {
+            return p90Ms;
+        }
+
+        public double getP99Ms() {
+            return p99Ms;
+        }
+
+        public double getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        protected int computeHashCode() {
+            return Objects.hash(count, totalMs, maxMs);
+        }
+
+        @Override
+        protected boolean isEqual(final Snapshot s) {
+            return count == s.count && totalMs == s.totalMs && meanMs == s.meanMs && p50Ms == s.p50Ms
+                    && p90Ms == s.p90Ms && p99Ms == s.p99Ms && maxMs == s.maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return "count: " + count + " - mean: " + meanMs + "ms - p50: " + p50Ms + "ms - p90: " + p90Ms
+                    + "ms - p99: " + p99Ms + "ms - max: " + maxMs + "ms";
+        }
+    }
+}
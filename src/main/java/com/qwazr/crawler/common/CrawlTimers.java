@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.utils.LoggerUtils;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The latency timers of a crawl session, one per {@link CrawlPhase}.
+ */
+public final class CrawlTimers implements CrawlTimersMXBean {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(CrawlTimers.class);
+
+    public final static String JMX_DOMAIN = "com.qwazr.crawler";
+
+    private final EnumMap<CrawlPhase, CrawlTimer> timers;
+
+    public CrawlTimers() {
+        timers = new EnumMap<>(CrawlPhase.class);
+        for (final CrawlPhase phase : CrawlPhase.values())
+            timers.put(phase, new CrawlTimer());
+    }
+
+    public CrawlTimer get(final CrawlPhase phase) {
+        return timers.get(phase);
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param phase the timed phase
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(final CrawlPhase phase, final long nanos) {
+        timers.get(phase).record(nanos);
+    }
+
+    /**
+     * Record the duration elapsed since the given start time
+     *
+     * @param phase      the timed phase
+     * @param startNanos the start time given by {@link System#nanoTime()}
+     */
+    public void recordSince(final CrawlPhase phase, final long startNanos) {
+        timers.get(phase).recordSince(startNanos);
+    }
+
+    @Override
+    public LinkedHashMap<String, CrawlTimer.Snapshot> getPhases() {
+        final LinkedHashMap<String, CrawlTimer.Snapshot> phases = new LinkedHashMap<>();
+        timers.forEach((phase, timer) -> phases.put(phase.name(), timer.getSnapshot()));
+        return phases;
+    }
+
+    /**
+     * Register the timers as a MXBean
+     *
+     * @param type the type of the session
+     * @param name the name of the session
+     * @return the name of the registered MBean, or null if the registration failed
+     */
+    ObjectName register(final String type, final String name) {
+        try {
+            final ObjectName objectName =
+                    new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName))
+                mBeanServer.unregisterMBean(objectName);
+            mBeanServer.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot register the MBean of the session " + name);
+            return null;
+        }
+    }
+
+    static void unregister(final ObjectName objectName) {
+        if (objectName == null)
+            return;
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            if (mBeanServer.isRegistered(objectName))
+                mBeanServer.unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot unregister the MBean " + objectName);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        getPhases().forEach((phase, snapshot) -> {
+            if (snapshot.count > 0)
+                sb.append(phase).append(" [").append(snapshot).append("] ");
+        });
+        return sb.toString().trim();
+    }
+}
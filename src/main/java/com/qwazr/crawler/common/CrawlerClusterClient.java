@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.utils.LoggerUtils;
+import com.qwazr.utils.StringUtils;
+import com.qwazr.utils.WildcardMatcher;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.WebApplicationException;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Query the sessions of several nodes in parallel and merge the answers.
+ * A node which fails or does not answer in time is reported as missing, the other answers are still returned.
+ */
+public class CrawlerClusterClient<
+        DEFINITION extends CrawlDefinition<DEFINITION>,
+        STATUS extends CrawlSessionStatus<STATUS>> {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(CrawlerClusterClient.class);
+
+    public final static long DEFAULT_TIMEOUT_MS = 2000;
+
+    private final Collection<String> nodes;
+    private final Function<String, ? extends CrawlerServiceInterface<DEFINITION, STATUS>> nodeServices;
+    private final ExecutorService executorService;
+    private final long timeoutMs;
+    private final Function<List<STATUS>, STATUS> merger;
+
+    /**
+     * @param nodes           the addresses of the nodes
+     * @param nodeServices    returns the service of a node from its address
+     * @param executorService the executor running the calls to the nodes, a dedicated and bounded one is expected
+     *                        as a node which does not answer holds a thread until its call is interrupted
+     * @param timeoutMs       how long to wait for the answers of the nodes
+     * @param merger          merge the statuses of a session found on several nodes
+     */
+    public CrawlerClusterClient(final Collection<String> nodes,
+                                final Function<String, ? extends CrawlerServiceInterface<DEFINITION, STATUS>> nodeServices,
+                                final ExecutorService executorService,
+                                final Long timeoutMs,
+                                final Function<List<STATUS>, STATUS> merger) {
+        this.nodes = new LinkedHashSet<>(Objects.requireNonNull(nodes, "The node list is missing"));
+        this.nodeServices = Objects.requireNonNull(nodeServices, "The node services are missing");
+        this.executorService = Objects.requireNonNull(executorService, "The executor service is missing");
+        this.timeoutMs = timeoutMs == null || timeoutMs <= 0 ? DEFAULT_TIMEOUT_MS : timeoutMs;
+        this.merger = Objects.requireNonNull(merger, "The status merger is missing");
+    }
+
+    /**
+     * Call every node in parallel and collect the answers received before the timeout.
+     * The call to a node which does not answer in time is interrupted, so that it does not keep its thread.
+     */
+    private <T> Map<String, T> fanOut(final Function<CrawlerServiceInterface<DEFINITION, STATUS>, T> call,
+                                      final Consumer<Collection<String>> missingNodesConsumer) {
+        final Map<String, Future<T>> futures = new LinkedHashMap<>();
+        final List<String> missingNodes = new ArrayList<>();
+        for (final String node : nodes) {
+            try {
+                futures.put(node, executorService.submit(() -> call.apply(nodeServices.apply(node))));
+            } catch (RejectedExecutionException e) {
+                missingNodes.add(node);
+                LOGGER.warning(() -> "No free thread to call " + node);
+            }
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        final Map<String, T> answers = new LinkedHashMap<>();
+        for (final Map.Entry<String, Future<T>> entry : futures.entrySet()) {
+            final String node = entry.getKey();
+            final Future<T> future = entry.getValue();
+            try {
+                final T answer = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (answer != null)
+                    answers.put(node, answer);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                missingNodes.add(node);
+                LOGGER.warning(() -> "No answer from " + node + " after " + timeoutMs + " ms");
+            } catch (ExecutionException e) {
+                missingNodes.add(node);
+                LOGGER.log(Level.WARNING, e.getCause(), () -> "The call to " + node + " failed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                missingNodes.add(node);
+                break;
+            }
+        }
+        if (missingNodesConsumer != null)
+            missingNodesConsumer.accept(missingNodes);
+        return answers;
+    }
+
+    /**
+     * Returns the sessions of every node, sorted by name. The statuses of a session found on several nodes are merged.
+     * Each node is only asked for the sessions up to the end of the page, and the sorted answers are merged.
+     * The total is the sum of the totals of the nodes, less the sessions found on several nodes in the merged answers:
+     * it is exact when every node answered all its sessions, an upper bound otherwise.
+     *
+     * @param wildcardPattern      an optional wildcard filter on the session names
+     * @param start                the position of the first session of the page
+     * @param rows                 the size of the page
+     * @param totalConsumer        receives the number of sessions matching the filter
+     * @param missingNodesConsumer receives the nodes which did not answer
+     * @return a page of sessions
+     */
+    public LinkedHashMap<String, STATUS> getSessions(final String wildcardPattern,
+                                                     final Integer start,
+                                                     final Integer rows,
+                                                     final IntConsumer totalConsumer,
+                                                     final Consumer<Collection<String>> missingNodesConsumer) {
+        int s = start == null ? 0 : Math.max(0, start);
+        int r = rows == null ? 10 : Math.max(0, rows);
+        final int end = (int) Math.min(Integer.MAX_VALUE, (long) s + r);
+        final Map<String, Pair<LinkedHashMap<String, STATUS>, Integer>> answers = fanOut(service -> {
+            final AtomicInteger nodeTotal = new AtomicInteger(-1);
+            final LinkedHashMap<String, STATUS> nodeSessions =
+                    service.getSessions(wildcardPattern, 0, end, nodeTotal::set);
+            return nodeSessions == null ? null : Pair.of(nodeSessions,
+                    nodeTotal.get() < 0 ? nodeSessions.size() : nodeTotal.get());
+        }, missingNodesConsumer);
+        final WildcardMatcher wildcardMatcher = StringUtils.isBlank(wildcardPattern) ? null : new WildcardMatcher(wildcardPattern);
+        final TreeMap<String, List<STATUS>> sessions = new TreeMap<>();
+        int total = 0;
+        for (final Pair<LinkedHashMap<String, STATUS>, Integer> answer : answers.values()) {
+            total += answer.getRight();
+            answer.getLeft().forEach((sessionName, status) -> {
+                if (status != null && (wildcardMatcher == null || wildcardMatcher.match(sessionName)))
+                    sessions.computeIfAbsent(sessionName, n -> new ArrayList<>()).add(status);
+            });
+        }
+        if (totalConsumer != null) {
+            for (final List<STATUS> statuses : sessions.values())
+                total -= statuses.size() - 1;
+            totalConsumer.accept(Math.max(total, sessions.size()));
+        }
+        final LinkedHashMap<String, STATUS> page = new LinkedHashMap<>();
+        final Iterator<Map.Entry<String, List<STATUS>>> iterator = sessions.entrySet().iterator();
+        while (s > 0 && iterator.hasNext()) {
+            iterator.next();
+            s--;
+        }
+        while (r > 0 && iterator.hasNext()) {
+            final Map.Entry<String, List<STATUS>> entry = iterator.next();
+            page.put(entry.getKey(), merge(entry.getValue()));
+            r--;
+        }
+        return page;
+    }
+
+    /**
+     * Returns the status of a session, merged over the nodes which know it.
+     *
+     * @param sessionName          the name of the session
+     * @param missingNodesConsumer receives the nodes which did not answer
+     * @return the merged status, or null if no node knows the session
+     */
+    public STATUS getSessionStatus(final String sessionName,
+                                   final Consumer<Collection<String>> missingNodesConsumer) {
+        final Map<String, STATUS> answers = fanOut(service -> {
+            try {
+                return service.getSessionStatus(sessionName);
+            } catch (WebApplicationException e) {
+                if (e.getResponse() != null && e.getResponse().getStatus() == 404)
+                    return null; // The session is unknown on this node
+                throw e;
+            }
+        }, missingNodesConsumer);
+        return answers.isEmpty() ? null : merge(new ArrayList<>(answers.values()));
+    }
+
+    private STATUS merge(final List<STATUS> statuses) {
+        return statuses.size() == 1 ? statuses.get(0) : merger.apply(statuses);
+    }
+}
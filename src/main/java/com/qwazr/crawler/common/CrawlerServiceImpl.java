@@ -15,12 +15,18 @@
  */
 package com.qwazr.crawler.common;
 
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.qwazr.server.AbstractServiceImpl;
 import com.qwazr.server.ServerException;
+import com.qwazr.utils.ObjectMappers;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.function.IntConsumer;
 import java.util.logging.Logger;
 import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 public abstract class CrawlerServiceImpl<
         SESSION extends CrawlSessionBase<SESSION, THREAD, MANAGER, DEFINITION, STATUS, ITEM>,
@@ -31,6 +37,9 @@ public abstract class CrawlerServiceImpl<
         ITEM extends CrawlItem<?>
         > extends AbstractServiceImpl implements CrawlerServiceInterface<DEFINITION, STATUS> {
 
+    final static int DEFAULT_RESULT_ROWS = 1000;
+    final static int MAX_RESULT_ROWS = 10000;
+
     protected final Logger logger;
 
     protected final MANAGER crawlManager;
@@ -52,6 +61,16 @@ public abstract class CrawlerServiceImpl<
         }
     }
 
+    @Override
+    public LinkedHashMap<String, STATUS> querySessions(final CrawlSessionQuery query,
+                                                       final IntConsumer totalConsumer) {
+        try {
+            return crawlManager.querySessions(query, totalConsumer);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
     @Override
     public STATUS getSessionStatus(final String sessionName) {
         try {
@@ -76,6 +95,52 @@ public abstract class CrawlerServiceImpl<
         }
     }
 
+    @Override
+    public CrawlSessionMetrics getSessionMetrics(final String sessionName) {
+        try {
+            final CrawlSessionMetrics metrics = crawlManager.getSessionMetrics(sessionName);
+            if (metrics != null)
+                return metrics;
+            throw new NotFoundException("Metrics not found");
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public Response getSessionResults(final String sessionName,
+                                      final String cursor,
+                                      final Integer rows,
+                                      final String format) {
+        try {
+            if (rows != null && rows < 1)
+                throw new ServerException(Response.Status.BAD_REQUEST, "The number of rows must be positive: " + rows);
+            final int rowCount = rows == null ? DEFAULT_RESULT_ROWS : Math.min(rows, MAX_RESULT_ROWS);
+            // The page is read before answering: the live session is tried first, then the session file,
+            // and a session without results is a 404
+            final List<CrawlResult> page = new ArrayList<>();
+            crawlManager.exportSessionResults(sessionName, cursor, rowCount, page::add);
+            final boolean smile = FORMAT_SMILE.equalsIgnoreCase(format);
+            final StreamingOutput streamingOutput = output -> {
+                if (smile) {
+                    try (final SequenceWriter writer = ObjectMappers.SMILE.writerFor(CrawlResult.class)
+                            .writeValues(output)) {
+                        for (final CrawlResult result : page)
+                            writer.write(result);
+                    }
+                } else {
+                    for (final CrawlResult result : page) {
+                        output.write(ObjectMappers.JSON.writeValueAsBytes(result));
+                        output.write('\n');
+                    }
+                }
+            };
+            return Response.ok(streamingOutput, smile ? APPLICATION_SMILE : APPLICATION_NDJSON).build();
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
     @Override
     public void stopSession(final String sessionName, final String reason) {
         try {
@@ -112,4 +177,40 @@ public abstract class CrawlerServiceImpl<
         }
     }
 
+    @Override
+    public CrawlBandwidth getSessionBandwidth(final String sessionName) {
+        try {
+            return crawlManager.getSessionBandwidth(sessionName);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public CrawlBandwidth setSessionBandwidth(final String sessionName, final Long maxBytesPerSec) {
+        try {
+            return crawlManager.setSessionMaxBytesPerSec(sessionName, maxBytesPerSec);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public CrawlBandwidth getBandwidth() {
+        try {
+            return crawlManager.getBandwidth();
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public CrawlBandwidth setBandwidth(final Long maxBytesPerSec) {
+        try {
+            return crawlManager.setMaxBytesPerSec(maxBytesPerSec);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
 }
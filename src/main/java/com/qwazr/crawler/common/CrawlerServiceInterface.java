@@ -29,6 +29,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
 
 public interface CrawlerServiceInterface<
         DEFINITION extends CrawlDefinition<DEFINITION>,
@@ -36,15 +37,38 @@ public interface CrawlerServiceInterface<
 
     String X_PAGES_HEADER = "X-pages";
 
+    String APPLICATION_NDJSON = "application/x-ndjson";
+    String APPLICATION_SMILE = "application/x-jackson-smile";
+    String FORMAT_SMILE = "smile";
+
+    /**
+     * Without cursor nor filter, the page starts at the given position, and the X-pages header gives its size.
+     * With a cursor (an empty cursor for the first page) or a filter, the page starts after the cursor,
+     * and the X-pages header gives the number of matching sessions over the whole filter.
+     */
     @GET
     @Path("/sessions")
     @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
     default LinkedHashMap<String, STATUS> getSessions(final @Context HttpServletResponse servletResponse,
                                                       final @QueryParam("query") String wildcardQuery,
                                                       final @QueryParam("start") Integer start,
-                                                      final @QueryParam("rows") Integer rows) {
-        return getSessions(wildcardQuery, start, rows,
-                total -> servletResponse.addHeader(X_PAGES_HEADER, Integer.toString(total)));
+                                                      final @QueryParam("rows") Integer rows,
+                                                      final @QueryParam("cursor") String cursor,
+                                                      final @QueryParam("state") CrawlSessionQuery.State state,
+                                                      final @QueryParam("node") String node,
+                                                      final @QueryParam("error") Boolean error) {
+        final IntConsumer totalConsumer = total -> servletResponse.addHeader(X_PAGES_HEADER, Integer.toString(total));
+        if (cursor == null && state == null && node == null && error == null)
+            return getSessions(wildcardQuery, start, rows, totalConsumer);
+        return querySessions(CrawlSessionQuery.of()
+                .pattern(wildcardQuery)
+                .cursor(cursor)
+                .start(start)
+                .rows(rows)
+                .state(state)
+                .node(node)
+                .error(error)
+                .build(), totalConsumer);
     }
 
     LinkedHashMap<String, STATUS> getSessions(final String wildcardQuery,
@@ -52,6 +76,16 @@ public interface CrawlerServiceInterface<
                                               final Integer rows,
                                               final IntConsumer totalConsumer);
 
+    /**
+     * Returns a page of sessions sorted by name, filtered on the server side.
+     *
+     * @param query         the filters and the cursor of the page
+     * @param totalConsumer receives the number of sessions matching the filters, wherever the cursor is
+     * @return a page of sessions
+     */
+    LinkedHashMap<String, STATUS> querySessions(final CrawlSessionQuery query,
+                                                final IntConsumer totalConsumer);
+
     @GET
     @Path("/sessions/{session_name}")
     @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
@@ -62,6 +96,19 @@ public interface CrawlerServiceInterface<
     @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
     DEFINITION getSessionDefinition(@PathParam("session_name") String sessionName);
 
+    @GET
+    @Path("/sessions/{session_name}/metrics")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    CrawlSessionMetrics getSessionMetrics(@PathParam("session_name") String sessionName);
+
+    @GET
+    @Path("/sessions/{session_name}/results")
+    @Produces({APPLICATION_NDJSON, APPLICATION_SMILE})
+    Response getSessionResults(@PathParam("session_name") String sessionName,
+                               @QueryParam("cursor") String cursor,
+                               @QueryParam("rows") Integer rows,
+                               @QueryParam("format") String format);
+
     @DELETE
     @Path("/sessions/{session_name}")
     @Produces({ServiceInterface.APPLICATION_JSON_UTF8})
@@ -83,4 +130,33 @@ public interface CrawlerServiceInterface<
     @Path("/sessions/{session_name}")
     @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
     STATUS runSession(@PathParam("session_name") String sessionName);
+
+    @GET
+    @Path("/sessions/{session_name}/bandwidth")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    CrawlBandwidth getSessionBandwidth(@PathParam("session_name") String sessionName);
+
+    /**
+     * Change the bandwidth budget of a running session.
+     * Without max_bytes_per_sec, the session is no longer limited.
+     */
+    @PUT
+    @Path("/sessions/{session_name}/bandwidth")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    CrawlBandwidth setSessionBandwidth(@PathParam("session_name") String sessionName,
+                                       @QueryParam("max_bytes_per_sec") Long maxBytesPerSec);
+
+    @GET
+    @Path("/bandwidth")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    CrawlBandwidth getBandwidth();
+
+    /**
+     * Change the bandwidth budget shared by all the sessions of the node.
+     * Without max_bytes_per_sec, the node is no longer limited.
+     */
+    @PUT
+    @Path("/bandwidth")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    CrawlBandwidth setBandwidth(@QueryParam("max_bytes_per_sec") Long maxBytesPerSec);
 }
@@ -34,7 +34,8 @@ abstract public class CrawlerSingleClient<
     private final Class<STATUS> crawlStatusClass;
     private final Class<DEFINITION> crawlDefinitionClass;
     private final GenericType<LinkedHashMap<String, STATUS>> mapStatusType;
-    private final WebTarget sessionsTarget;
+    protected final WebTarget sessionsTarget;
+    protected final WebTarget bandwidthTarget;
 
     protected CrawlerSingleClient(final RemoteService remote,
                                   final String pathPrefix,
@@ -43,6 +44,7 @@ abstract public class CrawlerSingleClient<
                                   final GenericType<LinkedHashMap<String, STATUS>> mapStatusType) {
         super(remote);
         this.sessionsTarget = client.target(remote.serviceAddress).path(pathPrefix).path("sessions");
+        this.bandwidthTarget = client.target(remote.serviceAddress).path(pathPrefix).path("bandwidth");
         this.crawlStatusClass = crawlStatusClass;
         this.crawlDefinitionClass = crawlDefinitionClass;
         this.mapStatusType = mapStatusType;
@@ -63,6 +65,23 @@ abstract public class CrawlerSingleClient<
         }
     }
 
+    @Override
+    public LinkedHashMap<String, STATUS> querySessions(final CrawlSessionQuery query,
+                                                       final IntConsumer totalConsumer) {
+        try (final Response response = sessionsTarget.path("/").queryParam("query", query.pattern)
+                .queryParam("cursor", query.cursor == null ? "" : query.cursor)
+                .queryParam("start", query.start)
+                .queryParam("rows", query.rows)
+                .queryParam("state", query.state)
+                .queryParam("node", query.node)
+                .queryParam("error", query.error)
+                .request(MediaType.APPLICATION_JSON).get()) {
+            if (totalConsumer != null)
+                totalConsumer.accept(Integer.parseInt(response.getHeaderString(X_PAGES_HEADER)));
+            return response.readEntity(mapStatusType);
+        }
+    }
+
     @Override
     public STATUS getSessionStatus(final String sessionName) {
         return sessionsTarget
@@ -80,6 +99,30 @@ abstract public class CrawlerSingleClient<
                 .get(crawlDefinitionClass);
     }
 
+    @Override
+    public CrawlSessionMetrics getSessionMetrics(final String sessionName) {
+        return sessionsTarget
+                .path(sessionName)
+                .path("metrics")
+                .request(MediaType.APPLICATION_JSON)
+                .get(CrawlSessionMetrics.class);
+    }
+
+    @Override
+    public Response getSessionResults(final String sessionName,
+                                      final String cursor,
+                                      final Integer rows,
+                                      final String format) {
+        return sessionsTarget
+                .path(sessionName)
+                .path("results")
+                .queryParam("cursor", cursor)
+                .queryParam("rows", rows)
+                .queryParam("format", format)
+                .request(FORMAT_SMILE.equalsIgnoreCase(format) ? APPLICATION_SMILE : APPLICATION_NDJSON)
+                .get();
+    }
+
     @Override
     public void stopSession(final String sessionName, final String reason) {
         final WebTarget target = sessionsTarget.path(sessionName);
@@ -111,4 +154,36 @@ abstract public class CrawlerSingleClient<
                 .post(null, crawlStatusClass);
     }
 
+    @Override
+    public CrawlBandwidth getSessionBandwidth(final String sessionName) {
+        return sessionsTarget.path(sessionName)
+                .path("bandwidth")
+                .request(MediaType.APPLICATION_JSON)
+                .get(CrawlBandwidth.class);
+    }
+
+    @Override
+    public CrawlBandwidth setSessionBandwidth(final String sessionName, final Long maxBytesPerSec) {
+        return sessionsTarget.path(sessionName)
+                .path("bandwidth")
+                .queryParam("max_bytes_per_sec", maxBytesPerSec)
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.text(""), CrawlBandwidth.class);
+    }
+
+    @Override
+    public CrawlBandwidth getBandwidth() {
+        return bandwidthTarget
+                .request(MediaType.APPLICATION_JSON)
+                .get(CrawlBandwidth.class);
+    }
+
+    @Override
+    public CrawlBandwidth setBandwidth(final Long maxBytesPerSec) {
+        return bandwidthTarget
+                .queryParam("max_bytes_per_sec", maxBytesPerSec)
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.text(""), CrawlBandwidth.class);
+    }
+
 }
@@ -35,7 +35,7 @@ public class Rejected extends Equalizer.Immutable<Rejected> {
 
     @JsonCreator
     public Rejected(@JsonProperty("code") final int code,
-                    @JsonProperty("code") final String reason) {
+                    @JsonProperty("reason") final String reason) {
         super(Rejected.class);
         this.code = code;
         this.reason = reason;
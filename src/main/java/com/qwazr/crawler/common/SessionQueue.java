@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * The sessions waiting for a free slot.
+ * The session with the highest priority starts first. The priority of a waiting session grows with its waiting time,
+ * so that a low priority session is not starved by a steady flow of higher priority sessions.
+ * The order of the queue is sorted once, then kept until a session is added or removed,
+ * or until the waiting time of a session raises its priority.
+ */
+final class SessionQueue {
+
+    /**
+     * The waiting time which raises the priority of a session by one
+     */
+    final static long AGING_MS = 60_000;
+
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+    private long sequence;
+
+    /**
+     * The positions of the waiting sessions, or null when the order has to be sorted again
+     */
+    private Map<String, Integer> positions;
+    private String first;
+    private long sortedAt;
+    private long sortedUntil;
+
+    SessionQueue(final LongSupplier clock) {
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>();
+    }
+
+    SessionQueue() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param sessionName the name of the session
+     * @param priority    the priority of the session (default is zero)
+     * @return true if the session was added, false if it was already waiting
+     */
+    synchronized boolean add(final String sessionName, final Integer priority) {
+        if (entries.containsKey(sessionName))
+            return false;
+        entries.put(sessionName, new Entry(sessionName, priority == null ? 0 : priority, clock.getAsLong(), sequence++));
+        positions = null;
+        return true;
+    }
+
+    synchronized boolean remove(final String sessionName) {
+        if (entries.remove(sessionName) == null)
+            return false;
+        positions = null;
+        return true;
+    }
+
+    synchronized boolean contains(final String sessionName) {
+        return entries.containsKey(sessionName);
+    }
+
+    /**
+     * @return the names of the waiting sessions
+     */
+    synchronized List<String> names() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        positions = null;
+    }
+
+    /**
+     * @return the name of the next session to start, or null if no session is waiting
+     */
+    synchronized String poll() {
+        if (entries.isEmpty())
+            return null;
+        sort();
+        final String sessionName = first;
+        remove(sessionName);
+        return sessionName;
+    }
+
+    /**
+     * @param sessionName the name of the session
+     * @return the position of the session in the queue (1 is the next one to start), or null if it is not waiting
+     */
+    synchronized Integer position(final String sessionName) {
+        if (!entries.containsKey(sessionName))
+            return null;
+        sort();
+        return positions.get(sessionName);
+    }
+
+    /**
+     * Sort the queue again if a session was added or removed, or if an effective priority changed since the last sort.
+     */
+    private void sort() {
+        final long now = clock.getAsLong();
+        if (positions != null && now >= sortedAt && now < sortedUntil)
+            return;
+        final List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.<Entry>comparingLong(entry -> entry.effectivePriority(now))
+                .reversed()
+                .thenComparingLong(entry -> entry.sequence));
+        final Map<String, Integer> newPositions = new HashMap<>();
+        long until = Long.MAX_VALUE;
+        for (final Entry entry : sorted) {
+            newPositions.put(entry.sessionName, newPositions.size() + 1);
+            until = Math.min(until, entry.nextAging(now));
+        }
+        positions = newPositions;
+        first = sorted.isEmpty() ? null : sorted.get(0).sessionName;
+        sortedAt = now;
+        sortedUntil = until;
+    }
+
+    private static final class Entry {
+
+        private final String sessionName;
+        private final int priority;
+        private final long enqueuedAt;
+        private final long sequence;
+
+        private Entry(final String sessionName, final int priority, final long enqueuedAt, final long sequence) {
+            this.sessionName = sessionName;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+            this.sequence = sequence;
+        }
+
+        private long effectivePriority(final long now) {
+            return priority + Math.max(0, now - enqueuedAt) / AGING_MS;
+        }
+
+        /**
+         * @return the time at which the effective priority grows again
+         */
+        private long nextAging(final long now) {
+            return enqueuedAt + (Math.max(0, now - enqueuedAt) / AGING_MS + 1) * AGING_MS;
+        }
+    }
+}
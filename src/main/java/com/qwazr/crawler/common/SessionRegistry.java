@@ -0,0 +1,148 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The decoded statuses and definitions of the sessions, sorted by name.
+ * The registry is loaded once from the crawler database, then kept in sync with its writes,
+ * so that reading a session never deserializes it again.
+ * The registry also keeps the sorted names as a list, so that a page starts at its position without walking
+ * the previous sessions, and the number of statuses per state, so that counting them does not read every session.
+ */
+final class SessionRegistry<DEFINITION, STATUS extends CrawlSessionStatus<?>> {
+
+    private final ConcurrentSkipListMap<String, Entry<DEFINITION, STATUS>> entries;
+    private final AtomicIntegerArray stateCounts;
+
+    /**
+     * The sorted names, rebuilt on demand once a session has been added or removed
+     */
+    private volatile List<String> index;
+
+    SessionRegistry() {
+        entries = new ConcurrentSkipListMap<>();
+        stateCounts = new AtomicIntegerArray(CrawlSessionQuery.State.values().length);
+    }
+
+    synchronized void putStatus(final String sessionName, final STATUS status) {
+        final Entry<DEFINITION, STATUS> entry = entries.get(sessionName);
+        if (entry == null)
+            index = null;
+        else
+            count(entry.status, -1);
+        count(status, 1);
+        entries.put(sessionName, new Entry<>(entry == null ? null : entry.definition, status));
+    }
+
+    synchronized void putDefinition(final String sessionName, final DEFINITION definition) {
+        final Entry<DEFINITION, STATUS> entry = entries.get(sessionName);
+        if (entry == null)
+            index = null;
+        entries.put(sessionName, new Entry<>(definition, entry == null ? null : entry.status));
+    }
+
+    synchronized void remove(final String sessionName) {
+        final Entry<DEFINITION, STATUS> entry = entries.remove(sessionName);
+        if (entry == null)
+            return;
+        index = null;
+        count(entry.status, -1);
+    }
+
+    private void count(final STATUS status, final int delta) {
+        if (status != null)
+            stateCounts.addAndGet(CrawlSessionQuery.State.of(status).ordinal(), delta);
+    }
+
+    STATUS getStatus(final String sessionName) {
+        final Entry<DEFINITION, STATUS> entry = entries.get(sessionName);
+        return entry == null ? null : entry.status;
+    }
+
+    boolean contains(final String sessionName) {
+        return entries.containsKey(sessionName);
+    }
+
+    DEFINITION getDefinition(final String sessionName) {
+        final Entry<DEFINITION, STATUS> entry = entries.get(sessionName);
+        return entry == null ? null : entry.definition;
+    }
+
+    private List<String> index() {
+        List<String> names = index;
+        if (names != null)
+            return names;
+        synchronized (this) {
+            if (index == null)
+                index = List.copyOf(entries.keySet());
+            return index;
+        }
+    }
+
+    /**
+     * @param start the position of the first name
+     * @return the names of the sessions from the given position, sorted
+     */
+    List<String> names(final int start) {
+        final List<String> names = index();
+        return names.subList(Math.min(Math.max(start, 0), names.size()), names.size());
+    }
+
+    /**
+     * @param cursor the name after which the names start, or null to start from the first name
+     * @return the names of the sessions after the cursor, sorted
+     */
+    List<String> names(final String cursor) {
+        final List<String> names = index();
+        if (cursor == null)
+            return names;
+        final int pos = Collections.binarySearch(names, cursor);
+        return names.subList(pos >= 0 ? pos + 1 : -pos - 1, names.size());
+    }
+
+    /**
+     * @param state the state of the sessions, or null for any state
+     * @return the number of sessions having a status in the given state, as stored in the registry
+     */
+    int count(final CrawlSessionQuery.State state) {
+        if (state != null)
+            return stateCounts.get(state.ordinal());
+        int total = 0;
+        for (int i = 0; i < stateCounts.length(); i++)
+            total += stateCounts.get(i);
+        return total;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<DEFINITION, STATUS> {
+
+        private final DEFINITION definition;
+        private final STATUS status;
+
+        private Entry(final DEFINITION definition, final STATUS status) {
+            this.definition = definition;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+/**
+ * How the database of a crawl session is stored.
+ */
+public enum StorageProfile {
+
+    /**
+     * A file with a write-ahead log, every change is committed (the default)
+     */
+    durable(0),
+
+    /**
+     * A memory-mapped file without write-ahead log, committed by periodic checkpoints.
+     * A crash during the session may corrupt its database.
+     */
+    fast(TimeUnit.SECONDS.toNanos(5)),
+
+    /**
+     * Off-heap memory only: nothing is kept once the session is done, the results cannot be exported.
+     * No file is created, the frontier of a web session is kept in primitive structures on the heap.
+     */
+    temporary(-1);
+
+    /**
+     * The file grows by this increment, which limits the number of remapping
+     */
+    final static long ALLOCATE_INCREMENT = 8 * 1024 * 1024;
+
+    private final long checkpointNanos;
+
+    StorageProfile(final long checkpointNanos) {
+        this.checkpointNanos = checkpointNanos;
+    }
+
+    public static StorageProfile of(final StorageProfile storageProfile) {
+        return storageProfile == null ? durable : storageProfile;
+    }
+
+    /**
+     * @return true if the database is stored in a file
+     */
+    public boolean isPersistent() {
+        return this != temporary;
+    }
+
+    /**
+     * @param lastCommitNanos the time of the last commit (System.nanoTime)
+     * @param nowNanos        the current time (System.nanoTime)
+     * @return true if the changes should be committed now
+     */
+    boolean isCommitDue(final long lastCommitNanos, final long nowNanos) {
+        if (checkpointNanos < 0)
+            return false;
+        return nowNanos - lastCommitNanos >= checkpointNanos;
+    }
+
+    /**
+     * Open (or create) a session database
+     *
+     * @param databaseFile the file of the database, not used by the temporary profile
+     * @return the database
+     */
+    DB open(final Path databaseFile) {
+        switch (this) {
+            case fast:
+                return DBMaker.fileDB(databaseFile.toFile())
+                        .fileMmapEnableIfSupported()
+                        .fileMmapPreclearDisable()
+                        .cleanerHackEnable()
+                        .allocateIncrement(ALLOCATE_INCREMENT)
+                        .make();
+            case temporary:
+                return DBMaker.memoryDirectDB().make();
+            default:
+                return DBMaker.fileDB(databaseFile.toFile())
+                        .transactionEnable()
+                        .make();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells, from the wildcard patterns of the filters, if a file located under a directory may be accepted.
+ * The directories which cannot contain any accepted file do not need to be listed.
+ * <p>
+ * The filters are checked in order, the first matching filter wins (as in {@link WildcardFilter#match}).
+ * The answer is conservative: when in doubt, the files may be accepted.
+ */
+final class WildcardSubtreeFilter {
+
+    private final List<Pattern> patterns;
+    private final WildcardFilter.Status policy;
+
+    WildcardSubtreeFilter(final List<CrawlDefinition.Filter> filters, final WildcardFilter.Status policy) {
+        this.patterns = new ArrayList<>();
+        if (filters != null)
+            for (final CrawlDefinition.Filter filter : filters)
+                if (filter.pattern != null && !filter.pattern.isEmpty())
+                    patterns.add(new Pattern(filter.pattern, filter.status));
+        this.policy = policy;
+    }
+
+    /**
+     * @param directory the text of the directory (ending with the separator) or an empty string for any location
+     * @param separator the separator of the path names
+     * @return false if no file under the directory can be accepted
+     */
+    boolean mayAcceptFiles(final String directory, final char separator) {
+        for (final Pattern pattern : patterns) {
+            // A pattern ending with the separator only matches directories
+            if (pattern.chars[pattern.chars.length - 1] == separator)
+                continue;
+            if (pattern.status == WildcardFilter.Status.reject) {
+                if (pattern.matchesAll(directory))
+                    return false;
+            } else if (pattern.mayMatch(directory))
+                return true;
+        }
+        return policy != WildcardFilter.Status.reject;
+    }
+
+    private static final class Pattern {
+
+        private final char[] chars;
+        private final WildcardFilter.Status status;
+
+        /**
+         * The pattern ends with '*' from this position
+         */
+        private final int starTail;
+
+        private Pattern(final String pattern, final WildcardFilter.Status status) {
+            this.chars = pattern.toCharArray();
+            this.status = status;
+            int tail = chars.length;
+            while (tail > 0 && chars[tail - 1] == '*')
+                tail--;
+            this.starTail = tail;
+        }
+
+        private void closure(final boolean[] states) {
+            for (int i = 0; i < chars.length; i++)
+                if (states[i] && chars[i] == '*')
+                    states[i + 1] = true;
+        }
+
+        /**
+         * Run the pattern on a prefix
+         *
+         * @return the positions in the pattern reached after the prefix
+         */
+        private boolean[] consume(final String prefix, final boolean ignoreCase) {
+            boolean[] states = new boolean[chars.length + 1];
+            states[0] = true;
+            closure(states);
+            for (int c = 0; c < prefix.length(); c++) {
+                final char ch = prefix.charAt(c);
+                final boolean[] next = new boolean[chars.length + 1];
+                boolean alive = false;
+                for (int i = 0; i < chars.length; i++) {
+                    if (!states[i])
+                        continue;
+                    final char p = chars[i];
+                    if (p == '*')
+                        next[i] = alive = true;
+                    else if (p == '?' || p == ch ||
+                            (ignoreCase && Character.toLowerCase(p) == Character.toLowerCase(ch)))
+                        next[i + 1] = alive = true;
+                }
+                if (!alive)
+                    return next;
+                closure(next);
+                states = next;
+            }
+            return states;
+        }
+
+        /**
+         * @return true if some text starting with the prefix (and longer) may match the pattern
+         */
+        private boolean mayMatch(final String prefix) {
+            // The case is ignored: the answer stays true if the matcher ignores the case
+            final boolean[] states = consume(prefix, true);
+            for (int i = 0; i < chars.length; i++)
+                if (states[i])
+                    return true;
+            return false;
+        }
+
+        /**
+         * @return true if every text starting with the prefix (and longer) matches the pattern
+         */
+        private boolean matchesAll(final String prefix) {
+            if (starTail == chars.length)
+                return false;
+            // The case is respected: the answer stays true only if the matcher would also match
+            final boolean[] states = consume(prefix, false);
+            for (int i = starTail; i < chars.length; i++)
+                if (states[i])
+                    return true;
+            return false;
+        }
+    }
+}
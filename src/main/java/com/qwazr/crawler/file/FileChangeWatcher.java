@@ -0,0 +1,297 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.file;
+
+import com.qwazr.utils.LoggerUtils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Follow the changes of a directory tree with a WatchService.
+ * <p>
+ * Every directory of the tree is registered (up to the maximum depth). The events of a path are coalesced
+ * (a creation followed by a modification is a creation, a creation followed by a deletion is nothing)
+ * and the change is emitted once the path has been quiet for the debounce delay.
+ * When the events of a directory are lost (overflow), its subtree is walked again and every entry is emitted
+ * as modified: the deletions which happened during the overflow are not detected.
+ * <p>
+ * Not thread-safe: the watcher is driven by the thread of the crawl session.
+ */
+final class FileChangeWatcher implements Closeable {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(FileChangeWatcher.class);
+
+    @FunctionalInterface
+    interface Listener {
+
+        /**
+         * @param path       the changed path
+         * @param change     the kind of change
+         * @param attributes the attributes of the path (null if the path has been deleted)
+         * @param directory  true if the path is (or was) a directory
+         */
+        void changed(Path path, FileCrawlItem.Change change, BasicFileAttributes attributes, boolean directory);
+    }
+
+    private final Path root;
+    private final int maxDepth;
+    private final long debounceNanos;
+    private final Predicate<Path> acceptDirectory;
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> keys;
+    private final Set<Path> directories;
+    private final Set<Path> removedDirectories;
+    private final LinkedHashMap<Path, Pending> pendings;
+
+    /**
+     * @param root            the root of the watched tree
+     * @param maxDepth        the maximum depth of a change, relative to the root
+     * @param debounceMs      the quiet delay before a change is emitted
+     * @param acceptDirectory tells if the content of a directory is watched
+     * @param listener        receives the changes
+     * @throws IOException if the WatchService cannot be created
+     */
+    FileChangeWatcher(final Path root,
+                      final int maxDepth,
+                      final long debounceMs,
+                      final Predicate<Path> acceptDirectory,
+                      final Listener listener) throws IOException {
+        this.root = root;
+        this.maxDepth = maxDepth;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMs);
+        this.acceptDirectory = acceptDirectory;
+        this.listener = listener;
+        this.watchService = root.getFileSystem().newWatchService();
+        this.keys = new HashMap<>();
+        this.directories = new HashSet<>();
+        this.removedDirectories = new HashSet<>();
+        this.pendings = new LinkedHashMap<>();
+    }
+
+    private int depth(final Path path) {
+        return root.relativize(path).getNameCount() - (path.equals(root) ? 1 : 0);
+    }
+
+    /**
+     * Watch the content of a directory
+     *
+     * @param directory the directory
+     * @throws IOException if the directory cannot be registered
+     */
+    void register(final Path directory) throws IOException {
+        if (directories.contains(directory))
+            return;
+        final WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        keys.put(key, directory);
+        directories.add(directory);
+        removedDirectories.remove(directory);
+    }
+
+    /**
+     * @return the number of watched directories
+     */
+    int size() {
+        return directories.size();
+    }
+
+    /**
+     * Walk a subtree, register its directories, and record a change for each entry
+     */
+    private void scan(final Path start, final FileCrawlItem.Change change) {
+        final int startDepth = depth(start);
+        if (startDepth > maxDepth)
+            return;
+        try {
+            Files.walkFileTree(start, Collections.emptySet(), maxDepth - startDepth, new SimpleFileVisitor<>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs)
+                        throws IOException {
+                    if (!dir.equals(start))
+                        record(dir, change);
+                    if (!acceptDirectory.test(dir))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                    record(file, change);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                    LOGGER.log(Level.FINE, e, () -> "Cannot scan " + file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot scan " + start);
+        }
+    }
+
+    private void record(final Path path, final FileCrawlItem.Change change) {
+        final Pending previous = pendings.remove(path);
+        final FileCrawlItem.Change coalesced = coalesce(previous == null ? null : previous.change, change);
+        // Re-inserted at the tail: the map stays sorted by the time of the last event
+        if (coalesced != null)
+            pendings.put(path, new Pending(coalesced, System.nanoTime()));
+    }
+
+    /**
+     * @return the change which sums up two successive changes (null if the path is left as it was)
+     */
+    static FileCrawlItem.Change coalesce(final FileCrawlItem.Change previous, final FileCrawlItem.Change next) {
+        if (previous == null)
+            return next;
+        switch (previous) {
+            case created:
+                return next == FileCrawlItem.Change.deleted ? null : FileCrawlItem.Change.created;
+            case deleted:
+                return next == FileCrawlItem.Change.deleted ? FileCrawlItem.Change.deleted :
+                        FileCrawlItem.Change.modified;
+            default:
+                return next == FileCrawlItem.Change.created ? FileCrawlItem.Change.modified : next;
+        }
+    }
+
+    private void handle(final WatchKey key) {
+        final Path directory = keys.get(key);
+        if (directory != null) {
+            for (final WatchEvent<?> event : key.pollEvents()) {
+                final WatchEvent.Kind<?> kind = event.kind();
+                if (kind == StandardWatchEventKinds.OVERFLOW) {
+                    LOGGER.warning(() -> "Some file events have been lost, rescanning " + directory);
+                    scan(directory, FileCrawlItem.Change.modified);
+                    continue;
+                }
+                final Path path = directory.resolve((Path) event.context());
+                if (depth(path) > maxDepth)
+                    continue;
+                if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                    record(path, FileCrawlItem.Change.created);
+                    // The entries created before the registration of a new directory have no event
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) && acceptDirectory.test(path))
+                        scan(path, FileCrawlItem.Change.created);
+                } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                    // The modification of a directory is the change of one of its entries, which has its own event
+                    if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+                        record(path, FileCrawlItem.Change.modified);
+                } else if (kind == StandardWatchEventKinds.ENTRY_DELETE)
+                    record(path, FileCrawlItem.Change.deleted);
+            }
+        }
+        if (!key.reset()) {
+            // The directory has been deleted (or is no longer accessible)
+            final Path removed = keys.remove(key);
+            if (removed != null && directories.remove(removed))
+                removedDirectories.add(removed);
+        }
+    }
+
+    private void emit(final Path path, final FileCrawlItem.Change change) {
+        if (change == FileCrawlItem.Change.deleted) {
+            listener.changed(path, change, null, removedDirectories.remove(path) || directories.contains(path));
+            return;
+        }
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            // Deleted meanwhile: the deletion event follows
+            return;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot read the attributes of " + path);
+            return;
+        }
+        listener.changed(path, change, attributes, attributes.isDirectory());
+    }
+
+    /**
+     * Wait for the file events, then emit the changes which have been quiet for the debounce delay
+     *
+     * @param maxWaitMs the maximum time to wait for an event
+     * @return the number of emitted changes
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    int poll(final long maxWaitMs) throws InterruptedException {
+        final long waitNanos;
+        if (pendings.isEmpty())
+            waitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        else
+            waitNanos = Math.min(TimeUnit.MILLISECONDS.toNanos(maxWaitMs),
+                    Math.max(0, pendings.values().iterator().next().lastNanos + debounceNanos - System.nanoTime()));
+        WatchKey key = watchService.poll(waitNanos, TimeUnit.NANOSECONDS);
+        while (key != null) {
+            handle(key);
+            key = watchService.poll();
+        }
+        int count = 0;
+        final long now = System.nanoTime();
+        final Iterator<Map.Entry<Path, Pending>> iterator = pendings.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Path, Pending> entry = iterator.next();
+            if (entry.getValue().lastNanos + debounceNanos > now)
+                break;
+            iterator.remove();
+            emit(entry.getKey(), entry.getValue().change);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private static final class Pending {
+
+        private final FileCrawlItem.Change change;
+        private final long lastNanos;
+
+        private Pending(final FileCrawlItem.Change change, final long lastNanos) {
+            this.change = change;
+            this.lastNanos = lastNanos;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.qwazr.crawler.common.CrawlDefinition;
+import com.qwazr.crawler.common.StorageProfile;
 import com.qwazr.crawler.common.WildcardFilter;
 import com.qwazr.utils.ObjectMappers;
 import java.io.IOException;
@@ -43,17 +44,37 @@ public class FileCrawlDefinition extends CrawlDefinition<FileCrawlDefinition> {
     @JsonProperty("entry_path")
     final public String entryPath;
 
+    /**
+     * After the initial walk, keep the session running and emit the created, modified and deleted paths
+     */
+    @JsonProperty("continuous")
+    final public Boolean continuous;
+
+    /**
+     * In continuous mode, the time (in milliseconds) a path must stay unchanged before its change is emitted
+     */
+    @JsonProperty("watch_debounce_ms")
+    final public Integer watchDebounceMs;
+
     @JsonCreator
     protected FileCrawlDefinition(final @JsonProperty("entry_path") @JsonAlias("entryPath") String entryPath,
                                   final @JsonProperty("max_depth") @JsonAlias("maxDepth") Integer maxDepth,
                                   final @JsonProperty("filters") List<Filter> filters,
                                   final @JsonProperty("filter_policy") @JsonAlias("filterPolicy") WildcardFilter.Status filterPolicy,
                                   final @JsonProperty("crawl_wait_ms") @JsonAlias("crawlWaitMs") Integer crawlWaitMs,
+                                  final @JsonProperty("priority") Integer priority,
+                                  final @JsonProperty("storage_profile") @JsonAlias("storageProfile") StorageProfile storageProfile,
+                                  final @JsonProperty("max_bytes_per_sec") @JsonAlias("maxBytesPerSec") Long maxBytesPerSec,
                                   final @JsonProperty("crawl_collector_factory") @JsonAlias("crawlCollectorFactory") String crawlCollectorFactoryClass,
-                                  final @JsonProperty("variables") List<Variable> variables) {
-        super(FileCrawlDefinition.class, crawlCollectorFactoryClass, variables,
-                filters, filterPolicy, maxDepth, crawlWaitMs);
+                                  final @JsonProperty("crawl_collector_factories") @JsonAlias("crawlCollectorFactories") List<String> crawlCollectorFactoryClasses,
+                                  final @JsonProperty("variables") List<Variable> variables,
+                                  final @JsonProperty("continuous") Boolean continuous,
+                                  final @JsonProperty("watch_debounce_ms") @JsonAlias("watchDebounceMs") Integer watchDebounceMs) {
+        super(FileCrawlDefinition.class, crawlCollectorFactoryClass, crawlCollectorFactoryClasses, variables,
+                filters, filterPolicy, maxDepth, crawlWaitMs, priority, storageProfile, maxBytesPerSec);
         this.entryPath = entryPath;
+        this.continuous = continuous;
+        this.watchDebounceMs = watchDebounceMs;
     }
 
     @Override
@@ -63,13 +84,24 @@ public class FileCrawlDefinition extends CrawlDefinition<FileCrawlDefinition> {
 
     @Override
     protected boolean isEqual(final FileCrawlDefinition f) {
-        return super.isEqual(f) && Objects.equals(entryPath, f.entryPath);
+        return super.isEqual(f) && Objects.equals(entryPath, f.entryPath) &&
+                Objects.equals(continuous, f.continuous) && Objects.equals(watchDebounceMs, f.watchDebounceMs);
     }
 
     public String getEntryPath() {
         return this.entryPath;
     }
 
+    @JsonIgnore
+    public Boolean getContinuous() {
+        return continuous;
+    }
+
+    @JsonIgnore
+    public Integer getWatchDebounceMs() {
+        return watchDebounceMs;
+    }
+
     public static Builder of() {
         return new Builder();
     }
@@ -81,6 +113,8 @@ public class FileCrawlDefinition extends CrawlDefinition<FileCrawlDefinition> {
     public static class Builder extends AbstractBuilder<FileCrawlDefinition, Builder> {
 
         private String entryPath;
+        private Boolean continuous;
+        private Integer watchDebounceMs;
 
         protected Builder() {
         }
@@ -90,6 +124,8 @@ public class FileCrawlDefinition extends CrawlDefinition<FileCrawlDefinition> {
             entryPath = crawlDefinition.entryPath;
             maxDepth = crawlDefinition.maxDepth;
             crawlWaitMs = crawlDefinition.crawlWaitMs;
+            continuous = crawlDefinition.continuous;
+            watchDebounceMs = crawlDefinition.watchDebounceMs;
         }
 
         public Builder entryPath(final String entryPath) {
@@ -97,6 +133,16 @@ public class FileCrawlDefinition extends CrawlDefinition<FileCrawlDefinition> {
             return this;
         }
 
+        public Builder continuous(final Boolean continuous) {
+            this.continuous = continuous;
+            return this;
+        }
+
+        public Builder watchDebounceMs(final Integer watchDebounceMs) {
+            this.watchDebounceMs = watchDebounceMs;
+            return this;
+        }
+
         @Override
         protected Builder me() {
             return this;
@@ -105,7 +151,8 @@ public class FileCrawlDefinition extends CrawlDefinition<FileCrawlDefinition> {
         @Override
         public FileCrawlDefinition build() {
             return new FileCrawlDefinition(entryPath, maxDepth, filters, filterPolicy,
-                    crawlWaitMs, crawlCollectorFactoryClass, variables);
+                    crawlWaitMs, priority, storageProfile, maxBytesPerSec, crawlCollectorFactoryClass, crawlCollectorFactoryClasses, variables,
+                    continuous, watchDebounceMs);
         }
     }
 
@@ -15,35 +15,80 @@
  */
 package com.qwazr.crawler.file;
 
+import com.qwazr.crawler.common.ByteRateLimiter;
 import com.qwazr.crawler.common.CrawlItemBase;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 
 final public class FileCrawlItem extends CrawlItemBase<Path> {
 
+    /**
+     * The kind of change detected by a continuous session
+     */
+    public enum Change {
+        created, modified, deleted
+    }
+
     private final BasicFileAttributes attributes;
+    private final Change change;
+    private final ByteRateLimiter bandwidth;
 
     FileCrawlItem(final Builder builder) {
         super(builder);
         this.attributes = builder.attributes;
+        this.change = builder.change;
+        this.bandwidth = builder.bandwidth;
     }
 
     /**
-     * @return the attributes of the current path
+     * @return the attributes of the current path (null if the path has been deleted)
      */
     public BasicFileAttributes getAttributes() {
         return attributes;
     }
 
+    /**
+     * @return the change which emitted the item, or null if the item comes from the walk of the tree
+     */
+    public Change getChange() {
+        return change;
+    }
+
+    /**
+     * Open the file. The bytes read are charged to the bandwidth budget of the session.
+     *
+     * @return a new stream, which must be closed by the caller
+     * @throws IOException if the file cannot be opened
+     */
+    public InputStream newInputStream() throws IOException {
+        final InputStream input = Files.newInputStream(item);
+        return bandwidth == null ? input : bandwidth.limit(input);
+    }
+
     final static class Builder extends BaseBuilder<Path, Builder> {
 
         final BasicFileAttributes attributes;
+        Change change;
+        ByteRateLimiter bandwidth;
 
         Builder(final int depth, final Path path, final BasicFileAttributes attributes) {
             super(path, depth);
             this.attributes = attributes;
         }
 
+        Builder change(final Change change) {
+            this.change = change;
+            return this;
+        }
+
+        Builder bandwidth(final ByteRateLimiter bandwidth) {
+            this.bandwidth = bandwidth;
+            return this;
+        }
+
         @Override
         protected Builder me() {
             return this;
@@ -36,13 +36,23 @@ public class FileCrawlThread extends CrawlThread
                 FileCrawlerManager, FileCrawlSession, FileCrawlItem>
         implements FileVisitor<Path> {
 
+    final static int DEFAULT_WATCH_DEBOUNCE_MS = 500;
+
+    /**
+     * The maximum time between two checks of the abort flag of a continuous session
+     */
+    private final static long WATCH_POLL_MS = 1000;
+
     private final FileCrawlDefinition crawlDefinition;
     private final Path startPath;
+    private final int maxDepth;
+    private FileChangeWatcher watcher;
 
     FileCrawlThread(FileCrawlerManager manager, FileCrawlSession session, Logger logger) {
         super(manager, session, logger);
         this.crawlDefinition = session.getCrawlDefinition();
         this.startPath = Paths.get(crawlDefinition.getEntryPath());
+        this.maxDepth = crawlDefinition.maxDepth == null ? Integer.MAX_VALUE : crawlDefinition.maxDepth;
     }
 
     private int computeDepth(final Path path) {
@@ -61,8 +71,38 @@ public class FileCrawlThread extends CrawlThread
             logger.warning(() -> "The path does not exists: " + startPath.toAbsolutePath());
             return;
         }
-        Files.walkFileTree(startPath, Collections.emptySet(),
-                crawlDefinition.maxDepth == null ? Integer.MAX_VALUE : crawlDefinition.maxDepth, this);
+        if (crawlDefinition.continuous == null || !crawlDefinition.continuous) {
+            Files.walkFileTree(startPath, Collections.emptySet(), maxDepth, this);
+            return;
+        }
+        // The directories are registered during the walk: the changes made meanwhile are not missed
+        try (final FileChangeWatcher changeWatcher = new FileChangeWatcher(startPath, maxDepth,
+                crawlDefinition.watchDebounceMs == null ? DEFAULT_WATCH_DEBOUNCE_MS : crawlDefinition.watchDebounceMs,
+                dir -> checkWildcardFilters(toDirectoryText(dir)) == null && mayAcceptFilesUnder(dir),
+                this::changed)) {
+            watcher = changeWatcher;
+            Files.walkFileTree(startPath, Collections.emptySet(), maxDepth, this);
+            logger.info(() -> "Watching " + changeWatcher.size() + " directories of " + startPath);
+            while (!session.isAborting())
+                changeWatcher.poll(WATCH_POLL_MS);
+        } finally {
+            watcher = null;
+        }
+    }
+
+    private void changed(final Path path,
+                         final FileCrawlItem.Change change,
+                         final BasicFileAttributes attributes,
+                         final boolean directory) {
+        crawl(new FileCrawlItem.Builder(computeDepth(path), path, attributes).change(change), directory);
+    }
+
+    private static String toDirectoryText(final Path dir) {
+        return StringUtils.ensureSuffix(dir.toString(), File.separator);
+    }
+
+    private boolean mayAcceptFilesUnder(final Path dir) {
+        return mayAcceptFilesUnder(toDirectoryText(dir), File.separatorChar);
     }
 
     @Override
@@ -70,15 +110,27 @@ public class FileCrawlThread extends CrawlThread
         if (session.isAborting())
             return FileVisitResult.TERMINATE;
         final FileCrawlItem.Builder builder = new FileCrawlItem.Builder(computeDepth(dir), dir, attrs);
-        final FileCrawlItem current = crawl(builder);
+        final FileCrawlItem current = crawl(builder, true);
         if (current.getRejected() != null)
             return FileVisitResult.SKIP_SUBTREE;
+        // The directory is accepted, but its content is not read if the filters reject every file under it
+        if (!mayAcceptFilesUnder(dir)) {
+            logger.fine(() -> "Pruned directory: " + dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        }
+        if (watcher != null) {
+            try {
+                watcher.register(dir);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e, () -> "Cannot watch the directory " + dir);
+            }
+        }
         return FileVisitResult.CONTINUE;
     }
 
-    private FileCrawlItem crawl(final FileCrawlItem.Builder builder) {
-        final String currentPathString = builder.attributes.isDirectory() ?
-                StringUtils.ensureSuffix(builder.item.toString(), File.separator) :
+    private FileCrawlItem crawl(final FileCrawlItem.Builder builder, final boolean directory) {
+        final String currentPathString = directory ?
+                toDirectoryText(builder.item) :
                 builder.item.toString();
         session.setCurrentCrawl(currentPathString, builder.depth);
         final Rejected rejected = checkWildcardFilters(currentPathString);
@@ -87,7 +139,8 @@ public class FileCrawlThread extends CrawlThread
             session.incRejectedCount();
         }
         try {
-            final FileCrawlItem current = builder.build();
+            // The bytes read by the collectors are charged to the bandwidth budget
+            final FileCrawlItem current = builder.bandwidth(session.getBandwidthLimiter()).build();
             session.collect(current);
             session.incCrawledCount();
             return current;
@@ -106,7 +159,7 @@ public class FileCrawlThread extends CrawlThread
             return FileVisitResult.TERMINATE;
         if (crawlDefinition.crawlWaitMs != null)
             session.sleep(crawlDefinition.crawlWaitMs);
-        crawl(new FileCrawlItem.Builder(computeDepth(file), file, attrs));
+        crawl(new FileCrawlItem.Builder(computeDepth(file), file, attrs), attrs.isDirectory());
         return FileVisitResult.CONTINUE;
     }
 
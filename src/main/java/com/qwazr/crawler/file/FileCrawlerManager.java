@@ -61,6 +61,11 @@ public class FileCrawlerManager extends CrawlManager
         return FileCrawlSessionStatus.of(myAddress).build();
     }
 
+    @Override
+    protected FileCrawlSessionStatus newQueuedStatus(final int queuePosition) {
+        return FileCrawlSessionStatus.of(myAddress).queued(queuePosition).build();
+    }
+
     @Override
     protected FileCrawlThread newCrawlThread(final String sessionName, final FileCrawlDefinition crawlDefinition) {
         final CrawlCollector<FileCrawlItem> crawlCollector = newCrawlCollector(crawlDefinition, FileCrawlCollectorFactory.class);
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.ftp;
+
+import java.util.Collection;
+import org.mapdb.DB;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+
+/**
+ * The traversal position of a FTP crawl, stored in the session database.
+ * A completed directory replaces the entries of its files and sub-directories,
+ * the checkpoint stays small while the crawl goes deeper.
+ * The checkpoint is cleared once a full pass is done, the next run starts again from the entry path.
+ */
+final class FtpCheckpoint {
+
+    private final HTreeMap.KeySet<String> doneDirectories;
+    private final HTreeMap.KeySet<String> doneFiles;
+
+    FtpCheckpoint(final DB sessionDB) {
+        doneDirectories = sessionDB.hashSet("ftpDoneDirectories")
+                .serializer(Serializer.STRING)
+                .createOrOpen();
+        doneFiles = sessionDB.hashSet("ftpDoneFiles")
+                .serializer(Serializer.STRING)
+                .createOrOpen();
+    }
+
+    /**
+     * @return true if a previous run stopped before the end of its pass
+     */
+    boolean isResuming() {
+        return !doneDirectories.isEmpty() || !doneFiles.isEmpty();
+    }
+
+    boolean isFileDone(final String filePath) {
+        return doneFiles.contains(filePath);
+    }
+
+    void fileDone(final String filePath) {
+        doneFiles.add(filePath);
+    }
+
+    boolean isDirectoryDone(final String directoryPath) {
+        return doneDirectories.contains(directoryPath);
+    }
+
+    /**
+     * Mark a directory as completed.
+     *
+     * @param directoryPath the path of the directory
+     * @param children      the paths of its files and sub-directories, which are no longer needed
+     */
+    void directoryDone(final String directoryPath, final Collection<String> children) {
+        for (final String child : children) {
+            doneFiles.remove(child);
+            doneDirectories.remove(child);
+        }
+        doneDirectories.add(directoryPath);
+    }
+
+    int getDoneDirectories() {
+        return doneDirectories.size();
+    }
+
+    int getDoneFiles() {
+        return doneFiles.size();
+    }
+
+    void clear() {
+        doneDirectories.clear();
+        doneFiles.clear();
+    }
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.qwazr.crawler.common.CrawlDefinition;
+import com.qwazr.crawler.common.StorageProfile;
 import com.qwazr.crawler.common.WildcardFilter;
 import com.qwazr.utils.ObjectMappers;
 import java.io.IOException;
@@ -79,12 +80,28 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
     @JsonProperty("is_passive")
     final public Boolean isPassive;
 
+    /**
+     * The number of consecutive reconnections tried when the connection is lost
+     */
+    @JsonProperty("max_reconnects")
+    final public Integer maxReconnects;
+
+    /**
+     * The interval of the NOOP commands sent on the control connection while the collector works (0 to disable)
+     */
+    @JsonProperty("keep_alive_sec")
+    final public Integer keepAliveSec;
+
     @JsonCreator
     protected FtpCrawlDefinition(final @JsonProperty("max_depth") @JsonAlias("maxDepth") Integer maxDepth,
                                  final @JsonProperty("filters") List<Filter> filters,
                                  final @JsonProperty("filter_policy") @JsonAlias("filterPolicy") WildcardFilter.Status filterPolicy,
                                  final @JsonProperty("crawl_wait_ms") @JsonAlias("crawlWaitMs") Integer crawlWaitMs,
+                                 final @JsonProperty("priority") Integer priority,
+                                 final @JsonProperty("storage_profile") @JsonAlias("storageProfile") StorageProfile storageProfile,
+                                 final @JsonProperty("max_bytes_per_sec") @JsonAlias("maxBytesPerSec") Long maxBytesPerSec,
                                  final @JsonProperty("crawl_collector_factory") @JsonAlias("crawlCollectorFactory") String crawlCollectorFactoryClass,
+                                 final @JsonProperty("crawl_collector_factories") @JsonAlias("crawlCollectorFactories") List<String> crawlCollectorFactoryClasses,
                                  final @JsonProperty("variables") List<Variable> variables,
                                  final @JsonProperty("hostname") String hostname,
                                  final @JsonProperty("port") Integer port,
@@ -92,8 +109,11 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
                                  final @JsonProperty("username") String username,
                                  final @JsonProperty("password") String password,
                                  final @JsonProperty("is_ssl") @JsonAlias("isSsl") Boolean isSsl,
-                                 final @JsonProperty("is_passive") @JsonAlias("isPassive") Boolean isPassive) {
-        super(FtpCrawlDefinition.class, crawlCollectorFactoryClass, variables, filters, filterPolicy, maxDepth, crawlWaitMs);
+                                 final @JsonProperty("is_passive") @JsonAlias("isPassive") Boolean isPassive,
+                                 final @JsonProperty("max_reconnects") @JsonAlias("maxReconnects") Integer maxReconnects,
+                                 final @JsonProperty("keep_alive_sec") @JsonAlias("keepAliveSec") Integer keepAliveSec) {
+        super(FtpCrawlDefinition.class, crawlCollectorFactoryClass, crawlCollectorFactoryClasses, variables, filters, filterPolicy, maxDepth, crawlWaitMs, priority,
+                storageProfile, maxBytesPerSec);
         this.hostname = hostname;
         this.port = port;
         this.entryPath = entryPath;
@@ -101,6 +121,8 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
         this.password = password;
         this.isSsl = isSsl;
         this.isPassive = isPassive;
+        this.maxReconnects = maxReconnects;
+        this.keepAliveSec = keepAliveSec;
     }
 
     private FtpCrawlDefinition(Builder builder) {
@@ -112,6 +134,8 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
         this.password = builder.password;
         this.isSsl = builder.isSsl;
         this.isPassive = builder.isPassive;
+        this.maxReconnects = builder.maxReconnects;
+        this.keepAliveSec = builder.keepAliveSec;
     }
 
     @Override
@@ -128,7 +152,9 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
                 Objects.equals(username, f.username) &&
                 Objects.equals(password, f.password) &&
                 Objects.equals(isSsl, f.isSsl) &&
-                Objects.equals(isPassive, f.isPassive);
+                Objects.equals(isPassive, f.isPassive) &&
+                Objects.equals(maxReconnects, f.maxReconnects) &&
+                Objects.equals(keepAliveSec, f.keepAliveSec);
     }
 
     @JsonIgnore
@@ -166,6 +192,16 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
         return isPassive;
     }
 
+    @JsonIgnore
+    public Integer getMaxReconnects() {
+        return maxReconnects;
+    }
+
+    @JsonIgnore
+    public Integer getKeepAliveSec() {
+        return keepAliveSec;
+    }
+
     public static Builder of() {
         return new Builder();
     }
@@ -190,6 +226,10 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
 
         private Boolean isPassive;
 
+        private Integer maxReconnects;
+
+        private Integer keepAliveSec;
+
         protected Builder() {
         }
 
@@ -202,6 +242,8 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
             username = crawlDefinition.username;
             password = crawlDefinition.password;
             isSsl = crawlDefinition.isSsl;
+            maxReconnects = crawlDefinition.maxReconnects;
+            keepAliveSec = crawlDefinition.keepAliveSec;
         }
 
         public Builder hostname(final String hostname) {
@@ -239,6 +281,16 @@ public class FtpCrawlDefinition extends CrawlDefinition<FtpCrawlDefinition> {
             return this;
         }
 
+        public Builder maxReconnects(final Integer maxReconnects) {
+            this.maxReconnects = maxReconnects;
+            return this;
+        }
+
+        public Builder keepAliveSec(final Integer keepAliveSec) {
+            this.keepAliveSec = keepAliveSec;
+            return this;
+        }
+
         @Override
         protected Builder me() {
             return this;
@@ -21,11 +21,38 @@ import com.qwazr.crawler.common.CrawlSessionBase;
 public class FtpCrawlSession extends CrawlSessionBase
         <FtpCrawlSession, FtpCrawlThread, FtpCrawlerManager, FtpCrawlDefinition, FtpCrawlSessionStatus, FtpCrawlItem> {
 
+    private final FtpCheckpoint checkpoint;
+
     FtpCrawlSession(final String sessionName,
                     final FtpCrawlerManager ftpCrawlerManager,
                     final FtpCrawlDefinition crawlDefinition,
                     final FtpCrawlSessionStatus.Builder crawlStatusBuilder,
                     final CrawlCollector<FtpCrawlItem> crawlCollector) {
         super(sessionName, ftpCrawlerManager, crawlDefinition, crawlStatusBuilder, crawlCollector);
+        checkpoint = new FtpCheckpoint(sessionDB);
+    }
+
+    FtpCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    protected boolean supportsResume() {
+        return true;
+    }
+
+    /**
+     * @return true if the run stopped before the end of its pass
+     */
+    @Override
+    protected boolean hasPendingWork() {
+        return checkpoint.isResuming();
+    }
+
+    /**
+     * Persist the traversal position, with respect to the storage profile.
+     */
+    void commitCheckpoint() {
+        commit();
     }
 }
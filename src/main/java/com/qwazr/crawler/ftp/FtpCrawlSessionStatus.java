@@ -42,10 +42,11 @@ public class FtpCrawlSessionStatus extends CrawlSessionStatus<FtpCrawlSessionSta
                           final @JsonProperty("current_crawl") String currentCrawl,
                           final @JsonProperty("start_time") Long startTime,
                           final @JsonProperty("end_time") Long endTime,
-                          final @JsonProperty("current_depth") Integer currentDepth) {
+                          final @JsonProperty("current_depth") Integer currentDepth,
+                          final @JsonProperty("queue_position") Integer queuePosition) {
         super(FtpCrawlSessionStatus.class, nodeAddress, running, aborting, abortingReason,
                 crawled, ignored, redirect, error, lastError, currentCrawl,
-                startTime, endTime, currentDepth);
+                startTime, endTime, currentDepth, queuePosition);
     }
 
     private FtpCrawlSessionStatus(Builder builder) {
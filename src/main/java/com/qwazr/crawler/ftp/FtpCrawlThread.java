@@ -16,20 +16,37 @@
 package com.qwazr.crawler.ftp;
 
 import com.qwazr.crawler.common.CrawlThread;
+import com.qwazr.crawler.common.CrawlThreads;
 import com.qwazr.crawler.common.Rejected;
 import com.qwazr.utils.StringUtils;
 import com.qwazr.utils.concurrent.RunnableEx;
 import com.qwazr.utils.concurrent.SupplierEx;
 import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
 import org.apache.commons.net.ftp.FTPFile;
 import org.apache.commons.net.ftp.FTPReply;
 import org.apache.commons.net.ftp.FTPSClient;
@@ -37,8 +54,32 @@ import org.apache.commons.net.ftp.FTPSClient;
 public class FtpCrawlThread extends CrawlThread
         <FtpCrawlThread, FtpCrawlDefinition, FtpCrawlSessionStatus, FtpCrawlerManager, FtpCrawlSession, FtpCrawlItem> {
 
+    final static int DEFAULT_MAX_RECONNECTS = 5;
+    final static int DEFAULT_KEEP_ALIVE_SEC = 60;
+    private final static long RECONNECT_DELAY_MS = 1000;
+    private final static long MAX_RECONNECT_DELAY_MS = 30000;
+
     private final FtpCrawlDefinition crawlDefinition;
     private final FTPClient ftp;
+    private final FtpCheckpoint checkpoint;
+    private final int maxReconnects;
+    private final long keepAliveMs;
+
+    /**
+     * The names of the directories from the entry path to the current directory, replayed after a reconnection
+     */
+    private final Deque<String> directoryNames;
+
+    /**
+     * Guards the control connection between the crawl thread and the keep-alive task
+     */
+    private final ReentrantLock controlLock;
+    private boolean collecting;
+
+    private ScheduledExecutorService keepAliveExecutor;
+    private String entryDirectory;
+    private boolean restartSupported;
+    private int reconnects;
 
     FtpCrawlThread(final FtpCrawlerManager manager, final FtpCrawlSession session, final Logger logger) {
         super(manager, session, logger);
@@ -49,45 +90,150 @@ public class FtpCrawlThread extends CrawlThread
             ftp = new FTPClient();
         ftp.setConnectTimeout(60000);
         ftp.setDataTimeout(60000);
+        checkpoint = session.getCheckpoint();
+        maxReconnects = crawlDefinition.maxReconnects == null ?
+                DEFAULT_MAX_RECONNECTS :
+                Math.max(0, crawlDefinition.maxReconnects);
+        keepAliveMs = TimeUnit.SECONDS.toMillis(crawlDefinition.keepAliveSec == null ?
+                DEFAULT_KEEP_ALIVE_SEC :
+                Math.max(0, crawlDefinition.keepAliveSec));
+        directoryNames = new ArrayDeque<>();
+        controlLock = new ReentrantLock();
     }
 
     @Override
     protected void runner() throws IOException {
         Objects.requireNonNull(crawlDefinition.hostname, "The host name of the server is missing");
+        if (checkpoint.isResuming())
+            logger.info(() -> "Resume the FTP crawl " + session.getName() + " after " +
+                    checkpoint.getDoneDirectories() + " directories and " + checkpoint.getDoneFiles() + " files");
+        if (keepAliveMs > 0)
+            keepAliveExecutor = Executors.newSingleThreadScheduledExecutor(
+                    CrawlThreads.newThreadFactory("ftp-keepalive", false));
         try {
 
-            // Connection
-            checkPositiveReply(() -> ftp.connect(crawlDefinition.hostname, crawlDefinition.port == null ? 21 : crawlDefinition.port),
-                    (code, msg) -> "FTP server refused connection (" + code + "): " + msg);
+            // The first connection is retried like any other command
+            execute(() -> "connecting to " + crawlDefinition.hostname, () -> null);
+
+            // Let crawl the entry directory
+            listCurrentDirectory(crawlDefinition.entryPath, 0);
+
+            // The pass is complete, the next run starts again from the entry path
+            if (!session.isAborting()) {
+                checkpoint.clear();
+                session.commitCheckpoint();
+            }
+
+            // Finished, we logout, the crawl is done even if the connection is already lost
+            try {
+                ftp.logout();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, e, e::getMessage);
+            }
+        } finally {
+            if (keepAliveExecutor != null)
+                keepAliveExecutor.shutdownNow();
+            disconnect();
+        }
+    }
 
-            // Login
-            checkPositiveReply(() -> ftp.login(
-                    StringUtils.isBlank(crawlDefinition.username) ? "anonymous" : crawlDefinition.username,
-                    StringUtils.isBlank(crawlDefinition.password) ? "guest" : crawlDefinition.password),
-                    (code, msg) -> "Cannot login as " + crawlDefinition.username + " - " + msg + " (" + code + ')');
+    /**
+     * Open the control connection and go back to the current directory.
+     */
+    private void connect() throws IOException {
 
-            // Let crawl the current directory
-            // Change directory
-            checkTransferMode();
+        // Connection
+        checkPositiveReply(() -> ftp.connect(crawlDefinition.hostname, crawlDefinition.port == null ? 21 : crawlDefinition.port),
+                (code, msg) -> "FTP server refused connection (" + code + "): " + msg);
+
+        // Login
+        checkPositiveReply(() -> ftp.login(
+                StringUtils.isBlank(crawlDefinition.username) ? "anonymous" : crawlDefinition.username,
+                StringUtils.isBlank(crawlDefinition.password) ? "guest" : crawlDefinition.password),
+                (code, msg) -> "Cannot login as " + crawlDefinition.username + " - " + msg + " (" + code + ')');
+
+        // The binary type keeps the offsets of a resumed download consistent
+        checkPositiveReply(() -> ftp.setFileType(FTP.BINARY_FILE_TYPE),
+                (code, msg) -> "Cannot switch to binary type: " + msg + " (" + code + ')');
+        restartSupported = ftp.hasFeature("REST");
+
+        // Change directory
+        checkTransferMode();
+        if (entryDirectory == null) {
             if (!StringUtils.isBlank(crawlDefinition.entryPath))
                 checkPositiveReply(() -> ftp.changeWorkingDirectory(crawlDefinition.entryPath),
                         (code, msg) -> "Cannot change the directory to " + crawlDefinition.entryPath + " - : " + msg + " (" + code + ')');
+            entryDirectory = ftp.printWorkingDirectory();
+            if (entryDirectory == null)
+                throw new IOException("Cannot get the current directory - : " + ftp.getReplyString());
+        }
+        changeDirectory();
+    }
 
-            listCurrentDirectory(crawlDefinition.entryPath, 0);
+    private void disconnect() {
+        if (ftp.isConnected()) {
+            try {
+                ftp.disconnect();
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, ioe, ioe::getMessage);
+            }
+        }
+    }
 
-            // Finished, we logout
-            ftp.logout();
-        } finally {
-            if (ftp.isConnected()) {
-                try {
-                    ftp.disconnect();
-                } catch (IOException ioe) {
-                    logger.log(Level.WARNING, ioe, ioe::getMessage);
-                }
+    /**
+     * Change to the current directory using an absolute path, the command can be repeated after a reconnection.
+     */
+    private void changeDirectory() throws IOException {
+        final String directory;
+        if (directoryNames.isEmpty())
+            directory = entryDirectory;
+        else {
+            final String relative = String.join("/", directoryNames);
+            directory = entryDirectory.endsWith("/") ? entryDirectory + relative : entryDirectory + '/' + relative;
+        }
+        checkPositiveReply(() -> ftp.changeWorkingDirectory(directory),
+                (code, msg) -> "Cannot change the directory to " + directory + " - : " + msg + " (" + code + ')');
+    }
+
+    /**
+     * Execute a command on the control connection.
+     * When the connection is lost, the client reconnects and tries again,
+     * at most max_reconnects consecutive times.
+     */
+    private <T> T execute(final Supplier<String> what, final SupplierEx<T, IOException> command) throws IOException {
+        for (; ; ) {
+            try {
+                if (!ftp.isConnected())
+                    connect();
+                final T result = command.get();
+                reconnects = 0;
+                return result;
+            } catch (IOException e) {
+                if (session.isAborting() || reconnects >= maxReconnects || !isTransient(e, ftp.getReplyCode()))
+                    throw e;
+                final int attempt = ++reconnects;
+                logger.log(Level.WARNING, e, () -> "FTP connection lost while " + what.get() +
+                        " - reconnection " + attempt + '/' + maxReconnects);
+                disconnect();
+                session.sleep((int) Math.min(MAX_RECONNECT_DELAY_MS, RECONNECT_DELAY_MS << (attempt - 1)));
+                if (session.isAborting())
+                    throw e;
             }
         }
     }
 
+    /**
+     * @return true if the error is caused by the connection, rather than by the command itself
+     */
+    static boolean isTransient(final IOException e, final int replyCode) {
+        return e instanceof FTPConnectionClosedException ||
+                e instanceof SocketException ||
+                e instanceof SocketTimeoutException ||
+                replyCode == FTPReply.SERVICE_NOT_AVAILABLE ||
+                replyCode == FTPReply.CANNOT_OPEN_DATA_CONNECTION ||
+                replyCode == FTPReply.TRANSFER_ABORTED;
+    }
+
     private void checkTransferMode() throws IOException {
         // Do we switch to passive mode ?
         if (crawlDefinition.isPassive != null && crawlDefinition.isPassive)
@@ -102,45 +248,73 @@ public class FtpCrawlThread extends CrawlThread
         if (session.isAborting())
             return;
 
-        final FTPFile[] ftpFiles = ftp.listFiles();
-        if (ftpFiles == null || ftpFiles.length == 0)
-            return;
+        final FTPFile[] ftpFiles = execute(() -> "listing " + currentPath, ftp::listFiles);
+        // The entries already done are forgotten once the directory is done
+        final List<String> children = new ArrayList<>();
+
+        if (ftpFiles != null) {
 
-        // First pass we only want files
-        for (final FTPFile ftpFile : ftpFiles) {
-            if (ftpFile.isFile()) {
-                final String filePath = '/' + StringUtils.joinWithSeparator('/', currentPath, ftpFile.getName());
-                crawlFile(ftpFile, new FtpCrawlItem.Builder(filePath, currentPath, depth));
+            // First pass we only want files
+            for (final FTPFile ftpFile : ftpFiles) {
+                if (ftpFile.isFile()) {
+                    final String filePath = '/' + StringUtils.joinWithSeparator('/', currentPath, ftpFile.getName());
+                    children.add(filePath);
+                    if (checkpoint.isFileDone(filePath))
+                        continue;
+                    if (session.isAborting())
+                        return;
+                    crawlFile(ftpFile, new FtpCrawlItem.Builder(filePath, currentPath, depth));
+                    checkpoint.fileDone(filePath);
+                }
             }
-        }
 
-        // Second pass, we manage the directories
-        final int nextDepth = depth + 1;
-        for (final FTPFile ftpFile : ftpFiles) {
-            if (".".equals(ftpFile.getName()) || "..".equals(ftpFile.getName()))
-                continue;
-            if (ftpFile.isDirectory()) {
-                final String directoryName = ftpFile.getName();
-                final String nextPath = '/' + StringUtils.joinWithSeparator('/', currentPath, directoryName) + '/';
-                final FtpCrawlItem.Builder nextBuilder = new FtpCrawlItem.Builder(nextPath, currentPath, depth);
-                if (checkWildcardFilters(nextPath) != null) {
-                    logger.info("Ignore FTP directory: " + nextBuilder.item);
+            // Second pass, we manage the directories
+            final int nextDepth = depth + 1;
+            for (final FTPFile ftpFile : ftpFiles) {
+                if (".".equals(ftpFile.getName()) || "..".equals(ftpFile.getName()))
                     continue;
-                }
+                if (ftpFile.isDirectory()) {
+                    final String directoryName = ftpFile.getName();
+                    final String nextPath = '/' + StringUtils.joinWithSeparator('/', currentPath, directoryName) + '/';
+                    final FtpCrawlItem.Builder nextBuilder = new FtpCrawlItem.Builder(nextPath, currentPath, depth);
+                    if (checkWildcardFilters(nextPath) != null) {
+                        logger.info("Ignore FTP directory: " + nextBuilder.item);
+                        continue;
+                    }
+                    // Saves the change of directory and the listing when the filters reject every file under it
+                    if (!mayAcceptFilesUnder(nextPath, '/')) {
+                        logger.fine(() -> "Pruned FTP directory: " + nextBuilder.item);
+                        continue;
+                    }
+                    children.add(nextPath);
+                    if (checkpoint.isDirectoryDone(nextPath))
+                        continue;
 
-                checkPositiveReply(() -> ftp.changeWorkingDirectory(directoryName),
-                        (code, msg) -> "Cannot change the directory to " + directoryName + " - : " + msg + " (" + code +
-                                ')');
-                listCurrentDirectory(nextPath, nextDepth);
-                ftp.changeToParentDirectory();
+                    directoryNames.addLast(directoryName);
+                    execute(() -> "changing the directory to " + nextPath, () -> {
+                        changeDirectory();
+                        return null;
+                    });
+                    listCurrentDirectory(nextPath, nextDepth);
+                    directoryNames.removeLast();
+                    if (session.isAborting())
+                        return;
+                    execute(() -> "changing the directory to " + currentPath, () -> {
+                        changeDirectory();
+                        return null;
+                    });
+                }
             }
         }
+
+        // The entry directory is cleared with the whole checkpoint
+        if (depth > 0) {
+            checkpoint.directoryDone(currentPath, children);
+            session.commitCheckpoint();
+        }
     }
 
     private void crawlFile(final FTPFile ftpFile, final FtpCrawlItem.Builder builder) throws IOException {
-        if (session.isAborting())
-            return;
-
         builder.ftpFile(ftpFile);
 
         final FtpCrawlItem currentCrawl = builder.build();
@@ -150,28 +324,97 @@ public class FtpCrawlThread extends CrawlThread
             builder.rejected(rejected);
             logger.info("Ignore FTP file: " + builder.item);
             session.incRejectedCount();
-            session.collect(builder.build());
+            collect(builder.build(), null);
             return;
         }
 
         logger.info("Download FTP file: " + builder.item);
 
-        checkTransferMode();
         final Path tmpFile = Files.createTempFile("ftpCrawler-", ftpFile.getName());
+        final Closeable tmpFileRelease = () -> Files.deleteIfExists(tmpFile);
         try {
-            try {
-                try (final OutputStream output = new BufferedOutputStream(Files.newOutputStream(tmpFile))) {
-                    ftp.retrieveFile(ftpFile.getName(), output);
-                }
-                builder.localFilePath(tmpFile);
-            } catch (RuntimeException | IOException e) {
-                builder.error(e);
+            execute(() -> "downloading " + builder.item, () -> {
+                downloadFile(ftpFile.getName(), tmpFile);
+                return null;
+            });
+            builder.localFilePath(tmpFile);
+        } catch (IOException e) {
+            tmpFileRelease.close();
+            builder.error(e);
+            // A lost connection stops the crawl, a file refused by the server is only an error on this file
+            if (session.isAborting() || isTransient(e, ftp.getReplyCode()))
                 throw e;
-            }
-            session.incCrawledCount();
-            session.collect(builder.build());
+            final String err = "FTP download error on " + builder.item;
+            logger.log(Level.WARNING, err, e);
+            session.incErrorCount(err + ": " + e.getMessage());
+            collect(builder.build(), null);
+            return;
+        } catch (RuntimeException e) {
+            tmpFileRelease.close();
+            builder.error(e);
+            throw e;
+        }
+        session.incCrawledCount();
+        // The collectors may read the file asynchronously, the last one deletes it
+        collect(builder.build(), tmpFileRelease);
+    }
+
+    /**
+     * Download a file, or continue the download after a reconnection using the REST command.
+     */
+    private void downloadFile(final String fileName, final Path tmpFile) throws IOException {
+        checkTransferMode();
+        final long offset = restartSupported ? Files.size(tmpFile) : 0;
+        if (offset > 0)
+            logger.info(() -> "Resume the download of " + fileName + " at " + offset);
+        ftp.setRestartOffset(offset);
+        try (final OutputStream output = session.getBandwidthLimiter().limit(new BufferedOutputStream(offset > 0 ?
+                Files.newOutputStream(tmpFile, StandardOpenOption.APPEND) :
+                Files.newOutputStream(tmpFile, StandardOpenOption.TRUNCATE_EXISTING)))) {
+            checkPositiveReply(() -> ftp.retrieveFile(fileName, output),
+                    (code, msg) -> "Cannot download " + fileName + " - : " + msg + " (" + code + ')');
+        }
+    }
+
+    /**
+     * Collect an item while NOOP commands keep the idle control connection alive.
+     */
+    private void collect(final FtpCrawlItem crawlItem, final Closeable resources) throws IOException {
+        if (keepAliveExecutor == null) {
+            session.collect(crawlItem, resources);
+            return;
+        }
+        setCollecting(true);
+        final ScheduledFuture<?> keepAlive =
+                keepAliveExecutor.scheduleWithFixedDelay(this::keepAlive, keepAliveMs, keepAliveMs, TimeUnit.MILLISECONDS);
+        try {
+            session.collect(crawlItem, resources);
+        } finally {
+            keepAlive.cancel(false);
+            // Waits for a NOOP in progress before the crawl thread uses the connection again
+            setCollecting(false);
+        }
+    }
+
+    private void setCollecting(final boolean collecting) {
+        controlLock.lock();
+        try {
+            this.collecting = collecting;
+        } finally {
+            controlLock.unlock();
+        }
+    }
+
+    private void keepAlive() {
+        controlLock.lock();
+        try {
+            if (collecting && ftp.isConnected())
+                ftp.sendNoOp();
+        } catch (IOException e) {
+            // The next command will reconnect
+            logger.log(Level.FINE, e, () -> "FTP keep-alive failed: " + e.getMessage());
         } finally {
-            Files.deleteIfExists(tmpFile);
+            controlLock.unlock();
         }
     }
 
@@ -63,6 +63,11 @@ public class FtpCrawlerManager extends CrawlManager
         return FtpCrawlSessionStatus.of(myAddress).build();
     }
 
+    @Override
+    protected FtpCrawlSessionStatus newQueuedStatus(final int queuePosition) {
+        return FtpCrawlSessionStatus.of(myAddress).queued(queuePosition).build();
+    }
+
     @Override
     protected FtpCrawlThread newCrawlThread(String sessionName, FtpCrawlDefinition crawlDefinition) {
         final FtpCrawlSessionStatus.Builder crawlStatusBuilder = FtpCrawlSessionStatus.of(myAddress);
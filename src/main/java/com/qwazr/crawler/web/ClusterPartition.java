@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.qwazr.utils.LoggerUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The partition of a distributed web crawl session.
+ * Each host is owned by one node (rendezvous hashing over the cluster nodes).
+ * The links owned by another node are forwarded by batches to the frontier of that node.
+ */
+final class ClusterPartition {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger(ClusterPartition.class);
+
+    final static int BATCH_SIZE = 500;
+    final static long FLUSH_INTERVAL_MS = 1000;
+    final static int DEFAULT_IDLE_MS = 30_000;
+
+    private final String sessionName;
+    private final String localNode;
+    private final List<String> nodes;
+    private final Function<String, WebCrawlerServiceInterface> nodeServices;
+    private final long idleMs;
+
+    private final Map<String, LinkedHashMap<String, Integer>> pending;
+    private long lastFlush;
+    private volatile long lastActivity;
+
+    ClusterPartition(final String sessionName,
+                     final String localNode,
+                     final Collection<String> nodes,
+                     final Function<String, WebCrawlerServiceInterface> nodeServices,
+                     final Integer idleMs) {
+        this.sessionName = sessionName;
+        this.localNode = localNode;
+        this.nodes = new ArrayList<>(new TreeSet<>(nodes));
+        this.nodeServices = nodeServices;
+        this.idleMs = idleMs == null ? DEFAULT_IDLE_MS : idleMs;
+        this.pending = new LinkedHashMap<>();
+        this.lastFlush = System.currentTimeMillis();
+        this.lastActivity = lastFlush;
+    }
+
+    /**
+     * @param definition the crawl definition
+     * @return true if the crawl is shared by several nodes
+     */
+    static boolean isDistributed(final WebCrawlDefinition definition) {
+        return definition != null && definition.clusterNodes != null && definition.clusterNodes.size() > 1;
+    }
+
+    /**
+     * @return the node owning the host: the one with the highest rendezvous hash
+     */
+    static String owner(final List<String> nodes, final String host) {
+        String owner = null;
+        long max = Long.MIN_VALUE;
+        for (final String node : nodes) {
+            final long hash = rendezvous(node, host);
+            if (owner == null || hash > max) {
+                owner = node;
+                max = hash;
+            }
+        }
+        return owner;
+    }
+
+    static long rendezvous(final String node, final String host) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < node.length(); i++)
+            h = 31 * h + node.charAt(i);
+        h = 31 * h + '|';
+        for (int i = 0; i < host.length(); i++)
+            h = 31 * h + host.charAt(i);
+        // Final mix (splitmix64) for a uniform distribution
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * @param host the host of an URL
+     * @return the node owning the host, or null if the host belongs to the local node
+     */
+    String remoteOwner(final String host) {
+        if (host == null)
+            return null;
+        final String owner = owner(nodes, host.toLowerCase());
+        return localNode.equals(owner) ? null : owner;
+    }
+
+    /**
+     * Buffer an URL owned by another node
+     */
+    synchronized void forward(final String node, final String uriString, final Integer depth) {
+        pending.computeIfAbsent(node, n -> new LinkedHashMap<>()).merge(uriString, depth, Math::min);
+    }
+
+    /**
+     * Send the buffered URLs. By default, a batch is sent when it is full, or when the flush interval is reached.
+     *
+     * @param force    true to send all the buffered URLs
+     * @param fallback receive the URLs which could not be forwarded
+     */
+    void flush(final boolean force, final Consumer<Map<String, Integer>> fallback) {
+        final Map<String, LinkedHashMap<String, Integer>> batches = new LinkedHashMap<>();
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            final boolean expired = now - lastFlush >= FLUSH_INTERVAL_MS;
+            pending.entrySet().removeIf(entry -> {
+                if (!force && !expired && entry.getValue().size() < BATCH_SIZE)
+                    return false;
+                batches.put(entry.getKey(), entry.getValue());
+                return true;
+            });
+            if (force || expired)
+                lastFlush = now;
+        }
+        batches.forEach((node, urls) -> {
+            try {
+                nodeServices.apply(node).enqueueLinks(sessionName, urls);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Cannot forward " + urls.size() + " URL(s) to " + node
+                        + " - The URLs are crawled locally");
+                fallback.accept(urls);
+            }
+        });
+    }
+
+    synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Keep the partition alive: some URLs have been crawled or received
+     */
+    void active() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * @return true if nothing has been crawled or received during the idle period
+     */
+    boolean isIdle() {
+        return System.currentTimeMillis() - lastActivity > idleMs;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.utils.Equalizer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The statistics of the requests sent to one host.
+ * The counters are updated concurrently without locking.
+ */
+public final class HostStatistics {
+
+    /**
+     * The weight of the last sample in the latency moving average
+     */
+    private final static double EWMA_ALPHA = 0.2;
+
+    private final LongAdder requests;
+    private final LongAdder bytes;
+    private final LongAdder errors;
+    private final LongAdder tooManyRequests;
+    private final LongAdder serverErrors;
+    private final AtomicLong latencyEwmaBits;
+
+    /**
+     * The current wait between two requests, managed by {@link HostThrottle}
+     */
+    long waitMs;
+
+    /**
+     * The earliest time of the next request ({@link System#nanoTime()}), managed by {@link HostThrottle}
+     */
+    long nextRequestNanos;
+
+    HostStatistics(final long waitMs) {
+        requests = new LongAdder();
+        bytes = new LongAdder();
+        errors = new LongAdder();
+        tooManyRequests = new LongAdder();
+        serverErrors = new LongAdder();
+        latencyEwmaBits = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+        this.waitMs = waitMs;
+        this.nextRequestNanos = System.nanoTime();
+    }
+
+    /**
+     * Record a response
+     *
+     * @param responseCode the HTTP status code
+     * @param length       the number of bytes received
+     * @param latencyMs    the duration of the request
+     */
+    void response(final int responseCode, final long length, final long latencyMs) {
+        requests.increment();
+        if (length > 0)
+            bytes.add(length);
+        if (responseCode == 429)
+            tooManyRequests.increment();
+        else if (responseCode >= 500)
+            serverErrors.increment();
+        latency(latencyMs);
+    }
+
+    /**
+     * Record a request which failed without any response (time out, connection reset, etc.)
+     *
+     * @param latencyMs the duration of the request
+     */
+    void error(final long latencyMs) {
+        requests.increment();
+        errors.increment();
+        latency(latencyMs);
+    }
+
+    private void latency(final long latencyMs) {
+        latencyEwmaBits.getAndUpdate(bits -> {
+            final double current = Double.longBitsToDouble(bits);
+            return Double.doubleToLongBits(
+                    Double.isNaN(current) ? latencyMs : current + EWMA_ALPHA * (latencyMs - current));
+        });
+    }
+
+    /**
+     * @return the moving average of the latency, or NaN if no request has been recorded
+     */
+    double getLatencyEwmaMs() {
+        return Double.longBitsToDouble(latencyEwmaBits.get());
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    synchronized Snapshot getSnapshot() {
+        final long requestCount = requests.sum();
+        final long tooManyRequestCount = tooManyRequests.sum();
+        final long serverErrorCount = serverErrors.sum();
+        final double latencyEwmaMs = getLatencyEwmaMs();
+        return new Snapshot(requestCount, bytes.sum(), errors.sum(), tooManyRequestCount, serverErrorCount,
+                rate(tooManyRequestCount, requestCount), rate(serverErrorCount, requestCount),
+                Double.isNaN(latencyEwmaMs) ? null : Math.round(latencyEwmaMs * 10) / 10d, waitMs);
+    }
+
+    private static double rate(final long count, final long total) {
+        return total == 0 ? 0 : Math.round(count * 10000d / total) / 10000d;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
+            getterVisibility = JsonAutoDetect.Visibility.NONE,
+            creatorVisibility = JsonAutoDetect.Visibility.NONE,
+            isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+            fieldVisibility = JsonAutoDetect.Visibility.PUBLIC_ONLY)
+    public static final class Snapshot extends Equalizer.Immutable<Snapshot> {
+
+        final public long requests;
+
+        final public long bytes;
+
+        /**
+         * The requests which failed without response (time out, connection reset, etc.)
+         */
+        final public long errors;
+
+        @JsonProperty("too_many_requests")
+        final public long tooManyRequests;
+
+        @JsonProperty("server_errors")
+        final public long serverErrors;
+
+        @JsonProperty("too_many_requests_rate")
+        final public double tooManyRequestsRate;
+
+        @JsonProperty("server_errors_rate")
+        final public double serverErrorsRate;
+
+        @JsonProperty("latency_ewma_ms")
+        final public Double latencyEwmaMs;
+
+        /**
+         * The current wait between two requests
+         */
+        @JsonProperty("wait_ms")
+        final public long waitMs;
+
+        @JsonCreator
+        public Snapshot(@JsonProperty("requests") final long requests,
+                        @JsonProperty("bytes") final long bytes,
+                        @JsonProperty("errors") final long errors,
+                        @JsonProperty("too_many_requests") final long tooManyRequests,
+                        @JsonProperty("server_errors") final long serverErrors,
+                        @JsonProperty("too_many_requests_rate") final double tooManyRequestsRate,
+                        @JsonProperty("server_errors_rate") final double serverErrorsRate,
+                        @JsonProperty("latency_ewma_ms") final Double latencyEwmaMs,
+                        @JsonProperty("wait_ms") final long waitMs) {
+            super(Snapshot.class);
+            this.requests = requests;
+            this.bytes = bytes;
+            this.errors = errors;
+            this.tooManyRequests = tooManyRequests;
+            this.serverErrors = serverErrors;
+            this.tooManyRequestsRate = tooManyRequestsRate;
+            this.serverErrorsRate = serverErrorsRate;
+            this.latencyEwmaMs = latencyEwmaMs;
+            this.waitMs = waitMs;
+        }
+
+        @Override
+        protected int computeHashCode() {
+            return Objects.hash(requests, bytes, errors, waitMs);
+        }
+
+        @Override
+        protected boolean isEqual(final Snapshot s) {
+            return requests == s.requests && bytes == s.bytes && errors == s.errors
+                    && tooManyRequests == s.tooManyRequests && serverErrors == s.serverErrors
+                    && tooManyRequestsRate == s.tooManyRequestsRate && serverErrorsRate == s.serverErrorsRate
+                    && Objects.equals(latencyEwmaMs, s.latencyEwmaMs) && waitMs == s.waitMs;
+        }
+    }
+}
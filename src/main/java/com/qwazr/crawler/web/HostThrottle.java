@@ -0,0 +1,175 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive politeness: the wait between two requests on the same host is adjusted after each response.
+ * <ul>
+ * <li>A 429, a 5xx or a failed request doubles the wait (and honors the Retry-After header),</li>
+ * <li>a latency above twice the moving average increases the wait by half,</li>
+ * <li>a healthy response brings the wait 10% closer to crawl_wait_ms.</li>
+ * </ul>
+ * The wait always stays between crawl_wait_ms and max_crawl_wait_ms.
+ */
+final class HostThrottle {
+
+    final static long DEFAULT_MAX_WAIT_MS = 30_000;
+
+    /**
+     * The minimal wait applied after a failure, when crawl_wait_ms is lower
+     */
+    final static long BACKOFF_FLOOR_MS = 500;
+
+    /**
+     * The latency reference needs a few samples before the slow responses are detected
+     */
+    private final static int LATENCY_MIN_SAMPLES = 5;
+
+    private final ConcurrentHashMap<String, HostStatistics> hosts;
+    private final long minWaitMs;
+    private final long maxWaitMs;
+
+    HostThrottle(final Integer crawlWaitMs, final Integer maxCrawlWaitMs) {
+        this.minWaitMs = crawlWaitMs == null ? 0 : Math.max(0, crawlWaitMs);
+        this.maxWaitMs = Math.max(minWaitMs, maxCrawlWaitMs == null ? DEFAULT_MAX_WAIT_MS : maxCrawlWaitMs);
+        this.hosts = new ConcurrentHashMap<>();
+    }
+
+    HostStatistics get(final String host) {
+        return hosts.computeIfAbsent(host == null ? "" : host, h -> new HostStatistics(minWaitMs));
+    }
+
+    /**
+     * Wait until a request can be sent to the given host
+     *
+     * @param host the host of the next request
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void await(final String host) throws InterruptedException {
+        final HostStatistics stats = get(host);
+        final long startNanos;
+        synchronized (stats) {
+            final long now = System.nanoTime();
+            startNanos = Math.max(now, stats.nextRequestNanos);
+            stats.nextRequestNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(stats.waitMs);
+        }
+        final long waitNanos = startNanos - System.nanoTime();
+        if (waitNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+
+    /**
+     * Record a response and adapt the wait
+     *
+     * @param host         the host
+     * @param responseCode the HTTP status code
+     * @param retryAfter   the value of the Retry-After header (may be null)
+     * @param length       the number of bytes received
+     * @param latencyMs    the duration of the request
+     */
+    void response(final String host,
+                  final int responseCode,
+                  final String retryAfter,
+                  final long length,
+                  final long latencyMs) {
+        final HostStatistics stats = get(host);
+        final double latencyEwmaMs = stats.getLatencyEwmaMs();
+        final boolean slow = stats.getRequests() >= LATENCY_MIN_SAMPLES && latencyMs > latencyEwmaMs * 2;
+        stats.response(responseCode, length, latencyMs);
+        synchronized (stats) {
+            if (responseCode == 429 || responseCode >= 500) {
+                backoff(stats);
+                final Long retryAfterMs = parseRetryAfter(retryAfter);
+                if (retryAfterMs != null) {
+                    final long delayMs = bound(retryAfterMs);
+                    stats.waitMs = Math.max(stats.waitMs, delayMs);
+                    stats.nextRequestNanos = Math.max(stats.nextRequestNanos,
+                            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs));
+                }
+            } else if (slow)
+                stats.waitMs = bound(Math.max(stats.waitMs + 1, stats.waitMs * 3 / 2));
+            else
+                stats.waitMs = bound(stats.waitMs - Math.max(1, (stats.waitMs - minWaitMs) / 10));
+        }
+    }
+
+    /**
+     * Record a request which failed without response and adapt the wait
+     *
+     * @param host      the host
+     * @param latencyMs the duration of the request
+     */
+    void error(final String host, final long latencyMs) {
+        final HostStatistics stats = get(host);
+        stats.error(latencyMs);
+        synchronized (stats) {
+            backoff(stats);
+        }
+    }
+
+    private void backoff(final HostStatistics stats) {
+        stats.waitMs = bound(Math.max(BACKOFF_FLOOR_MS, stats.waitMs * 2));
+    }
+
+    private long bound(final long waitMs) {
+        return Math.min(maxWaitMs, Math.max(minWaitMs, waitMs));
+    }
+
+    /**
+     * @return the statistics of each host, sorted by host name
+     */
+    LinkedHashMap<String, HostStatistics.Snapshot> getSnapshots() {
+        final LinkedHashMap<String, HostStatistics.Snapshot> snapshots = new LinkedHashMap<>();
+        for (final Map.Entry<String, HostStatistics> entry : new TreeMap<>(hosts).entrySet())
+            snapshots.put(entry.getKey(), entry.getValue().getSnapshot());
+        return snapshots;
+    }
+
+    /**
+     * Parse the value of a Retry-After header: either a number of seconds or a HTTP date.
+     *
+     * @param retryAfter the value of the header
+     * @return the delay in milliseconds, or null if the header is missing or invalid
+     */
+    static Long parseRetryAfter(final String retryAfter) {
+        if (retryAfter == null)
+            return null;
+        final String value = retryAfter.trim();
+        if (value.isEmpty())
+            return null;
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, it may be a date
+        }
+        try {
+            final ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis());
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
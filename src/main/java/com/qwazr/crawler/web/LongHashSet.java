@@ -0,0 +1,176 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+/**
+ * A set of primitive longs using open addressing with linear probing.
+ * The zero value is the marker of the free slots, it is tracked apart.
+ * Not thread-safe.
+ */
+final class LongHashSet {
+
+    private final static int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasZero;
+
+    LongHashSet(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * A 64-bit hash of a string (FNV-1a on the chars followed by the MurmurHash3 finalizer).
+     * The collisions are negligible below billions of strings.
+     *
+     * @param value the string to hash
+     * @return the hash of the string
+     */
+    static long hash(final CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        // Keep the load factor under 2/3
+        final long wanted = Math.max(MIN_CAPACITY, (long) expectedSize * 3 / 2 + 1);
+        if (wanted > 1 << 30)
+            return 1 << 30;
+        return Integer.highestOneBit((int) wanted - 1) << 1;
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) ((long) capacity * 2 / 3);
+    }
+
+    private int slot(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int find(final long key) {
+        int i = slot(key);
+        long k;
+        while ((k = keys[i]) != 0) {
+            if (k == key)
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    boolean contains(final long key) {
+        if (key == 0)
+            return hasZero;
+        return find(key) >= 0;
+    }
+
+    /**
+     * @param key the value to add
+     * @return true if the value was not already present
+     */
+    boolean add(final long key) {
+        if (key == 0) {
+            if (hasZero)
+                return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int i = slot(key);
+        long k;
+        while ((k = keys[i]) != 0) {
+            if (k == key)
+                return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        if (++size >= resizeAt)
+            rehash();
+        return true;
+    }
+
+    /**
+     * @param key the value to remove
+     * @return true if the value was present
+     */
+    boolean remove(final long key) {
+        if (key == 0) {
+            if (!hasZero)
+                return false;
+            hasZero = false;
+            size--;
+            return true;
+        }
+        int gap = find(key);
+        if (gap < 0)
+            return false;
+        // Backward shift deletion: the following keys of the cluster are moved back
+        // if the gap lies between their home slot and their current slot.
+        int i = (gap + 1) & mask;
+        long k;
+        while ((k = keys[i]) != 0) {
+            final int home = slot(k);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[gap] = 0;
+        size--;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void rehash() {
+        final long[] oldKeys = keys;
+        allocate(oldKeys.length << 1);
+        for (final long key : oldKeys) {
+            if (key == 0)
+                continue;
+            int i = slot(key);
+            while (keys[i] != 0)
+                i = (i + 1) & mask;
+            keys[i] = key;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.function.ToLongFunction;
+import org.apache.commons.lang3.tuple.Pair;
+import org.mapdb.DB;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.mapdb.serializer.SerializerArrayTuple;
+
+/**
+ * The frontier stored in the session database.
+ * The text of each known URL is kept once, in the URL dictionary, the sets and the queues refer to the identifiers
+ * of the dictionary. The 64-bit hash of an URL only locates its identifier: the text found in the dictionary is
+ * compared with the URL, and the rare URLs colliding with the hash of another URL are indexed by their text.
+ */
+final class MapDbWebFrontier implements WebFrontier {
+
+    private final ToLongFunction<String> hashFunction;
+    private final UrlDictionary dictionary;
+    private final HTreeMap<Long, Long> urlIds;
+    private final HTreeMap<String, Long> collidingUrlIds;
+    private final HTreeMap.KeySet<Long> crawledUrls;
+    private final HTreeMap.KeySet<Long> toCrawlUrls;
+    private final NavigableSet<Object[]> nextToCrawl;
+    private final HTreeMap<Long, Integer> attempts;
+    private final NavigableSet<Object[]> retryQueue;
+    private final NavigableSet<Object[]> sitemapQueue;
+    private final HTreeMap<Long, Integer> sitemapRanks;
+
+    MapDbWebFrontier(final DB sessionDB) {
+        this(sessionDB, LongHashSet::hash);
+    }
+
+    /**
+     * @param sessionDB    the session database
+     * @param hashFunction the hash locating the identifier of an URL
+     */
+    MapDbWebFrontier(final DB sessionDB, final ToLongFunction<String> hashFunction) {
+        this.hashFunction = hashFunction;
+        dictionary = new UrlDictionary(sessionDB);
+        urlIds = sessionDB.hashMap("urlIds")
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(Serializer.LONG)
+                .createOrOpen();
+        collidingUrlIds = sessionDB.hashMap("collidingUrlIds")
+                .keySerializer(Serializer.STRING)
+                .valueSerializer(Serializer.LONG)
+                .createOrOpen();
+        crawledUrls = sessionDB.hashSet("crawledIds")
+                .serializer(Serializer.LONG)
+                .createOrOpen();
+        toCrawlUrls = sessionDB.hashSet("toCrawlIds")
+                .serializer(Serializer.LONG)
+                .createOrOpen();
+        nextToCrawl = sessionDB.treeSet("nextToCrawl")
+                .serializer(new SerializerArrayTuple(Serializer.INTEGER, Serializer.LONG))
+                .createOrOpen();
+        attempts = sessionDB.hashMap("attemptIds")
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(Serializer.INTEGER)
+                .createOrOpen();
+        retryQueue = sessionDB.treeSet("retryQueue")
+                .serializer(new SerializerArrayTuple(Serializer.LONG, Serializer.INTEGER, Serializer.LONG))
+                .createOrOpen();
+        sitemapQueue = sessionDB.treeSet("sitemapQueue")
+                .serializer(new SerializerArrayTuple(Serializer.INTEGER, Serializer.INTEGER, Serializer.LONG))
+                .createOrOpen();
+        sitemapRanks = sessionDB.hashMap("sitemapRanks")
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(Serializer.INTEGER)
+                .createOrOpen();
+    }
+
+    /**
+     * @param uriString the URL
+     * @return the identifier of the URL, or null if the URL has never been seen
+     */
+    private Long idOf(final String uriString) {
+        final Long id = urlIds.get(hashFunction.applyAsLong(uriString));
+        if (id == null)
+            return null;
+        if (uriString.equals(dictionary.get(id)))
+            return id;
+        return collidingUrlIds.get(uriString);
+    }
+
+    /**
+     * @param uriString the URL
+     * @return the identifier of the URL, a new one if the URL has never been seen
+     */
+    private long idFor(final String uriString) {
+        final Long knownId = idOf(uriString);
+        if (knownId != null)
+            return knownId;
+        final long id = dictionary.add(uriString);
+        if (urlIds.putIfAbsent(hashFunction.applyAsLong(uriString), id) != null)
+            collidingUrlIds.put(uriString, id);
+        return id;
+    }
+
+    @Override
+    public boolean isCrawled(final String uriString) {
+        final Long id = idOf(uriString);
+        return id != null && crawledUrls.contains(id);
+    }
+
+    private boolean isKnown(final Long id) {
+        return id != null && (crawledUrls.contains(id) || toCrawlUrls.contains(id) || attempts.containsKey(id));
+    }
+
+    @Override
+    public boolean add(final String uriString, final Integer depth) {
+        if (isKnown(idOf(uriString)))
+            return false;
+        final long id = idFor(uriString);
+        toCrawlUrls.add(id);
+        nextToCrawl.add(new Object[]{depth, id});
+        return true;
+    }
+
+    @Override
+    public boolean addSitemap(final String uriString, final int rank, final Integer depth) {
+        if (isKnown(idOf(uriString)))
+            return false;
+        final long id = idFor(uriString);
+        toCrawlUrls.add(id);
+        sitemapRanks.put(id, rank);
+        sitemapQueue.add(new Object[]{rank, depth, id});
+        return true;
+    }
+
+    @Override
+    public boolean promoteRetries(final long now) {
+        boolean promoted = false;
+        final Iterator<Object[]> iterator = retryQueue.iterator();
+        while (iterator.hasNext()) {
+            final Object[] retry = iterator.next();
+            if ((Long) retry[0] > now)
+                break;
+            iterator.remove();
+            final Long id = (Long) retry[2];
+            toCrawlUrls.add(id);
+            nextToCrawl.add(new Object[]{retry[1], id});
+            promoted = true;
+        }
+        return promoted;
+    }
+
+    @Override
+    public Pair<String, Integer> next() {
+        // The URLs stay in the queues until they are claimed
+        final Iterator<Object[]> sitemapIterator = sitemapQueue.iterator();
+        while (sitemapIterator.hasNext()) {
+            final Object[] sitemapItem = sitemapIterator.next();
+            final Long id = (Long) sitemapItem[2];
+            final String uriString = toCrawlUrls.contains(id) ? dictionary.get(id) : null;
+            if (uriString != null)
+                return Pair.of(uriString, (Integer) sitemapItem[1]);
+            sitemapIterator.remove();
+        }
+        final Iterator<Object[]> iterator = nextToCrawl.iterator();
+        while (iterator.hasNext()) {
+            final Object[] item = iterator.next();
+            final Long id = (Long) item[1];
+            final String uriString = toCrawlUrls.contains(id) ? dictionary.get(id) : null;
+            if (uriString != null)
+                return Pair.of(uriString, (Integer) item[0]);
+            iterator.remove();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean setCrawled(final String uriString, final Integer depth) {
+        final long id = idFor(uriString);
+        final boolean added = crawledUrls.add(id);
+        if (toCrawlUrls.remove(id)) {
+            nextToCrawl.remove(new Object[]{depth, id});
+            final Integer rank = sitemapRanks.remove(id);
+            if (rank != null)
+                sitemapQueue.remove(new Object[]{rank, depth, id});
+        }
+        return added;
+    }
+
+    @Override
+    public int getAttempts(final String uriString) {
+        final Long id = idOf(uriString);
+        final Integer count = id == null ? null : attempts.get(id);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public void retry(final String uriString, final Integer depth, final int attempt, final long dueTime) {
+        final long id = idFor(uriString);
+        attempts.put(id, attempt);
+        crawledUrls.remove(id);
+        retryQueue.add(new Object[]{dueTime, depth, id});
+    }
+
+    @Override
+    public long firstRetryTime() {
+        return retryQueue.isEmpty() ? -1 : (Long) retryQueue.first()[0];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return toCrawlUrls.isEmpty() && retryQueue.isEmpty();
+    }
+}
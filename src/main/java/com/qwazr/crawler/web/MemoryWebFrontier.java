@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * The frontier of the sessions using the temporary storage profile.
+ * The crawled and queued URLs are tracked by their 64-bit hash in primitive sets,
+ * the URLs to crawl wait in one FIFO queue per depth. Nothing is written in the session database.
+ */
+final class MemoryWebFrontier implements WebFrontier {
+
+    private final LongHashSet crawled;
+    private final LongHashSet queued;
+    private final List<ArrayDeque<String>> depthQueues;
+    private int firstDepth;
+    private final Map<String, Integer> attempts;
+    private final PriorityQueue<Entry> retryQueue;
+    private final PriorityQueue<Entry> sitemapQueue;
+    private long sequence;
+
+    MemoryWebFrontier() {
+        crawled = new LongHashSet();
+        queued = new LongHashSet();
+        depthQueues = new ArrayList<>();
+        firstDepth = 0;
+        attempts = new HashMap<>();
+        retryQueue = new PriorityQueue<>();
+        sitemapQueue = new PriorityQueue<>();
+    }
+
+    private static int depthOf(final Integer depth) {
+        return depth == null ? 0 : Math.max(0, depth);
+    }
+
+    private void enqueue(final String uriString, final Integer depth) {
+        final int d = depthOf(depth);
+        while (depthQueues.size() <= d)
+            depthQueues.add(new ArrayDeque<>());
+        depthQueues.get(d).addLast(uriString);
+        if (d < firstDepth)
+            firstDepth = d;
+    }
+
+    private boolean isKnown(final String uriString, final long hash) {
+        return crawled.contains(hash) || queued.contains(hash) ||
+                (!attempts.isEmpty() && attempts.containsKey(uriString));
+    }
+
+    @Override
+    public boolean isCrawled(final String uriString) {
+        return crawled.contains(LongHashSet.hash(uriString));
+    }
+
+    @Override
+    public boolean add(final String uriString, final Integer depth) {
+        final long hash = LongHashSet.hash(uriString);
+        if (isKnown(uriString, hash))
+            return false;
+        queued.add(hash);
+        enqueue(uriString, depth);
+        return true;
+    }
+
+    @Override
+    public boolean addSitemap(final String uriString, final int rank, final Integer depth) {
+        final long hash = LongHashSet.hash(uriString);
+        if (isKnown(uriString, hash))
+            return false;
+        queued.add(hash);
+        sitemapQueue.add(new Entry(rank, sequence++, depth, uriString));
+        return true;
+    }
+
+    @Override
+    public boolean promoteRetries(final long now) {
+        boolean promoted = false;
+        Entry retry;
+        while ((retry = retryQueue.peek()) != null && retry.order <= now) {
+            retryQueue.poll();
+            queued.add(LongHashSet.hash(retry.uriString));
+            enqueue(retry.uriString, retry.depth);
+            promoted = true;
+        }
+        return promoted;
+    }
+
+    @Override
+    public Pair<String, Integer> next() {
+        // The crawled URLs are left in the queues, they are dropped when they reach the head
+        Entry sitemapItem;
+        while ((sitemapItem = sitemapQueue.peek()) != null) {
+            if (queued.contains(LongHashSet.hash(sitemapItem.uriString)))
+                return Pair.of(sitemapItem.uriString, sitemapItem.depth);
+            sitemapQueue.poll();
+        }
+        while (firstDepth < depthQueues.size()) {
+            final ArrayDeque<String> queue = depthQueues.get(firstDepth);
+            String head;
+            while ((head = queue.peekFirst()) != null) {
+                if (queued.contains(LongHashSet.hash(head)))
+                    return Pair.of(head, firstDepth);
+                queue.pollFirst();
+            }
+            firstDepth++;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean setCrawled(final String uriString, final Integer depth) {
+        final long hash = LongHashSet.hash(uriString);
+        queued.remove(hash);
+        return crawled.add(hash);
+    }
+
+    @Override
+    public int getAttempts(final String uriString) {
+        final Integer count = attempts.get(uriString);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public void retry(final String uriString, final Integer depth, final int attempt, final long dueTime) {
+        attempts.put(uriString, attempt);
+        crawled.remove(LongHashSet.hash(uriString));
+        retryQueue.add(new Entry(dueTime, sequence++, depth, uriString));
+    }
+
+    @Override
+    public long firstRetryTime() {
+        final Entry retry = retryQueue.peek();
+        return retry == null ? -1 : retry.order;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queued.isEmpty() && retryQueue.isEmpty();
+    }
+
+    /**
+     * A retry ordered by its due time, or a sitemap URL ordered by its rank
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        private final long order;
+        private final long sequence;
+        private final Integer depth;
+        private final String uriString;
+
+        private Entry(final long order, final long sequence, final Integer depth, final String uriString) {
+            this.order = order;
+            this.sequence = sequence;
+            this.depth = depth;
+            this.uriString = uriString;
+        }
+
+        @Override
+        public int compareTo(final Entry o) {
+            final int c = Long.compare(order, o.order);
+            return c != 0 ? c : Long.compare(sequence, o.sequence);
+        }
+    }
+}
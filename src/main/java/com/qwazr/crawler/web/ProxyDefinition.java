@@ -21,6 +21,27 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 public class ProxyDefinition {
 
+	/**
+	 * How the proxy of each request is chosen when several proxies are defined
+	 */
+	public enum Selection {
+
+		/**
+		 * Each proxy in turn
+		 */
+		round_robin,
+
+		/**
+		 * The proxy with the fewest running requests, the lowest latency and the fewest errors
+		 */
+		least_loaded,
+
+		/**
+		 * The requests to the same host always use the same proxy (while it is healthy)
+		 */
+		sticky_host
+	}
+
 	final public Boolean enabled;
 
 	/**
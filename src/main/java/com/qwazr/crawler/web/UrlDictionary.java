@@ -0,0 +1,155 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.mapdb.Atomic;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+
+/**
+ * Assigns a compact 64-bit identifier to each URL, and stores the text of the URL once.
+ * The scheme and authority of an URL (the host prefix) are stored once per host,
+ * each URL only keeps the identifier of its host prefix followed by the rest of the URL.
+ * The identifiers are sequential: the URLs added together are stored together.
+ * Not thread-safe.
+ */
+final class UrlDictionary {
+
+    private final HTreeMap<Integer, String> hostPrefixes;
+    private final BTreeMap<Long, byte[]> urls;
+    private final Atomic.Long sequence;
+
+    private final Map<String, Integer> hostIds;
+    private final List<String> hosts;
+
+    UrlDictionary(final DB sessionDB) {
+        hostPrefixes = sessionDB.hashMap("urlHosts")
+                .keySerializer(Serializer.INTEGER)
+                .valueSerializer(Serializer.STRING)
+                .createOrOpen();
+        urls = sessionDB.treeMap("urls")
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(Serializer.BYTE_ARRAY)
+                .createOrOpen();
+        sequence = sessionDB.atomicLong("urlSequence").createOrOpen();
+        hostIds = new HashMap<>();
+        hosts = new ArrayList<>();
+        for (int hostId = 0; hostId < hostPrefixes.size(); hostId++) {
+            final String hostPrefix = hostPrefixes.get(hostId);
+            hostIds.put(hostPrefix, hostId);
+            hosts.add(hostPrefix);
+        }
+    }
+
+    /**
+     * @param uriString the URL
+     * @return the length of the scheme and authority of the URL, zero if there is no authority
+     */
+    static int hostPrefixLength(final String uriString) {
+        final int schemeEnd = uriString.indexOf("://");
+        if (schemeEnd < 0)
+            return 0;
+        final int length = uriString.length();
+        for (int i = schemeEnd + 3; i < length; i++) {
+            final char c = uriString.charAt(i);
+            if (c == '/' || c == '?' || c == '#')
+                return i;
+        }
+        return length;
+    }
+
+    private int hostId(final String hostPrefix) {
+        final Integer hostId = hostIds.get(hostPrefix);
+        if (hostId != null)
+            return hostId;
+        final int newHostId = hosts.size();
+        hostPrefixes.put(newHostId, hostPrefix);
+        hostIds.put(hostPrefix, newHostId);
+        hosts.add(hostPrefix);
+        return newHostId;
+    }
+
+    /**
+     * Store an URL
+     *
+     * @param uriString the URL
+     * @return the new identifier of the URL
+     */
+    long add(final String uriString) {
+        final int prefixLength = hostPrefixLength(uriString);
+        final int hostId = hostId(uriString.substring(0, prefixLength));
+        final byte[] suffix = uriString.substring(prefixLength).getBytes(StandardCharsets.UTF_8);
+        int hostIdLength = 1;
+        for (int v = hostId >>> 7; v != 0; v >>>= 7)
+            hostIdLength++;
+        final byte[] bytes = new byte[hostIdLength + suffix.length];
+        // The host identifier as a variable-length integer, then the rest of the URL
+        int pos = 0;
+        int v = hostId;
+        while ((v & ~0x7F) != 0) {
+            bytes[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        bytes[pos++] = (byte) v;
+        System.arraycopy(suffix, 0, bytes, pos, suffix.length);
+        final long id = sequence.incrementAndGet();
+        urls.put(id, bytes);
+        return id;
+    }
+
+    /**
+     * @param id the identifier of the URL
+     * @return the URL, or null if the identifier is unknown
+     */
+    String get(final long id) {
+        final byte[] bytes = urls.get(id);
+        if (bytes == null)
+            return null;
+        int pos = 0;
+        int hostId = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos++];
+            hostId |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return hosts.get(hostId) + new String(bytes, pos, bytes.length - pos, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forget an URL, the host prefixes are kept
+     *
+     * @param id the identifier of the URL
+     */
+    void remove(final long id) {
+        urls.remove(id);
+    }
+
+    /**
+     * @return the number of stored URLs
+     */
+    int size() {
+        return urls.size();
+    }
+}
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.qwazr.crawler.common.CrawlDefinition;
+import com.qwazr.crawler.common.StorageProfile;
 import com.qwazr.crawler.common.WildcardFilter;
 import com.qwazr.utils.CollectionsUtils;
 import com.qwazr.utils.ObjectMappers;
@@ -126,12 +127,78 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
     @JsonProperty("time_out_sec")
     final public Integer timeOutSecs;
 
+    /**
+     * The upper bound of the adaptive wait between two requests on the same host
+     */
+    @JsonProperty("max_crawl_wait_ms")
+    final public Integer maxCrawlWaitMs;
+
+    /**
+     * The maximum number of retries of a URL after a transient failure (time out, connection reset, 429, 503)
+     */
+    @JsonProperty("max_retries")
+    final public Integer maxRetries;
+
+    /**
+     * The initial delay before retrying a URL, doubled at each attempt
+     */
+    @JsonProperty("retry_delay_ms")
+    final public Integer retryDelayMs;
+
+    /**
+     * The maximum size (in bytes) of a downloaded content.
+     * A larger declared content is not downloaded. A content of unknown size is truncated.
+     */
+    @JsonProperty("max_content_length")
+    final public Long maxContentLength;
+
+    /**
+     * Read the sitemaps given by the robots.txt file or the /sitemap.xml file of the entry host
+     */
+    @JsonProperty("sitemaps_enabled")
+    final public Boolean sitemapsEnabled;
+
+    /**
+     * How the proxy of each request is chosen when several proxies are defined (default: round_robin)
+     */
+    @JsonProperty("proxy_selection")
+    final public ProxyDefinition.Selection proxySelection;
+
+    /**
+     * The addresses of the nodes sharing the crawl (distributed mode). Each host is crawled by one node
+     */
+    @JsonProperty("cluster_nodes")
+    final public List<String> clusterNodes;
+
+    /**
+     * In distributed mode, the time (in milliseconds) a node waits for new URLs from the other nodes before ending
+     */
+    @JsonProperty("cluster_idle_ms")
+    final public Integer clusterIdleMs;
+
+    /**
+     * The number of URLs fetched at the same time by the session (default is 1)
+     */
+    @JsonProperty("fetch_concurrency")
+    final public Integer fetchConcurrency;
+
+    /**
+     * The directory of a WARC archive. When set, the responses are read from the archive instead of the network.
+     * The archive does not contain the robots.txt files, the robots_txt_enabled option is ignored while replaying.
+     */
+    @JsonProperty("replay_archive")
+    final public String replayArchive;
+
     @JsonCreator
     protected WebCrawlDefinition(final @JsonProperty("max_depth") @JsonAlias("maxDepth") Integer maxDepth,
                                  final @JsonProperty("filters") List<Filter> filters,
                                  final @JsonProperty("filter_policy") @JsonAlias("filterPolicy") WildcardFilter.Status filterPolicy,
                                  final @JsonProperty("crawl_wait_ms") @JsonAlias("crawlWaitMs") Integer crawlWaitMs,
+                                 final @JsonProperty("priority") Integer priority,
+                                 final @JsonProperty("storage_profile") @JsonAlias("storageProfile") StorageProfile storageProfile,
+                                 final @JsonProperty("max_bytes_per_sec") @JsonAlias("maxBytesPerSec") Long maxBytesPerSec,
                                  final @JsonProperty("crawl_collector_factory") @JsonAlias("crawlCollectorFactory") String crawlCollectorFactoryClass,
+                                 final @JsonProperty("crawl_collector_factories") @JsonAlias("crawlCollectorFactories") List<String> crawlCollectorFactoryClasses,
                                  final @JsonProperty("variables") List<Variable> variables,
                                  final @JsonProperty("entry_url") @JsonAlias("entryUrl") String entryUrl,
                                  final @JsonProperty("entry_request") @JsonAlias("entryRequest") WebRequestDefinition entryRequest,
@@ -146,8 +213,19 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
                                  final @JsonProperty("robots_txt_enabled") @JsonAlias("robotsTxtEnabled") Boolean robotsTxtEnabled,
                                  final @JsonProperty("user_agent") @JsonAlias("userAgent") String userAgent,
                                  final @JsonProperty("disable_ssl_check") @JsonAlias("disableSslCheck") Boolean disableSslCheck,
-                                 final @JsonProperty("time_out_sec") @JsonAlias("timeOutSec") Integer timeOutSecs) {
-        super(WebCrawlDefinition.class, crawlCollectorFactoryClass, variables, filters, filterPolicy, maxDepth, crawlWaitMs);
+                                 final @JsonProperty("time_out_sec") @JsonAlias("timeOutSec") Integer timeOutSecs,
+                                 final @JsonProperty("max_crawl_wait_ms") @JsonAlias("maxCrawlWaitMs") Integer maxCrawlWaitMs,
+                                 final @JsonProperty("max_retries") @JsonAlias("maxRetries") Integer maxRetries,
+                                 final @JsonProperty("retry_delay_ms") @JsonAlias("retryDelayMs") Integer retryDelayMs,
+                                 final @JsonProperty("max_content_length") @JsonAlias("maxContentLength") Long maxContentLength,
+                                 final @JsonProperty("sitemaps_enabled") @JsonAlias("sitemapsEnabled") Boolean sitemapsEnabled,
+                                 final @JsonProperty("proxy_selection") @JsonAlias("proxySelection") ProxyDefinition.Selection proxySelection,
+                                 final @JsonProperty("cluster_nodes") @JsonAlias("clusterNodes") List<String> clusterNodes,
+                                 final @JsonProperty("cluster_idle_ms") @JsonAlias("clusterIdleMs") Integer clusterIdleMs,
+                                 final @JsonProperty("fetch_concurrency") @JsonAlias("fetchConcurrency") Integer fetchConcurrency,
+                                 final @JsonProperty("replay_archive") @JsonAlias("replayArchive") String replayArchive) {
+        super(WebCrawlDefinition.class, crawlCollectorFactoryClass, crawlCollectorFactoryClasses, variables, filters, filterPolicy, maxDepth, crawlWaitMs, priority,
+                storageProfile, maxBytesPerSec);
         this.entryUrl = entryUrl;
         this.entryRequest = entryRequest;
         this.urls = urls;
@@ -162,6 +240,16 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
         this.proxies = proxies;
         this.disableSslCheck = disableSslCheck;
         this.timeOutSecs = timeOutSecs;
+        this.maxCrawlWaitMs = maxCrawlWaitMs;
+        this.maxRetries = maxRetries;
+        this.retryDelayMs = retryDelayMs;
+        this.maxContentLength = maxContentLength;
+        this.sitemapsEnabled = sitemapsEnabled;
+        this.proxySelection = proxySelection;
+        this.clusterNodes = clusterNodes;
+        this.clusterIdleMs = clusterIdleMs;
+        this.fetchConcurrency = fetchConcurrency;
+        this.replayArchive = replayArchive;
     }
 
     protected WebCrawlDefinition(Builder builder) {
@@ -186,6 +274,16 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
         proxies = builder.proxies == null ? null : List.copyOf(new ArrayList<>(builder.proxies));
         disableSslCheck = builder.disableSslCheck;
         timeOutSecs = builder.timeOutSecs;
+        maxCrawlWaitMs = builder.maxCrawlWaitMs;
+        maxRetries = builder.maxRetries;
+        retryDelayMs = builder.retryDelayMs;
+        maxContentLength = builder.maxContentLength;
+        sitemapsEnabled = builder.sitemapsEnabled;
+        proxySelection = builder.proxySelection;
+        clusterNodes = builder.clusterNodes == null ? null : List.copyOf(builder.clusterNodes);
+        clusterIdleMs = builder.clusterIdleMs;
+        fetchConcurrency = builder.fetchConcurrency;
+        replayArchive = builder.replayArchive;
     }
 
     @JsonIgnore
@@ -250,6 +348,56 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
         return timeOutSecs;
     }
 
+    @JsonIgnore
+    public Integer getMaxCrawlWaitMs() {
+        return maxCrawlWaitMs;
+    }
+
+    @JsonIgnore
+    public Integer getMaxRetries() {
+        return maxRetries;
+    }
+
+    @JsonIgnore
+    public Integer getRetryDelayMs() {
+        return retryDelayMs;
+    }
+
+    @JsonIgnore
+    public Long getMaxContentLength() {
+        return maxContentLength;
+    }
+
+    @JsonIgnore
+    public Boolean getSitemapsEnabled() {
+        return sitemapsEnabled;
+    }
+
+    @JsonIgnore
+    public ProxyDefinition.Selection getProxySelection() {
+        return proxySelection;
+    }
+
+    @JsonIgnore
+    public List<String> getClusterNodes() {
+        return clusterNodes;
+    }
+
+    @JsonIgnore
+    public Integer getClusterIdleMs() {
+        return clusterIdleMs;
+    }
+
+    @JsonIgnore
+    public Integer getFetchConcurrency() {
+        return fetchConcurrency;
+    }
+
+    @JsonIgnore
+    public String getReplayArchive() {
+        return replayArchive;
+    }
+
     @Override
     protected int computeHashCode() {
         return Objects.hash(entryUrl, entryRequest, maxUrlNumber, super.computeHashCode());
@@ -271,7 +419,17 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
                 CollectionsUtils.equals(cookies, w.cookies) &&
                 CollectionsUtils.equals(proxies, w.proxies) &&
                 Objects.equals(disableSslCheck, w.disableSslCheck) &&
-                Objects.equals(timeOutSecs, w.timeOutSecs);
+                Objects.equals(timeOutSecs, w.timeOutSecs) &&
+                Objects.equals(maxCrawlWaitMs, w.maxCrawlWaitMs) &&
+                Objects.equals(maxRetries, w.maxRetries) &&
+                Objects.equals(retryDelayMs, w.retryDelayMs) &&
+                Objects.equals(maxContentLength, w.maxContentLength) &&
+                Objects.equals(sitemapsEnabled, w.sitemapsEnabled) &&
+                Objects.equals(proxySelection, w.proxySelection) &&
+                CollectionsUtils.equals(clusterNodes, w.clusterNodes) &&
+                Objects.equals(clusterIdleMs, w.clusterIdleMs) &&
+                Objects.equals(fetchConcurrency, w.fetchConcurrency) &&
+                Objects.equals(replayArchive, w.replayArchive);
     }
 
     public static WebCrawlDefinition newInstance(final String json) throws IOException {
@@ -302,6 +460,16 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
         private String userAgent;
         private Boolean disableSslCheck;
         private Integer timeOutSecs;
+        private Integer maxCrawlWaitMs;
+        private Integer maxRetries;
+        private Integer retryDelayMs;
+        private Long maxContentLength;
+        private Boolean sitemapsEnabled;
+        private ProxyDefinition.Selection proxySelection;
+        private List<String> clusterNodes;
+        private Integer clusterIdleMs;
+        private Integer fetchConcurrency;
+        private String replayArchive;
 
         protected Builder() {
             super();
@@ -328,6 +496,16 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
             this.crawlWaitMs = src.crawlWaitMs;
             this.disableSslCheck = src.disableSslCheck;
             this.timeOutSecs = src.timeOutSecs;
+            this.maxCrawlWaitMs = src.maxCrawlWaitMs;
+            this.maxRetries = src.maxRetries;
+            this.retryDelayMs = src.retryDelayMs;
+            this.maxContentLength = src.maxContentLength;
+            this.sitemapsEnabled = src.sitemapsEnabled;
+            this.proxySelection = src.proxySelection;
+            this.clusterNodes = src.clusterNodes == null ? null : new ArrayList<>(src.clusterNodes);
+            this.clusterIdleMs = src.clusterIdleMs;
+            this.fetchConcurrency = src.fetchConcurrency;
+            this.replayArchive = src.replayArchive;
         }
 
         public Builder setUrls(final LinkedHashMap<String, Integer> urls) {
@@ -429,6 +607,58 @@ public class WebCrawlDefinition extends CrawlDefinition<WebCrawlDefinition> {
             return this;
         }
 
+        public Builder setMaxCrawlWaitMs(final Integer maxCrawlWaitMs) {
+            this.maxCrawlWaitMs = maxCrawlWaitMs;
+            return this;
+        }
+
+        public Builder setMaxRetries(final Integer maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder setRetryDelayMs(final Integer retryDelayMs) {
+            this.retryDelayMs = retryDelayMs;
+            return this;
+        }
+
+        public Builder setMaxContentLength(final Long maxContentLength) {
+            this.maxContentLength = maxContentLength;
+            return this;
+        }
+
+        public Builder setSitemapsEnabled(final Boolean sitemapsEnabled) {
+            this.sitemapsEnabled = sitemapsEnabled;
+            return this;
+        }
+
+        public Builder setProxySelection(final ProxyDefinition.Selection proxySelection) {
+            this.proxySelection = proxySelection;
+            return this;
+        }
+
+        public Builder addClusterNode(final String clusterNode) {
+            if (clusterNodes == null)
+                clusterNodes = new ArrayList<>();
+            clusterNodes.add(clusterNode);
+            return this;
+        }
+
+        public Builder setClusterIdleMs(final Integer clusterIdleMs) {
+            this.clusterIdleMs = clusterIdleMs;
+            return this;
+        }
+
+        public Builder setFetchConcurrency(final Integer fetchConcurrency) {
+            this.fetchConcurrency = fetchConcurrency;
+            return this;
+        }
+
+        public Builder setReplayArchive(final String replayArchive) {
+            this.replayArchive = replayArchive;
+            return this;
+        }
+
         @Override
         protected Builder me() {
             return this;
@@ -85,6 +85,9 @@ final class WebCrawlItemImpl extends CrawlItemBase<URI> implements WebCrawlItem
         private LinkedHashMap<URI, AtomicInteger> links;
         private LinkedHashSet<URI> filteredLinks;
         private DriverInterface.Body body;
+        private boolean transientError;
+        private Long retryAfterMs;
+        private boolean retryScheduled;
 
         protected Builder(URI uri, int depth) {
             super(uri, depth);
@@ -134,6 +137,40 @@ final class WebCrawlItemImpl extends CrawlItemBase<URI> implements WebCrawlItem
             return this;
         }
 
+        /**
+         * Flag the failure as transient: the URL may be crawled again later.
+         *
+         * @param retryAfterMs the delay requested by the server (may be null)
+         * @return the current builder
+         */
+        Builder transientError(final Long retryAfterMs) {
+            this.transientError = true;
+            this.retryAfterMs = retryAfterMs;
+            return this;
+        }
+
+        boolean isTransientError() {
+            return transientError;
+        }
+
+        Long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+
+        /**
+         * Flag the URL as scheduled for a new attempt: the item must not be collected
+         *
+         * @return the current builder
+         */
+        Builder retryScheduled() {
+            this.retryScheduled = true;
+            return this;
+        }
+
+        boolean isRetryScheduled() {
+            return retryScheduled;
+        }
+
         WebCrawlItem build() {
             return new WebCrawlItemImpl(this);
         }
@@ -16,110 +16,427 @@
 package com.qwazr.crawler.web;
 
 import com.qwazr.crawler.common.CrawlCollector;
+import com.qwazr.crawler.common.CrawlPhase;
+import com.qwazr.crawler.common.CrawlResult;
 import com.qwazr.crawler.common.CrawlSessionBase;
+import com.qwazr.crawler.common.StorageProfile;
+import com.qwazr.crawler.web.driver.CachingDns;
+import com.qwazr.crawler.web.sitemap.SitemapUrl;
+import com.qwazr.utils.StringUtils;
 import java.net.URI;
-import java.util.Iterator;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.NavigableSet;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.lang3.tuple.Pair;
-import org.mapdb.HTreeMap;
-import org.mapdb.Serializer;
-import org.mapdb.serializer.SerializerArrayTuple;
 
 public class WebCrawlSession extends CrawlSessionBase
         <WebCrawlSession, WebCrawlThread, WebCrawlerManager, WebCrawlDefinition, WebCrawlSessionStatus, WebCrawlItem> {
 
-    private final HTreeMap.KeySet<String> crawledUrls;
-    private final HTreeMap.KeySet<String> toCrawlUrls;
-    private final NavigableSet<Object[]> nextToCrawl;
+    private final WebFrontier frontier;
 
-    private final Object urlDatabaseLock;
+    private final ReentrantLock urlDatabaseLock;
+
+    final static int DEFAULT_MAX_RETRIES = 3;
+    final static int DEFAULT_RETRY_DELAY_MS = 1000;
+    final static long MAX_RETRY_DELAY_MS = 300_000;
+
+    private final int maxRetries;
+    private final long retryDelayMs;
+
+    private final WebCrawlerManager webCrawlerManager;
+    private final HostThrottle hostThrottle;
+    private final ClusterPartition partition;
+    private final boolean remotePartition;
 
     WebCrawlSession(final String sessionName,
                     final WebCrawlerManager webCrawlerManager,
                     final WebCrawlDefinition crawlDefinition,
                     final WebCrawlSessionStatus.Builder crawlStatusBuilder,
-                    final CrawlCollector<WebCrawlItem> webCrawlCollector) {
+                    final CrawlCollector<WebCrawlItem> webCrawlCollector,
+                    final boolean remotePartition) {
         super(sessionName, webCrawlerManager, crawlDefinition, crawlStatusBuilder, webCrawlCollector);
-        crawledUrls = sessionDB.hashSet("crawled")
-                .serializer(Serializer.STRING)
-                .createOrOpen();
-        toCrawlUrls = sessionDB.hashSet("tocrawl")
-                .serializer(Serializer.STRING)
-                .createOrOpen();
-        nextToCrawl = sessionDB.treeSet("nextToCrawl")
-                .serializer(new SerializerArrayTuple(Serializer.INTEGER, Serializer.STRING))
-                .createOrOpen();
-        urlDatabaseLock = new Object();
+        // The temporary sessions keep their frontier on the heap, the database only holds the results
+        frontier = StorageProfile.of(crawlDefinition.storageProfile) == StorageProfile.temporary ?
+                new MemoryWebFrontier() :
+                new MapDbWebFrontier(sessionDB);
+        urlDatabaseLock = new ReentrantLock();
+        retryDelayMs = crawlDefinition.retryDelayMs == null ? DEFAULT_RETRY_DELAY_MS : crawlDefinition.retryDelayMs;
+        this.webCrawlerManager = webCrawlerManager;
+        if (StringUtils.isBlank(crawlDefinition.replayArchive)) {
+            maxRetries = crawlDefinition.maxRetries == null ? DEFAULT_MAX_RETRIES : crawlDefinition.maxRetries;
+            hostThrottle = new HostThrottle(crawlDefinition.crawlWaitMs, crawlDefinition.maxCrawlWaitMs);
+        } else {
+            // A replayed archive answers at disk speed and always gives the same response: no wait, no retry
+            maxRetries = 0;
+            hostThrottle = new HostThrottle(0, 0);
+        }
+        this.remotePartition = remotePartition;
+        partition = ClusterPartition.isDistributed(crawlDefinition) ?
+                new ClusterPartition(sessionName, webCrawlerManager.getMyAddress(), crawlDefinition.clusterNodes,
+                        webCrawlerManager::getNodeService, crawlDefinition.clusterIdleMs) : null;
+    }
+
+    @Override
+    protected CrawlResult.Builder newResult(final WebCrawlItem crawlItem) {
+        final URI redirect = crawlItem.getRedirect();
+        return super.newResult(crawlItem)
+                .statusCode(crawlItem.getStatusCode())
+                .contentType(crawlItem.getContentType())
+                .redirect(redirect == null ? null : redirect.toASCIIString());
+    }
+
+    /**
+     * The frontier and the retries are kept in the session database, an interrupted run is resumed by the next one.
+     */
+    @Override
+    protected boolean supportsResume() {
+        return true;
+    }
+
+    /**
+     * @return true if the run was aborted while some URLs were still waiting, the limit of URLs was not reached
+     */
+    @Override
+    protected boolean hasPendingWork() {
+        final Integer maxUrlNumber = getCrawlDefinition().maxUrlNumber;
+        if (!isAborting() || (maxUrlNumber != null && getCrawlStatus().crawled >= maxUrlNumber))
+            return false;
+        urlDatabaseLock.lock();
+        try {
+            return !frontier.isEmpty();
+        } finally {
+            urlDatabaseLock.unlock();
+        }
+    }
+
+    HostThrottle getHostThrottle() {
+        return hostThrottle;
+    }
+
+    /**
+     * @return the partition of a distributed session, or null
+     */
+    ClusterPartition getPartition() {
+        return partition;
+    }
+
+    /**
+     * @return true if the session has been started by another node of a distributed session
+     */
+    boolean isRemotePartition() {
+        return remotePartition;
+    }
+
+    /**
+     * Forward the URL to the node owning its host
+     *
+     * @return true if the URL has been forwarded, false if the URL belongs to the local node
+     */
+    private boolean forwarded(final URI uri, final Integer depth) {
+        if (partition == null)
+            return false;
+        final String owner = partition.remoteOwner(uri.getHost());
+        if (owner == null)
+            return false;
+        partition.forward(owner, uri.toASCIIString(), depth);
+        return true;
+    }
+
+    private boolean forwarded(final String uriString, final Integer depth) {
+        if (partition == null)
+            return false;
+        try {
+            return forwarded(new URI(uriString), depth);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Send the URLs buffered for the other nodes
+     *
+     * @param force true to send every buffered URL, false to send only the full or expired batches
+     */
+    void flushPartition(final boolean force) {
+        if (partition != null)
+            partition.flush(force, this::addLocalUrls);
+    }
+
+    /**
+     * Add the URLs forwarded by another node of a distributed session
+     *
+     * @param links the URLs with their depth
+     */
+    void receiveUrls(final Map<String, Integer> links) {
+        if (partition != null)
+            partition.active();
+        addLocalUrls(links);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        webCrawlerManager.setHostStatistics(getName(), hostThrottle.getSnapshots());
     }
 
     boolean isCrawled(final String uriString) {
-        synchronized (urlDatabaseLock) {
-            return crawledUrls.contains(uriString);
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                return frontier.isCrawled(uriString);
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
         }
     }
 
     Pair<String, Integer> nextUrlToCrawl() {
-        synchronized (urlDatabaseLock) {
-            final Iterator<Object[]> iterator = nextToCrawl.iterator();
-            if (!iterator.hasNext())
-                return null;
-            final Object[] item = iterator.next();
-            return Pair.of((String) item[1], (Integer) item[0]);
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                if (frontier.promoteRetries(System.currentTimeMillis()))
+                    commit();
+                // The URLs given by the sitemaps come first, following their rank
+                final Pair<String, Integer> item = frontier.next();
+                if (item == null)
+                    return null;
+                if (partition != null)
+                    partition.active();
+                return item;
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
+        }
+    }
+
+    /**
+     * Schedule a new attempt for a URL which failed with a transient error.
+     * The delay doubles at each attempt, a longer Retry-After delay given by the server is honored.
+     *
+     * @param uriString    the URL
+     * @param depth        the depth of the URL
+     * @param retryAfterMs the delay requested by the server (may be null)
+     * @return the delay before the next attempt, or null if the maximum number of retries is reached
+     */
+    Long retryLater(final String uriString, final Integer depth, final Long retryAfterMs) {
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                final int attempt = frontier.getAttempts(uriString) + 1;
+                if (attempt > maxRetries)
+                    return null;
+                long delayMs = Math.min(MAX_RETRY_DELAY_MS, retryDelayMs << Math.min(attempt - 1, 20));
+                if (retryAfterMs != null)
+                    delayMs = Math.max(delayMs, Math.min(MAX_RETRY_DELAY_MS, retryAfterMs));
+                frontier.retry(uriString, depth, attempt, System.currentTimeMillis() + delayMs);
+                commit();
+                return delayMs;
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
+        }
+    }
+
+    /**
+     * @return the time to wait before the next retry is due, or -1 if there is no retry pending
+     */
+    long nextRetryDelay() {
+        urlDatabaseLock.lock();
+        try {
+            final long firstRetryTime = frontier.firstRetryTime();
+            if (firstRetryTime < 0)
+                return -1;
+            return Math.max(0, firstRetryTime - System.currentTimeMillis());
+        } finally {
+            urlDatabaseLock.unlock();
         }
     }
 
     private void addUriStringToCrawl(final String uriString, final Integer depth, final AtomicBoolean needCommit) {
-        if (crawledUrls.contains(uriString) || toCrawlUrls.contains(uriString))
-            return;
-        toCrawlUrls.add(uriString);
-        nextToCrawl.add(new Object[]{depth, uriString});
-        needCommit.set(true);
+        if (frontier.add(uriString, depth))
+            needCommit.set(true);
     }
 
     void addUrltoCrawl(final URI uri, final Integer depth) {
         if (uri == null)
             return;
-        synchronized (urlDatabaseLock) {
-            final AtomicBoolean needCommit = new AtomicBoolean(false);
-            addUriStringToCrawl(uri.toASCIIString(), depth, needCommit);
-            if (needCommit.get())
-                sessionDB.commit();
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                if (forwarded(uri, depth))
+                    return;
+                final AtomicBoolean needCommit = new AtomicBoolean(false);
+                addUriStringToCrawl(uri.toASCIIString(), depth, needCommit);
+                if (needCommit.get())
+                    commit();
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
         }
+        webCrawlerManager.getDns().prefetch(uri.getHost());
+        flushPartition(false);
     }
 
 
     void addUrlsToCrawl(final Map<String, Integer> links) {
         if (links == null || links.isEmpty())
             return;
-        synchronized (urlDatabaseLock) {
-            final AtomicBoolean needCommit = new AtomicBoolean(false);
-            links.forEach((uri, depth) -> addUriStringToCrawl(uri, depth, needCommit));
-            if (needCommit.get())
-                sessionDB.commit();
+        if (partition == null) {
+            addLocalUrls(links);
+            return;
+        }
+        final Map<String, Integer> localLinks = new LinkedHashMap<>();
+        links.forEach((uri, depth) -> {
+            if (!forwarded(uri, depth))
+                localLinks.put(uri, depth);
+        });
+        addLocalUrls(localLinks);
+        flushPartition(false);
+    }
+
+    private void addLocalUrls(final Map<String, Integer> links) {
+        if (links == null || links.isEmpty())
+            return;
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                final AtomicBoolean needCommit = new AtomicBoolean(false);
+                links.forEach((uri, depth) -> addUriStringToCrawl(uri, depth, needCommit));
+                if (needCommit.get())
+                    commit();
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
         }
     }
 
     void addUrlsToCrawl(final Set<URI> links, final Integer depth) {
         if (links == null || links.isEmpty())
             return;
-        synchronized (urlDatabaseLock) {
-            final AtomicBoolean needCommit = new AtomicBoolean(false);
-            links.forEach(uri -> addUriStringToCrawl(uri.toASCIIString(), depth, needCommit));
-            if (needCommit.get())
-                sessionDB.commit();
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                final AtomicBoolean needCommit = new AtomicBoolean(false);
+                links.forEach(uri -> {
+                    if (!forwarded(uri, depth))
+                        addUriStringToCrawl(uri.toASCIIString(), depth, needCommit);
+                });
+                if (needCommit.get())
+                    commit();
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
+        }
+        prefetchHosts(links);
+        flushPartition(false);
+    }
+
+    /**
+     * Resolve in the background the hosts entering the frontier
+     */
+    private void prefetchHosts(final Set<URI> links) {
+        final CachingDns dns = webCrawlerManager.getDns();
+        String previousHost = null;
+        for (final URI uri : links) {
+            final String host = uri.getHost();
+            if (host != null && !host.equals(previousHost))
+                dns.prefetch(host);
+            previousHost = host;
+        }
+    }
+
+    /**
+     * Add a batch of URLs read from a sitemap. The URLs are crawled following their rank.
+     *
+     * @param urls  the sitemap entries
+     * @param depth the depth given to the URLs
+     * @return the number of new URLs
+     */
+    int addSitemapUrls(final Collection<SitemapUrl> urls, final Integer depth) {
+        if (urls == null || urls.isEmpty())
+            return 0;
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                final long now = System.currentTimeMillis();
+                int count = 0;
+                for (final SitemapUrl url : urls) {
+                    if (forwarded(url.loc, depth))
+                        continue;
+                    if (frontier.addSitemap(url.loc, url.getRank(now), depth))
+                        count++;
+                }
+                if (count > 0)
+                    commit();
+                return count;
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
+        }
+    }
+
+    /**
+     * Take an URL out of the frontier before it is given to a fetch task,
+     * so that the URL is not given twice while it is being fetched.
+     *
+     * @param uriString the URL
+     * @param depth     the depth of the URL
+     * @return false if the URL has already been crawled
+     */
+    boolean claim(final String uriString, final Integer depth) {
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                final boolean claimed = frontier.setCrawled(uriString, depth);
+                commit();
+                return claimed;
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
         }
     }
 
     void setCrawled(final String uriString, final Integer depth) {
         setCurrentCrawl(uriString, depth);
-        synchronized (urlDatabaseLock) {
-            toCrawlUrls.remove(uriString);
-            crawledUrls.add(uriString);
-            nextToCrawl.remove(new Object[]{depth, uriString});
-            sessionDB.commit();
+        final long start = System.nanoTime();
+        try {
+            urlDatabaseLock.lock();
+            try {
+                frontier.setCrawled(uriString, depth);
+                commit();
+            } finally {
+                urlDatabaseLock.unlock();
+            }
+        } finally {
+            timers.recordSince(CrawlPhase.frontier, start);
         }
     }
 }
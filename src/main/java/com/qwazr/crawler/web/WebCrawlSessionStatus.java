@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.qwazr.crawler.common.CrawlSessionStatus;
+import java.util.Collection;
 
 @JsonInclude(JsonInclude.Include.NON_EMPTY)
 @JsonAutoDetect(setterVisibility = JsonAutoDetect.Visibility.NONE,
@@ -42,16 +43,65 @@ public class WebCrawlSessionStatus extends CrawlSessionStatus<WebCrawlSessionSta
                           final @JsonProperty("current_crawl") String currentCrawl,
                           final @JsonProperty("start_time") Long startTime,
                           final @JsonProperty("end_time") Long endTime,
-                          final @JsonProperty("current_depth") Integer currentDepth) {
+                          final @JsonProperty("current_depth") Integer currentDepth,
+                          final @JsonProperty("queue_position") Integer queuePosition) {
         super(WebCrawlSessionStatus.class, nodeAddress, running, aborting, abortingReason,
                 crawled, ignored, redirect, error, lastError, currentCrawl,
-                startTime, endTime, currentDepth);
+                startTime, endTime, currentDepth, queuePosition);
     }
 
     private WebCrawlSessionStatus(Builder builder) {
         super(WebCrawlSessionStatus.class, builder);
     }
 
+    /**
+     * Aggregate the statuses of the nodes sharing a distributed session
+     *
+     * @param nodeAddress the address of the aggregating node
+     * @param statuses    the statuses of the nodes
+     * @return the aggregated status
+     */
+    static WebCrawlSessionStatus merge(final String nodeAddress, final Collection<WebCrawlSessionStatus> statuses) {
+        boolean running = false;
+        boolean aborting = false;
+        String abortingReason = null;
+        int crawled = 0, rejected = 0, redirect = 0, error = 0;
+        String lastError = null;
+        String currentCrawl = null;
+        Integer currentDepth = null;
+        Long startTime = null;
+        Long endTime = null;
+        Integer queuePosition = null;
+        for (final WebCrawlSessionStatus status : statuses) {
+            if (status == null)
+                continue;
+            running |= Boolean.TRUE.equals(status.running);
+            if (Boolean.TRUE.equals(status.aborting)) {
+                aborting = true;
+                if (abortingReason == null)
+                    abortingReason = status.abortingReason;
+            }
+            crawled += status.crawled;
+            rejected += status.rejected;
+            redirect += status.redirect;
+            error += status.error;
+            if (lastError == null)
+                lastError = status.lastError;
+            if (currentCrawl == null && status.currentCrawl != null) {
+                currentCrawl = status.currentCrawl;
+                currentDepth = status.currentDepth;
+            }
+            if (status.startTime != null && (startTime == null || status.startTime < startTime))
+                startTime = status.startTime;
+            if (status.endTime != null && (endTime == null || status.endTime > endTime))
+                endTime = status.endTime;
+            if (status.queuePosition != null && (queuePosition == null || status.queuePosition < queuePosition))
+                queuePosition = status.queuePosition;
+        }
+        return new WebCrawlSessionStatus(nodeAddress, running, aborting, abortingReason, crawled, rejected, redirect,
+                error, lastError, currentCrawl, startTime, running ? null : endTime, currentDepth, queuePosition);
+    }
+
     public static Builder of(String nodeAddress) {
         return new Builder(nodeAddress);
     }
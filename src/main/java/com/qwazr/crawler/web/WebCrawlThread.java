@@ -15,28 +15,42 @@
  */
 package com.qwazr.crawler.web;
 
+import com.google.common.net.HttpHeaders;
+import com.qwazr.crawler.common.CrawlPhase;
 import com.qwazr.crawler.common.CrawlThread;
 import com.qwazr.crawler.common.Rejected;
 import com.qwazr.crawler.web.driver.DriverInterface;
 import com.qwazr.crawler.web.robotstxt.RobotsTxt;
+import com.qwazr.crawler.web.sitemap.SitemapParser;
+import com.qwazr.crawler.web.sitemap.SitemapUrl;
 import com.qwazr.server.ServerException;
 import com.qwazr.utils.LoggerUtils;
 import com.qwazr.utils.RegExpUtils;
 import com.qwazr.utils.StringUtils;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -51,16 +65,24 @@ public class WebCrawlThread extends CrawlThread
 
     private static final Logger LOGGER = LoggerUtils.getLogger(WebCrawlThread.class);
 
+    final static int SITEMAP_BATCH_SIZE = 1000;
+    final static int MAX_SITEMAPS = 10000;
+    final static int CLUSTER_IDLE_PAUSE_MS = 500;
+
     private final WebCrawlDefinition crawlDefinition;
 
     private final List<Matcher> parametersMatcherList;
     private final List<Matcher> pathCleanerMatcherList;
+    // The matchers are not thread-safe, and may be shared by the concurrent fetch tasks
+    private final ReentrantLock matchersLock = new ReentrantLock();
 
     private final Map<URI, RobotsTxt> robotsTxtMap;
     private final String userAgent;
 
     private final Set<String> acceptedContentType;
 
+    private final int fetchConcurrency;
+
     WebCrawlThread(final WebCrawlerManager webCrawlerManager,
                    final WebCrawlSession session,
                    final WebCrawlDefinition crawlDefinition) throws ServerException {
@@ -74,8 +96,10 @@ public class WebCrawlThread extends CrawlThread
         } catch (PatternSyntaxException e) {
             throw new ServerException(Status.NOT_ACCEPTABLE, e.getMessage());
         }
-        if (crawlDefinition.robotsTxtEnabled != null && crawlDefinition.robotsTxtEnabled)
-            robotsTxtMap = new HashMap<>();
+        // The robots.txt files are not archived: a replayed crawl does not check them
+        if (crawlDefinition.robotsTxtEnabled != null && crawlDefinition.robotsTxtEnabled
+                && StringUtils.isBlank(crawlDefinition.replayArchive))
+            robotsTxtMap = new ConcurrentHashMap<>();
         else
             robotsTxtMap = null;
 
@@ -86,6 +110,7 @@ public class WebCrawlThread extends CrawlThread
             acceptedContentType = null;
 
         userAgent = crawlDefinition.userAgent == null ? "QWAZR_BOT" : crawlDefinition.userAgent;
+        fetchConcurrency = crawlDefinition.fetchConcurrency == null ? 1 : Math.max(1, crawlDefinition.fetchConcurrency);
         final String u;
         try {
             u = crawlDefinition.entryUrl != null ? crawlDefinition.entryUrl : crawlDefinition.entryRequest.url;
@@ -104,15 +129,20 @@ public class WebCrawlThread extends CrawlThread
      * @param uri the URI to check
      * @return the transformed URI
      */
-    private URI transformLink(final URI uri) {
+    URI transformLink(final URI uri) {
         try {
             final UBuilder uriBuilder = new UBuilder(uri);
             if (crawlDefinition.removeFragments != null && crawlDefinition.removeFragments)
                 uriBuilder.removeFragment();
-            if (parametersMatcherList != null && !parametersMatcherList.isEmpty())
-                uriBuilder.removeMatchingParameters(parametersMatcherList);
-            if (pathCleanerMatcherList != null && !pathCleanerMatcherList.isEmpty())
-                uriBuilder.cleanPath(pathCleanerMatcherList);
+            matchersLock.lock();
+            try {
+                if (parametersMatcherList != null && !parametersMatcherList.isEmpty())
+                    uriBuilder.removeMatchingParameters(parametersMatcherList);
+                if (pathCleanerMatcherList != null && !pathCleanerMatcherList.isEmpty())
+                    uriBuilder.cleanPath(pathCleanerMatcherList);
+            } finally {
+                matchersLock.unlock();
+            }
             return uriBuilder.build();
         } catch (UnsupportedEncodingException e) {
             LOGGER.log(Level.WARNING, e, () -> "Cannot build the URI from " + uri.toString());
@@ -123,10 +153,28 @@ public class WebCrawlThread extends CrawlThread
     DriverInterface.Body executeHttp(final DriverInterface driver,
                                      final WebRequestDefinition request,
                                      final WebCrawlItemImpl.Builder builder) {
+        final String host = builder.item.getHost();
+        final long startTime = System.currentTimeMillis();
         try {
 
-            final DriverInterface.Body body = driver.body(request);
+            final DriverInterface.Body body;
+            try {
+                body = driver.body(request, this::checkHead);
+            } catch (IOException e) {
+                session.getHostThrottle().error(host, System.currentTimeMillis() - startTime);
+                if (isTransient(e))
+                    builder.transientError(null);
+                throw e;
+            }
+            final DriverInterface.Content content = body.getContent();
+            final Long length = content == null ? null : content.getContentLength();
+            final String retryAfter = body.getFirstHeader(HttpHeaders.RETRY_AFTER);
+            session.getHostThrottle().response(host, body.getResponseCode(), retryAfter,
+                    length == null ? 0 : length, System.currentTimeMillis() - startTime);
             builder.statusCode(body.getResponseCode());
+            builder.contentType(body.getContentType());
+            if (isTransient(body.getResponseCode()))
+                builder.transientError(HostThrottle.parseRetryAfter(retryAfter));
 
             final String redirectLocation = body.getRedirectLocation();
             if (!StringUtils.isBlank(redirectLocation)) {
@@ -144,6 +192,11 @@ public class WebCrawlThread extends CrawlThread
                 return null;
             }
 
+            if (isTooLarge(body.getContentLength())) {
+                builder.rejected(new Rejected(16, "Content too large"));
+                return null;
+            }
+
             return body;
         } catch (Exception e) {
             final String msg = "Error on " + builder.uriString + ": " + e.getMessage();
@@ -153,6 +206,47 @@ public class WebCrawlThread extends CrawlThread
         }
     }
 
+    private boolean isTooLarge(final Long contentLength) {
+        return crawlDefinition.maxContentLength != null && contentLength != null &&
+                contentLength > crawlDefinition.maxContentLength;
+    }
+
+    /**
+     * Decide, from the status and the headers, if the content should be downloaded.
+     * Redirections, errors, rejected content types and too large contents are not transferred.
+     *
+     * @param head the status and the headers of the response
+     * @return the action applied to the content
+     */
+    DriverInterface.ContentAction checkHead(final DriverInterface.Head head) {
+        if (!StringUtils.isBlank(head.getRedirectLocation()) || !head.isSuccessful())
+            return DriverInterface.ContentAction.CANCEL;
+        if (acceptedContentType != null && !acceptedContentType.contains(head.getContentType()))
+            return DriverInterface.ContentAction.CANCEL;
+        if (crawlDefinition.maxContentLength == null)
+            return DriverInterface.ContentAction.STREAM;
+        if (head.getContentLength() == null)
+            return DriverInterface.ContentAction.TRUNCATE;
+        return isTooLarge(head.getContentLength()) ?
+                DriverInterface.ContentAction.CANCEL :
+                DriverInterface.ContentAction.STREAM;
+    }
+
+    /**
+     * @return true if the request may succeed later: time out, connection refused or reset.
+     * The other interruptions (like the abort of the session while waiting for the bandwidth) are not retried.
+     */
+    static boolean isTransient(final IOException e) {
+        return e instanceof SocketTimeoutException || e instanceof SocketException;
+    }
+
+    /**
+     * @return true if the request may succeed later: too many requests or service unavailable
+     */
+    static boolean isTransient(final int responseCode) {
+        return responseCode == 429 || responseCode == 503;
+    }
+
     private DriverInterface.Body crawlBody(final DriverInterface driver,
                                            final WebRequestDefinition request,
                                            final WebCrawlItemImpl.Builder builder) throws InterruptedException {
@@ -160,8 +254,8 @@ public class WebCrawlThread extends CrawlThread
         if (session.isAborting())
             return null;
 
-        if (crawlDefinition.crawlWaitMs != null)
-            Thread.sleep(crawlDefinition.crawlWaitMs);
+        // Respect the adaptive politeness delay of the host
+        session.getHostThrottle().await(builder.item.getHost());
 
         final DriverInterface.Body body = executeHttp(driver, request, builder);
         if (body == null)
@@ -175,6 +269,7 @@ public class WebCrawlThread extends CrawlThread
 
         // Let's parse the HTML if any
         final Document document;
+        final long parseStart = System.nanoTime();
         try {
             document = body.getHtmlDocument();
             if (document == null)
@@ -182,12 +277,21 @@ public class WebCrawlThread extends CrawlThread
         } catch (IOException e) {
             builder.error("Error during body extraction: " + e.getMessage());
             return body;
+        } finally {
+            session.getTimers().recordSince(CrawlPhase.parse, parseStart);
         }
 
         final Element documentBody = document.body();
         if (documentBody == null)
             return body; // No body ? we are done
 
+        final long linkExtractionStart = System.nanoTime();
+        extractLinks(documentBody, builder);
+        session.getTimers().recordSince(CrawlPhase.link_extraction, linkExtractionStart);
+        return body;
+    }
+
+    void extractLinks(final Element documentBody, final WebCrawlItemImpl.Builder builder) {
         for (final Element element : documentBody.select("a[href]")) {
             final String href = element.attr("href");
             if (com.qwazr.utils.StringUtils.isBlank(href))
@@ -215,7 +319,6 @@ public class WebCrawlThread extends CrawlThread
                         builder.filteredLink(linkUri);
             }
         }
-        return body;
     }
 
     private RobotsTxt.Status checkRobotsTxt(final DriverInterface driver, final URI uri)
@@ -223,13 +326,106 @@ public class WebCrawlThread extends CrawlThread
         if (robotsTxtMap == null)
             return null;
 
+        return getRobotsTxt(driver, uri).getStatus(uri, userAgent);
+    }
+
+    private RobotsTxt getRobotsTxt(final DriverInterface driver, final URI uri)
+            throws IOException, URISyntaxException {
         final URI robotsTxtURI = RobotsTxt.getRobotsURI(uri);
+        if (robotsTxtMap == null)
+            return RobotsTxt.download(driver, robotsTxtURI);
         RobotsTxt robotsTxt = robotsTxtMap.get(robotsTxtURI);
         if (robotsTxt == null || robotsTxt.hasExpired(TimeUnit.HOURS, 6)) {
             robotsTxt = RobotsTxt.download(driver, robotsTxtURI);
             robotsTxtMap.put(robotsTxtURI, robotsTxt);
         }
-        return robotsTxt.getStatus(uri, userAgent);
+        return robotsTxt;
+    }
+
+    /**
+     * Read the sitemaps given by the robots.txt file, or the /sitemap.xml file, of the entry host.
+     * The sitemap indexes are followed. The URLs are streamed to the session by batches.
+     *
+     * @param driver   the driver used to download the sitemaps
+     * @param entryUri the entry URI
+     */
+    private void crawlSitemaps(final DriverInterface driver, final URI entryUri) throws InterruptedException {
+        if (crawlDefinition.sitemapsEnabled == null || !crawlDefinition.sitemapsEnabled)
+            return;
+        if (crawlDefinition.maxDepth != null && crawlDefinition.maxDepth < 1)
+            return;
+        final Deque<String> sitemaps = new ArrayDeque<>();
+        try {
+            sitemaps.addAll(getRobotsTxt(driver, entryUri).getSitemaps());
+        } catch (IOException | URISyntaxException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot read the sitemaps from robots.txt of " + entryUri);
+        }
+        if (sitemaps.isEmpty())
+            sitemaps.add(entryUri.resolve("/sitemap.xml").toASCIIString());
+        final Set<String> visited = new HashSet<>();
+        while (!sitemaps.isEmpty() && visited.size() < MAX_SITEMAPS && !session.isAborting()) {
+            final String sitemap = sitemaps.poll();
+            if (visited.add(sitemap))
+                crawlSitemap(driver, sitemap, sitemaps);
+        }
+    }
+
+    private void crawlSitemap(final DriverInterface driver, final String sitemap, final Deque<String> sitemaps)
+            throws InterruptedException {
+        final URI sitemapUri;
+        try {
+            sitemapUri = new URI(sitemap);
+        } catch (URISyntaxException e) {
+            LOGGER.log(Level.INFO, "URI syntax error: " + sitemap, e);
+            return;
+        }
+        session.getHostThrottle().await(sitemapUri.getHost());
+        final List<SitemapUrl> batch = new ArrayList<>(SITEMAP_BATCH_SIZE);
+        final SitemapParser parser = new SitemapParser(url -> {
+            final SitemapUrl sitemapUrl = checkSitemapUrl(url);
+            if (sitemapUrl == null)
+                return;
+            batch.add(sitemapUrl);
+            if (batch.size() >= SITEMAP_BATCH_SIZE) {
+                session.addSitemapUrls(batch, 1);
+                batch.clear();
+            }
+        }, sitemaps::add);
+        try (final DriverInterface.Body body = driver.body(WebRequestDefinition.of(sitemap).build())) {
+            final DriverInterface.Content content = body.getContent();
+            if (!body.isSuccessful() || content == null) {
+                LOGGER.info(() -> "No sitemap " + sitemap + " (" + body.getResponseCode() + ")");
+                return;
+            }
+            try (final InputStream input = content.getInput()) {
+                final int count = parser.parse(input);
+                LOGGER.info(() -> "Sitemap " + sitemap + " read: " + count + " entries");
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Error on the sitemap " + sitemap + ": " + e.getMessage());
+        } finally {
+            session.addSitemapUrls(batch, 1);
+        }
+    }
+
+    /**
+     * Apply the URL transformations and the inclusion/exclusion rules to a sitemap URL.
+     *
+     * @return the URL to crawl, or null if the URL is rejected
+     */
+    private SitemapUrl checkSitemapUrl(final SitemapUrl url) {
+        final URI uri;
+        try {
+            uri = transformLink(new URI(url.loc));
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (uri == null)
+            return null;
+        final String uriString = uri.toASCIIString();
+        if (checkWildcardFilters(uriString) != null)
+            return null;
+        return uriString.equals(url.loc) ? url : url.withLoc(uriString);
     }
 
     private void crawlRequest(final DriverInterface driver,
@@ -267,7 +463,16 @@ public class WebCrawlThread extends CrawlThread
         }
 
 
-        try (final DriverInterface.Body body = crawlBody(driver, request, builder)) {
+        // The body is released by the collector(s) once the item has been consumed
+        final DriverInterface.Body body = crawlBody(driver, request, builder);
+
+        // The body is closed here until its ownership is given to the collector(s)
+        boolean bodyHandedOver = false;
+        try {
+
+            // A transient failure will be retried later: the URL is neither counted nor collected
+            if (builder.isTransientError() && retryLater(builder))
+                return;
 
             // Handle url number limit
             final int crawledCount = session.incCrawledCount();
@@ -275,11 +480,15 @@ public class WebCrawlThread extends CrawlThread
                 abort("Max URL number reached: " + crawlDefinition.maxUrlNumber);
 
             // Give the hand to the "crawl" event scripts
-            session.collect(builder.build());
             collected.set(true);
+            bodyHandedOver = true;
+            session.collect(builder.build(), body);
         } catch (IOException e) {
             LOGGER.log(Level.WARNING, e, e::getMessage);
             return;
+        } finally {
+            if (!bodyHandedOver && body != null)
+                closeQuietly(body);
         }
 
         final WebCrawlItem afterCrawlCurrent = builder.build();
@@ -296,6 +505,25 @@ public class WebCrawlThread extends CrawlThread
             session.addUrlsToCrawl(links.keySet(), builder.depth + 1);
     }
 
+    private boolean retryLater(final WebCrawlItemImpl.Builder builder) {
+        final Long delayMs = session.retryLater(builder.uriString, builder.depth, builder.getRetryAfterMs());
+        if (delayMs == null) {
+            LOGGER.info(() -> "Too many attempts on " + builder.uriString);
+            return false;
+        }
+        LOGGER.info(() -> "Retry in " + delayMs + " ms: " + builder.uriString);
+        builder.retryScheduled();
+        return true;
+    }
+
+    private void closeQuietly(final DriverInterface.Body body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, e::getMessage);
+        }
+    }
+
     private void crawlOne(final DriverInterface driver,
                           final WebRequestDefinition webRequest,
                           final int depth) throws InterruptedException {
@@ -306,6 +534,8 @@ public class WebCrawlThread extends CrawlThread
             uri = new URI(webRequest.url);
         } catch (URISyntaxException e) {
             LOGGER.log(Level.INFO, "URI syntax error: " + webRequest.url, e);
+            // Take the URL out of the frontier, it would be given again
+            session.setCrawled(webRequest.url, depth);
             return;
         }
 
@@ -314,6 +544,12 @@ public class WebCrawlThread extends CrawlThread
         if (session.isCrawled(builder.uriString))
             return;
         session.setCrawled(builder.uriString, builder.depth);
+        crawlItem(driver, webRequest, builder);
+    }
+
+    private void crawlItem(final DriverInterface driver,
+                           final WebRequestDefinition webRequest,
+                           final WebCrawlItemImpl.Builder builder) throws InterruptedException {
         WebCrawlItem crawlItem = null;
         final AtomicBoolean collected = new AtomicBoolean(false);
         try {
@@ -325,6 +561,8 @@ public class WebCrawlThread extends CrawlThread
             LOGGER.log(Level.WARNING, e.getMessage(), e);
             builder.error(e);
         }
+        if (builder.isRetryScheduled())
+            return;
         if (crawlItem == null)
             crawlItem = builder.build();
         if (!collected.get())
@@ -339,20 +577,146 @@ public class WebCrawlThread extends CrawlThread
             session.incRedirectCount();
     }
 
+    /**
+     * @return true if the session is finished: nothing left to crawl, no pending retry,
+     * and no other node of a distributed session still sending URLs
+     */
+    private boolean waitForMoreUrls() {
+        // Nothing left but the pending retries ?
+        final long retryDelay = session.nextRetryDelay();
+        if (retryDelay >= 0) {
+            session.sleep((int) Math.min(retryDelay, 1000));
+            return false;
+        }
+        // In a distributed session, the other nodes may still send URLs
+        final ClusterPartition partition = session.getPartition();
+        if (partition == null)
+            return true;
+        session.flushPartition(true);
+        if (partition.isIdle())
+            return true;
+        session.sleep(CLUSTER_IDLE_PAUSE_MS);
+        return false;
+    }
+
     private void crawlRemaining(final DriverInterface driver) throws InterruptedException {
+        if (fetchConcurrency > 1) {
+            crawlRemainingConcurrently(driver);
+            return;
+        }
         while (!session.isAborting()) {
             final Pair<String, Integer> nextUrl = session.nextUrlToCrawl();
-            if (nextUrl == null)
-                break;
+            if (nextUrl == null) {
+                if (waitForMoreUrls())
+                    break;
+                continue;
+            }
             crawlOne(driver, WebRequestDefinition.of(nextUrl.getKey()).build(), nextUrl.getValue());
         }
     }
 
+    /**
+     * Fetch several URLs at the same time. The number of running fetch tasks is bounded by the fetch_concurrency
+     * of the definition, and by the share of the workers given to the session.
+     */
+    private void crawlRemainingConcurrently(final DriverInterface driver) throws InterruptedException {
+        final ExecutorService fetchExecutor = manager.getFetchExecutorService();
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition taskDone = lock.newCondition();
+        final AtomicInteger running = new AtomicInteger();
+        try {
+            while (!session.isAborting()) {
+                lock.lock();
+                try {
+                    while (running.get() >= Math.min(fetchConcurrency, manager.getWorkerShare()))
+                        taskDone.await(1, TimeUnit.SECONDS);
+                } finally {
+                    lock.unlock();
+                }
+                final Pair<String, Integer> nextUrl = session.nextUrlToCrawl();
+                if (nextUrl == null) {
+                    if (running.get() > 0) {
+                        // The running tasks may still find new URLs
+                        lock.lock();
+                        try {
+                            if (running.get() > 0)
+                                taskDone.await(1, TimeUnit.SECONDS);
+                        } finally {
+                            lock.unlock();
+                        }
+                        continue;
+                    }
+                    if (waitForMoreUrls())
+                        break;
+                    continue;
+                }
+                final String uriString = nextUrl.getKey();
+                final Integer depth = nextUrl.getValue();
+                if (!session.claim(uriString, depth))
+                    continue;
+                final URI uri;
+                try {
+                    uri = new URI(uriString);
+                } catch (URISyntaxException e) {
+                    LOGGER.log(Level.INFO, "URI syntax error: " + uriString, e);
+                    continue;
+                }
+                running.incrementAndGet();
+                try {
+                    fetchExecutor.execute(() -> {
+                        try {
+                            session.setCurrentCrawl(uriString, depth);
+                            crawlItem(driver, WebRequestDefinition.of(uriString).build(),
+                                    new WebCrawlItemImpl.Builder(uri, depth));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            abort(e.getMessage());
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.WARNING, e, () -> "Fetch task failed on " + uriString);
+                        } finally {
+                            lock.lock();
+                            try {
+                                running.decrementAndGet();
+                                taskDone.signalAll();
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    running.decrementAndGet();
+                    throw e;
+                }
+            }
+        } finally {
+            // The driver is closed by the caller: wait for the running tasks
+            lock.lock();
+            try {
+                while (running.get() > 0)
+                    taskDone.await(1, TimeUnit.SECONDS);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     private void crawlStart(final DriverInterface driver, WebRequestDefinition webRequest) throws
             InterruptedException {
         Objects.requireNonNull(webRequest.url, "WebRequest failure: The URL is missing");
         Objects.requireNonNull(webRequest.method, "WebRequest failure: The method is missing");
-        crawlOne(driver, webRequest, 0);
+        final URI entryUri;
+        try {
+            entryUri = new URI(webRequest.url);
+        } catch (URISyntaxException e) {
+            LOGGER.log(Level.INFO, "URI syntax error: " + webRequest.url, e);
+            return;
+        }
+        final ClusterPartition partition = session.getPartition();
+        if (partition != null && partition.remoteOwner(entryUri.getHost()) != null)
+            session.addUrltoCrawl(entryUri, 0); // The entry URL is crawled by the node owning its host
+        else
+            crawlOne(driver, webRequest, 0);
+        crawlSitemaps(driver, entryUri);
         crawlRemaining(driver);
     }
 
@@ -363,15 +727,26 @@ public class WebCrawlThread extends CrawlThread
     }
 
     protected void runner() throws IOException, InterruptedException {
-        try (final DriverInterface driver = DriverInterface.of(crawlDefinition)) {
-            if (crawlDefinition.urls != null && !crawlDefinition.urls.isEmpty()) {
-                crawlUrlMap(driver, crawlDefinition.urls);
-                return;
-            }
-            if (crawlDefinition.entryUrl != null) {
-                crawlStart(driver, WebRequestDefinition.of(crawlDefinition.entryUrl).build());
-            } else if (crawlDefinition.entryRequest != null) {
-                crawlStart(driver, crawlDefinition.entryRequest);
+        try (final DriverInterface driver = DriverInterface.of(crawlDefinition, session.getTimers(), manager.getDns(),
+                session.getBandwidthLimiter())) {
+            try {
+                if (session.isRemotePartition()) {
+                    // A partition of a distributed session only crawls the URLs given by the other nodes
+                    crawlRemaining(driver);
+                    return;
+                }
+                if (crawlDefinition.urls != null && !crawlDefinition.urls.isEmpty()) {
+                    crawlUrlMap(driver, crawlDefinition.urls);
+                    return;
+                }
+                if (crawlDefinition.entryUrl != null) {
+                    crawlStart(driver, WebRequestDefinition.of(crawlDefinition.entryUrl).build());
+                } else if (crawlDefinition.entryRequest != null) {
+                    crawlStart(driver, crawlDefinition.entryRequest);
+                }
+            } finally {
+                // The bodies still queued in the collectors must be consumed before the driver releases them
+                session.flushCollector();
             }
         }
     }
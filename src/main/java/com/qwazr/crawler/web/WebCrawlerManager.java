@@ -18,18 +18,53 @@ package com.qwazr.crawler.web;
 import com.qwazr.cluster.ClusterManager;
 import com.qwazr.crawler.common.CrawlCollector;
 import com.qwazr.crawler.common.CrawlManager;
+import com.qwazr.crawler.common.CrawlerClusterClient;
+import com.qwazr.crawler.web.driver.CachingDns;
+import com.qwazr.server.RemoteService;
+import com.qwazr.server.ServerException;
 import com.qwazr.utils.LoggerUtils;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.core.Response;
 
 public class WebCrawlerManager extends CrawlManager
         <WebCrawlerManager, WebCrawlThread, WebCrawlSession, WebCrawlDefinition, WebCrawlSessionStatus, WebCrawlItem> {
 
     private static final Logger LOGGER = LoggerUtils.getLogger(WebCrawlerManager.class);
 
+    /**
+     * The number of threads calling the other nodes of the cluster
+     */
+    static final int CLUSTER_THREADS = 16;
+
     private final WebCrawlerServiceInterface service;
+    private final ConcurrentHashMap<String, LinkedHashMap<String, HostStatistics.Snapshot>> lastHostStatistics;
+    private final CachingDns dns;
+    private final Set<String> partitionSessions;
+    private final Map<String, Map<String, Integer>> waitingSessionLinks;
+    private final ConcurrentHashMap<String, WebCrawlerServiceInterface> remoteNodes;
+    private volatile Function<String, WebCrawlerServiceInterface> nodeServices;
+    private final ExecutorService clusterExecutorService;
 
     public WebCrawlerManager(final Path crawlerRootDirectory,
                              final String myAddress,
@@ -37,7 +72,19 @@ public class WebCrawlerManager extends CrawlManager
                              final ExecutorService crawlExecutorService) throws IOException {
         super(crawlerRootDirectory, myAddress, sessionExecutorService, crawlExecutorService, LOGGER,
                 WebCrawlSessionStatus.class, WebCrawlDefinition.class);
+        lastHostStatistics = new ConcurrentHashMap<>();
+        dns = new CachingDns();
+        partitionSessions = ConcurrentHashMap.newKeySet();
+        waitingSessionLinks = new HashMap<>();
+        remoteNodes = new ConcurrentHashMap<>();
         service = new WebCrawlerServiceImpl(this);
+        nodeServices = this::getDefaultNodeService;
+        // The calls to the other nodes do not share the session threads: a node which does not answer
+        // holds a thread until its call is interrupted, and the bounded queue rejects the calls beyond it
+        final ThreadPoolExecutor clusterExecutor = new ThreadPoolExecutor(CLUSTER_THREADS, CLUSTER_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(CLUSTER_THREADS * 16));
+        clusterExecutor.allowCoreThreadTimeOut(true);
+        clusterExecutorService = clusterExecutor;
     }
 
     public WebCrawlerManager(final Path crawlerRootDirectory,
@@ -51,17 +98,248 @@ public class WebCrawlerManager extends CrawlManager
         return service;
     }
 
+    String getMyAddress() {
+        return myAddress;
+    }
+
+    private WebCrawlerServiceInterface getDefaultNodeService(final String nodeAddress) {
+        if (myAddress.equals(nodeAddress))
+            return service;
+        return remoteNodes.computeIfAbsent(nodeAddress, address -> {
+            try {
+                return new WebCrawlerSingleClient(RemoteService.of(address).build());
+            } catch (Exception e) {
+                throw new ServerException(Response.Status.NOT_ACCEPTABLE, "Wrong node address: " + address, e);
+            }
+        });
+    }
+
+    /**
+     * Set how the services of the other nodes are reached (by default, using a remote client).
+     *
+     * @param nodeServices a function returning the service of a node from its address
+     */
+    public void setNodeServices(final Function<String, WebCrawlerServiceInterface> nodeServices) {
+        this.nodeServices = nodeServices == null ? this::getDefaultNodeService : nodeServices;
+    }
+
+    WebCrawlerServiceInterface getNodeService(final String nodeAddress) {
+        return nodeServices.apply(nodeAddress);
+    }
+
+    /**
+     * Run a session. A distributed session is first started on the other nodes as a partition.
+     * If a partition or the local session cannot be started, the partitions already started are stopped.
+     *
+     * @param sessionName the name of the session
+     * @return the status of the session
+     */
+    @Override
+    public WebCrawlSessionStatus runSession(final String sessionName) {
+        partitionSessions.remove(sessionName);
+        clearWaitingLinks(sessionName);
+        final WebCrawlDefinition crawlDefinition = getSessionDefinition(sessionName);
+        if (!ClusterPartition.isDistributed(crawlDefinition))
+            return super.runSession(sessionName);
+        final List<String> startedNodes = new ArrayList<>();
+        try {
+            for (final String node : new LinkedHashSet<>(crawlDefinition.clusterNodes)) {
+                if (!myAddress.equals(node)) {
+                    getNodeService(node).runPartition(sessionName, crawlDefinition);
+                    startedNodes.add(node);
+                }
+            }
+            return super.runSession(sessionName);
+        } catch (RuntimeException e) {
+            stopPartitions(sessionName, startedNodes, e);
+            throw e;
+        }
+    }
+
+    private void stopPartitions(final String sessionName, final List<String> nodes, final Exception cause) {
+        final String reason = "The distributed session could not start: " + cause.getMessage();
+        for (final String node : nodes) {
+            try {
+                getNodeService(node).stopSession(sessionName, reason);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Cannot stop the partition " + sessionName + " on " + node);
+            }
+        }
+    }
+
+    /**
+     * Start the local partition of a distributed session
+     *
+     * @param sessionName     the name of the session
+     * @param crawlDefinition the definition given by the coordinating node
+     * @return the status of the session
+     */
+    WebCrawlSessionStatus runPartition(final String sessionName, final WebCrawlDefinition crawlDefinition) {
+        if (!ClusterPartition.isDistributed(crawlDefinition) || !crawlDefinition.clusterNodes.contains(myAddress))
+            throw new ServerException(Response.Status.NOT_ACCEPTABLE,
+                    "This node is not part of the cluster nodes: " + myAddress);
+        upsertSession(sessionName, crawlDefinition);
+        partitionSessions.add(sessionName);
+        clearWaitingLinks(sessionName);
+        return super.runSession(sessionName);
+    }
+
+    private void clearWaitingLinks(final String sessionName) {
+        synchronized (waitingSessionLinks) {
+            waitingSessionLinks.remove(sessionName);
+        }
+    }
+
+    /**
+     * Add the URLs forwarded by another node to a distributed session.
+     * A session waiting for a free slot keeps the URLs until it starts.
+     *
+     * @param sessionName the name of the session
+     * @param links       the URLs with their depth
+     */
+    void enqueueLinks(final String sessionName, final Map<String, Integer> links) {
+        final WebCrawlSession session = getLiveSession(sessionName);
+        if (session != null) {
+            session.receiveUrls(links);
+            return;
+        }
+        synchronized (waitingSessionLinks) {
+            if (!isWaitingSession(sessionName) || !ClusterPartition.isDistributed(getSessionDefinition(sessionName)))
+                throw new NotFoundException("The crawl session is not running: " + sessionName);
+            final Map<String, Integer> waitingLinks =
+                    waitingSessionLinks.computeIfAbsent(sessionName, name -> new LinkedHashMap<>());
+            links.forEach(waitingLinks::putIfAbsent);
+        }
+    }
+
+    private CrawlerClusterClient<WebCrawlDefinition, WebCrawlSessionStatus> getClusterClient(
+            final Collection<String> nodes, final Long timeoutMs) {
+        return new CrawlerClusterClient<>(nodes, this::getNodeService, clusterExecutorService, timeoutMs,
+                statuses -> WebCrawlSessionStatus.merge(myAddress, statuses));
+    }
+
+    /**
+     * @return this node and the nodes of the distributed sessions
+     */
+    Set<String> getClusterNodes() {
+        final Set<String> nodes = new TreeSet<>();
+        nodes.add(myAddress);
+        getSessions(null, 0, Integer.MAX_VALUE, total -> {
+        }).keySet().forEach(sessionName -> {
+            final WebCrawlDefinition crawlDefinition = getSessionDefinition(sessionName);
+            if (ClusterPartition.isDistributed(crawlDefinition))
+                nodes.addAll(crawlDefinition.clusterNodes);
+        });
+        return nodes;
+    }
+
+    /**
+     * @param sessionName the name of the session
+     * @return the status of a distributed session, aggregated over the cluster nodes
+     */
+    WebCrawlSessionStatus getClusterSessionStatus(final String sessionName) {
+        final WebCrawlDefinition crawlDefinition = getSessionDefinition(sessionName);
+        if (crawlDefinition == null)
+            throw new NotFoundException("Session not found: " + sessionName);
+        if (!ClusterPartition.isDistributed(crawlDefinition))
+            return getSessionStatus(sessionName);
+        final WebCrawlSessionStatus status = getClusterClient(crawlDefinition.clusterNodes, null)
+                .getSessionStatus(sessionName, null);
+        return status == null ? getSessionStatus(sessionName) : status;
+    }
+
+    /**
+     * Query the sessions of the cluster nodes in parallel.
+     *
+     * @param wildcardPattern      an optional wildcard filter on the session names
+     * @param start                the position of the first session of the page
+     * @param rows                 the size of the page
+     * @param nodes                the nodes to query (by default, this node and the nodes of the distributed sessions)
+     * @param timeoutMs            how long to wait for the nodes
+     * @param totalConsumer        receives the number of matching sessions
+     * @param missingNodesConsumer receives the nodes which did not answer in time
+     * @return a page of sessions, sorted by name
+     */
+    LinkedHashMap<String, WebCrawlSessionStatus> getClusterSessions(final String wildcardPattern,
+                                                                    final Integer start,
+                                                                    final Integer rows,
+                                                                    final Set<String> nodes,
+                                                                    final Long timeoutMs,
+                                                                    final IntConsumer totalConsumer,
+                                                                    final Consumer<Collection<String>> missingNodesConsumer) {
+        return getClusterClient(nodes == null || nodes.isEmpty() ? getClusterNodes() : nodes, timeoutMs)
+                .getSessions(wildcardPattern, start, rows, totalConsumer, missingNodesConsumer);
+    }
+
+    /**
+     * @return the executor running the fetch tasks of the sessions
+     */
+    ExecutorService getFetchExecutorService() {
+        return crawlExecutorService;
+    }
+
+    /**
+     * @return the DNS resolver shared by the crawl sessions
+     */
+    public CachingDns getDns() {
+        return dns;
+    }
+
+    /**
+     * Returns the statistics of each host for the running session, or for the last run.
+     *
+     * @param sessionName the name of the session
+     * @return the statistics by host, or null if the session did not run since the start of the server
+     */
+    public LinkedHashMap<String, HostStatistics.Snapshot> getHostStatistics(final String sessionName) {
+        final WebCrawlSession session = getLiveSession(sessionName);
+        if (session != null)
+            return session.getHostThrottle().getSnapshots();
+        return lastHostStatistics.get(sessionName);
+    }
+
+    void setHostStatistics(final String sessionName, final LinkedHashMap<String, HostStatistics.Snapshot> hosts) {
+        lastHostStatistics.put(sessionName, hosts);
+    }
+
+    @Override
+    protected void sessionRemoved(final String sessionName) {
+        lastHostStatistics.remove(sessionName);
+        partitionSessions.remove(sessionName);
+        clearWaitingLinks(sessionName);
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        clusterExecutorService.shutdownNow();
+        dns.close();
+    }
+
     protected WebCrawlSessionStatus newInitialStatus() {
         return WebCrawlSessionStatus.of(myAddress).build();
     }
 
+    @Override
+    protected WebCrawlSessionStatus newQueuedStatus(final int queuePosition) {
+        return WebCrawlSessionStatus.of(myAddress).queued(queuePosition).build();
+    }
+
     @Override
     protected WebCrawlThread newCrawlThread(final String sessionName,
                                             final WebCrawlDefinition crawlDefinition) {
         final WebCrawlSessionStatus.Builder crawlStatusBuilder = WebCrawlSessionStatus.of(myAddress);
         final CrawlCollector<WebCrawlItem> crawlCollector = newCrawlCollector(crawlDefinition, WebCrawlCollectorFactory.class);
         final WebCrawlSession session = new WebCrawlSession(sessionName, this,
-                crawlDefinition, crawlStatusBuilder, crawlCollector == null ? doNothing : crawlCollector);
+                crawlDefinition, crawlStatusBuilder, crawlCollector == null ? doNothing : crawlCollector,
+                partitionSessions.contains(sessionName));
+        // The URLs received while the session was waiting for a free slot
+        final Map<String, Integer> waitingLinks;
+        synchronized (waitingSessionLinks) {
+            waitingLinks = waitingSessionLinks.remove(sessionName);
+        }
+        if (waitingLinks != null)
+            session.receiveUrls(waitingLinks);
         return new WebCrawlThread(this, session, crawlDefinition);
     }
 
@@ -16,8 +16,16 @@
 package com.qwazr.crawler.web;
 
 import com.qwazr.crawler.common.CrawlerServiceImpl;
+import com.qwazr.server.ServerException;
 import com.qwazr.utils.LoggerUtils;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import java.util.logging.Logger;
+import javax.ws.rs.NotFoundException;
 
 class WebCrawlerServiceImpl extends CrawlerServiceImpl
         <WebCrawlSession, WebCrawlThread, WebCrawlerManager, WebCrawlDefinition, WebCrawlSessionStatus, WebCrawlItem>
@@ -29,4 +37,59 @@ class WebCrawlerServiceImpl extends CrawlerServiceImpl
         super(LOGGER, webrawlerManager);
     }
 
+    @Override
+    public LinkedHashMap<String, HostStatistics.Snapshot> getSessionHosts(final String sessionName) {
+        try {
+            final LinkedHashMap<String, HostStatistics.Snapshot> hosts = crawlManager.getHostStatistics(sessionName);
+            if (hosts != null)
+                return hosts;
+            throw new NotFoundException("Host statistics not found");
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public WebCrawlSessionStatus runPartition(final String sessionName, final WebCrawlDefinition crawlDefinition) {
+        try {
+            return crawlManager.runPartition(sessionName, crawlDefinition);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public void enqueueLinks(final String sessionName, final Map<String, Integer> links) {
+        try {
+            crawlManager.enqueueLinks(sessionName, links);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public WebCrawlSessionStatus getClusterSessionStatus(final String sessionName) {
+        try {
+            return crawlManager.getClusterSessionStatus(sessionName);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
+    @Override
+    public LinkedHashMap<String, WebCrawlSessionStatus> getClusterSessions(final String wildcardQuery,
+                                                                           final Integer start,
+                                                                           final Integer rows,
+                                                                           final Set<String> nodes,
+                                                                           final Long timeoutMs,
+                                                                           final IntConsumer totalConsumer,
+                                                                           final Consumer<Collection<String>> missingNodesConsumer) {
+        try {
+            return crawlManager.getClusterSessions(wildcardQuery, start, rows, nodes, timeoutMs,
+                    totalConsumer, missingNodesConsumer);
+        } catch (Exception e) {
+            throw ServerException.getJsonException(logger, e);
+        }
+    }
+
 }
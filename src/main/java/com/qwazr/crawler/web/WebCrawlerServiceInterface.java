@@ -16,9 +16,24 @@
 package com.qwazr.crawler.web;
 
 import com.qwazr.crawler.common.CrawlerServiceInterface;
+import com.qwazr.server.ServiceInterface;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import javax.annotation.security.RolesAllowed;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.GenericType;
 
 @RolesAllowed(WebCrawlerServiceInterface.SERVICE_NAME)
@@ -28,7 +43,75 @@ public interface WebCrawlerServiceInterface extends CrawlerServiceInterface<WebC
     String SERVICE_NAME = "webcrawler";
     String SERVICE_PATH = "/crawler/web";
 
+    String X_MISSING_NODES_HEADER = "X-missing-nodes";
+
     GenericType<LinkedHashMap<String, WebCrawlSessionStatus>> mapStringCrawlType = new GenericType<>() {
     };
 
+    GenericType<LinkedHashMap<String, HostStatistics.Snapshot>> mapStringHostType = new GenericType<>() {
+    };
+
+    @GET
+    @Path("/sessions/{session_name}/hosts")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    LinkedHashMap<String, HostStatistics.Snapshot> getSessionHosts(@PathParam("session_name") String sessionName);
+
+    /**
+     * Start the local partition of a distributed session.
+     * Unlike runSession, the entry URL is not crawled: the partition crawls the URLs forwarded by the other nodes.
+     */
+    @PUT
+    @Path("/sessions/{session_name}/partition")
+    @Consumes(ServiceInterface.APPLICATION_JSON_UTF8)
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    WebCrawlSessionStatus runPartition(@PathParam("session_name") String sessionName,
+                                       WebCrawlDefinition crawlDefinition);
+
+    /**
+     * Add URLs to the frontier of a running distributed session
+     */
+    @POST
+    @Path("/sessions/{session_name}/links")
+    @Consumes(ServiceInterface.APPLICATION_JSON_UTF8)
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    void enqueueLinks(@PathParam("session_name") String sessionName, Map<String, Integer> links);
+
+    /**
+     * The status of a distributed session, aggregated over the cluster nodes
+     */
+    @GET
+    @Path("/sessions/{session_name}/cluster")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    WebCrawlSessionStatus getClusterSessionStatus(@PathParam("session_name") String sessionName);
+
+    /**
+     * The sessions of the cluster nodes, queried in parallel.
+     * The nodes which did not answer before the timeout are listed in the X-missing-nodes header.
+     */
+    @GET
+    @Path("/cluster/sessions")
+    @Produces(ServiceInterface.APPLICATION_JSON_UTF8)
+    default LinkedHashMap<String, WebCrawlSessionStatus> getClusterSessions(
+            final @Context HttpServletResponse servletResponse,
+            final @QueryParam("query") String wildcardQuery,
+            final @QueryParam("start") Integer start,
+            final @QueryParam("rows") Integer rows,
+            final @QueryParam("node") Set<String> nodes,
+            final @QueryParam("timeout") Long timeoutMs) {
+        return getClusterSessions(wildcardQuery, start, rows, nodes, timeoutMs,
+                total -> servletResponse.addHeader(X_PAGES_HEADER, Integer.toString(total)),
+                missingNodes -> {
+                    if (!missingNodes.isEmpty())
+                        servletResponse.addHeader(X_MISSING_NODES_HEADER, String.join(",", missingNodes));
+                });
+    }
+
+    LinkedHashMap<String, WebCrawlSessionStatus> getClusterSessions(final String wildcardQuery,
+                                                                    final Integer start,
+                                                                    final Integer rows,
+                                                                    final Set<String> nodes,
+                                                                    final Long timeoutMs,
+                                                                    final IntConsumer totalConsumer,
+                                                                    final Consumer<Collection<String>> missingNodesConsumer);
+
 }
@@ -17,13 +17,98 @@ package com.qwazr.crawler.web;
 
 import com.qwazr.crawler.common.CrawlerSingleClient;
 import com.qwazr.server.RemoteService;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 
 public class WebCrawlerSingleClient extends CrawlerSingleClient<WebCrawlDefinition, WebCrawlSessionStatus>
         implements WebCrawlerServiceInterface {
 
+    private final WebTarget clusterSessionsTarget;
+
     public WebCrawlerSingleClient(final RemoteService remote) {
         super(remote, WebCrawlerServiceInterface.SERVICE_PATH, WebCrawlSessionStatus.class,
                 WebCrawlDefinition.class, WebCrawlerServiceInterface.mapStringCrawlType);
+        clusterSessionsTarget = client.target(remote.serviceAddress)
+                .path(WebCrawlerServiceInterface.SERVICE_PATH)
+                .path("cluster")
+                .path("sessions");
+    }
+
+    @Override
+    public LinkedHashMap<String, HostStatistics.Snapshot> getSessionHosts(final String sessionName) {
+        return sessionsTarget
+                .path(sessionName)
+                .path("hosts")
+                .request(MediaType.APPLICATION_JSON)
+                .get(WebCrawlerServiceInterface.mapStringHostType);
+    }
+
+    @Override
+    public WebCrawlSessionStatus runPartition(final String sessionName, final WebCrawlDefinition crawlDefinition) {
+        return sessionsTarget
+                .path(sessionName)
+                .path("partition")
+                .request(MediaType.APPLICATION_JSON)
+                .put(Entity.json(crawlDefinition), WebCrawlSessionStatus.class);
+    }
+
+    @Override
+    public void enqueueLinks(final String sessionName, final Map<String, Integer> links) {
+        try (final Response response = sessionsTarget
+                .path(sessionName)
+                .path("links")
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(links))) {
+            if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL)
+                throw new WebApplicationException(response.getStatusInfo().getReasonPhrase(), response.getStatus());
+        }
+    }
+
+    @Override
+    public WebCrawlSessionStatus getClusterSessionStatus(final String sessionName) {
+        return sessionsTarget
+                .path(sessionName)
+                .path("cluster")
+                .request(MediaType.APPLICATION_JSON)
+                .get(WebCrawlSessionStatus.class);
+    }
+
+    @Override
+    public LinkedHashMap<String, WebCrawlSessionStatus> getClusterSessions(final String wildcardQuery,
+                                                                           final Integer start,
+                                                                           final Integer rows,
+                                                                           final Set<String> nodes,
+                                                                           final Long timeoutMs,
+                                                                           final IntConsumer totalConsumer,
+                                                                           final Consumer<Collection<String>> missingNodesConsumer) {
+        WebTarget target = clusterSessionsTarget
+                .queryParam("query", wildcardQuery)
+                .queryParam("start", start)
+                .queryParam("rows", rows)
+                .queryParam("timeout", timeoutMs);
+        if (nodes != null && !nodes.isEmpty())
+            target = target.queryParam("node", nodes.toArray());
+        try (final Response response = target.request(MediaType.APPLICATION_JSON).get()) {
+            if (totalConsumer != null)
+                totalConsumer.accept(Integer.parseInt(response.getHeaderString(X_PAGES_HEADER)));
+            if (missingNodesConsumer != null) {
+                final String missingNodes = response.getHeaderString(X_MISSING_NODES_HEADER);
+                missingNodesConsumer.accept(missingNodes == null || missingNodes.isEmpty() ?
+                        Collections.emptyList() : Arrays.asList(missingNodes.split(",")));
+            }
+            return response.readEntity(WebCrawlerServiceInterface.mapStringCrawlType);
+        }
     }
 
 }
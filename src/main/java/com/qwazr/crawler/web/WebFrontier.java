@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * The URLs known by a web crawl session: the crawled ones, the ones waiting to be crawled,
+ * the retries and the sitemap entries.
+ * The implementations are not thread-safe, the session serializes the calls.
+ */
+interface WebFrontier {
+
+    /**
+     * @param uriString the URL
+     * @return true if the URL has already been crawled (or claimed)
+     */
+    boolean isCrawled(String uriString);
+
+    /**
+     * Add an URL which has never been seen
+     *
+     * @param uriString the URL
+     * @param depth     the depth of the URL
+     * @return true if the URL has been added, false if the URL was already known
+     */
+    boolean add(String uriString, Integer depth);
+
+    /**
+     * Add an URL read from a sitemap, the sitemap URLs are given first following their rank
+     *
+     * @param uriString the URL
+     * @param rank      the rank of the URL (the lowest first)
+     * @param depth     the depth of the URL
+     * @return true if the URL has been added, false if the URL was already known
+     */
+    boolean addSitemap(String uriString, int rank, Integer depth);
+
+    /**
+     * Move the retries which are due into the URLs to crawl
+     *
+     * @param now the current time in milliseconds
+     * @return true if at least one retry has been moved
+     */
+    boolean promoteRetries(long now);
+
+    /**
+     * @return the next URL to crawl with its depth, or null if there is nothing to crawl
+     */
+    Pair<String, Integer> next();
+
+    /**
+     * Mark the URL as crawled and take it out of the URLs to crawl
+     *
+     * @param uriString the URL
+     * @param depth     the depth of the URL
+     * @return false if the URL was already crawled
+     */
+    boolean setCrawled(String uriString, Integer depth);
+
+    /**
+     * @param uriString the URL
+     * @return the number of failed attempts for this URL
+     */
+    int getAttempts(String uriString);
+
+    /**
+     * Schedule a new attempt
+     *
+     * @param uriString the URL
+     * @param depth     the depth of the URL
+     * @param attempt   the number of failed attempts
+     * @param dueTime   the time of the next attempt in milliseconds
+     */
+    void retry(String uriString, Integer depth, int attempt, long dueTime);
+
+    /**
+     * @return the time of the first retry in milliseconds, or -1 if there is no retry pending
+     */
+    long firstRetryTime();
+
+    /**
+     * @return true if no URL is waiting to be crawled or retried
+     */
+    boolean isEmpty();
+}
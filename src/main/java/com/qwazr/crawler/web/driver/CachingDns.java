@@ -0,0 +1,268 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.driver;
+
+import com.qwazr.utils.LoggerUtils;
+import okhttp3.Dns;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A DNS resolver shared by the crawl sessions.
+ * The resolutions (and the failures) are cached for a bounded time.
+ * The hosts may be resolved in advance, asynchronously, using {@link #prefetch(String)}.
+ * A lookup never waits behind the prefetch queue: a host whose prefetch has not started is resolved by the caller.
+ */
+public class CachingDns implements Dns, Closeable {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(CachingDns.class);
+
+    public final static long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+    public final static long DEFAULT_NEGATIVE_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+    public final static int DEFAULT_MAX_ENTRIES = 10_000;
+    public final static int DEFAULT_PREFETCH_THREADS = 4;
+    final static int PREFETCH_QUEUE_SIZE = 1_000;
+
+    private final Dns resolver;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> cache;
+    private final ThreadPoolExecutor prefetchExecutor;
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder prefetches;
+
+    public CachingDns(final Dns resolver, final long ttlMs, final long negativeTtlMs, final int maxEntries,
+                      final int prefetchThreads) {
+        this.resolver = resolver;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+        this.maxEntries = maxEntries;
+        this.cache = new ConcurrentHashMap<>();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.prefetchExecutor = new ThreadPoolExecutor(prefetchThreads, prefetchThreads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(PREFETCH_QUEUE_SIZE), runnable -> {
+            final Thread thread = new Thread(runnable, "dns-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.prefetchExecutor.allowCoreThreadTimeOut(true);
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.prefetches = new LongAdder();
+    }
+
+    public CachingDns() {
+        this(Dns.SYSTEM, DEFAULT_TTL_MS, DEFAULT_NEGATIVE_TTL_MS, DEFAULT_MAX_ENTRIES, DEFAULT_PREFETCH_THREADS);
+    }
+
+    @Override
+    public List<InetAddress> lookup(final String hostname) throws UnknownHostException {
+        final Entry entry = getEntry(hostname);
+        if (entry.start())
+            entry.resolve(hostname);
+        else
+            hits.increment();
+        try {
+            return entry.future.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UnknownHostException)
+                throw (UnknownHostException) cause;
+            final UnknownHostException unknownHostException = new UnknownHostException(hostname);
+            unknownHostException.initCause(cause);
+            throw unknownHostException;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException("Interrupted while resolving " + hostname);
+        }
+    }
+
+    /**
+     * Resolve the host in the background, if it is not already cached.
+     * The prefetch is dropped when the queue is full, the host will be resolved by its first lookup.
+     *
+     * @param hostname the host to resolve
+     */
+    public void prefetch(final String hostname) {
+        if (hostname == null || hostname.isEmpty())
+            return;
+        final Entry entry = getEntry(hostname);
+        if (!entry.queue())
+            return;
+        prefetches.increment();
+        try {
+            prefetchExecutor.execute(() -> {
+                if (entry.start())
+                    entry.resolve(hostname);
+            });
+        } catch (RejectedExecutionException e) {
+            // The prefetch queue is full (or closed)
+            prefetches.decrement();
+            entry.unqueue();
+        }
+    }
+
+    /**
+     * @return the cached entry, or a new one if the host is not cached or has expired.
+     * The first caller starting a new entry is in charge of the resolution.
+     */
+    private Entry getEntry(final String hostname) {
+        final long now = System.nanoTime();
+        final Entry entry = cache.get(hostname);
+        if (entry != null && !entry.isExpired(now))
+            return entry;
+        final Entry newEntry = new Entry();
+        final Entry current =
+                cache.compute(hostname, (host, existing) -> existing != null && !existing.isExpired(now) ?
+                        existing : newEntry);
+        if (current != newEntry)
+            return current;
+        misses.increment();
+        if (cache.size() > maxEntries)
+            evict(hostname, now);
+        return newEntry;
+    }
+
+    /**
+     * Remove the expired entries, then the oldest ones, until the cache is back to its low-water mark,
+     * so that the next misses do not scan the cache again.
+     *
+     * @param hostname the host just added, which is kept
+     * @param now      the current time
+     */
+    private void evict(final String hostname, final long now) {
+        final int lowWaterMark = Math.max(1, maxEntries - maxEntries / 10);
+        cache.values().removeIf(entry -> entry.isExpired(now));
+        final Iterator<String> iterator = cache.keySet().iterator();
+        while (cache.size() > lowWaterMark && iterator.hasNext()) {
+            if (!hostname.equals(iterator.next()))
+                iterator.remove();
+        }
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getPrefetches() {
+        return prefetches.sum();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Stop the prefetch threads. The prefetches still queued are failed, and forgotten by the cache.
+     */
+    @Override
+    public void close() {
+        prefetchExecutor.shutdownNow();
+        cache.forEach((hostname, entry) -> {
+            if (entry.cancel()) {
+                cache.remove(hostname, entry);
+                entry.future.completeExceptionally(new UnknownHostException("The DNS resolver is closed: " + hostname));
+            }
+        });
+    }
+
+    private final class Entry {
+
+        private final static int NEW = 0;
+        private final static int QUEUED = 1;
+        private final static int STARTED = 2;
+
+        private final CompletableFuture<List<InetAddress>> future;
+        private final AtomicInteger state;
+        private volatile long expiresAt;
+
+        private Entry() {
+            future = new CompletableFuture<>();
+            state = new AtomicInteger(NEW);
+            expiresAt = Long.MAX_VALUE; // A pending resolution never expires
+        }
+
+        /**
+         * @return true if the entry was not queued nor started, the caller will submit a prefetch
+         */
+        private boolean queue() {
+            return state.compareAndSet(NEW, QUEUED);
+        }
+
+        private void unqueue() {
+            state.compareAndSet(QUEUED, NEW);
+        }
+
+        /**
+         * @return true if the entry was waiting in the prefetch queue, the caller fails the entry
+         */
+        private boolean cancel() {
+            return state.compareAndSet(QUEUED, STARTED);
+        }
+
+        /**
+         * @return true if the resolution was not started, the caller is in charge of the resolution
+         */
+        private boolean start() {
+            return state.getAndSet(STARTED) != STARTED;
+        }
+
+        private boolean isExpired(final long now) {
+            final long expires = expiresAt;
+            return expires != Long.MAX_VALUE && now - expires > 0;
+        }
+
+        private void resolve(final String hostname) {
+            try {
+                final List<InetAddress> addresses = resolver.lookup(hostname);
+                expiresAt = System.nanoTime() + ttlNanos;
+                future.complete(addresses);
+            } catch (UnknownHostException e) {
+                LOGGER.fine(() -> "Unknown host: " + hostname);
+                expiresAt = System.nanoTime() + negativeTtlNanos;
+                future.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                cache.remove(hostname, this);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
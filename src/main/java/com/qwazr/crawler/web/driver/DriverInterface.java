@@ -15,21 +15,72 @@
  */
 package com.qwazr.crawler.web.driver;
 
+import com.qwazr.crawler.common.ByteRateLimiter;
+import com.qwazr.crawler.common.CrawlTimers;
 import com.qwazr.crawler.web.WebCrawlDefinition;
 import com.qwazr.crawler.web.WebRequestDefinition;
+import com.qwazr.crawler.web.warc.WarcReplayDriver;
+import com.qwazr.utils.StringUtils;
+import okhttp3.Dns;
 import org.jsoup.nodes.Document;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Map;
 
 public interface DriverInterface extends Closeable {
 
     Head head(WebRequestDefinition request) throws IOException;
 
-    Body body(WebRequestDefinition request) throws IOException;
+    default Body body(WebRequestDefinition request) throws IOException {
+        return body(request, null);
+    }
+
+    /**
+     * Execute the request. The filter decides, from the response headers, if the content is downloaded.
+     *
+     * @param request the request to execute
+     * @param filter  the filter called before the content is transferred (may be null)
+     * @return the body of the response
+     * @throws IOException if the request failed
+     */
+    Body body(WebRequestDefinition request, HeadFilter filter) throws IOException;
+
+    /**
+     * What to do with the content of a response
+     */
+    enum ContentAction {
+
+        /**
+         * Download the whole content
+         */
+        STREAM,
+
+        /**
+         * Download the content up to the maximum content length
+         */
+        TRUNCATE,
+
+        /**
+         * Do not download the content, the call is cancelled
+         */
+        CANCEL
+    }
+
+    @FunctionalInterface
+    interface HeadFilter {
+
+        /**
+         * @param head the status and the headers of the response
+         * @return the action to apply on the content
+         */
+        ContentAction check(Head head);
+    }
 
     interface Head {
 
@@ -50,6 +101,26 @@ public interface DriverInterface extends Closeable {
         String getRedirectLocation();
 
         boolean isSuccessful();
+
+        /**
+         * @return the method of the request (GET, POST or HEAD)
+         */
+        String getRequestMethod();
+
+        /**
+         * @return the headers sent with the request, in their order
+         */
+        Map<String, List<String>> getRequestHeaderFields();
+
+        /**
+         * @return the status line of the response, like "HTTP/1.1 200 OK"
+         */
+        String getStatusLine();
+
+        /**
+         * @return the headers of the response, in their order
+         */
+        Map<String, List<String>> getHeaderFields();
     }
 
     interface Body extends Head, Closeable {
@@ -71,11 +142,53 @@ public interface DriverInterface extends Closeable {
 
         Long getContentLength();
 
+        /**
+         * @return true if the content has been cut at the maximum content length
+         */
+        boolean isTruncated();
+
         boolean isClosed();
     }
 
     static DriverInterface of(WebCrawlDefinition webCrawlDef) {
-        return new QwazrDriver(webCrawlDef);
+        return of(webCrawlDef, null);
+    }
+
+    /**
+     * @param webCrawlDef the crawl definition
+     * @param timers      the timers collecting the network latencies (may be null)
+     * @return a new driver
+     */
+    static DriverInterface of(WebCrawlDefinition webCrawlDef, CrawlTimers timers) {
+        return of(webCrawlDef, timers, null);
+    }
+
+    /**
+     * @param webCrawlDef the crawl definition
+     * @param timers      the timers collecting the network latencies (may be null)
+     * @param dns         the shared DNS resolver (may be null to use the system resolver)
+     * @return a new driver, reading the WARC archive given by replay_archive if any
+     */
+    static DriverInterface of(WebCrawlDefinition webCrawlDef, CrawlTimers timers, Dns dns) {
+        return of(webCrawlDef, timers, dns, null);
+    }
+
+    /**
+     * @param webCrawlDef the crawl definition
+     * @param timers      the timers collecting the network latencies (may be null)
+     * @param dns         the shared DNS resolver (may be null to use the system resolver)
+     * @param bandwidth   the budget of the bytes read from the network (may be null)
+     * @return a new driver, reading the WARC archive given by replay_archive if any
+     */
+    static DriverInterface of(WebCrawlDefinition webCrawlDef, CrawlTimers timers, Dns dns, ByteRateLimiter bandwidth) {
+        if (!StringUtils.isBlank(webCrawlDef.replayArchive)) {
+            try {
+                return new WarcReplayDriver(Paths.get(webCrawlDef.replayArchive), webCrawlDef.maxContentLength);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read the WARC archive: " + webCrawlDef.replayArchive, e);
+            }
+        }
+        return new QwazrDriver(webCrawlDef, timers, dns, bandwidth);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.driver;
+
+import com.qwazr.crawler.web.ProxyDefinition;
+import com.qwazr.utils.LoggerUtils;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Route each request through one proxy of the pool.
+ * The first proxy of the selection is chosen following the {@link ProxyDefinition.Selection} policy,
+ * the other healthy proxies follow as fallbacks.
+ * A proxy failing several times in a row is ejected for a while.
+ */
+final class ProxyPool extends ProxySelector {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(ProxyPool.class);
+
+    final static int MAX_CONSECUTIVE_ERRORS = 3;
+    final static long EJECTION_MS = TimeUnit.SECONDS.toMillis(30);
+    final static long MAX_EJECTION_MS = TimeUnit.MINUTES.toMillis(5);
+    final static long DEFAULT_LATENCY_MS = 100;
+
+    private final List<ProxyState> proxies;
+    private final ProxyDefinition.Selection selection;
+    private final AtomicInteger roundRobin;
+
+    ProxyPool(final List<Proxy> proxies, final ProxyDefinition.Selection selection) {
+        if (proxies == null || proxies.isEmpty())
+            throw new IllegalArgumentException("The proxy pool is empty");
+        this.proxies = new ArrayList<>(proxies.size());
+        proxies.forEach(proxy -> this.proxies.add(new ProxyState(proxy)));
+        this.selection = selection == null ? ProxyDefinition.Selection.round_robin : selection;
+        this.roundRobin = new AtomicInteger();
+    }
+
+    @Override
+    public List<Proxy> select(final URI uri) {
+        final long now = System.currentTimeMillis();
+        final List<ProxyState> healthy = new ArrayList<>(proxies.size());
+        for (final ProxyState proxy : proxies)
+            if (!proxy.isEjected(now))
+                healthy.add(proxy);
+        // Every proxy is ejected: we use the one coming back first
+        if (healthy.isEmpty())
+            return Collections.singletonList(
+                    Collections.min(proxies, Comparator.comparingLong(p -> p.ejectedUntil.get())).proxy);
+
+        final ProxyState first;
+        switch (selection) {
+            case least_loaded:
+                first = Collections.min(healthy, Comparator.comparingDouble(ProxyState::getScore));
+                break;
+            case sticky_host:
+                first = Collections.max(healthy, Comparator.comparingLong(p -> p.rendezvous(uri.getHost())));
+                break;
+            case round_robin:
+            default:
+                first = healthy.get(Math.floorMod(roundRobin.getAndIncrement(), healthy.size()));
+                break;
+        }
+        final List<Proxy> result = new ArrayList<>(healthy.size());
+        result.add(first.proxy);
+        for (final ProxyState proxy : healthy)
+            if (proxy != first)
+                result.add(proxy.proxy);
+        return result;
+    }
+
+    @Override
+    public void connectFailed(final URI uri, final SocketAddress sa, final IOException ioe) {
+        for (final ProxyState proxy : proxies)
+            if (Objects.equals(proxy.proxy.address(), sa))
+                proxy.error(System.currentTimeMillis());
+    }
+
+    ProxyState get(final Proxy proxy) {
+        for (final ProxyState state : proxies)
+            if (state.proxy.equals(proxy))
+                return state;
+        return null;
+    }
+
+    /**
+     * @return a network interceptor measuring the load, the latency and the errors of the proxies
+     */
+    Interceptor interceptor() {
+        return chain -> {
+            final Connection connection = chain.connection();
+            final ProxyState proxy = connection == null ? null : get(connection.route().proxy());
+            if (proxy == null)
+                return chain.proceed(chain.request());
+            final long start = System.currentTimeMillis();
+            proxy.inFlight.incrementAndGet();
+            try {
+                final Response response = chain.proceed(chain.request());
+                final long now = System.currentTimeMillis();
+                if (isProxyError(response.code()))
+                    proxy.error(now);
+                else
+                    proxy.success(now - start);
+                return response;
+            } catch (IOException e) {
+                proxy.error(System.currentTimeMillis());
+                throw e;
+            } finally {
+                proxy.inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * A 502 or 504 status is usually given by the origin server (or by a gateway in front of it), it says nothing
+     * about the proxy. The failures of the proxy itself (connection, CONNECT tunnel) are thrown as IOException
+     * or reported by {@link #connectFailed(URI, SocketAddress, IOException)}.
+     *
+     * @return true for the status code returned by a failing proxy: 407 proxy authentication required
+     */
+    static boolean isProxyError(final int code) {
+        return code == 407;
+    }
+
+    /**
+     * @return the statistics of each proxy
+     */
+    Map<String, String> getStatistics() {
+        final long now = System.currentTimeMillis();
+        final Map<String, String> statistics = new LinkedHashMap<>();
+        for (final ProxyState proxy : proxies)
+            statistics.put(proxy.proxy.toString(),
+                    "requests=" + proxy.requests.sum() + " errors=" + proxy.errors.sum() + " latency_ms=" +
+                            proxy.latencyMs + (proxy.isEjected(now) ? " ejected" : ""));
+        return statistics;
+    }
+
+    void logStatistics() {
+        LOGGER.info(() -> "Proxy pool: " + getStatistics());
+    }
+
+    final static class ProxyState {
+
+        private final Proxy proxy;
+        private final String key;
+        private final AtomicInteger inFlight;
+        private final AtomicInteger consecutiveErrors;
+        private final AtomicLong ejectedUntil;
+        private final LongAdder requests;
+        private final LongAdder errors;
+        private volatile long latencyMs;
+        private volatile double errorRate;
+
+        private ProxyState(final Proxy proxy) {
+            this.proxy = proxy;
+            this.key = proxy.toString();
+            this.inFlight = new AtomicInteger();
+            this.consecutiveErrors = new AtomicInteger();
+            this.ejectedUntil = new AtomicLong();
+            this.requests = new LongAdder();
+            this.errors = new LongAdder();
+            this.latencyMs = DEFAULT_LATENCY_MS;
+        }
+
+        boolean isEjected(final long now) {
+            return ejectedUntil.get() > now;
+        }
+
+        /**
+         * The lower the better: the running requests, weighted by the latency and by the error rate
+         */
+        double getScore() {
+            return (inFlight.get() + 1) * (double) Math.max(1, latencyMs) * (1 + 10 * errorRate);
+        }
+
+        long rendezvous(final String host) {
+            long h = 1125899906842597L;
+            for (final char c : (key + '|' + host).toCharArray())
+                h = 31 * h + c;
+            // Final mix (splitmix64) for a uniform distribution
+            h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+            h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+            return h ^ (h >>> 31);
+        }
+
+        synchronized void success(final long latency) {
+            requests.increment();
+            consecutiveErrors.set(0);
+            latencyMs = (latencyMs * 4 + latency) / 5;
+            errorRate = errorRate * 0.9;
+        }
+
+        synchronized void error(final long now) {
+            requests.increment();
+            errors.increment();
+            errorRate = errorRate * 0.9 + 0.1;
+            final int consecutive = consecutiveErrors.incrementAndGet();
+            if (consecutive >= MAX_CONSECUTIVE_ERRORS) {
+                // The ejection time doubles with each new series of errors
+                final int series = consecutive / MAX_CONSECUTIVE_ERRORS - 1;
+                final long ejection = Math.min(MAX_EJECTION_MS, EJECTION_MS << Math.min(series, 10));
+                ejectedUntil.set(now + ejection);
+                if (consecutive % MAX_CONSECUTIVE_ERRORS == 0)
+                    LOGGER.warning(() -> "Proxy " + proxy + " ejected for " + ejection + " ms");
+            }
+        }
+    }
+}
@@ -16,21 +16,23 @@
 package com.qwazr.crawler.web.driver;
 
 import com.google.common.net.HttpHeaders;
-import com.qwazr.crawler.web.ProxyDefinition;
+import com.qwazr.crawler.common.ByteRateLimiter;
+import com.qwazr.crawler.common.CrawlTimers;
 import com.qwazr.crawler.web.WebCrawlDefinition;
 import com.qwazr.crawler.web.WebRequestDefinition;
 import com.qwazr.utils.IOUtils;
 import com.qwazr.utils.LoggerUtils;
-import com.qwazr.utils.RandomUtils;
 import com.qwazr.utils.StringUtils;
 import okhttp3.Call;
 import okhttp3.Cookie;
 import okhttp3.CookieJar;
+import okhttp3.Dns;
 import okhttp3.FormBody;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -46,6 +48,7 @@ import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.nio.charset.Charset;
@@ -55,12 +58,12 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public class QwazrDriver implements DriverInterface {
 
@@ -70,37 +73,59 @@ public class QwazrDriver implements DriverInterface {
 
     private final String userAgent;
 
+    private final Long maxContentLength;
+
+    private final ProxyPool proxyPool;
+
     private final ConcurrentHashMap.KeySetView<Body, Boolean> bodies;
 
-    QwazrDriver(final WebCrawlDefinition definition) {
+    private final ByteRateLimiter bandwidth;
+
+    QwazrDriver(final WebCrawlDefinition definition,
+                final CrawlTimers timers,
+                final Dns dns,
+                final ByteRateLimiter bandwidth) {
         final OkHttpClient.Builder builder = new OkHttpClient.Builder().followRedirects(false)
                 .followSslRedirects(false)
                 .retryOnConnectionFailure(true);
 
+        if (timers != null)
+            builder.eventListenerFactory(TimersEventListener.factory(timers));
+
+        if (dns != null)
+            builder.dns(dns);
+
         final int timeOutSecs = definition.timeOutSecs == null ? 120 : definition.timeOutSecs;
         builder.connectTimeout(timeOutSecs, TimeUnit.SECONDS)
                 .readTimeout(timeOutSecs, TimeUnit.SECONDS)
                 .writeTimeout(timeOutSecs, TimeUnit.SECONDS);
 
+        ProxyPool pool = null;
         if (definition.proxies != null && !definition.proxies.isEmpty()) {
-            final List<ProxyDefinition> proxyList = definition.proxies.stream()
-                    .filter(p -> p.enabled == null || p.enabled)
-                    .collect(Collectors.toList());
-            if (!proxyList.isEmpty()) {
-                final ProxyDefinition proxy = proxyList.get(RandomUtils.nextInt(0, proxyList.size()));
+            final List<Proxy> proxyList = new ArrayList<>();
+            definition.proxies.stream().filter(p -> p.enabled == null || p.enabled).forEach(proxy -> {
                 if (!StringUtils.isBlank(proxy.httpProxy)) {
-                    builder.proxy(getProxyHostPort(Proxy.Type.HTTP, proxy.httpProxy));
+                    proxyList.add(getProxyHostPort(Proxy.Type.HTTP, proxy.httpProxy));
                 } else if (!StringUtils.isBlank(proxy.socksProxy)) {
-                    builder.proxy(getProxyHostPort(Proxy.Type.SOCKS, proxy.socksProxy));
+                    proxyList.add(getProxyHostPort(Proxy.Type.SOCKS, proxy.socksProxy));
                 }
+            });
+            if (proxyList.size() == 1)
+                builder.proxy(proxyList.get(0));
+            else if (proxyList.size() > 1) {
+                pool = new ProxyPool(proxyList, definition.proxySelection);
+                builder.proxySelector(pool).addNetworkInterceptor(pool.interceptor());
             }
         }
+        proxyPool = pool;
 
         if (definition.cookies != null && !definition.cookies.isEmpty())
             builder.cookieJar(new Cookies(definition.cookies));
 
         userAgent = StringUtils.isBlank(definition.userAgent) ? null : definition.userAgent;
+        maxContentLength = definition.maxContentLength;
         bodies = ConcurrentHashMap.newKeySet();
+        this.bandwidth = bandwidth;
         if (definition.disableSslCheck != null && definition.disableSslCheck) {
             builder.sslSocketFactory(sslSocketFactory, (X509TrustManager) trustAllCerts[0])
                     .hostnameVerifier((hostnames, session) -> true);
@@ -163,20 +188,20 @@ public class QwazrDriver implements DriverInterface {
 
     @Override
     public Head head(WebRequestDefinition request) throws IOException {
-        return new HeadImpl(request);
+        return new HeadImpl(request, null);
     }
 
     @Override
-    public Body body(WebRequestDefinition request) throws IOException {
+    public Body body(WebRequestDefinition request, HeadFilter filter) throws IOException {
         final WebRequestDefinition.HttpMethod method =
                 request.method == null ? WebRequestDefinition.HttpMethod.GET : request.method;
         final Body body;
         switch (method) {
             case GET:
-                body = new GetImpl(request);
+                body = new GetImpl(request, filter);
                 break;
             case POST:
-                body = new PostImpl(request);
+                body = new PostImpl(request, filter);
                 break;
             default:
                 throw new NotImplementedException("Method not supported: " + method);
@@ -191,6 +216,8 @@ public class QwazrDriver implements DriverInterface {
         for (Body body : toClose)
             body.close();
         assert bodies.isEmpty();
+        if (proxyPool != null)
+            proxyPool.logStatistics();
     }
 
     static Long buildContentLength(String header) {
@@ -215,8 +242,11 @@ public class QwazrDriver implements DriverInterface {
         final Long contentLength;
         final String contentEncoding;
         final boolean isSuccessful;
+        final String requestMethod;
+        final Headers requestHeaders;
+        final String statusLine;
 
-        HeadImpl(final WebRequestDefinition request) throws IOException {
+        HeadImpl(final WebRequestDefinition request, final HeadFilter filter) throws IOException {
             this.request = request;
             final Request.Builder builder = new Request.Builder().url(request.url);
             if (userAgent != null)
@@ -224,11 +254,15 @@ public class QwazrDriver implements DriverInterface {
             if (request.headers != null)
                 request.headers.forEach(builder::header);
             request(builder);
-            try (final Response response = client.newCall(builder.build()).execute()) {
+            final Call call = client.newCall(builder.build());
+            try (final Response response = call.execute()) {
                 responseCode = response.code();
                 headers = response.headers();
-                content = response(response);
                 isSuccessful = response.isSuccessful();
+                requestMethod = response.request().method();
+                requestHeaders = response.request().headers();
+                statusLine = (response.protocol() == Protocol.HTTP_1_0 ? "HTTP/1.0 " : "HTTP/1.1 ") +
+                        responseCode + (StringUtils.isBlank(response.message()) ? "" : " " + response.message());
                 if (headers != null) {
                     redirectLocation = response.isRedirect() ? headers.get(HttpHeaders.LOCATION) : null;
                     contentType = buildContentType(headers.get(HttpHeaders.CONTENT_TYPE));
@@ -240,6 +274,13 @@ public class QwazrDriver implements DriverInterface {
                     contentLength = null;
                     contentEncoding = null;
                 }
+                // The headers are known, the filter decides if the content is transferred
+                final ContentAction action = filter == null ? ContentAction.STREAM : filter.check(this);
+                if (action == ContentAction.CANCEL) {
+                    cancel(call, request.url + " (" + responseCode + ' ' + contentType + ' ' + contentLength + ')');
+                    content = null;
+                } else
+                    content = response(response, action == ContentAction.TRUNCATE ? maxContentLength : null);
             }
         }
 
@@ -247,7 +288,7 @@ public class QwazrDriver implements DriverInterface {
             builder.head();
         }
 
-        ContentImpl response(Response response) throws IOException {
+        ContentImpl response(Response response, Long maxLength) throws IOException {
             return null;
         }
 
@@ -295,19 +336,47 @@ public class QwazrDriver implements DriverInterface {
         final public String getRedirectLocation() {
             return redirectLocation;
         }
+
+        @Override
+        final public String getRequestMethod() {
+            return requestMethod;
+        }
+
+        @Override
+        final public Map<String, List<String>> getRequestHeaderFields() {
+            return toMap(requestHeaders);
+        }
+
+        @Override
+        final public String getStatusLine() {
+            return statusLine;
+        }
+
+        @Override
+        final public Map<String, List<String>> getHeaderFields() {
+            return toMap(headers);
+        }
+    }
+
+    private static Map<String, List<String>> toMap(final Headers headers) {
+        final Map<String, List<String>> map = new LinkedHashMap<>();
+        if (headers != null)
+            for (int i = 0; i < headers.size(); i++)
+                map.computeIfAbsent(headers.name(i), name -> new ArrayList<>()).add(headers.value(i));
+        return map;
     }
 
     abstract class BodyImpl extends HeadImpl implements Body {
 
         private volatile Document document;
 
-        BodyImpl(WebRequestDefinition request) throws IOException {
-            super(request);
+        BodyImpl(WebRequestDefinition request, HeadFilter filter) throws IOException {
+            super(request, filter);
         }
 
         @Override
-        ContentImpl response(Response response) throws IOException {
-            return new ContentImpl(response);
+        ContentImpl response(Response response, Long maxLength) throws IOException {
+            return new ContentImpl(response, maxLength, bandwidth);
         }
 
         @Override
@@ -338,8 +407,8 @@ public class QwazrDriver implements DriverInterface {
 
     final class GetImpl extends BodyImpl {
 
-        GetImpl(final WebRequestDefinition request) throws IOException {
-            super(request);
+        GetImpl(final WebRequestDefinition request, final HeadFilter filter) throws IOException {
+            super(request, filter);
         }
 
         @Override
@@ -350,8 +419,8 @@ public class QwazrDriver implements DriverInterface {
 
     final class PostImpl extends BodyImpl {
 
-        PostImpl(final WebRequestDefinition request) throws IOException {
-            super(request);
+        PostImpl(final WebRequestDefinition request, final HeadFilter filter) throws IOException {
+            super(request, filter);
         }
 
         @Override
@@ -373,12 +442,12 @@ public class QwazrDriver implements DriverInterface {
         final String contentType;
         final Charset charset;
         final Long contentLength;
+        final boolean truncated;
 
-        ContentImpl(Response response) throws IOException {
+        ContentImpl(Response response, Long maxLength, ByteRateLimiter bandwidth) throws IOException {
             contentCache = Files.createTempFile("QwazrDriver", ".cache");
             try (ResponseBody responseBody = response.body()) {
                 if (responseBody != null) {
-                    contentLength = responseBody.contentLength();
                     final MediaType mediaType = responseBody.contentType();
                     if (mediaType != null) {
                         contentType = mediaType.type() + '/' + mediaType.subtype();
@@ -387,10 +456,20 @@ public class QwazrDriver implements DriverInterface {
                         contentType = null;
                         charset = null;
                     }
-                    try (final InputStream input = responseBody.byteStream()) {
-                        IOUtils.copy(input, contentCache);
+                    try (final InputStream input = bandwidth == null ?
+                            responseBody.byteStream() :
+                            bandwidth.limit(responseBody.byteStream())) {
+                        if (maxLength == null) {
+                            IOUtils.copy(input, contentCache);
+                            truncated = false;
+                        } else
+                            truncated = copy(input, contentCache, maxLength);
                     }
+                    // Chunked responses do not give the length, then we use the size of the cached content
+                    final long length = responseBody.contentLength();
+                    contentLength = length >= 0 && !truncated ? length : Files.size(contentCache);
                 } else {
+                    truncated = false;
                     contentLength = null;
                     contentType = null;
                     charset = null;
@@ -401,11 +480,36 @@ public class QwazrDriver implements DriverInterface {
             }
         }
 
+        /**
+         * Copy at most maxLength bytes.
+         *
+         * @return true if the input was longer than maxLength
+         */
+        static boolean copy(final InputStream input, final Path path, final long maxLength) throws IOException {
+            final byte[] buffer = new byte[8192];
+            long remaining = maxLength;
+            try (final OutputStream output = Files.newOutputStream(path)) {
+                while (remaining > 0) {
+                    final int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1)
+                        return false;
+                    output.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+            return input.read() != -1;
+        }
+
         @Override
         public void close() throws IOException {
             Files.deleteIfExists(contentCache);
         }
 
+        @Override
+        public boolean isTruncated() {
+            return truncated;
+        }
+
         @Override
         public boolean isClosed() {
             return contentCache == null || !Files.exists(contentCache);
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.driver;
+
+import com.qwazr.crawler.common.CrawlPhase;
+import com.qwazr.crawler.common.CrawlTimers;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * Feed the network phases of each HTTP call (DNS, connect, TTFB, download) into the session timers.
+ * A new instance is created for each call.
+ */
+final class TimersEventListener extends EventListener {
+
+    private final CrawlTimers timers;
+
+    private long dnsStart;
+    private long connectStart;
+    private long requestStart;
+    private long bodyStart;
+
+    private TimersEventListener(final CrawlTimers timers) {
+        this.timers = timers;
+    }
+
+    static EventListener.Factory factory(final CrawlTimers timers) {
+        return call -> new TimersEventListener(timers);
+    }
+
+    @Override
+    public void dnsStart(final Call call, final String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(final Call call, final String domainName, final List<InetAddress> inetAddressList) {
+        timers.recordSince(CrawlPhase.dns, dnsStart);
+    }
+
+    @Override
+    public void connectStart(final Call call, final InetSocketAddress inetSocketAddress, final Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(final Call call, final InetSocketAddress inetSocketAddress, final Proxy proxy,
+                           final Protocol protocol) {
+        timers.recordSince(CrawlPhase.connect, connectStart);
+    }
+
+    @Override
+    public void connectFailed(final Call call, final InetSocketAddress inetSocketAddress, final Proxy proxy,
+                              final Protocol protocol, final IOException ioe) {
+        timers.recordSince(CrawlPhase.connect, connectStart);
+    }
+
+    @Override
+    public void requestHeadersStart(final Call call) {
+        requestStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(final Call call) {
+        if (requestStart != 0)
+            timers.recordSince(CrawlPhase.ttfb, requestStart);
+    }
+
+    @Override
+    public void responseBodyStart(final Call call) {
+        bodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(final Call call, final long byteCount) {
+        if (bodyStart != 0)
+            timers.recordSince(CrawlPhase.download, bodyStart);
+    }
+}
@@ -26,6 +26,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -70,6 +72,13 @@ public class RobotsTxt {
         return userAgentMap == null ? null : userAgentMap.clauseMap;
     }
 
+    /**
+     * @return the URLs given by the Sitemap directives (may be empty)
+     */
+    public List<String> getSitemaps() {
+        return userAgentMap == null ? Collections.emptyList() : userAgentMap.sitemaps;
+    }
+
     /**
      * Build the Robots.txt URL from a reference URL
      *
@@ -20,9 +20,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 /**
  * Contains the list of clauses of a "robots.txt" file per UserAgent
@@ -31,12 +33,15 @@ final class RobotsTxtUserAgentMap {
 
     final Map<String, RobotsTxtClauseSet> clauseMap;
 
+    final List<String> sitemaps;
+
     RobotsTxtUserAgentMap(Builder builder) {
         if (builder.builderMap != null && !builder.builderMap.isEmpty()) {
             clauseMap = new HashMap<>();
             builder.builderMap.forEach((ua, clauses) -> clauseMap.put(ua, clauses.build()));
         } else
             clauseMap = null;
+        sitemaps = builder.sitemaps == null ? Collections.emptyList() : Collections.unmodifiableList(builder.sitemaps);
     }
 
     /**
@@ -65,15 +70,17 @@ final class RobotsTxtUserAgentMap {
                     continue;
                 if (line.length() == 0)
                     continue;
-                final StringTokenizer st = new StringTokenizer(line, ":");
-                if (!st.hasMoreTokens())
+                // Only the first colon is the separator (the value may be an URL)
+                final int separator = line.indexOf(':');
+                if (separator <= 0)
                     continue;
-                final String key = st.nextToken().trim();
-                String value;
-                if (!st.hasMoreTokens())
+                final String key = line.substring(0, separator).trim();
+                final String value = line.substring(separator + 1).trim();
+                if (value.isEmpty())
                     continue;
-                value = st.nextToken().trim();
-                if ("User-agent".equalsIgnoreCase(key)) {
+                if ("Sitemap".equalsIgnoreCase(key)) {
+                    builder.sitemap(value);
+                } else if ("User-agent".equalsIgnoreCase(key)) {
                     currentClauseSet = builder.userAgent(value.toLowerCase());
                 } else if ("Disallow".equalsIgnoreCase(key)) {
                     if (currentClauseSet != null)
@@ -91,12 +98,21 @@ final class RobotsTxtUserAgentMap {
 
         private Map<String, RobotsTxtClauseSet.Builder> builderMap;
 
+        private List<String> sitemaps;
+
         final RobotsTxtClauseSet.Builder userAgent(String userAgent) {
             if (builderMap == null)
                 builderMap = new HashMap<>();
             return builderMap.computeIfAbsent(userAgent, (ua) -> RobotsTxtClauseSet.of());
         }
 
+        final void sitemap(String sitemap) {
+            if (sitemaps == null)
+                sitemaps = new ArrayList<>();
+            if (!sitemaps.contains(sitemap))
+                sitemaps.add(sitemap);
+        }
+
         final RobotsTxtUserAgentMap build() throws IOException {
             return new RobotsTxtUserAgentMap(this);
         }
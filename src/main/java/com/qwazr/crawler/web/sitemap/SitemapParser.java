@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.sitemap;
+
+import com.qwazr.utils.LoggerUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming parser of the sitemaps (urlset) and of the sitemap indexes (sitemapindex).
+ * The entries are given to the consumers as soon as they are read, nothing is buffered.
+ */
+public class SitemapParser {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(SitemapParser.class);
+
+    private final static XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private final Consumer<SitemapUrl> urlConsumer;
+    private final Consumer<String> sitemapConsumer;
+
+    /**
+     * @param urlConsumer     receives the URLs of a urlset
+     * @param sitemapConsumer receives the sitemap URLs of a sitemapindex
+     */
+    public SitemapParser(final Consumer<SitemapUrl> urlConsumer, final Consumer<String> sitemapConsumer) {
+        this.urlConsumer = urlConsumer;
+        this.sitemapConsumer = sitemapConsumer;
+    }
+
+    /**
+     * Parse a sitemap. A gzip compressed stream is detected and uncompressed.
+     *
+     * @param input the sitemap stream
+     * @return the number of entries read
+     * @throws IOException if the stream cannot be read or is not a valid XML document
+     */
+    public int parse(final InputStream input) throws IOException {
+        try (final InputStream stream = uncompress(input)) {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(stream);
+            try {
+                return parse(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Sitemap parsing error: " + e.getMessage(), e);
+        }
+    }
+
+    static InputStream uncompress(final InputStream input) throws IOException {
+        final BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(2);
+        final int b1 = buffered.read();
+        final int b2 = buffered.read();
+        buffered.reset();
+        return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    private int parse(final XMLStreamReader reader) throws XMLStreamException {
+        int count = 0;
+        String loc = null;
+        String lastmod = null;
+        String priority = null;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    switch (reader.getLocalName()) {
+                        case "url":
+                        case "sitemap":
+                            loc = lastmod = priority = null;
+                            break;
+                        case "loc":
+                            loc = reader.getElementText().trim();
+                            break;
+                        case "lastmod":
+                            lastmod = reader.getElementText().trim();
+                            break;
+                        case "priority":
+                            priority = reader.getElementText().trim();
+                            break;
+                        default:
+                            break;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    switch (reader.getLocalName()) {
+                        case "url":
+                            if (loc != null && !loc.isEmpty()) {
+                                urlConsumer.accept(new SitemapUrl(loc, parseLastmod(lastmod), parsePriority(priority)));
+                                count++;
+                            }
+                            break;
+                        case "sitemap":
+                            if (loc != null && !loc.isEmpty()) {
+                                sitemapConsumer.accept(loc);
+                                count++;
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Parse a W3C datetime: a date (2021-01-31) or a date and a time (2021-01-31T18:00:15+00:00)
+     *
+     * @param lastmod the text of the lastmod element
+     * @return the time in milliseconds or null
+     */
+    static Long parseLastmod(final String lastmod) {
+        if (lastmod == null || lastmod.isEmpty())
+            return null;
+        try {
+            if (lastmod.length() <= 10)
+                return LocalDate.parse(lastmod).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            return OffsetDateTime.parse(lastmod).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            LOGGER.fine(() -> "Wrong lastmod: " + lastmod);
+            return null;
+        }
+    }
+
+    static Float parsePriority(final String priority) {
+        if (priority == null || priority.isEmpty())
+            return null;
+        try {
+            return Float.parseFloat(priority);
+        } catch (NumberFormatException e) {
+            LOGGER.fine(() -> "Wrong priority: " + priority);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.sitemap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An URL entry of a sitemap
+ */
+public final class SitemapUrl {
+
+    public final static float DEFAULT_PRIORITY = 0.5F;
+
+    final static int FRESHNESS_LEVELS = 16;
+
+    public final String loc;
+
+    /**
+     * The last modification time in milliseconds (may be null)
+     */
+    public final Long lastmod;
+
+    /**
+     * The priority between 0.0 and 1.0 (may be null)
+     */
+    public final Float priority;
+
+    SitemapUrl(final String loc, final Long lastmod, final Float priority) {
+        this.loc = loc;
+        this.lastmod = lastmod;
+        this.priority = priority;
+    }
+
+    /**
+     * Compute the crawl rank of the URL. The lowest rank is crawled first:
+     * the highest priorities first, then the most recently modified URLs.
+     *
+     * @param now the current time in milliseconds
+     * @return the rank
+     */
+    public int getRank(final long now) {
+        final float p = priority == null ? DEFAULT_PRIORITY : Math.max(0F, Math.min(1F, priority));
+        final int priorityRank = 10 - Math.round(p * 10);
+        final int freshnessRank;
+        if (lastmod == null)
+            freshnessRank = FRESHNESS_LEVELS - 1;
+        else {
+            // One level per power of two days: today, yesterday, 2-3 days, 4-7 days, ...
+            final long days = Math.max(0, TimeUnit.MILLISECONDS.toDays(now - lastmod));
+            freshnessRank = Math.min(FRESHNESS_LEVELS - 2, 64 - Long.numberOfLeadingZeros(days));
+        }
+        return priorityRank * FRESHNESS_LEVELS + freshnessRank;
+    }
+
+    /**
+     * @param loc the new location
+     * @return a copy of the entry with another location
+     */
+    public SitemapUrl withLoc(final String loc) {
+        return new SitemapUrl(loc, lastmod, priority);
+    }
+
+    @Override
+    public String toString() {
+        return loc;
+    }
+}
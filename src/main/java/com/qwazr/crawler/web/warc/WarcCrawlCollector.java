@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.warc;
+
+import com.qwazr.crawler.common.CrawlCollector;
+import com.qwazr.crawler.common.CrawlThreads;
+import com.qwazr.crawler.web.WebCrawlItem;
+import com.qwazr.crawler.web.driver.DriverInterface;
+import com.qwazr.utils.LoggerUtils;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Archive the downloaded bodies in WARC files.
+ * The records are written by a dedicated thread. The crawl thread only puts the item in a bounded queue:
+ * when the queue is full, the item is not archived rather than slowing down the crawl.
+ */
+final class WarcCrawlCollector implements CrawlCollector<WebCrawlItem> {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger(WarcCrawlCollector.class);
+
+    private final WarcWriter writer;
+    private final BlockingQueue<Task> queue;
+    private final Thread thread;
+    private final AtomicLong dropped;
+    private final AtomicLong errors;
+
+    WarcCrawlCollector(final WarcWriter writer, final int queueSize) {
+        this.writer = writer;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.dropped = new AtomicLong();
+        this.errors = new AtomicLong();
+        this.thread = CrawlThreads.newThreadFactory("warc-writer", false).newThread(this::run);
+        thread.start();
+    }
+
+    /**
+     * @return the number of items which were not archived because the queue was full
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of items which could not be written
+     */
+    long getErrors() {
+        return errors.get();
+    }
+
+    private static boolean hasBody(final WebCrawlItem crawlItem) {
+        final DriverInterface.Body body = crawlItem.getBody();
+        return body != null && body.getContent() != null && !body.getContent().isClosed();
+    }
+
+    /**
+     * Called without the ownership of the body (by a fan-out branch): the body is archived before returning.
+     */
+    @Override
+    public void collect(final WebCrawlItem crawlItem) {
+        if (!hasBody(crawlItem))
+            return;
+        final Task task = new Task(crawlItem, null, new CompletableFuture<>());
+        if (!queue.offer(task)) {
+            drop(crawlItem);
+            return;
+        }
+        task.done.join();
+    }
+
+    /**
+     * The body is closed by the writer thread once it is archived
+     */
+    @Override
+    public void collect(final WebCrawlItem crawlItem, final Closeable resources) throws IOException {
+        if (!hasBody(crawlItem)) {
+            if (resources != null)
+                resources.close();
+            return;
+        }
+        if (!queue.offer(new Task(crawlItem, resources, null))) {
+            drop(crawlItem);
+            if (resources != null)
+                resources.close();
+        }
+    }
+
+    private void drop(final WebCrawlItem crawlItem) {
+        if (dropped.incrementAndGet() == 1)
+            LOGGER.warning(() -> "The WARC writer is late, some items are not archived: " + crawlItem.getItem());
+    }
+
+    @Override
+    public void flush() {
+        final CompletableFuture<Void> flushed = new CompletableFuture<>();
+        try {
+            queue.put(new Task(null, null, flushed));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        flushed.join();
+    }
+
+    @Override
+    public void done() {
+        try {
+            queue.put(Task.STOP);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.info(() -> "WARC archive done: " + writer.getRecords() + " records, " + writer.getBytes() +
+                " bytes, " + writer.getFiles() + " files, " + dropped.get() + " dropped, " + errors.get() + " errors");
+    }
+
+    private void run() {
+        try {
+            for (; ; ) {
+                final Task task = queue.take();
+                if (task == Task.STOP)
+                    break;
+                write(task);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Cannot close the WARC file");
+            }
+        }
+    }
+
+    private void write(final Task task) {
+        try {
+            if (task.item == null)
+                writer.flush();
+            else
+                writer.writeExchange(task.item.getItem().toASCIIString(), task.item.getBody());
+        } catch (IOException | RuntimeException e) {
+            errors.incrementAndGet();
+            LOGGER.log(Level.WARNING, e, () -> "Cannot archive " + (task.item == null ? "" : task.item.getItem()));
+        } finally {
+            if (task.resources != null) {
+                try {
+                    task.resources.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, e, e::getMessage);
+                }
+            }
+            if (task.done != null)
+                task.done.complete(null);
+        }
+    }
+
+    private static final class Task {
+
+        private final static Task STOP = new Task(null, null, null);
+
+        private final WebCrawlItem item;
+        private final Closeable resources;
+        private final CompletableFuture<Void> done;
+
+        private Task(final WebCrawlItem item, final Closeable resources, final CompletableFuture<Void> done) {
+            this.item = item;
+            this.resources = resources;
+            this.done = done;
+        }
+    }
+}
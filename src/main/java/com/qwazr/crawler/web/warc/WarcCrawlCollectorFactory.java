@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.warc;
+
+import com.qwazr.crawler.common.Attributes;
+import com.qwazr.crawler.common.CrawlCollector;
+import com.qwazr.crawler.common.CrawlDefinition;
+import com.qwazr.crawler.web.WebCrawlCollectorFactory;
+import com.qwazr.crawler.web.WebCrawlDefinition;
+import com.qwazr.crawler.web.WebCrawlItem;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javax.ws.rs.InternalServerErrorException;
+
+/**
+ * A collector archiving the crawled requests and responses in WARC files.
+ * It is configured by the variables of the crawl definition:
+ * <ul>
+ * <li>warc_directory: the directory of the WARC files (required)</li>
+ * <li>warc_prefix: the prefix of the file names (default: crawl)</li>
+ * <li>warc_max_file_size: the size in bytes which starts a new file (default: 1GB)</li>
+ * <li>warc_queue_size: the number of items waiting for the writer (default: 10000)</li>
+ * </ul>
+ */
+public class WarcCrawlCollectorFactory implements WebCrawlCollectorFactory {
+
+    public final static String WARC_DIRECTORY = "warc_directory";
+    public final static String WARC_PREFIX = "warc_prefix";
+    public final static String WARC_MAX_FILE_SIZE = "warc_max_file_size";
+    public final static String WARC_QUEUE_SIZE = "warc_queue_size";
+
+    public final static String DEFAULT_PREFIX = "crawl";
+    public final static long DEFAULT_MAX_FILE_SIZE = 1024L * 1024 * 1024;
+    public final static int DEFAULT_QUEUE_SIZE = 10000;
+
+    static String getVariable(final WebCrawlDefinition crawlDefinition, final String key) {
+        if (crawlDefinition.variables == null)
+            return null;
+        for (final CrawlDefinition.Variable variable : crawlDefinition.variables)
+            if (key.equals(variable.key) && variable.value != null)
+                return variable.value.toString();
+        return null;
+    }
+
+    @Override
+    public CrawlCollector<WebCrawlItem> createCrawlCollector(final Attributes attributes,
+                                                             final WebCrawlDefinition crawlDefinition) {
+        final String directory = getVariable(crawlDefinition, WARC_DIRECTORY);
+        if (directory == null)
+            throw new IllegalArgumentException("The variable " + WARC_DIRECTORY + " is missing");
+        final String prefix = getVariable(crawlDefinition, WARC_PREFIX);
+        final String maxFileSize = getVariable(crawlDefinition, WARC_MAX_FILE_SIZE);
+        final String queueSize = getVariable(crawlDefinition, WARC_QUEUE_SIZE);
+        final Path warcDirectory = Paths.get(directory);
+        try {
+            return new WarcCrawlCollector(
+                    new WarcWriter(warcDirectory, prefix == null ? DEFAULT_PREFIX : prefix,
+                            maxFileSize == null ? DEFAULT_MAX_FILE_SIZE : Long.parseLong(maxFileSize)),
+                    queueSize == null ? DEFAULT_QUEUE_SIZE : Integer.parseInt(queueSize));
+        } catch (IOException e) {
+            throw new InternalServerErrorException("Cannot create the WARC directory: " + warcDirectory, e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.warc;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The index of the WARC files: where the response record of each URL is stored.
+ * Each WARC file has its own index file, one line per response record:
+ * the URL, the status code, the WARC file name, the offset and the length of the record, separated by tabs.
+ */
+public final class WarcIndex {
+
+    public final static String WARC_EXTENSION = ".warc.gz";
+    public final static String INDEX_EXTENSION = ".idx";
+
+    public static final class Entry {
+
+        public final String url;
+        public final int statusCode;
+        public final String file;
+        public final long offset;
+        public final long length;
+
+        public Entry(final String url, final int statusCode, final String file, final long offset, final long length) {
+            this.url = url;
+            this.statusCode = statusCode;
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        void write(final Writer writer) throws IOException {
+            writer.write(url);
+            writer.write('\t');
+            writer.write(Integer.toString(statusCode));
+            writer.write('\t');
+            writer.write(file);
+            writer.write('\t');
+            writer.write(Long.toString(offset));
+            writer.write('\t');
+            writer.write(Long.toString(length));
+            writer.write('\n');
+        }
+
+        static Entry parse(final String line) {
+            final String[] parts = line.split("\t");
+            if (parts.length != 5)
+                return null;
+            try {
+                return new Entry(parts[0], Integer.parseInt(parts[1]), parts[2],
+                        Long.parseLong(parts[3]), Long.parseLong(parts[4]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param warcFileName the name of a WARC file
+     * @return the name of its index file
+     */
+    static String indexFileName(final String warcFileName) {
+        final String baseName = warcFileName.endsWith(WARC_EXTENSION) ?
+                warcFileName.substring(0, warcFileName.length() - WARC_EXTENSION.length()) :
+                warcFileName;
+        return baseName + INDEX_EXTENSION;
+    }
+
+    /**
+     * Read every index file of a directory. When an URL has been archived several times, the last record wins.
+     *
+     * @param directory the directory of the WARC files
+     * @return the entries by URL
+     * @throws IOException if an index file cannot be read
+     */
+    public static Map<String, Entry> read(final Path directory) throws IOException {
+        final Map<String, Entry> entries = new LinkedHashMap<>();
+        try (final Stream<Path> files = Files.list(directory)) {
+            final Path[] indexFiles = files
+                    .filter(path -> path.getFileName().toString().endsWith(INDEX_EXTENSION))
+                    .sorted()
+                    .toArray(Path[]::new);
+            for (final Path indexFile : indexFiles) {
+                try (final BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        final Entry entry = Entry.parse(line);
+                        if (entry != null)
+                            entries.put(entry.url, entry);
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+}
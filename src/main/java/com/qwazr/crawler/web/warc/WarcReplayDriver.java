@@ -0,0 +1,392 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.warc;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
+import com.qwazr.crawler.web.WebRequestDefinition;
+import com.qwazr.crawler.web.driver.DriverInterface;
+import com.qwazr.utils.LoggerUtils;
+import okhttp3.MediaType;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A driver which reads the responses from a WARC archive written by {@link WarcCrawlCollectorFactory}
+ * instead of the network. The response record of a URL is found with the index of the archive.
+ * A URL which is not archived is answered with a 404 status, as a web server would do for an unknown resource.
+ * As the robots.txt files are not archived, the robots.txt rules are not checked while replaying.
+ */
+public final class WarcReplayDriver implements DriverInterface {
+
+    private final static Logger LOGGER = LoggerUtils.getLogger(WarcReplayDriver.class);
+
+    private final static String NOT_ARCHIVED_STATUS_LINE = "HTTP/1.1 404 Not Found";
+
+    private final Path directory;
+    private final Map<String, WarcIndex.Entry> index;
+    private final Long maxContentLength;
+
+    /**
+     * @param directory        the directory of the WARC files and their index files
+     * @param maxContentLength the length of a truncated content (may be null)
+     * @throws IOException if the index cannot be read
+     */
+    public WarcReplayDriver(final Path directory, final Long maxContentLength) throws IOException {
+        this.directory = directory;
+        this.index = WarcIndex.read(directory);
+        this.maxContentLength = maxContentLength;
+        LOGGER.info(() -> "Replay " + index.size() + " archived URLs from " + directory);
+    }
+
+    @Override
+    public Head head(final WebRequestDefinition request) throws IOException {
+        return new BodyImpl(request.url, head -> ContentAction.CANCEL);
+    }
+
+    @Override
+    public Body body(final WebRequestDefinition request, final HeadFilter filter) throws IOException {
+        return new BodyImpl(request.url, filter);
+    }
+
+    @Override
+    public void close() {
+        // The bodies do not hold any resource, the content is read from the archive on demand
+    }
+
+    private static boolean isRedirect(final int responseCode) {
+        switch (responseCode) {
+            case 300:
+            case 301:
+            case 302:
+            case 303:
+            case 307:
+            case 308:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read a line ended by CRLF (or LF)
+     *
+     * @return the line without its end, or null at the end of the stream
+     */
+    static String readLine(final InputStream input, final long[] position) throws IOException {
+        final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = input.read()) != -1) {
+            position[0]++;
+            if (b == '\n') {
+                final byte[] bytes = line.toByteArray();
+                final int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ?
+                        bytes.length - 1 :
+                        bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+        return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the header lines up to the empty line
+     */
+    static Map<String, List<String>> readHeaders(final InputStream input, final long[] position)
+            throws IOException {
+        final Map<String, List<String>> headers = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine(input, position)) != null && !line.isEmpty()) {
+            final int colon = line.indexOf(':');
+            if (colon <= 0)
+                continue;
+            headers.computeIfAbsent(line.substring(0, colon).trim(), name -> new ArrayList<>())
+                    .add(line.substring(colon + 1).trim());
+        }
+        return headers;
+    }
+
+    static String getFirst(final Map<String, List<String>> headers, final String name) {
+        for (final Map.Entry<String, List<String>> entry : headers.entrySet())
+            if (entry.getKey().equalsIgnoreCase(name))
+                return entry.getValue().isEmpty() ? null : entry.getValue().get(0);
+        return null;
+    }
+
+    private InputStream openRecord(final WarcIndex.Entry entry) throws IOException {
+        final SeekableByteChannel channel = Files.newByteChannel(directory.resolve(entry.file));
+        try {
+            channel.position(entry.offset);
+            return new BufferedInputStream(new GZIPInputStream(
+                    ByteStreams.limit(Channels.newInputStream(channel), entry.length), 8192), 8192);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    final class BodyImpl implements Body {
+
+        private final String url;
+        private final int responseCode;
+        private final String statusLine;
+        private final Map<String, List<String>> headers;
+        private final String contentType;
+        private final Long contentLength;
+        private final ContentImpl content;
+        private volatile Document document;
+
+        BodyImpl(final String url, final HeadFilter filter) throws IOException {
+            this.url = url;
+            final WarcIndex.Entry entry = index.get(url);
+            if (entry == null) {
+                responseCode = 404;
+                statusLine = NOT_ARCHIVED_STATUS_LINE;
+                headers = Collections.emptyMap();
+                contentType = null;
+                contentLength = null;
+                content = null;
+                return;
+            }
+            final long[] position = {0};
+            final Map<String, List<String>> warcHeaders;
+            final long payloadLength;
+            try (final InputStream input = openRecord(entry)) {
+                readLine(input, position); // WARC version
+                warcHeaders = readHeaders(input, position);
+                final long blockLength = Long.parseLong(getFirst(warcHeaders, "Content-Length"));
+                final long blockStart = position[0];
+                statusLine = readLine(input, position);
+                if (statusLine == null)
+                    throw new EOFException("No HTTP response in the WARC record of " + url);
+                headers = readHeaders(input, position);
+                payloadLength = blockLength - (position[0] - blockStart);
+            } catch (NumberFormatException e) {
+                throw new IOException("Wrong WARC record for " + url, e);
+            }
+            final String[] status = statusLine.split(" ", 3);
+            try {
+                responseCode = status.length > 1 ? Integer.parseInt(status[1]) : entry.statusCode;
+            } catch (NumberFormatException e) {
+                throw new IOException("Wrong HTTP status line for " + url + ": " + statusLine, e);
+            }
+            final MediaType mediaType = getFirst(headers, HttpHeaders.CONTENT_TYPE) == null ?
+                    null :
+                    MediaType.parse(getFirst(headers, HttpHeaders.CONTENT_TYPE));
+            contentType = mediaType == null ? null : mediaType.type() + '/' + mediaType.subtype();
+            contentLength = payloadLength;
+
+            // The headers are known, the filter decides if the content is read
+            final ContentAction contentAction = filter == null ? ContentAction.STREAM : filter.check(this);
+            if (contentAction == ContentAction.CANCEL) {
+                content = null;
+                return;
+            }
+            final boolean archivedTruncated = getFirst(warcHeaders, "WARC-Truncated") != null;
+            if (contentAction == ContentAction.TRUNCATE && maxContentLength != null &&
+                    payloadLength > maxContentLength)
+                content = new ContentImpl(entry, position[0], maxContentLength, mediaType, true);
+            else
+                content = new ContentImpl(entry, position[0], payloadLength, mediaType, archivedTruncated);
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        @Override
+        public Long getContentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getContentEncoding() {
+            // The archived payload is decoded
+            return null;
+        }
+
+        @Override
+        public List<String> getHeaders(final String name) {
+            for (final Map.Entry<String, List<String>> entry : headers.entrySet())
+                if (entry.getKey().equalsIgnoreCase(name))
+                    return entry.getValue();
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String getFirstHeader(final String name) {
+            return getFirst(headers, name);
+        }
+
+        @Override
+        public String getRedirectLocation() {
+            return isRedirect(responseCode) ? getFirst(headers, HttpHeaders.LOCATION) : null;
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return responseCode >= 200 && responseCode < 300;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return "GET";
+        }
+
+        @Override
+        public Map<String, List<String>> getRequestHeaderFields() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public String getStatusLine() {
+            return statusLine;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return headers;
+        }
+
+        @Override
+        public Content getContent() {
+            return content;
+        }
+
+        @Override
+        public synchronized Document getHtmlDocument() throws IOException {
+            if (document != null)
+                return document;
+            if (content == null)
+                return null;
+            if (!"text/html".equals(content.getContentType()))
+                return null;
+            try (final InputStream input = content.getInput()) {
+                document = Jsoup.parse(input, content.getCharsetName(), getUrl());
+            }
+            return document;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * The payload of a response record, decompressed from the archive each time it is read
+     */
+    final class ContentImpl implements Content {
+
+        private final WarcIndex.Entry entry;
+        private final long payloadOffset;
+        private final long length;
+        private final String contentType;
+        private final Charset charset;
+        private final boolean truncated;
+
+        private ContentImpl(final WarcIndex.Entry entry,
+                            final long payloadOffset,
+                            final long length,
+                            final MediaType mediaType,
+                            final boolean truncated) {
+            this.entry = entry;
+            this.payloadOffset = payloadOffset;
+            this.length = length;
+            this.contentType = mediaType == null ? null : mediaType.type() + '/' + mediaType.subtype();
+            this.charset = mediaType == null ? null : mediaType.charset();
+            this.truncated = truncated;
+        }
+
+        @Override
+        public InputStream getInput() throws IOException {
+            final InputStream input = openRecord(entry);
+            try {
+                long remaining = payloadOffset;
+                while (remaining > 0) {
+                    final long skipped = input.skip(remaining);
+                    if (skipped <= 0)
+                        throw new EOFException("The WARC record of " + entry.url + " is truncated");
+                    remaining -= skipped;
+                }
+                return ByteStreams.limit(input, length);
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public Charset getCharset() {
+            return charset;
+        }
+
+        @Override
+        public String getCharsetName() {
+            return charset == null ? null : charset.name();
+        }
+
+        @Override
+        public Long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+}
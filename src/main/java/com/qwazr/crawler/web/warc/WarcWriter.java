@@ -0,0 +1,305 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.warc;
+
+import com.qwazr.crawler.web.driver.DriverInterface;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Write the request and response records of the crawled URLs in WARC files.
+ * Each record is a separate gzip member, so that a record can be read from its offset.
+ * A new file is started when the current one reaches the maximum size.
+ * Not thread-safe: the records are written by a single thread.
+ */
+final class WarcWriter implements Closeable {
+
+    final static String WARC_VERSION = "WARC/1.1";
+    final static String CRLF = "\r\n";
+
+    private final static DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss")
+            .withZone(ZoneOffset.UTC);
+
+    // The HTTP headers which do not describe the archived payload (the content is stored decoded)
+    private final static String[] SKIPPED_HEADERS = {"Content-Encoding", "Transfer-Encoding", "Content-Length"};
+
+    private final Path directory;
+    private final String prefix;
+    private final long maxFileSize;
+    private final String runId;
+
+    private int fileSequence;
+    private String fileName;
+    private CountingOutputStream output;
+    private Writer indexWriter;
+
+    private long records;
+    private long bytes;
+
+    WarcWriter(final Path directory, final String prefix, final long maxFileSize) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxFileSize = maxFileSize;
+        this.runId = FILE_DATE.format(Instant.now());
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * @return the number of written records
+     */
+    long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return the number of written bytes (compressed)
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of started files
+     */
+    int getFiles() {
+        return fileSequence;
+    }
+
+    private void openFile() throws IOException {
+        fileName = prefix + '-' + runId + '-' + String.format("%05d", fileSequence++) + WarcIndex.WARC_EXTENSION;
+        output = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(directory.resolve(fileName),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), 65536));
+        indexWriter = Files.newBufferedWriter(directory.resolve(WarcIndex.indexFileName(fileName)),
+                StandardCharsets.UTF_8);
+        final Map<String, String> warcHeaders = newWarcHeaders("warcinfo", newRecordId());
+        warcHeaders.put("WARC-Filename", fileName);
+        warcHeaders.put("Content-Type", "application/warc-fields");
+        writeRecord(warcHeaders, ("software: QWAZR Crawler" + CRLF + "format: WARC File Format 1.1" + CRLF)
+                .getBytes(StandardCharsets.UTF_8), null, 0);
+    }
+
+    private void closeFile() throws IOException {
+        if (output == null)
+            return;
+        try (final Writer index = indexWriter) {
+            output.closeUnderlying();
+            index.flush();
+        } finally {
+            output = null;
+            indexWriter = null;
+        }
+    }
+
+    /**
+     * Write the response record of a crawled URL, followed by its request record.
+     *
+     * @param url  the crawled URL
+     * @param body the downloaded body
+     * @throws IOException if the records cannot be written
+     */
+    void writeExchange(final String url, final DriverInterface.Body body) throws IOException {
+        if (output == null)
+            openFile();
+        final DriverInterface.Content content = body.getContent();
+        final long payloadLength = content == null ? 0 : payloadLength(content);
+
+        final String responseId = newRecordId();
+        final Map<String, String> responseHeaders = newWarcHeaders("response", responseId);
+        responseHeaders.put("WARC-Target-URI", url);
+        responseHeaders.put("Content-Type", "application/http;msgtype=response");
+        if (content != null && content.isTruncated())
+            responseHeaders.put("WARC-Truncated", "length");
+        final long offset = output.count;
+        if (content == null)
+            writeRecord(responseHeaders, responseBlockHeader(body, 0), null, 0);
+        else
+            try (final InputStream input = content.getInput()) {
+                writeRecord(responseHeaders, responseBlockHeader(body, payloadLength), input, payloadLength);
+            }
+        new WarcIndex.Entry(url, body.getResponseCode(), fileName, offset, output.count - offset).write(indexWriter);
+
+        final Map<String, String> requestHeaders = newWarcHeaders("request", newRecordId());
+        requestHeaders.put("WARC-Target-URI", url);
+        requestHeaders.put("WARC-Concurrent-To", responseId);
+        requestHeaders.put("Content-Type", "application/http;msgtype=request");
+        writeRecord(requestHeaders, requestBlock(url, body), null, 0);
+
+        if (output.count >= maxFileSize)
+            closeFile();
+    }
+
+    /**
+     * Flush the current file and its index
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void flush() throws IOException {
+        if (output == null)
+            return;
+        output.flush();
+        indexWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeFile();
+    }
+
+    private static long payloadLength(final DriverInterface.Content content) throws IOException {
+        // The content is read twice (it is a local file): the WARC header gives the length before the payload
+        long length = 0;
+        try (final InputStream input = content.getInput()) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                length += read;
+        }
+        return length;
+    }
+
+    private static String newRecordId() {
+        return "<urn:uuid:" + UUID.randomUUID() + '>';
+    }
+
+    private static Map<String, String> newWarcHeaders(final String type, final String recordId) {
+        final Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("WARC-Type", type);
+        headers.put("WARC-Record-ID", recordId);
+        headers.put("WARC-Date", DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS)));
+        return headers;
+    }
+
+    private static boolean isSkipped(final String headerName) {
+        for (final String skipped : SKIPPED_HEADERS)
+            if (skipped.equalsIgnoreCase(headerName))
+                return true;
+        return false;
+    }
+
+    private static void appendHeaders(final StringBuilder sb, final Map<String, List<String>> headers) {
+        headers.forEach((name, values) -> {
+            if (isSkipped(name))
+                return;
+            for (final String value : values)
+                sb.append(name).append(": ").append(value).append(CRLF);
+        });
+    }
+
+    static byte[] responseBlockHeader(final DriverInterface.Head head, final long payloadLength) {
+        final StringBuilder sb = new StringBuilder(head.getStatusLine()).append(CRLF);
+        appendHeaders(sb, head.getHeaderFields());
+        sb.append("Content-Length: ").append(payloadLength).append(CRLF).append(CRLF);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] requestBlock(final String url, final DriverInterface.Head head) {
+        final URI uri = URI.create(url);
+        final String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        final StringBuilder sb = new StringBuilder(head.getRequestMethod())
+                .append(' ')
+                .append(path);
+        if (uri.getRawQuery() != null)
+            sb.append('?').append(uri.getRawQuery());
+        sb.append(" HTTP/1.1").append(CRLF);
+        final Map<String, List<String>> headers = head.getRequestHeaderFields();
+        if (headers.keySet().stream().noneMatch("Host"::equalsIgnoreCase))
+            sb.append("Host: ").append(uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ':' + uri.getPort())
+                    .append(CRLF);
+        appendHeaders(sb, headers);
+        sb.append(CRLF);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void writeRecord(final Map<String, String> warcHeaders,
+                             final byte[] blockHeader,
+                             final InputStream payload,
+                             final long payloadLength) throws IOException {
+        final StringBuilder sb = new StringBuilder(WARC_VERSION).append(CRLF);
+        warcHeaders.forEach((name, value) -> sb.append(name).append(": ").append(value).append(CRLF));
+        sb.append("Content-Length: ").append(blockHeader.length + payloadLength).append(CRLF).append(CRLF);
+        final long start = output.count;
+        final GZIPOutputStream gzip = new GZIPOutputStream(output, 8192);
+        gzip.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+        gzip.write(blockHeader);
+        if (payload != null) {
+            final byte[] buffer = new byte[8192];
+            long remaining = payloadLength;
+            while (remaining > 0) {
+                final int read = payload.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1)
+                    throw new IOException("The content is shorter than expected: " + remaining + " bytes missing");
+                gzip.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+        gzip.write((CRLF + CRLF).getBytes(StandardCharsets.UTF_8));
+        // Ends the gzip member and releases the deflater, the file is left open
+        gzip.close();
+        records++;
+        bytes += output.count - start;
+    }
+
+    /**
+     * Count the written bytes to know the offset of each record. Closing it does not close the file.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void closeUnderlying() throws IOException {
+            out.close();
+        }
+    }
+}
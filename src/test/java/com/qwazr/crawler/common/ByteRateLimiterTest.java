@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class ByteRateLimiterTest {
+
+    private static long readAll(final InputStream input) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] buffer = new byte[8192];
+        while (input.read(buffer) != -1)
+            ;
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Test
+    public void unlimited() throws IOException {
+        final ByteRateLimiter limiter = new ByteRateLimiter(null, null);
+        Assert.assertNull(limiter.getMaxBytesPerSec());
+        limiter.acquire(100_000_000L);
+        assertThat(limiter.getBytes(), equalTo(100_000_000L));
+    }
+
+    @Test
+    public void limitedWithParent() throws IOException {
+        final ByteRateLimiter node = new ByteRateLimiter(null, 0L);
+        final ByteRateLimiter session = new ByteRateLimiter(node, 50_000L);
+        assertThat(session.getMaxBytesPerSec(), equalTo(50_000L));
+        // The bucket gives the first second, the next 50,000 bytes wait for one more second
+        final long elapsedMs = readAll(session.limit(new ByteArrayInputStream(new byte[100_000])));
+        Assert.assertTrue(Long.toString(elapsedMs), elapsedMs >= 900 && elapsedMs < 5000);
+        assertThat(session.getBandwidth(), equalTo(new CrawlBandwidth(50_000L, 100_000L)));
+        assertThat(node.getBandwidth(), equalTo(new CrawlBandwidth(null, 100_000L)));
+    }
+
+    @Test
+    public void changedWhileWaiting() throws Exception {
+        final ByteRateLimiter limiter = new ByteRateLimiter(null, 1000L);
+        final long start = System.nanoTime();
+        final CompletableFuture<Void> transfer = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire(10_000);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(200);
+        Assert.assertFalse(transfer.isDone());
+        // Without limit, the waiting transfer goes on without waiting for the 9 seconds of debt
+        limiter.setMaxBytesPerSec(null);
+        transfer.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class CrawlCollectorFanOutTest {
+
+    private static ExecutorService executorService;
+
+    @BeforeAll
+    public static void setup() {
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @AfterAll
+    public static void cleanup() {
+        executorService.shutdown();
+    }
+
+    static class Item extends CrawlItemBase<Integer> {
+
+        Item(final int item) {
+            super(new Builder(item));
+        }
+
+        static class Builder extends BaseBuilder<Integer, Builder> {
+
+            Builder(final int item) {
+                super(item, 0);
+            }
+
+            @Override
+            protected Builder me() {
+                return this;
+            }
+        }
+    }
+
+    static class Collector implements CrawlCollector<Item> {
+
+        final List<Integer> items = new CopyOnWriteArrayList<>();
+        final AtomicInteger doneCalled = new AtomicInteger();
+        final boolean failOnOdd;
+
+        Collector(final boolean failOnOdd) {
+            this.failOnOdd = failOnOdd;
+        }
+
+        @Override
+        public void collect(final Item crawlItem) {
+            if (failOnOdd && (crawlItem.getItem() & 1) == 1)
+                throw new RuntimeException("Odd item: " + crawlItem.getItem());
+            items.add(crawlItem.getItem());
+        }
+
+        @Override
+        public void done() {
+            doneCalled.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void fanOutTest() throws IOException {
+        final Collector collector1 = new Collector(false);
+        final Collector collector2 = new Collector(true);
+        final Map<String, CrawlCollector<Item>> collectors = new LinkedHashMap<>();
+        collectors.put("one", collector1);
+        collectors.put("two", collector2);
+
+        final CrawlCollectorFanOut<Item> fanOut =
+                new CrawlCollectorFanOut<>(collectors, 4, executorService, Logger.getLogger("fanOutTest"));
+
+        final AtomicInteger released = new AtomicInteger();
+        for (int i = 0; i < 100; i++)
+            fanOut.collect(new Item(i), released::incrementAndGet);
+        fanOut.flush();
+        Assert.assertEquals(100, released.get());
+
+        fanOut.done();
+        Assert.assertEquals(100, collector1.items.size());
+        Assert.assertEquals(50, collector2.items.size());
+        Assert.assertEquals(1, collector1.doneCalled.get());
+        Assert.assertEquals(1, collector2.doneCalled.get());
+
+        final Map<String, CrawlCollectorFanOut.Metrics> metrics = fanOut.getMetrics();
+        Assert.assertEquals(100, metrics.get("one").collected);
+        Assert.assertEquals(0, metrics.get("one").errors);
+        Assert.assertEquals(50, metrics.get("two").collected);
+        Assert.assertEquals(50, metrics.get("two").errors);
+    }
+
+    @Test
+    public void failingBranchesTest() {
+        final Collector healthy = new Collector(false);
+        final Map<String, CrawlCollector<Item>> collectors = new LinkedHashMap<>();
+        collectors.put("healthy", healthy);
+        // A collector throwing an Error on each item
+        collectors.put("error", new Collector(false) {
+            @Override
+            public void collect(final Item crawlItem) {
+                throw new LinkageError("Broken collector");
+            }
+        });
+        // A collector whose branch thread ends on the first item
+        collectors.put("dead", new Collector(false) {
+            @Override
+            public void collect(final Item crawlItem) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        final CrawlCollectorFanOut<Item> fanOut =
+                new CrawlCollectorFanOut<>(collectors, 4, executorService, Logger.getLogger("failingBranchesTest"));
+
+        final AtomicInteger released = new AtomicInteger();
+        for (int i = 0; i < 100; i++)
+            fanOut.collect(new Item(i), released::incrementAndGet);
+        fanOut.flush();
+        Assert.assertEquals(100, released.get());
+        fanOut.done();
+
+        Assert.assertEquals(100, healthy.items.size());
+        final Map<String, CrawlCollectorFanOut.Metrics> metrics = fanOut.getMetrics();
+        Assert.assertEquals(100, metrics.get("error").errors);
+        Assert.assertEquals(1, metrics.get("dead").collected);
+    }
+}
@@ -16,9 +16,18 @@
 package com.qwazr.crawler.common;
 
 import com.qwazr.server.client.ErrorWrapper;
+import com.qwazr.utils.ObjectMappers;
 import com.qwazr.utils.WaitFor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import org.junit.Assert;
 
 public class CrawlHelpers {
 
@@ -34,5 +43,28 @@ public class CrawlHelpers {
         return statusRef.get();
     }
 
+    /**
+     * Read a page of the results of a session
+     */
+    public static List<CrawlResult> getResults(final String sessionName,
+                                               final CrawlerServiceInterface<?, ?> service,
+                                               final String cursor,
+                                               final Integer rows) throws IOException {
+        final Response response = service.getSessionResults(sessionName, cursor, rows, null);
+        Assert.assertEquals(200, response.getStatus());
+        final String ndjson;
+        if (service instanceof CrawlerSingleClient)
+            ndjson = response.readEntity(String.class);
+        else {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ((StreamingOutput) response.getEntity()).write(output);
+            ndjson = output.toString(StandardCharsets.UTF_8);
+        }
+        final List<CrawlResult> results = new ArrayList<>();
+        for (final String line : ndjson.split("\n"))
+            if (!line.isBlank())
+                results.add(ObjectMappers.JSON.readValue(line, CrawlResult.class));
+        return results;
+    }
 
-}
+}
\ No newline at end of file
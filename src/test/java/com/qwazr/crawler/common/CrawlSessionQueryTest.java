@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.crawler.file.FileCrawlSessionStatus;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class CrawlSessionQueryTest {
+
+    @Test
+    public void states() {
+        assertThat(CrawlSessionQuery.State.of(FileCrawlSessionStatus.of("node1").build()),
+                equalTo(CrawlSessionQuery.State.idle));
+        assertThat(CrawlSessionQuery.State.of(FileCrawlSessionStatus.of("node1").queued(2).build()),
+                equalTo(CrawlSessionQuery.State.queued));
+        assertThat(CrawlSessionQuery.State.of(FileCrawlSessionStatus.of("node1").start().build()),
+                equalTo(CrawlSessionQuery.State.running));
+        assertThat(CrawlSessionQuery.State.of(FileCrawlSessionStatus.of("node1").start().done().build()),
+                equalTo(CrawlSessionQuery.State.finished));
+    }
+
+    @Test
+    public void filters() {
+        final FileCrawlSessionStatus failed = FileCrawlSessionStatus.of("node1").start().incError().done().build();
+        final FileCrawlSessionStatus running = FileCrawlSessionStatus.of("node2").start().incCrawled().build();
+
+        final CrawlSessionQuery all = CrawlSessionQuery.of().build();
+        Assert.assertTrue(all.matches("session"));
+        Assert.assertTrue(all.matches(failed));
+        Assert.assertTrue(all.matches(running));
+        Assert.assertFalse(all.matches((CrawlSessionStatus<?>) null));
+        assertThat(all.rows, equalTo(CrawlSessionQuery.DEFAULT_ROWS));
+        assertThat(CrawlSessionQuery.of().cursor("").build().cursor, nullValue());
+
+        final CrawlSessionQuery pattern = CrawlSessionQuery.of().pattern("web-*").build();
+        Assert.assertTrue(pattern.matches("web-1"));
+        Assert.assertFalse(pattern.matches("file-1"));
+
+        final CrawlSessionQuery errors = CrawlSessionQuery.of().error(true).build();
+        Assert.assertTrue(errors.matches(failed));
+        Assert.assertFalse(errors.matches(running));
+
+        final CrawlSessionQuery node = CrawlSessionQuery.of().node("node2").build();
+        Assert.assertFalse(node.matches(failed));
+        Assert.assertTrue(node.matches(running));
+
+        final CrawlSessionQuery finished = CrawlSessionQuery.of().state(CrawlSessionQuery.State.finished).build();
+        Assert.assertTrue(finished.matches(failed));
+        Assert.assertFalse(finished.matches(running));
+    }
+}
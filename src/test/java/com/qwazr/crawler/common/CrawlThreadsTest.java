@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class CrawlThreadsTest {
+
+    @Test
+    public void availability() {
+        assertThat(CrawlThreads.isVirtualAvailable(), equalTo(Runtime.version().feature() >= 21));
+    }
+
+    @Test
+    public void platformThreads() throws Exception {
+        final ExecutorService executor = CrawlThreads.newExecutorService("platform-test", false);
+        try {
+            final Future<Thread> future = executor.submit(Thread::currentThread);
+            final Thread thread = future.get(10, TimeUnit.SECONDS);
+            assertThat(thread.getName(), startsWith("platform-test-"));
+            Assert.assertTrue(thread.isDaemon());
+            Assert.assertFalse(CrawlThreads.isVirtual(thread));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void virtualThreadsWhenAvailable() throws Exception {
+        final ExecutorService executor = CrawlThreads.newExecutorService("virtual-test", true);
+        try {
+            final Future<Thread> future = executor.submit(Thread::currentThread);
+            final Thread thread = future.get(10, TimeUnit.SECONDS);
+            assertThat(thread.getName(), startsWith("virtual-test-"));
+            assertThat(CrawlThreads.isVirtual(thread), equalTo(CrawlThreads.isVirtualAvailable()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.utils.ObjectMappers;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class CrawlTimerTest {
+
+    @Test
+    public void emptyTimer() {
+        final CrawlTimer.Snapshot snapshot = new CrawlTimer().getSnapshot();
+        Assert.assertEquals(0, snapshot.count);
+        Assert.assertEquals(0, snapshot.maxMs, 0);
+    }
+
+    @Test
+    public void bucketsAreContiguous() {
+        int previous = -1;
+        for (long value = 0; value < 100_000; value++) {
+            final int index = CrawlTimer.bucketIndex(value);
+            Assert.assertTrue(index == previous || index == previous + 1);
+            final long bucketValue = CrawlTimer.bucketValue(index);
+            Assert.assertTrue(Math.abs(bucketValue - value) <= Math.max(1, value / 8));
+            previous = index;
+        }
+        Assert.assertTrue(CrawlTimer.bucketIndex(Long.MAX_VALUE) >= 0);
+    }
+
+    @Test
+    public void percentiles() throws IOException {
+        final CrawlTimer timer = new CrawlTimer();
+        for (int i = 1; i <= 1000; i++)
+            timer.record(TimeUnit.MILLISECONDS.toNanos(i));
+        final CrawlTimer.Snapshot snapshot = timer.getSnapshot();
+        Assert.assertEquals(1000, snapshot.count);
+        Assert.assertEquals(500.5, snapshot.meanMs, 0.001);
+        Assert.assertEquals(500, snapshot.p50Ms, 500 * 0.07);
+        Assert.assertEquals(900, snapshot.p90Ms, 900 * 0.07);
+        Assert.assertEquals(990, snapshot.p99Ms, 990 * 0.07);
+        Assert.assertEquals(1000, snapshot.maxMs, 0.001);
+
+        final CrawlTimer.Snapshot snapshot2 = ObjectMappers.JSON.readValue(
+                ObjectMappers.JSON.writeValueAsString(snapshot), CrawlTimer.Snapshot.class);
+        Assert.assertEquals(snapshot, snapshot2);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.crawler.web.WebCrawlDefinition;
+import com.qwazr.crawler.web.WebCrawlSessionStatus;
+import com.qwazr.crawler.web.WebCrawlerServiceInterface;
+import com.qwazr.utils.WildcardMatcher;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import javax.ws.rs.NotFoundException;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class CrawlerClusterClientTest {
+
+    private static ExecutorService executorService;
+    private static Map<String, WebCrawlerServiceInterface> services;
+    private final static AtomicInteger interruptedCalls = new AtomicInteger();
+    private final static AtomicInteger requestedRows = new AtomicInteger();
+
+    private final static Function<List<WebCrawlSessionStatus>, WebCrawlSessionStatus> SUM = statuses -> {
+        final WebCrawlSessionStatus.Builder builder = WebCrawlSessionStatus.of("merged");
+        statuses.forEach(status -> {
+            for (int i = 0; i < status.crawled; i++)
+                builder.incCrawled();
+        });
+        return builder.build();
+    };
+
+    @BeforeAll
+    public static void setup() {
+        executorService = Executors.newCachedThreadPool();
+        services = new HashMap<>();
+        services.put("node1", fakeNode("node1", 0, "alpha", "beta"));
+        services.put("node2", fakeNode("node2", 0, "beta", "gamma", "delta"));
+        services.put("slow", fakeNode("slow", 5000, "epsilon"));
+    }
+
+    @AfterAll
+    public static void cleanup() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * A node knowing the given sessions, each one with one crawled item
+     */
+    private static WebCrawlerServiceInterface fakeNode(final String node, final long delayMs, final String... sessions) {
+        final TreeMap<String, WebCrawlSessionStatus> statuses = new TreeMap<>();
+        for (final String session : sessions)
+            statuses.put(session, WebCrawlSessionStatus.of(node).incCrawled().build());
+        return (WebCrawlerServiceInterface) Proxy.newProxyInstance(WebCrawlerServiceInterface.class.getClassLoader(),
+                new Class<?>[]{WebCrawlerServiceInterface.class}, (proxy, method, args) -> {
+                    if (delayMs > 0) {
+                        try {
+                            Thread.sleep(delayMs);
+                        } catch (InterruptedException e) {
+                            interruptedCalls.incrementAndGet();
+                            throw e;
+                        }
+                    }
+                    switch (method.getName()) {
+                        case "getSessions":
+                            // Like a node, filter and page the sorted sessions
+                            final WildcardMatcher matcher = args[0] == null ? null : new WildcardMatcher((String) args[0]);
+                            final List<String> names = new ArrayList<>();
+                            statuses.keySet().forEach(name -> {
+                                if (matcher == null || matcher.match(name))
+                                    names.add(name);
+                            });
+                            requestedRows.set((Integer) args[2]);
+                            ((IntConsumer) args[3]).accept(names.size());
+                            final LinkedHashMap<String, WebCrawlSessionStatus> page = new LinkedHashMap<>();
+                            names.stream()
+                                    .skip((Integer) args[1])
+                                    .limit((Integer) args[2])
+                                    .forEach(name -> page.put(name, statuses.get(name)));
+                            return page;
+                        case "getSessionStatus":
+                            final WebCrawlSessionStatus status = statuses.get((String) args[0]);
+                            if (status == null)
+                                throw new NotFoundException();
+                            return status;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private CrawlerClusterClient<WebCrawlDefinition, WebCrawlSessionStatus> client(final String... nodes) {
+        return new CrawlerClusterClient<>(Arrays.asList(nodes), services::get, executorService, 500L, SUM);
+    }
+
+    @Test
+    public void sessionsAreMergedAndPaginated() {
+        final AtomicInteger total = new AtomicInteger();
+        final List<String> missing = new ArrayList<>();
+        final LinkedHashMap<String, WebCrawlSessionStatus> page1 = client("node1", "node2")
+                .getSessions(null, 0, 2, total::set, missing::addAll);
+        assertThat(total.get(), equalTo(4));
+        Assert.assertTrue(missing.isEmpty());
+        assertThat(new ArrayList<>(page1.keySet()), equalTo(Arrays.asList("alpha", "beta")));
+        assertThat(page1.get("alpha").nodeAddress, equalTo("node1"));
+        assertThat(page1.get("beta").crawled, equalTo(2));
+
+        final LinkedHashMap<String, WebCrawlSessionStatus> page2 = client("node1", "node2")
+                .getSessions(null, 2, 2, total::set, null);
+        assertThat(new ArrayList<>(page2.keySet()), equalTo(Arrays.asList("delta", "gamma")));
+        assertThat(total.get(), equalTo(4));
+        // Each node is only asked for the sessions up to the end of the page
+        assertThat(requestedRows.get(), equalTo(4));
+
+        final LinkedHashMap<String, WebCrawlSessionStatus> filtered = client("node1", "node2")
+                .getSessions("*ta", 0, 10, total::set, null);
+        assertThat(total.get(), equalTo(2));
+        assertThat(new ArrayList<>(filtered.keySet()), equalTo(Arrays.asList("beta", "delta")));
+    }
+
+    @Test
+    public void slowNodeReturnsPartialResults() {
+        final AtomicInteger total = new AtomicInteger();
+        final List<String> missing = new ArrayList<>();
+        final long startTime = System.currentTimeMillis();
+        final LinkedHashMap<String, WebCrawlSessionStatus> sessions = client("node1", "node2", "slow")
+                .getSessions(null, 0, 10, total::set, missing::addAll);
+        // The nodes are called in parallel: the answer comes with the timeout
+        Assert.assertTrue(System.currentTimeMillis() - startTime < 4000);
+        assertThat(missing, equalTo(List.of("slow")));
+        assertThat(total.get(), equalTo(4));
+        Assert.assertFalse(sessions.containsKey("epsilon"));
+    }
+
+    @Test
+    public void sessionStatusIsMerged() {
+        final List<String> missing = new ArrayList<>();
+        final Collection<String> nodes = Arrays.asList("node1", "node2", "slow");
+        final CrawlerClusterClient<WebCrawlDefinition, WebCrawlSessionStatus> client =
+                new CrawlerClusterClient<>(nodes, services::get, executorService, 500L, SUM);
+        assertThat(client.getSessionStatus("beta", missing::addAll).crawled, equalTo(2));
+        assertThat(missing, equalTo(List.of("slow")));
+        assertThat(client.getSessionStatus("gamma", null).nodeAddress, equalTo("node2"));
+        Assert.assertNull(client.getSessionStatus("unknown", null));
+    }
+
+    @Test
+    public void slowNodeCallIsInterrupted() throws InterruptedException {
+        final int interrupted = interruptedCalls.get();
+        client("slow").getSessionStatus("epsilon", null);
+        // The timed out call does not keep its thread until the node answers
+        final long deadline = System.currentTimeMillis() + 2000;
+        while (interruptedCalls.get() == interrupted && System.currentTimeMillis() < deadline)
+            Thread.sleep(50);
+        Assert.assertTrue(interruptedCalls.get() > interrupted);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class SessionQueueTest {
+
+    @Test
+    public void priorityThenArrivalOrder() {
+        final AtomicLong clock = new AtomicLong();
+        final SessionQueue queue = new SessionQueue(clock::get);
+        Assert.assertTrue(queue.add("first", null));
+        Assert.assertTrue(queue.add("second", 0));
+        Assert.assertTrue(queue.add("urgent", 5));
+        Assert.assertFalse(queue.add("first", 10));
+        assertThat(queue.size(), equalTo(3));
+        assertThat(queue.position("urgent"), equalTo(1));
+        assertThat(queue.position("first"), equalTo(2));
+        assertThat(queue.position("second"), equalTo(3));
+        assertThat(queue.position("unknown"), nullValue());
+        assertThat(queue.poll(), equalTo("urgent"));
+        assertThat(queue.poll(), equalTo("first"));
+        assertThat(queue.poll(), equalTo("second"));
+        assertThat(queue.poll(), nullValue());
+    }
+
+    @Test
+    public void agingAvoidsStarvation() {
+        final AtomicLong clock = new AtomicLong();
+        final SessionQueue queue = new SessionQueue(clock::get);
+        queue.add("low", 0);
+        clock.addAndGet(SessionQueue.AGING_MS * 3);
+        queue.add("high", 2);
+        // After waiting three aging periods, the low priority session has an effective priority of 3
+        assertThat(queue.position("low"), equalTo(1));
+        queue.add("higher", 4);
+        assertThat(queue.poll(), equalTo("higher"));
+        assertThat(queue.poll(), equalTo("low"));
+        assertThat(queue.poll(), equalTo("high"));
+    }
+
+    @Test
+    public void sortedOrderFollowsAging() {
+        final AtomicLong clock = new AtomicLong();
+        final SessionQueue queue = new SessionQueue(clock::get);
+        queue.add("low", 0);
+        clock.set(SessionQueue.AGING_MS / 2);
+        queue.add("high", 1);
+        assertThat(queue.position("high"), equalTo(1));
+        assertThat(queue.position("low"), equalTo(2));
+        // The low priority session ages first and catches up with the other one, it arrived first
+        clock.set(SessionQueue.AGING_MS - 1);
+        assertThat(queue.position("high"), equalTo(1));
+        clock.set(SessionQueue.AGING_MS);
+        assertThat(queue.position("low"), equalTo(1));
+        assertThat(queue.position("high"), equalTo(2));
+        // Then the other one ages too
+        clock.set(SessionQueue.AGING_MS * 3 / 2);
+        assertThat(queue.position("high"), equalTo(1));
+        queue.remove("high");
+        assertThat(queue.position("low"), equalTo(1));
+    }
+
+    @Test
+    public void removeAndClear() {
+        final SessionQueue queue = new SessionQueue();
+        queue.add("a", 0);
+        queue.add("b", 0);
+        Assert.assertTrue(queue.remove("a"));
+        Assert.assertFalse(queue.remove("a"));
+        Assert.assertFalse(queue.contains("a"));
+        Assert.assertTrue(queue.contains("b"));
+        assertThat(queue.position("b"), equalTo(1));
+        queue.clear();
+        assertThat(queue.size(), equalTo(0));
+    }
+}
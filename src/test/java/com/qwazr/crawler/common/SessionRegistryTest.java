@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import com.qwazr.crawler.file.FileCrawlSessionStatus;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SessionRegistryTest {
+
+    private static SessionRegistry<Object, FileCrawlSessionStatus> registry() {
+        final SessionRegistry<Object, FileCrawlSessionStatus> registry = new SessionRegistry<>();
+        registry.putStatus("c", FileCrawlSessionStatus.of("node1").build());
+        registry.putStatus("a", FileCrawlSessionStatus.of("node1").start().build());
+        registry.putStatus("b", FileCrawlSessionStatus.of("node1").start().done().build());
+        return registry;
+    }
+
+    @Test
+    public void positions() {
+        final SessionRegistry<Object, FileCrawlSessionStatus> registry = registry();
+        assertThat(registry.names(0), equalTo(List.of("a", "b", "c")));
+        assertThat(registry.names(2), equalTo(List.of("c")));
+        assertThat(registry.names(10), equalTo(List.of()));
+        assertThat(registry.names((String) null), equalTo(List.of("a", "b", "c")));
+        assertThat(registry.names("a"), equalTo(List.of("b", "c")));
+        assertThat(registry.names("bb"), equalTo(List.of("c")));
+        assertThat(registry.names("c"), equalTo(List.of()));
+
+        registry.putDefinition("ab", new Object());
+        assertThat(registry.names("a"), equalTo(List.of("ab", "b", "c")));
+        registry.remove("b");
+        assertThat(registry.names(1), equalTo(List.of("ab", "c")));
+    }
+
+    @Test
+    public void counts() {
+        final SessionRegistry<Object, FileCrawlSessionStatus> registry = registry();
+        assertThat(registry.count(null), equalTo(3));
+        assertThat(registry.count(CrawlSessionQuery.State.idle), equalTo(1));
+        assertThat(registry.count(CrawlSessionQuery.State.running), equalTo(1));
+        assertThat(registry.count(CrawlSessionQuery.State.finished), equalTo(1));
+
+        registry.putStatus("a", FileCrawlSessionStatus.of("node1").start().done().build());
+        assertThat(registry.count(CrawlSessionQuery.State.running), equalTo(0));
+        assertThat(registry.count(CrawlSessionQuery.State.finished), equalTo(2));
+
+        registry.remove("b");
+        registry.remove("unknown");
+        assertThat(registry.count(null), equalTo(2));
+        assertThat(registry.count(CrawlSessionQuery.State.finished), equalTo(1));
+    }
+}
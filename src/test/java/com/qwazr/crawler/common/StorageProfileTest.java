@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+
+public class StorageProfileTest {
+
+    @Test
+    public void defaultProfile() {
+        assertThat(StorageProfile.of(null), equalTo(StorageProfile.durable));
+        assertThat(StorageProfile.of(StorageProfile.fast), equalTo(StorageProfile.fast));
+        Assert.assertTrue(StorageProfile.durable.isPersistent());
+        Assert.assertTrue(StorageProfile.fast.isPersistent());
+        Assert.assertFalse(StorageProfile.temporary.isPersistent());
+    }
+
+    @Test
+    public void checkpoints() {
+        final long now = System.nanoTime();
+        Assert.assertTrue(StorageProfile.durable.isCommitDue(now, now));
+        Assert.assertFalse(StorageProfile.fast.isCommitDue(now, now + TimeUnit.SECONDS.toNanos(1)));
+        Assert.assertTrue(StorageProfile.fast.isCommitDue(now, now + TimeUnit.SECONDS.toNanos(5)));
+        Assert.assertFalse(StorageProfile.temporary.isCommitDue(now, now + TimeUnit.HOURS.toNanos(1)));
+    }
+
+    private void writeAndRead(final StorageProfile storageProfile, final boolean kept) throws IOException {
+        final Path directory = Files.createTempDirectory("storage-profile");
+        final Path databaseFile = directory.resolve(storageProfile.name());
+        try (final DB db = storageProfile.open(databaseFile)) {
+            final Map<String, Integer> map = db.hashMap("test", Serializer.STRING, Serializer.INTEGER).createOrOpen();
+            for (int i = 0; i < 1000; i++)
+                map.put("key" + i, i);
+            db.commit();
+        }
+        assertThat(Files.exists(databaseFile), equalTo(kept));
+        if (kept) {
+            try (final DB db = storageProfile.open(databaseFile)) {
+                final Map<String, Integer> map = db.hashMap("test", Serializer.STRING, Serializer.INTEGER).createOrOpen();
+                assertThat(map.size(), equalTo(1000));
+                assertThat(map.get("key500"), equalTo(500));
+            }
+        }
+        try (final Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> path.toFile().delete());
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void durable() throws IOException {
+        writeAndRead(StorageProfile.durable, true);
+    }
+
+    @Test
+    public void fast() throws IOException {
+        writeAndRead(StorageProfile.fast, true);
+    }
+
+    @Test
+    public void temporary() throws IOException {
+        writeAndRead(StorageProfile.temporary, false);
+    }
+}
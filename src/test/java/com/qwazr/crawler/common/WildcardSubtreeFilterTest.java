@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.common;
+
+import java.util.List;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class WildcardSubtreeFilterTest {
+
+    private static WildcardSubtreeFilter of(final WildcardFilter.Status policy, final String... patternStatus) {
+        final CrawlDefinition.Filter[] filters = new CrawlDefinition.Filter[patternStatus.length / 2];
+        for (int i = 0; i < filters.length; i++)
+            filters[i] = new CrawlDefinition.Filter(patternStatus[i * 2],
+                    WildcardFilter.Status.valueOf(patternStatus[i * 2 + 1]));
+        return new WildcardSubtreeFilter(List.of(filters), policy);
+    }
+
+    @Test
+    public void acceptOnly() {
+        final WildcardSubtreeFilter filter = of(WildcardFilter.Status.reject,
+                "*/", "accept",
+                "/data/2024/*.pdf", "accept");
+        Assert.assertTrue(filter.mayAcceptFiles("", '/'));
+        Assert.assertTrue(filter.mayAcceptFiles("/", '/'));
+        Assert.assertTrue(filter.mayAcceptFiles("/data/", '/'));
+        Assert.assertTrue(filter.mayAcceptFiles("/data/2024/", '/'));
+        Assert.assertTrue(filter.mayAcceptFiles("/data/2024/january/", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/data/2023/", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/home/", '/'));
+        // The case may be ignored by the matcher: the answer stays conservative
+        Assert.assertTrue(filter.mayAcceptFiles("/DATA/2024/", '/'));
+    }
+
+    @Test
+    public void rejectBeforeAccept() {
+        final WildcardSubtreeFilter filter = of(WildcardFilter.Status.reject,
+                "*/", "accept",
+                "/data/tmp/*", "reject",
+                "/data/*/ignore.*", "reject",
+                "/data/*", "accept");
+        Assert.assertTrue(filter.mayAcceptFiles("/data/", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/data/tmp/", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/data/tmp/sub/", '/'));
+        // A reject filter which matches only some files does not prune the directory
+        Assert.assertTrue(filter.mayAcceptFiles("/data/docs/", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/other/", '/'));
+    }
+
+    @Test
+    public void singleCharWildcard() {
+        final WildcardSubtreeFilter filter = of(WildcardFilter.Status.reject,
+                "/logs/202?/*.log", "accept");
+        Assert.assertTrue(filter.mayAcceptFiles("/logs/2021/", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/logs/2021x/", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/logs/1999/", '/'));
+    }
+
+    @Test
+    public void acceptPolicy() {
+        final WildcardSubtreeFilter filter = of(WildcardFilter.Status.accept, "/private/*", "reject");
+        Assert.assertFalse(filter.mayAcceptFiles("/private/", '/'));
+        Assert.assertTrue(filter.mayAcceptFiles("/public/", '/'));
+        Assert.assertTrue(of(WildcardFilter.Status.accept).mayAcceptFiles("/any/", '/'));
+    }
+
+    @Test
+    public void directoriesOnly() {
+        // No file can be accepted at all
+        final WildcardSubtreeFilter filter = of(WildcardFilter.Status.reject, "*/", "accept");
+        Assert.assertFalse(filter.mayAcceptFiles("", '/'));
+        Assert.assertFalse(filter.mayAcceptFiles("/data/", '/'));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class FileChangeWatcherTest {
+
+    @Test
+    public void coalesce() {
+        assertThat(FileChangeWatcher.coalesce(null, FileCrawlItem.Change.modified),
+                equalTo(FileCrawlItem.Change.modified));
+        assertThat(FileChangeWatcher.coalesce(FileCrawlItem.Change.created, FileCrawlItem.Change.modified),
+                equalTo(FileCrawlItem.Change.created));
+        assertThat(FileChangeWatcher.coalesce(FileCrawlItem.Change.created, FileCrawlItem.Change.deleted),
+                nullValue());
+        assertThat(FileChangeWatcher.coalesce(FileCrawlItem.Change.deleted, FileCrawlItem.Change.created),
+                equalTo(FileCrawlItem.Change.modified));
+        assertThat(FileChangeWatcher.coalesce(FileCrawlItem.Change.modified, FileCrawlItem.Change.deleted),
+                equalTo(FileCrawlItem.Change.deleted));
+        assertThat(FileChangeWatcher.coalesce(FileCrawlItem.Change.modified, FileCrawlItem.Change.created),
+                equalTo(FileCrawlItem.Change.modified));
+    }
+
+    /**
+     * Poll the watcher until the expected number of changes is emitted
+     */
+    private static void pollUntil(final FileChangeWatcher watcher, final Map<Path, FileCrawlItem.Change> changes,
+                                  final int expected) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (changes.size() < expected && System.nanoTime() < end)
+            watcher.poll(100);
+    }
+
+    @Test
+    public void watch() throws IOException, InterruptedException {
+        final Path root = Files.createTempDirectory("watch");
+        final Path existing = Files.createFile(root.resolve("existing.txt"));
+        final Path ignored = Files.createDirectory(root.resolve("ignored"));
+        final Map<Path, FileCrawlItem.Change> changes = new LinkedHashMap<>();
+        final Map<Path, Boolean> directories = new LinkedHashMap<>();
+        try (final FileChangeWatcher watcher = new FileChangeWatcher(root, 3, 100,
+                dir -> !dir.equals(ignored),
+                (path, change, attributes, directory) -> {
+                    Assert.assertTrue(change == FileCrawlItem.Change.deleted || attributes != null);
+                    changes.put(path, change);
+                    directories.put(path, directory);
+                })) {
+            watcher.register(root);
+            assertThat(watcher.size(), equalTo(1));
+
+            // A new file
+            final Path created = Files.writeString(root.resolve("created.txt"), "created");
+            Files.writeString(created, "modified");
+            // A new directory with its content
+            final Path subDir = Files.createDirectories(root.resolve("dir"));
+            final Path subFile = Files.writeString(subDir.resolve("sub.txt"), "sub");
+            // A file created then deleted is never emitted
+            Files.delete(Files.createFile(root.resolve("transient.txt")));
+            pollUntil(watcher, changes, 3);
+            assertThat(changes.get(created), equalTo(FileCrawlItem.Change.created));
+            assertThat(changes.get(subDir), equalTo(FileCrawlItem.Change.created));
+            assertThat(changes.get(subFile), equalTo(FileCrawlItem.Change.created));
+            assertThat(directories.get(subDir), equalTo(true));
+            Assert.assertFalse(changes.containsKey(root.resolve("transient.txt")));
+            assertThat(watcher.size(), equalTo(2));
+
+            // The content of a directory which is not accepted is not watched
+            changes.clear();
+            Files.createFile(ignored.resolve("file.txt"));
+            Files.writeString(existing, "modified");
+            pollUntil(watcher, changes, 1);
+            assertThat(changes.get(existing), equalTo(FileCrawlItem.Change.modified));
+            Assert.assertFalse(changes.containsKey(ignored.resolve("file.txt")));
+
+            // Deletions
+            changes.clear();
+            Files.delete(subFile);
+            Files.delete(subDir);
+            pollUntil(watcher, changes, 2);
+            assertThat(changes.get(subFile), equalTo(FileCrawlItem.Change.deleted));
+            assertThat(changes.get(subDir), equalTo(FileCrawlItem.Change.deleted));
+            assertThat(directories.get(subDir), equalTo(true));
+            assertThat(directories.get(subFile), equalTo(false));
+        }
+    }
+}
@@ -18,11 +18,17 @@ package com.qwazr.crawler.file;
 import com.qwazr.crawler.common.Attributes;
 import com.qwazr.crawler.common.CrawlCollector;
 import com.qwazr.crawler.common.CrawlCollectorTest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.validation.constraints.NotNull;
 import org.junit.Assert;
@@ -34,6 +40,7 @@ public class FileCrawlCollectorFactoryTest implements FileCrawlCollectorFactory
     public static final List<Path> paths = new ArrayList<>();
     public static final Map<Path, Integer> pathDepth = new LinkedHashMap<>();
     public static final Map<Path, String> pathError = new LinkedHashMap<>();
+    public static final Map<Path, FileCrawlItem.Change> changes = new ConcurrentHashMap<>();
 
     public static void resetCounters() {
         definition.set(null);
@@ -41,6 +48,7 @@ public class FileCrawlCollectorFactoryTest implements FileCrawlCollectorFactory
         paths.clear();
         pathDepth.clear();
         pathError.clear();
+        changes.clear();
     }
 
     @Override
@@ -57,11 +65,25 @@ public class FileCrawlCollectorFactoryTest implements FileCrawlCollectorFactory
         public void collect(final FileCrawlItem crawlItem) {
             super.collect(crawlItem);
             Assert.assertNotNull(crawlItem.getItem());
-            Assert.assertNotNull(crawlItem.getAttributes());
+            if (crawlItem.getChange() != FileCrawlItem.Change.deleted)
+                Assert.assertNotNull(crawlItem.getAttributes());
+            if (crawlItem.getChange() != null)
+                changes.put(crawlItem.getItem(), crawlItem.getChange());
             paths.add(crawlItem.getItem());
             if (crawlItem.getError() != null)
                 pathError.put(crawlItem.getItem(), crawlItem.getError());
             pathDepth.put(crawlItem.getItem(), crawlItem.getDepth());
+            // The accepted files are read, like an indexer would
+            if (crawlItem.getRejected() == null && crawlItem.getAttributes() != null &&
+                    crawlItem.getAttributes().isRegularFile()) {
+                try (final InputStream input = crawlItem.newInputStream()) {
+                    input.transferTo(OutputStream.nullOutputStream());
+                } catch (NoSuchFileException e) {
+                    // The file of a continuous session may be deleted before it is collected
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
         }
 
     }
@@ -16,7 +16,10 @@
 package com.qwazr.crawler.file;
 
 import com.qwazr.crawler.common.CrawlCollectorTest;
+import com.qwazr.crawler.common.CrawlHelpers;
+import com.qwazr.crawler.common.CrawlResult;
 import com.qwazr.crawler.common.Rejected;
+import com.qwazr.crawler.common.StorageProfile;
 import com.qwazr.crawler.common.WildcardFilter;
 import com.qwazr.utils.FileUtils;
 import com.qwazr.utils.RandomUtils;
@@ -28,12 +31,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.WebApplicationException;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import org.junit.Assert;
@@ -79,10 +87,10 @@ public class FileCrawlManagerTest {
                 .addFilter("*.txt", WildcardFilter.Status.accept);
     }
 
-    void crawlTest(final FileCrawlDefinition.Builder fileCrawlDefinitionBuilder,
-                   final int expectedCrawled,
-                   final int expectedIgnored,
-                   final int expectedError) throws InterruptedException {
+    String crawlTest(final FileCrawlDefinition.Builder fileCrawlDefinitionBuilder,
+                     final int expectedCrawled,
+                     final int expectedIgnored,
+                     final int expectedError) throws InterruptedException {
         FileCrawlCollectorFactoryTest.resetCounters();
         final String crawlSession = RandomUtils.alphanumeric(5);
         FileCrawlSessionStatus upsertStatus = crawlerManager.upsertSession(crawlSession, fileCrawlDefinitionBuilder.build());
@@ -104,7 +112,7 @@ public class FileCrawlManagerTest {
         assertThat(FileCrawlCollectorFactoryTest.attributes.get(), notNullValue());
         assertThat(FileCrawlCollectorFactoryTest.attributes.get().getInstance("instant", Instant.class),
                 equalTo(instantAttribute));
-
+        return crawlSession;
     }
 
     @Test
@@ -125,10 +133,121 @@ public class FileCrawlManagerTest {
                 Path.of("src/test/file_crawl/ignore"), Rejected.WILDCARD_FILTER)));
     }
 
+    private int countResults(final String crawlSession) throws IOException {
+        final AtomicInteger count = new AtomicInteger();
+        crawlerManager.exportSessionResults(crawlSession, null, 1000, result -> count.incrementAndGet());
+        return count.get();
+    }
+
+    @Test
+    public void bandwidthTest() throws InterruptedException {
+        final long bytes = crawlerManager.getBandwidth().bytes;
+        crawlTest(getFileCrawlDefinition().setMaxBytesPerSec(1024L * 1024), 9, 2, 0);
+        // The three accepted files read by the collector are charged to the budget shared by the sessions
+        assertThat(crawlerManager.getBandwidth().bytes, equalTo(bytes + 15));
+        assertThat(crawlerManager.setMaxBytesPerSec(4096L).maxBytesPerSec, equalTo(4096L));
+        Assert.assertNull(crawlerManager.setMaxBytesPerSec(null).maxBytesPerSec);
+        try {
+            crawlerManager.setSessionMaxBytesPerSec("notRunning", 4096L);
+            Assert.fail("NotFoundException expected");
+        } catch (NotFoundException e) {
+            assertThat(e.getMessage(), notNullValue());
+        }
+    }
+
+    @Test
+    public void storageProfilesTest() throws InterruptedException, IOException {
+        final String durableSession = crawlTest(
+                getFileCrawlDefinition().setStorageProfile(StorageProfile.durable), 9, 2, 0);
+        final String fastSession = crawlTest(
+                getFileCrawlDefinition().setStorageProfile(StorageProfile.fast), 9, 2, 0);
+        final String temporarySession = crawlTest(
+                getFileCrawlDefinition().setStorageProfile(StorageProfile.temporary), 9, 2, 0);
+        final int durableResults = countResults(durableSession);
+        assertThat(durableResults, greaterThan(0));
+        assertThat(countResults(fastSession), equalTo(durableResults));
+        // Nothing is kept from a temporary session
+        try {
+            countResults(temporarySession);
+            Assert.fail("NotFoundException expected");
+        } catch (NotFoundException e) {
+            assertThat(e.getMessage(), notNullValue());
+        }
+    }
+
+    @Test
+    public void runningTemporarySessionResultsTest() throws InterruptedException, IOException {
+        FileCrawlCollectorFactoryTest.resetCounters();
+        final String crawlSession = RandomUtils.alphanumeric(5);
+        crawlerManager.upsertSession(crawlSession,
+                getFileCrawlDefinition().setStorageProfile(StorageProfile.temporary).setCrawlWaitMs(500).build());
+        crawlerManager.runSession(crawlSession);
+        FileCrawlSessionStatus crawlStatus = crawlerManager.getSessionStatus(crawlSession);
+        while (crawlStatus.crawled == 0 && crawlStatus.endTime == null) {
+            Thread.sleep(50);
+            crawlStatus = crawlerManager.getSessionStatus(crawlSession);
+        }
+        Assert.assertNull(crawlStatus.endTime);
+        // A temporary session has no session file, its results are read from the live session
+        final List<CrawlResult> results = CrawlHelpers.getResults(crawlSession, crawlerManager.getService(), null, null);
+        assertThat(results.size(), greaterThan(0));
+        waitForEnd(crawlSession);
+    }
+
+    @Test
+    public void resultsRowsTest() {
+        try {
+            crawlerManager.getService().getSessionResults("any", null, 0, null);
+            Assert.fail("WebApplicationException expected");
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus(), equalTo(400));
+        }
+    }
+
     @Test
     public void crawlDepth() throws InterruptedException {
         crawlTest(getFileCrawlDefinition().setMaxDepth(1), 5, 1, 0);
         crawlTest(getFileCrawlDefinition().setMaxDepth(2), 8, 2, 0);
         crawlTest(getFileCrawlDefinition().setMaxDepth(0), 1, 0, 0);
     }
+
+    private FileCrawlSessionStatus waitForEnd(final String sessionName) throws InterruptedException {
+        FileCrawlSessionStatus crawlStatus = crawlerManager.getSessionStatus(sessionName);
+        while (crawlStatus.endTime == null) {
+            Thread.sleep(250);
+            crawlStatus = crawlerManager.getSessionStatus(sessionName);
+        }
+        return crawlStatus;
+    }
+
+    @Test
+    public void waitingSessionsTest() throws InterruptedException {
+        crawlerManager.setMaxRunningSessions(1);
+        try {
+            final String slow = RandomUtils.alphanumeric(6);
+            final String normal = RandomUtils.alphanumeric(6);
+            final String urgent = RandomUtils.alphanumeric(6);
+            crawlerManager.upsertSession(slow, getFileCrawlDefinition().setCrawlWaitMs(200).build());
+            crawlerManager.upsertSession(normal, getFileCrawlDefinition().build());
+            crawlerManager.upsertSession(urgent, getFileCrawlDefinition().setPriority(10).build());
+
+            assertThat(crawlerManager.runSession(slow).queuePosition, equalTo(null));
+            assertThat(crawlerManager.runSession(normal).queuePosition, equalTo(1));
+            // The session with the highest priority goes first
+            assertThat(crawlerManager.runSession(urgent).queuePosition, equalTo(1));
+            assertThat(crawlerManager.getSessionStatus(normal).queuePosition, equalTo(2));
+            assertThat(crawlerManager.getSessionStatus(normal).running, equalTo(false));
+
+            final FileCrawlSessionStatus slowStatus = waitForEnd(slow);
+            final FileCrawlSessionStatus urgentStatus = waitForEnd(urgent);
+            final FileCrawlSessionStatus normalStatus = waitForEnd(normal);
+            assertThat(slowStatus.crawled, equalTo(9));
+            assertThat(urgentStatus.crawled, equalTo(9));
+            assertThat(normalStatus.crawled, equalTo(9));
+            Assert.assertTrue(urgentStatus.startTime >= slowStatus.endTime);
+            Assert.assertTrue(normalStatus.startTime >= urgentStatus.endTime);
+        } finally {
+            crawlerManager.setMaxRunningSessions(null);
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package com.qwazr.crawler.file;
 
+import com.qwazr.crawler.common.StorageProfile;
 import com.qwazr.utils.IOUtils;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -29,6 +30,10 @@ public class FileCrawlerDefinitionTest {
                 IOUtils.toString(FileCrawlerDefinitionTest.class.getResourceAsStream("file_crawl.json"),
                         StandardCharsets.UTF_8));
         Assert.assertNotNull(crawlDefJson);
+        Assert.assertEquals(StorageProfile.fast, crawlDefJson.storageProfile);
+        Assert.assertEquals(Long.valueOf(1048576), crawlDefJson.maxBytesPerSec);
+        Assert.assertEquals(Boolean.TRUE, crawlDefJson.continuous);
+        Assert.assertEquals(Integer.valueOf(250), crawlDefJson.watchDebounceMs);
         final FileCrawlDefinition crawlDef = FileCrawlDefinition.of(crawlDefJson).build();
         // Check that they are not the same reference
         Assert.assertTrue(crawlDef != crawlDefJson);
@@ -18,11 +18,13 @@ package com.qwazr.crawler.file;
 import com.qwazr.crawler.CrawlerServer;
 import com.qwazr.crawler.common.CrawlCollectorTest;
 import com.qwazr.crawler.common.CrawlHelpers;
+import com.qwazr.crawler.common.CrawlSessionQuery;
 import com.qwazr.crawler.common.CrawlSessionStatus;
 import com.qwazr.crawler.common.WildcardFilter;
 import com.qwazr.server.RemoteService;
 import com.qwazr.utils.FileUtils;
 import com.qwazr.utils.RandomUtils;
+import com.qwazr.utils.WaitFor;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -30,6 +32,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -106,6 +110,27 @@ public class FileCrawlerTest {
         Assert.assertNull(status.lastError);
     }
 
+    @Test
+    @Order(310)
+    public void test310PrunedCrawl() throws InterruptedException {
+        final String sessionName = RandomUtils.alphanumeric(9);
+        final FileCrawlDefinition fileCrawl = FileCrawlDefinition.of()
+                .entryPath(Paths.get("src", "test", "file_crawl").toString())
+                .addFilter("*" + File.separator, WildcardFilter.Status.accept)
+                .addFilter(Paths.get("src", "test", "file_crawl", "dir1", "*.txt").toString(),
+                        WildcardFilter.Status.accept)
+                .setMaxDepth(10)
+                .build();
+        remote.upsertSession(sessionName, fileCrawl);
+        remote.runSession(sessionName);
+        final CrawlSessionStatus<?> status = CrawlHelpers.crawlWait(sessionName, remote);
+        // The content of dir2 and ignore is not listed: no file under them can be accepted
+        Assert.assertEquals(7, status.crawled);
+        Assert.assertEquals(1, status.rejected);
+        Assert.assertEquals(0, status.error);
+        remote.removeSession(sessionName);
+    }
+
     @Test
     @Order(400)
     public void test400CrawlEvent() throws InterruptedException {
@@ -136,6 +161,39 @@ public class FileCrawlerTest {
         assertThat(FileCrawlCollectorFactoryTest.pathDepth, equalTo(result));
     }
 
+    @Test
+    @Order(450)
+    public void test450ContinuousCrawl() throws IOException, InterruptedException {
+        FileCrawlCollectorFactoryTest.resetCounters();
+        final Path watched = Files.createDirectory(tempDatDir.resolve("watched"));
+        Files.writeString(watched.resolve("initial.txt"), "initial");
+        final String sessionName = RandomUtils.alphanumeric(10);
+        final FileCrawlDefinition.Builder crawl = getNewCrawl()
+                .entryPath(watched.toString())
+                .continuous(true)
+                .watchDebounceMs(100);
+        crawl.crawlCollectorFactoryClass(FileCrawlCollectorFactoryTest.class);
+        remote.upsertSession(sessionName, crawl.build());
+        remote.runSession(sessionName);
+
+        // The initial walk is done: the directory is watched
+        WaitFor.of().timeOut(TimeUnit.MINUTES, 1).until(() -> remote.getSessionStatus(sessionName).crawled == 2);
+        final Path created = Files.writeString(watched.resolve("created.txt"), "created");
+        WaitFor.of().timeOut(TimeUnit.MINUTES, 1).until(
+                () -> FileCrawlCollectorFactoryTest.changes.get(created) == FileCrawlItem.Change.created);
+        Files.delete(created);
+        WaitFor.of().timeOut(TimeUnit.MINUTES, 1).until(
+                () -> FileCrawlCollectorFactoryTest.changes.get(created) == FileCrawlItem.Change.deleted);
+
+        // A continuous session runs until it is stopped
+        Assert.assertNull(remote.getSessionStatus(sessionName).endTime);
+        remote.stopSession(sessionName, "test");
+        final CrawlSessionStatus<?> status = CrawlHelpers.crawlWait(sessionName, remote);
+        Assert.assertEquals(4, status.crawled);
+        Assert.assertEquals(0, status.error);
+        remote.removeSession(sessionName);
+    }
+
     @Test
     @Order(500)
     public void test600GetSessions() {
@@ -152,6 +210,37 @@ public class FileCrawlerTest {
         remote.getSessions(null, 100, 100, total -> assertThat(total, equalTo(0)));
     }
 
+    @Test
+    @Order(550)
+    public void test550QuerySessions() {
+        final Map<String, FileCrawlSessionStatus> firstPage = remote.querySessions(
+                CrawlSessionQuery.of().rows(1).build(), total -> assertThat(total, equalTo(2)));
+        assertThat(firstPage.size(), equalTo(1));
+        final String cursor = firstPage.keySet().iterator().next();
+        final Map<String, FileCrawlSessionStatus> nextPage = remote.querySessions(
+                CrawlSessionQuery.of().cursor(cursor).rows(1).build(), total -> assertThat(total, equalTo(2)));
+        assertThat(nextPage.size(), equalTo(1));
+        Assert.assertTrue(nextPage.keySet().iterator().next().compareTo(cursor) > 0);
+        final Map<String, FileCrawlSessionStatus> lastPage = remote.querySessions(
+                CrawlSessionQuery.of().cursor(nextPage.keySet().iterator().next()).build(),
+                total -> assertThat(total, equalTo(2)));
+        assertThat(lastPage.size(), equalTo(0));
+
+        remote.querySessions(CrawlSessionQuery.of().start(1).build(), total -> assertThat(total, equalTo(2)))
+                .keySet()
+                .forEach(sessionName -> assertThat(sessionName, equalTo(nextPage.keySet().iterator().next())));
+        remote.querySessions(CrawlSessionQuery.of().node("unknown").build(), total -> assertThat(total, equalTo(0)));
+
+        final AtomicInteger byState = new AtomicInteger();
+        for (final CrawlSessionQuery.State state : CrawlSessionQuery.State.values())
+            remote.querySessions(CrawlSessionQuery.of().state(state).build(), byState::addAndGet);
+        assertThat(byState.get(), equalTo(2));
+        final AtomicInteger byError = new AtomicInteger();
+        remote.querySessions(CrawlSessionQuery.of().error(true).build(), byError::addAndGet);
+        remote.querySessions(CrawlSessionQuery.of().error(false).build(), byError::addAndGet);
+        assertThat(byError.get(), equalTo(2));
+    }
+
     @Test
     @Order(600)
     public void test600DeleteSession() {
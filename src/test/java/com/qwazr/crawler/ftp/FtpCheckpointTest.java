@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.ftp;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
+import org.apache.commons.net.ftp.FTPReply;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+public class FtpCheckpointTest {
+
+    @Test
+    public void directoryDoneReplacesChildren() {
+        try (final DB db = DBMaker.memoryDB().make()) {
+            final FtpCheckpoint checkpoint = new FtpCheckpoint(db);
+            Assert.assertFalse(checkpoint.isResuming());
+
+            checkpoint.fileDone("/data/a.txt");
+            checkpoint.fileDone("/data/sub/b.txt");
+            checkpoint.directoryDone("/data/sub/", List.of("/data/sub/b.txt"));
+            Assert.assertTrue(checkpoint.isResuming());
+            Assert.assertTrue(checkpoint.isFileDone("/data/a.txt"));
+            Assert.assertFalse(checkpoint.isFileDone("/data/sub/b.txt"));
+            Assert.assertTrue(checkpoint.isDirectoryDone("/data/sub/"));
+
+            checkpoint.directoryDone("/data/", List.of("/data/a.txt", "/data/sub/"));
+            assertThat(checkpoint.getDoneFiles(), equalTo(0));
+            assertThat(checkpoint.getDoneDirectories(), equalTo(1));
+
+            // The checkpoint is read back by the next run
+            Assert.assertTrue(new FtpCheckpoint(db).isDirectoryDone("/data/"));
+
+            checkpoint.clear();
+            Assert.assertFalse(checkpoint.isResuming());
+        }
+    }
+
+    @Test
+    public void transientErrors() {
+        Assert.assertTrue(FtpCrawlThread.isTransient(new FTPConnectionClosedException("closed"), 0));
+        Assert.assertTrue(FtpCrawlThread.isTransient(new SocketTimeoutException("timeout"), 0));
+        Assert.assertTrue(FtpCrawlThread.isTransient(new IOException("aborted"), FTPReply.TRANSFER_ABORTED));
+        Assert.assertFalse(FtpCrawlThread.isTransient(new IOException("not found"), FTPReply.FILE_UNAVAILABLE));
+        Assert.assertFalse(FtpCrawlThread.isTransient(new IOException("login"), FTPReply.NOT_LOGGED_IN));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.ftp;
+
+import com.qwazr.crawler.common.Attributes;
+import com.qwazr.crawler.common.CrawlCollector;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.validation.constraints.NotNull;
+
+public class FtpCrawlCollectorFactoryTest implements FtpCrawlCollectorFactory {
+
+    public static final List<String> items = new CopyOnWriteArrayList<>();
+    public static final AtomicInteger abortAfter = new AtomicInteger();
+    public static final AtomicReference<Runnable> abort = new AtomicReference<>();
+
+    public static void resetCounters() {
+        items.clear();
+        abortAfter.set(0);
+        abort.set(null);
+    }
+
+    @Override
+    public @NotNull CrawlCollector<FtpCrawlItem> createCrawlCollector(final Attributes attributes,
+                                                                      final FtpCrawlDefinition crawlDefinition) {
+        return new FtpCrawlCollectorTest();
+    }
+
+    public static class FtpCrawlCollectorTest implements CrawlCollector<FtpCrawlItem> {
+
+        @Override
+        public void collect(final FtpCrawlItem crawlItem) {
+            items.add(crawlItem.getItem());
+            final Runnable abortRunnable = abort.get();
+            if (abortRunnable != null && items.size() == abortAfter.get())
+                abortRunnable.run();
+        }
+
+        @Override
+        public void done() {
+        }
+    }
+}
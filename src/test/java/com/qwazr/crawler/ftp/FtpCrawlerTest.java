@@ -18,12 +18,16 @@ package com.qwazr.crawler.ftp;
 import com.qwazr.crawler.common.CrawlHelpers;
 import com.qwazr.crawler.common.CrawlSessionStatus;
 import com.qwazr.crawler.common.WildcardFilter;
+import com.qwazr.server.client.ErrorWrapper;
 import com.qwazr.utils.FileUtils;
+import com.qwazr.utils.WaitFor;
 import com.qwazr.utils.concurrent.BlockingExecutorService;
 import com.qwazr.utils.concurrent.ExecutorUtils;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -35,6 +39,7 @@ import org.apache.ftpserver.listener.ListenerFactory;
 import org.apache.ftpserver.usermanager.PropertiesUserManagerFactory;
 import org.apache.ftpserver.usermanager.impl.BaseUser;
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import org.junit.Assert;
@@ -116,6 +121,86 @@ public class FtpCrawlerTest {
         Assert.assertNull(status.lastError);
     }
 
+    @Test
+    public void rerunFtpTest() throws InterruptedException {
+        final FtpCrawlDefinition ftpCrawlDefinition = FtpCrawlDefinition.of()
+                .hostname("localhost")
+                .port(2221)
+                .entryPath(Path.of("src", "test", "java").toAbsolutePath().toString())
+                .passive(true)
+                .username("anonymous")
+                .password("contact@qwazr.com")
+                .maxReconnects(2)
+                .keepAliveSec(10)
+                .addFilter("*/src/test/java/com/", WildcardFilter.Status.accept)
+                .addFilter("*/src/test/java/com/*/", WildcardFilter.Status.accept)
+                .addFilter("*/src/test/java/com/qwazr/crawler/ftp/*.java", WildcardFilter.Status.accept)
+                .build();
+        ftpCrawler.upsertSession("rerunFtp", ftpCrawlDefinition);
+        assertThat(ftpCrawler.getSessionDefinition("rerunFtp"), equalTo(ftpCrawlDefinition));
+        // The checkpoint is cleared after a full pass: the second run crawls the same files again
+        for (int i = 0; i < 2; i++) {
+            runWhenStopped("rerunFtp");
+            final CrawlSessionStatus<?> status = CrawlHelpers.crawlWait("rerunFtp", ftpCrawler);
+            assertThat(status.crawled, equalTo(1));
+            assertThat(status.rejected, equalTo(15));
+            Assert.assertEquals(0, status.error);
+            Assert.assertNull(status.lastError);
+        }
+    }
+
+    @Test
+    public void resumeFtpTest() throws InterruptedException {
+        final FtpCrawlDefinition ftpCrawlDefinition = FtpCrawlDefinition.of()
+                .hostname("localhost")
+                .port(2221)
+                .entryPath(Path.of("src", "test", "java").toAbsolutePath().toString())
+                .passive(true)
+                .username("anonymous")
+                .password("contact@qwazr.com")
+                .addFilter("*/src/test/java/com/", WildcardFilter.Status.accept)
+                .addFilter("*/src/test/java/com/*/", WildcardFilter.Status.accept)
+                .addFilter("*/src/test/java/com/qwazr/crawler/ftp/*.java", WildcardFilter.Status.accept)
+                .crawlCollectorFactoryClass(FtpCrawlCollectorFactoryTest.class)
+                .build();
+        ftpCrawler.upsertSession("resumeFtp", ftpCrawlDefinition);
+        FtpCrawlCollectorFactoryTest.resetCounters();
+
+        // The first run is aborted after a few files
+        FtpCrawlCollectorFactoryTest.abortAfter.set(3);
+        FtpCrawlCollectorFactoryTest.abort.set(() -> ftpCrawler.stopSession("resumeFtp", "resume test"));
+        runWhenStopped("resumeFtp");
+        final CrawlSessionStatus<?> abortedStatus = CrawlHelpers.crawlWait("resumeFtp", ftpCrawler);
+        assertThat(abortedStatus.aborting, is(true));
+        final Set<String> firstRun = new HashSet<>(FtpCrawlCollectorFactoryTest.items);
+        assertThat(firstRun.size(), equalTo(3));
+
+        // The second run skips the files already done
+        FtpCrawlCollectorFactoryTest.resetCounters();
+        runWhenStopped("resumeFtp");
+        CrawlHelpers.crawlWait("resumeFtp", ftpCrawler);
+        final Set<String> secondRun = new HashSet<>(FtpCrawlCollectorFactoryTest.items);
+        assertThat(secondRun.size(), equalTo(FtpCrawlCollectorFactoryTest.items.size()));
+        for (final String item : secondRun)
+            Assert.assertFalse("Crawled twice: " + item, firstRun.contains(item));
+
+        // The pass was completed, the third run crawls everything again
+        FtpCrawlCollectorFactoryTest.resetCounters();
+        runWhenStopped("resumeFtp");
+        CrawlHelpers.crawlWait("resumeFtp", ftpCrawler);
+        final Set<String> allFiles = new HashSet<>(firstRun);
+        allFiles.addAll(secondRun);
+        assertThat(new HashSet<>(FtpCrawlCollectorFactoryTest.items), equalTo(allFiles));
+    }
+
+    /**
+     * Run the session once the previous run has released it
+     */
+    private void runWhenStopped(final String sessionName) throws InterruptedException {
+        WaitFor.of().timeOut(TimeUnit.MINUTES, 1).until(
+                () -> ErrorWrapper.bypass(() -> ftpCrawler.runSession(sessionName), 409) != null);
+    }
+
     @AfterEach
     public void cleanup() throws InterruptedException, IOException {
         ExecutorUtils.close(crawlExecutorService, 5, TimeUnit.MINUTES);
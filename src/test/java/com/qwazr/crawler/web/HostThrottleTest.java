@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class HostThrottleTest {
+
+    @Test
+    public void parseRetryAfter() {
+        Assert.assertNull(HostThrottle.parseRetryAfter(null));
+        Assert.assertNull(HostThrottle.parseRetryAfter(" "));
+        Assert.assertNull(HostThrottle.parseRetryAfter("soon"));
+        Assert.assertEquals(Long.valueOf(120_000), HostThrottle.parseRetryAfter(" 120 "));
+        final String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(60));
+        final Long delay = HostThrottle.parseRetryAfter(date);
+        Assert.assertNotNull(delay);
+        Assert.assertTrue(delay > 50_000 && delay <= 60_000);
+        final String past = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().minusSeconds(60));
+        Assert.assertEquals(Long.valueOf(0), HostThrottle.parseRetryAfter(past));
+    }
+
+    @Test
+    public void backoffAndRecover() {
+        final HostThrottle throttle = new HostThrottle(100, 2000);
+        final String host = "www.example.com";
+        Assert.assertEquals(100, throttle.get(host).waitMs);
+
+        throttle.response(host, 503, null, 0, 10);
+        Assert.assertEquals(HostThrottle.BACKOFF_FLOOR_MS, throttle.get(host).waitMs);
+        throttle.error(host, 10);
+        Assert.assertEquals(HostThrottle.BACKOFF_FLOOR_MS * 2, throttle.get(host).waitMs);
+
+        // Bounded by max_crawl_wait_ms
+        throttle.response(host, 429, "3600", 0, 10);
+        Assert.assertEquals(2000, throttle.get(host).waitMs);
+
+        // Healthy responses bring the wait back to crawl_wait_ms
+        for (int i = 0; i < 200; i++)
+            throttle.response(host, 200, null, 1000, 10);
+        Assert.assertEquals(100, throttle.get(host).waitMs);
+
+        final HostStatistics.Snapshot snapshot = throttle.getSnapshots().get(host);
+        Assert.assertEquals(203, snapshot.requests);
+        Assert.assertEquals(200_000, snapshot.bytes);
+        Assert.assertEquals(1, snapshot.errors);
+        Assert.assertEquals(1, snapshot.tooManyRequests);
+        Assert.assertEquals(1, snapshot.serverErrors);
+        Assert.assertEquals(10, snapshot.latencyEwmaMs, 0.001);
+    }
+}
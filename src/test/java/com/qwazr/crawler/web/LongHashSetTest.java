@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+public class LongHashSetTest {
+
+    @Test
+    public void addContainsRemove() {
+        final LongHashSet set = new LongHashSet(4);
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.add(-1));
+        Assert.assertTrue(set.add(Long.MIN_VALUE));
+        Assert.assertEquals(3, set.size());
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.remove(0));
+        Assert.assertFalse(set.contains(0));
+        Assert.assertFalse(set.remove(0));
+        Assert.assertTrue(set.remove(-1));
+        Assert.assertFalse(set.contains(-1));
+        Assert.assertTrue(set.contains(Long.MIN_VALUE));
+        Assert.assertEquals(1, set.size());
+    }
+
+    @Test
+    public void sameAsHashSet() {
+        final Random random = new Random(42);
+        final LongHashSet set = new LongHashSet();
+        final Set<Long> expected = new HashSet<>();
+        // A small range of values gives long probe sequences and many removals
+        for (int i = 0; i < 200_000; i++) {
+            final long value = random.nextInt(5000) * 4096L;
+            if (random.nextBoolean())
+                Assert.assertEquals(expected.add(value), set.add(value));
+            else
+                Assert.assertEquals(expected.remove(value), set.remove(value));
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        for (long value = 0; value < 5000 * 4096L; value += 4096)
+            Assert.assertEquals(expected.contains(value), set.contains(value));
+    }
+
+    @Test
+    public void stringHash() {
+        Assert.assertEquals(LongHashSet.hash("http://www.example.com/"),
+                LongHashSet.hash(new StringBuilder("http://www.example.com/")));
+        final LongHashSet set = new LongHashSet();
+        for (int i = 0; i < 100_000; i++)
+            Assert.assertTrue(set.add(LongHashSet.hash("http://www.example.com/page/" + i + ".html")));
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A synthetic web graph served by an embedded HTTP server.
+ * <p>
+ * The pages are generated on the fly from their host and page numbers, so the graph can be as large as needed.
+ * The server is used as an HTTP proxy by the crawler: every virtual host (host0.synthetic, host1.synthetic, ...)
+ * is served by the same local server without any DNS resolution.
+ * Every page is reachable from the entry page: page N links to the pages 2N+1 and 2N+2 of its host,
+ * and the first page of each host links to the first page of the next host.
+ */
+public class SyntheticWebGraph implements AutoCloseable {
+
+    private final static Logger LOGGER = Logger.getLogger(SyntheticWebGraph.class.getName());
+
+    private final static Pattern HOST_PATTERN = Pattern.compile("host(\\d+)\\.synthetic");
+    private final static Pattern PAGE_PATTERN = Pattern.compile("/p/(\\d+)\\.html");
+
+    public enum FanOut {
+        /**
+         * Every page has the same number of links
+         */
+        fixed,
+        /**
+         * Between 0 and twice the mean number of links
+         */
+        uniform,
+        /**
+         * Most pages have a few links, some pages have a lot of links
+         */
+        power_law
+    }
+
+    public enum RobotsTxt {
+        /**
+         * No robots.txt (404)
+         */
+        none,
+        /**
+         * Everything is allowed
+         */
+        allow_all,
+        /**
+         * The pages ending with a 7 are disallowed
+         */
+        disallow_some,
+        /**
+         * The robots.txt returns a server error
+         */
+        server_error
+    }
+
+    private final int hosts;
+    private final long pagesPerHost;
+    private final int meanFanOut;
+    private final FanOut fanOut;
+    private final double crossHostRate;
+    private final int latencyMs;
+    private final int latencyJitterMs;
+    private final double errorRate;
+    private final RobotsTxt robotsTxt;
+    private final long seed;
+
+    private final ExecutorService executorService;
+    private final HttpServer server;
+
+    private final AtomicLong pageRequests;
+    private final AtomicLong robotsTxtRequests;
+    private final AtomicLong errors;
+    private final AtomicLong bytes;
+
+    private SyntheticWebGraph(final Builder builder) throws IOException {
+        hosts = builder.hosts;
+        pagesPerHost = builder.pagesPerHost;
+        meanFanOut = builder.meanFanOut;
+        fanOut = builder.fanOut;
+        crossHostRate = builder.crossHostRate;
+        latencyMs = builder.latencyMs;
+        latencyJitterMs = builder.latencyJitterMs;
+        errorRate = builder.errorRate;
+        robotsTxt = builder.robotsTxt;
+        seed = builder.seed;
+        pageRequests = new AtomicLong();
+        robotsTxtRequests = new AtomicLong();
+        errors = new AtomicLong();
+        bytes = new AtomicLong();
+        executorService = Executors.newFixedThreadPool(builder.serverThreads);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 1024);
+        server.setExecutor(executorService);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return the address of the proxy to use to reach the graph
+     */
+    public String getProxyAddress() {
+        return "localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the URL of the entry page
+     */
+    public String getEntryUrl() {
+        return getPageUrl(0, 0);
+    }
+
+    public long getPageCount() {
+        return hosts * pagesPerHost;
+    }
+
+    public long getPageRequests() {
+        return pageRequests.get();
+    }
+
+    public long getRobotsTxtRequests() {
+        return robotsTxtRequests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    static String getPageUrl(final int host, final long page) {
+        return "http://host" + host + ".synthetic/p/" + page + ".html";
+    }
+
+    /**
+     * @return true if the page is disallowed by the robots.txt file
+     */
+    public boolean isDisallowed(final long page) {
+        return robotsTxt == RobotsTxt.disallow_some && page % 10 == 7;
+    }
+
+    /**
+     * @return true if the page returns a server error
+     */
+    public boolean isError(final int host, final long page) {
+        if (errorRate <= 0 || (host == 0 && page == 0))
+            return false;
+        return new Random(seed ^ (host * 31L + page) * 0x9E3779B97F4A7C15L).nextDouble() < errorRate;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            final URI uri = exchange.getRequestURI();
+            final String hostName = uri.getHost() != null ? uri.getHost() : exchange.getRequestHeaders().getFirst("Host");
+            final Matcher hostMatcher = hostName == null ? null : HOST_PATTERN.matcher(hostName);
+            if (hostMatcher == null || !hostMatcher.matches()) {
+                send(exchange, 404, "text/plain", "Unknown host: " + hostName);
+                return;
+            }
+            final int host = Integer.parseInt(hostMatcher.group(1));
+            if (host >= hosts) {
+                send(exchange, 404, "text/plain", "Unknown host: " + hostName);
+                return;
+            }
+            final String path = uri.getPath();
+            if ("/robots.txt".equals(path)) {
+                robotsTxtRequests.incrementAndGet();
+                sendRobotsTxt(exchange);
+                return;
+            }
+            final Matcher pageMatcher = PAGE_PATTERN.matcher(path);
+            if (!pageMatcher.matches()) {
+                send(exchange, 404, "text/plain", "Not found: " + path);
+                return;
+            }
+            final long page = Long.parseLong(pageMatcher.group(1));
+            if (page >= pagesPerHost) {
+                send(exchange, 404, "text/plain", "Not found: " + path);
+                return;
+            }
+            pageRequests.incrementAndGet();
+            pause();
+            if (isError(host, page)) {
+                errors.incrementAndGet();
+                send(exchange, 500, "text/plain", "Injected error");
+                return;
+            }
+            send(exchange, 200, "text/html; charset=UTF-8", getPage(host, page));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, e, e::getMessage);
+            send(exchange, 500, "text/plain", e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void pause() throws InterruptedException {
+        if (latencyMs <= 0 && latencyJitterMs <= 0)
+            return;
+        final int jitter = latencyJitterMs > 0 ? ThreadLocalRandom.current().nextInt(latencyJitterMs + 1) : 0;
+        Thread.sleep(Math.max(0, latencyMs) + jitter);
+    }
+
+    private void sendRobotsTxt(final HttpExchange exchange) throws IOException {
+        switch (robotsTxt) {
+            case allow_all:
+                send(exchange, 200, "text/plain", "User-agent: *\nAllow: /\n");
+                break;
+            case disallow_some:
+                send(exchange, 200, "text/plain", "User-agent: *\nDisallow: /p/*7.html$\n");
+                break;
+            case server_error:
+                send(exchange, 500, "text/plain", "Injected error");
+                break;
+            default:
+                send(exchange, 404, "text/plain", "No robots.txt");
+                break;
+        }
+    }
+
+    private int getLinkCount(final Random random) {
+        switch (fanOut) {
+            case uniform:
+                return random.nextInt(meanFanOut * 2 + 1);
+            case power_law:
+                // Pareto distribution (alpha = 2) having the requested mean
+                final double pareto = (meanFanOut / 2.0) / Math.sqrt(1.0 - random.nextDouble());
+                return (int) Math.min(pareto, meanFanOut * 100L);
+            default:
+                return meanFanOut;
+        }
+    }
+
+    String getPage(final int host, final long page) {
+        final Random random = new Random(seed ^ (host * 0x5DEECE66DL + page));
+        final StringBuilder html = new StringBuilder("<html><head><title>Host ")
+                .append(host).append(" page ").append(page).append("</title></head><body><h1>Page ")
+                .append(page).append("</h1>");
+        // The spanning tree which makes every page reachable
+        for (long child = page * 2 + 1; child <= page * 2 + 2 && child < pagesPerHost; child++)
+            appendLink(html, host, child);
+        if (page == 0 && host + 1 < hosts)
+            appendLink(html, host + 1, 0);
+        // The random links
+        final int linkCount = getLinkCount(random);
+        for (int i = 0; i < linkCount; i++) {
+            final int targetHost = hosts > 1 && random.nextDouble() < crossHostRate ? random.nextInt(hosts) : host;
+            appendLink(html, targetHost, Math.floorMod(random.nextLong(), pagesPerHost));
+        }
+        html.append("<p>");
+        for (int i = 0; i < 20; i++)
+            html.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+        return html.append("</p></body></html>").toString();
+    }
+
+    private void appendLink(final StringBuilder html, final int host, final long page) {
+        html.append("<a href=\"").append(getPageUrl(host, page)).append("\">Host ")
+                .append(host).append(" page ").append(page).append("</a>\n");
+    }
+
+    private void send(final HttpExchange exchange, final int status, final String contentType, final String content)
+            throws IOException {
+        final byte[] body = content == null ? new byte[0] : content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (final OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+        bytes.addAndGet(body.length);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+
+    public static Builder of() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private int port;
+        private int serverThreads = 64;
+        private int hosts = 10;
+        private long pagesPerHost = 1000;
+        private int meanFanOut = 10;
+        private FanOut fanOut = FanOut.uniform;
+        private double crossHostRate = 0.1;
+        private int latencyMs;
+        private int latencyJitterMs;
+        private double errorRate;
+        private RobotsTxt robotsTxt = RobotsTxt.allow_all;
+        private long seed = 42;
+
+        /**
+         * @param port the listening port, 0 for any free port
+         */
+        public Builder port(final int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder serverThreads(final int serverThreads) {
+            this.serverThreads = serverThreads;
+            return this;
+        }
+
+        public Builder hosts(final int hosts) {
+            this.hosts = hosts;
+            return this;
+        }
+
+        public Builder pagesPerHost(final long pagesPerHost) {
+            this.pagesPerHost = pagesPerHost;
+            return this;
+        }
+
+        public Builder fanOut(final FanOut fanOut, final int meanFanOut) {
+            this.fanOut = fanOut;
+            this.meanFanOut = meanFanOut;
+            return this;
+        }
+
+        /**
+         * @param crossHostRate the probability of a random link to target another host
+         */
+        public Builder crossHostRate(final double crossHostRate) {
+            this.crossHostRate = crossHostRate;
+            return this;
+        }
+
+        public Builder latency(final int latencyMs, final int latencyJitterMs) {
+            this.latencyMs = latencyMs;
+            this.latencyJitterMs = latencyJitterMs;
+            return this;
+        }
+
+        /**
+         * @param errorRate the probability of a page to return a server error
+         */
+        public Builder errorRate(final double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        public Builder robotsTxt(final RobotsTxt robotsTxt) {
+            this.robotsTxt = robotsTxt;
+            return this;
+        }
+
+        public Builder seed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticWebGraph build() throws IOException {
+            return new SyntheticWebGraph(this);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+public class UrlDictionaryTest {
+
+    @Test
+    public void hostPrefixLength() {
+        assertThat(UrlDictionary.hostPrefixLength("http://www.example.com/page.html"), equalTo(22));
+        assertThat(UrlDictionary.hostPrefixLength("https://www.example.com:8443?q=1"), equalTo(28));
+        assertThat(UrlDictionary.hostPrefixLength("http://www.example.com"), equalTo(22));
+        assertThat(UrlDictionary.hostPrefixLength("mailto:john@example.com"), equalTo(0));
+    }
+
+    @Test
+    public void addGetRemove() {
+        try (final DB db = DBMaker.memoryDB().make()) {
+            final UrlDictionary dictionary = new UrlDictionary(db);
+            final long id1 = dictionary.add("http://www.example.com/page1.html");
+            final long id2 = dictionary.add("http://www.example.com/page2.html?q=é");
+            final long id3 = dictionary.add("mailto:john@example.com");
+            Assert.assertTrue(id1 < id2 && id2 < id3);
+            // More than 127 hosts: the host identifiers take several bytes
+            for (int i = 0; i < 300; i++)
+                assertThat(dictionary.get(dictionary.add("http://host" + i + ".example.com/" + i)),
+                        equalTo("http://host" + i + ".example.com/" + i));
+            assertThat(dictionary.get(id1), equalTo("http://www.example.com/page1.html"));
+            assertThat(dictionary.get(id2), equalTo("http://www.example.com/page2.html?q=é"));
+            assertThat(dictionary.get(id3), equalTo("mailto:john@example.com"));
+            assertThat(dictionary.size(), equalTo(303));
+            dictionary.remove(id1);
+            assertThat(dictionary.get(id1), nullValue());
+
+            // The host prefixes are read back when the dictionary is open again
+            final UrlDictionary reopened = new UrlDictionary(db);
+            assertThat(reopened.get(id2), equalTo("http://www.example.com/page2.html?q=é"));
+            Assert.assertTrue(reopened.add("http://www.example.com/page3.html") > id3);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.qwazr.crawler.common.CrawlSessionMetrics;
+import com.qwazr.crawler.common.CrawlTimer;
+import com.qwazr.utils.ObjectMappers;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Run a full web crawl session against a {@link SyntheticWebGraph} and measure its throughput.
+ */
+public class WebCrawlThroughputHarness implements AutoCloseable {
+
+    private final static Logger LOGGER = Logger.getLogger(WebCrawlThroughputHarness.class.getName());
+
+    private final static String MY_ADDRESS = "http://localhost:9091";
+
+    private final Path rootDirectory;
+    private final ExecutorService executorService;
+    private final WebCrawlerManager manager;
+
+    public WebCrawlThroughputHarness(final int workerBudget) throws IOException {
+        rootDirectory = Files.createTempDirectory("webcrawler-throughput");
+        executorService = Executors.newCachedThreadPool();
+        manager = new WebCrawlerManager(rootDirectory, MY_ADDRESS, executorService, executorService);
+        manager.setWorkerBudget(workerBudget);
+    }
+
+    /**
+     * Crawl the graph and wait for the end of the session
+     *
+     * @param sessionName the name of the session
+     * @param graph       the graph to crawl
+     * @param definition  the definition of the crawl, the entry URL and the proxy are set by the harness
+     * @param timeoutMs   the session is aborted after this delay
+     * @return the measures
+     */
+    public Report run(final String sessionName,
+                      final SyntheticWebGraph graph,
+                      final WebCrawlDefinition.Builder definition,
+                      final long timeoutMs) throws InterruptedException {
+        definition.setEntryUrl(graph.getEntryUrl())
+                .addProxy(ProxyDefinition.of().httpProxy(graph.getProxyAddress()).build());
+        manager.upsertSession(sessionName, definition.build());
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long peakHeap = memory.getHeapMemoryUsage().getUsed();
+        final long startTime = System.nanoTime();
+        final long deadline = startTime + timeoutMs * 1_000_000L;
+        manager.runSession(sessionName);
+        WebCrawlSessionStatus status = manager.getSessionStatus(sessionName);
+        boolean timedOut = false;
+        while (status.endTime == null) {
+            if (!timedOut && System.nanoTime() > deadline) {
+                LOGGER.warning(() -> "Throughput session timed out: " + sessionName);
+                manager.abortSession(sessionName, "Timeout");
+                timedOut = true;
+            }
+            Thread.sleep(100);
+            peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            status = manager.getSessionStatus(sessionName);
+        }
+        final long durationNanos = System.nanoTime() - startTime;
+        final Report report = new Report(sessionName, status, manager.getSessionMetrics(sessionName), graph,
+                durationNanos, peakHeap, getDiskUsage());
+        LOGGER.info(report::toString);
+        return report;
+    }
+
+    private long getDiskUsage() {
+        try (final Stream<Path> paths = Files.walk(rootDirectory)) {
+            return paths.filter(Files::isRegularFile).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        manager.close();
+        executorService.shutdown();
+        try (final Stream<Path> paths = Files.walk(rootDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    public static class Report {
+
+        @JsonProperty("session")
+        final public String session;
+        @JsonProperty("crawled")
+        final public int crawled;
+        @JsonProperty("rejected")
+        final public int rejected;
+        @JsonProperty("error")
+        final public int error;
+        @JsonProperty("aborted")
+        final public boolean aborted;
+        @JsonProperty("server_page_requests")
+        final public long serverPageRequests;
+        @JsonProperty("server_robots_txt_requests")
+        final public long serverRobotsTxtRequests;
+        @JsonProperty("server_bytes")
+        final public long serverBytes;
+        @JsonProperty("duration_ms")
+        final public long durationMs;
+        @JsonProperty("pages_per_second")
+        final public double pagesPerSecond;
+        @JsonProperty("ttfb_p99_ms")
+        final public Double ttfbP99Ms;
+        @JsonProperty("download_p99_ms")
+        final public Double downloadP99Ms;
+        @JsonProperty("peak_heap_bytes")
+        final public long peakHeapBytes;
+        @JsonProperty("disk_bytes")
+        final public long diskBytes;
+
+        private Report(final String session,
+                       final WebCrawlSessionStatus status,
+                       final CrawlSessionMetrics metrics,
+                       final SyntheticWebGraph graph,
+                       final long durationNanos,
+                       final long peakHeapBytes,
+                       final long diskBytes) {
+            this.session = session;
+            this.crawled = status.crawled;
+            this.rejected = status.rejected;
+            this.error = status.error;
+            this.aborted = Boolean.TRUE.equals(status.aborting);
+            this.serverPageRequests = graph.getPageRequests();
+            this.serverRobotsTxtRequests = graph.getRobotsTxtRequests();
+            this.serverBytes = graph.getBytes();
+            this.durationMs = durationNanos / 1_000_000L;
+            this.pagesPerSecond = durationNanos == 0 ? 0 : status.crawled * 1_000_000_000d / durationNanos;
+            this.ttfbP99Ms = getP99(metrics, "ttfb");
+            this.downloadP99Ms = getP99(metrics, "download");
+            this.peakHeapBytes = peakHeapBytes;
+            this.diskBytes = diskBytes;
+        }
+
+        private static Double getP99(final CrawlSessionMetrics metrics, final String phase) {
+            if (metrics == null || metrics.phases == null)
+                return null;
+            final CrawlTimer.Snapshot snapshot = metrics.phases.get(phase);
+            return snapshot == null ? null : snapshot.p99Ms;
+        }
+
+        @Override
+        public String toString() {
+            try {
+                return ObjectMappers.JSON.writeValueAsString(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.io.IOException;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+public class WebCrawlThroughputTest {
+
+    @Test
+    public void smallGraph() throws IOException, InterruptedException {
+        try (final SyntheticWebGraph graph = SyntheticWebGraph.of()
+                .hosts(3)
+                .pagesPerHost(20)
+                .fanOut(SyntheticWebGraph.FanOut.fixed, 3)
+                .build();
+             final WebCrawlThroughputHarness harness = new WebCrawlThroughputHarness(4)) {
+            final WebCrawlThroughputHarness.Report report = harness.run("small", graph,
+                    WebCrawlDefinition.of().setMaxDepth(100).setRobotsTxtEnabled(true).setFetchConcurrency(4),
+                    60_000);
+            Assert.assertFalse(report.aborted);
+            assertThat(report.crawled, equalTo(60));
+            assertThat(report.error, equalTo(0));
+            assertThat(report.rejected, equalTo(0));
+            assertThat(report.serverPageRequests, equalTo(60L));
+            assertThat(report.serverRobotsTxtRequests, greaterThanOrEqualTo(3L));
+            assertThat(report.pagesPerSecond, greaterThan(0d));
+            assertThat(report.diskBytes, greaterThan(0L));
+        }
+    }
+
+    @Test
+    public void errorsAndRobotsTxt() throws IOException, InterruptedException {
+        try (final SyntheticWebGraph graph = SyntheticWebGraph.of()
+                .hosts(2)
+                .pagesPerHost(50)
+                .fanOut(SyntheticWebGraph.FanOut.power_law, 4)
+                .errorRate(0.2)
+                .robotsTxt(SyntheticWebGraph.RobotsTxt.disallow_some)
+                .build();
+             final WebCrawlThroughputHarness harness = new WebCrawlThroughputHarness(4)) {
+            final WebCrawlThroughputHarness.Report report = harness.run("errors", graph,
+                    WebCrawlDefinition.of()
+                            .setMaxDepth(100)
+                            .setRobotsTxtEnabled(true)
+                            .setMaxRetries(0)
+                            .setMaxCrawlWaitMs(50),
+                    60_000);
+            Assert.assertFalse(report.aborted);
+            assertThat(report.rejected, greaterThan(0));
+            assertThat(report.error, greaterThan(0));
+            assertThat(report.error, equalTo((int) graph.getErrors()));
+        }
+    }
+
+    /**
+     * The full measure, enabled with -Dthroughput=true. The graph and the crawl are set by system properties.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "throughput", matches = "true")
+    public void throughput() throws IOException, InterruptedException {
+        try (final SyntheticWebGraph graph = SyntheticWebGraph.of()
+                .hosts(Integer.getInteger("throughput.hosts", 100))
+                .pagesPerHost(Long.getLong("throughput.pages_per_host", 10_000L))
+                .fanOut(SyntheticWebGraph.FanOut.valueOf(System.getProperty("throughput.fan_out", "power_law")),
+                        Integer.getInteger("throughput.mean_fan_out", 10))
+                .latency(Integer.getInteger("throughput.latency_ms", 20),
+                        Integer.getInteger("throughput.latency_jitter_ms", 30))
+                .errorRate(Double.parseDouble(System.getProperty("throughput.error_rate", "0.01")))
+                .robotsTxt(SyntheticWebGraph.RobotsTxt.valueOf(System.getProperty("throughput.robots_txt", "allow_all")))
+                .serverThreads(Integer.getInteger("throughput.server_threads", 256))
+                .build();
+             final WebCrawlThroughputHarness harness = new WebCrawlThroughputHarness(
+                     Integer.getInteger("throughput.workers", Runtime.getRuntime().availableProcessors() * 2 + 1))) {
+            final WebCrawlThroughputHarness.Report report = harness.run("throughput", graph,
+                    WebCrawlDefinition.of()
+                            .setMaxDepth(Integer.getInteger("throughput.max_depth", 1000))
+                            .setMaxUrlNumber(Integer.getInteger("throughput.max_urls", 100_000))
+                            .setRobotsTxtEnabled(true)
+                            .setMaxRetries(0)
+                            .setFetchConcurrency(Integer.getInteger("throughput.fetch_concurrency", 16)),
+                    Long.getLong("throughput.timeout_ms", 3_600_000L));
+            assertThat(report.crawled, greaterThan(0));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import com.qwazr.crawler.common.CrawlHelpers;
+import com.qwazr.crawler.common.CrawlSessionStatus;
+import com.qwazr.utils.FileUtils;
+import com.qwazr.utils.RandomUtils;
+import com.qwazr.utils.concurrent.BlockingExecutorService;
+import com.qwazr.utils.concurrent.ExecutorUtils;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Two nodes sharing a distributed crawl session in the same JVM
+ */
+public class WebCrawlerClusterTest {
+
+    private final static List<String> NODES = Arrays.asList("http://node1:9091", "http://node2:9091");
+
+    private static ExecutorService executorService;
+    private static ExecutorService crawlExecutorService;
+    private static Path dataDir;
+    private static Map<String, WebCrawlerManager> managers;
+
+    @BeforeAll
+    public static void setup() throws Exception {
+        WebAppTestServer.start();
+        executorService = Executors.newCachedThreadPool();
+        crawlExecutorService = new BlockingExecutorService(10);
+        dataDir = Files.createTempDirectory("cluster_test_data");
+        managers = new LinkedHashMap<>();
+        for (final String node : NODES) {
+            final Path nodeDir = Files.createDirectory(dataDir.resolve(URI.create(node).getHost()));
+            final WebCrawlerManager manager = new WebCrawlerManager(nodeDir, node, executorService, crawlExecutorService);
+            manager.setNodeServices(address -> managers.get(address).getService());
+            managers.put(node, manager);
+        }
+    }
+
+    @AfterAll
+    public static void cleanup() throws IOException, InterruptedException {
+        if (managers != null)
+            managers.values().forEach(WebCrawlerManager::close);
+        ExecutorUtils.close(crawlExecutorService, 5, TimeUnit.MINUTES);
+        ExecutorUtils.close(executorService, 5, TimeUnit.MINUTES);
+        WebAppTestServer.stop();
+        if (dataDir != null)
+            FileUtils.deleteDirectory(dataDir);
+    }
+
+    @Test
+    public void ownerIsStable() {
+        final String owner = ClusterPartition.owner(NODES, "www.example.com");
+        Assert.assertTrue(NODES.contains(owner));
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals(owner, ClusterPartition.owner(Arrays.asList(NODES.get(1), NODES.get(0)),
+                    "www.example.com"));
+        int first = 0;
+        for (int i = 0; i < 1000; i++)
+            if (NODES.get(0).equals(ClusterPartition.owner(NODES, "host" + i + ".example.com")))
+                first++;
+        // The hosts are evenly spread
+        Assert.assertTrue(first > 400 && first < 600);
+    }
+
+    @Test
+    public void distributedCrawl() throws InterruptedException {
+        // The session is started by the node which does not own the host of the web application
+        final String host = URI.create(WebAppTestServer.URL).getHost();
+        final String owner = ClusterPartition.owner(NODES, host);
+        final String coordinator = NODES.get(0).equals(owner) ? NODES.get(1) : NODES.get(0);
+        final WebCrawlerServiceInterface coordinatorService = managers.get(coordinator).getService();
+        final WebCrawlerServiceInterface ownerService = managers.get(owner).getService();
+
+        final WebCrawlDefinition.Builder definition = WebCrawlDefinition.of()
+                .setEntryUrl(WebAppTestServer.URL)
+                .setMaxDepth(2)
+                .setRobotsTxtEnabled(true)
+                .setClusterIdleMs(2000);
+        NODES.forEach(definition::addClusterNode);
+
+        final String sessionName = RandomUtils.alphanumeric(10);
+        coordinatorService.upsertSession(sessionName, definition.build());
+        coordinatorService.runSession(sessionName);
+
+        final CrawlSessionStatus<?> coordinatorStatus = CrawlHelpers.crawlWait(sessionName, coordinatorService);
+        final CrawlSessionStatus<?> ownerStatus = CrawlHelpers.crawlWait(sessionName, ownerService);
+
+        // Every URL has been forwarded to the owner of the host
+        assertThat(coordinatorStatus.crawled, equalTo(0));
+        Assert.assertTrue(ownerStatus.crawled >= 6);
+
+        final WebCrawlSessionStatus clusterStatus = coordinatorService.getClusterSessionStatus(sessionName);
+        assertThat(clusterStatus.crawled, equalTo(ownerStatus.crawled));
+        assertThat(clusterStatus.rejected, equalTo(ownerStatus.rejected));
+        assertThat(clusterStatus.running, equalTo(false));
+        Assert.assertNotNull(clusterStatus.endTime);
+    }
+
+    @Test
+    public void failedPartitionStopsStartedPartitions() throws InterruptedException {
+        final WebCrawlDefinition.Builder definition = WebCrawlDefinition.of()
+                .setEntryUrl(WebAppTestServer.URL)
+                .setClusterIdleMs(60000);
+        NODES.forEach(definition::addClusterNode);
+        // This node is not reachable
+        definition.addClusterNode("http://node3:9091");
+
+        final String sessionName = RandomUtils.alphanumeric(10);
+        final WebCrawlerServiceInterface coordinatorService = managers.get(NODES.get(0)).getService();
+        coordinatorService.upsertSession(sessionName, definition.build());
+        try {
+            coordinatorService.runSession(sessionName);
+            Assert.fail("The session should not start");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+
+        // The partition already started on the second node has been stopped
+        final CrawlSessionStatus<?> partitionStatus =
+                CrawlHelpers.crawlWait(sessionName, managers.get(NODES.get(1)).getService());
+        assertThat(partitionStatus.aborting, equalTo(true));
+        assertThat(partitionStatus.crawled, equalTo(0));
+    }
+
+    @Test
+    public void waitingPartitionReceivesLinks() throws InterruptedException {
+        final WebCrawlerManager manager = managers.get(NODES.get(1));
+        final WebCrawlerServiceInterface service = manager.getService();
+        final WebCrawlDefinition.Builder definition = WebCrawlDefinition.of()
+                .setMaxDepth(0)
+                .setClusterIdleMs(60000);
+        NODES.forEach(definition::addClusterNode);
+
+        final String busySession = RandomUtils.alphanumeric(10);
+        final String waitingSession = RandomUtils.alphanumeric(10);
+        manager.setMaxRunningSessions(1);
+        try {
+            service.runPartition(busySession, definition.build());
+            service.runPartition(waitingSession, definition.setClusterIdleMs(2000).build());
+            Assert.assertNotNull(service.getSessionStatus(waitingSession).queuePosition);
+
+            // The URLs are kept until the partition starts, they do not fall back to the sending node
+            final Map<String, Integer> links = new LinkedHashMap<>();
+            links.put(WebAppTestServer.URL, 0);
+            service.enqueueLinks(waitingSession, links);
+
+            service.stopSession(busySession, "free the slot");
+            final CrawlSessionStatus<?> status = CrawlHelpers.crawlWait(waitingSession, service);
+            assertThat(status.crawled, equalTo(1));
+        } finally {
+            manager.setMaxRunningSessions(null);
+        }
+    }
+}
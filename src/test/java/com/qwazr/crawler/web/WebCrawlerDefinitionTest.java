@@ -34,5 +34,12 @@ public class WebCrawlerDefinitionTest {
         Assert.assertTrue(webCrawlDef != webCrawlDefJson);
         // Check that they are equals
         Assert.assertEquals(webCrawlDef, webCrawlDefJson);
+        Assert.assertEquals(Integer.valueOf(10000), webCrawlDef.maxCrawlWaitMs);
+        Assert.assertEquals(Integer.valueOf(2), webCrawlDef.maxRetries);
+        Assert.assertEquals(Integer.valueOf(500), webCrawlDef.retryDelayMs);
+        Assert.assertEquals(Long.valueOf(10485760), webCrawlDef.maxContentLength);
+        Assert.assertEquals(Boolean.TRUE, webCrawlDef.sitemapsEnabled);
+        Assert.assertEquals(Integer.valueOf(4), webCrawlDef.fetchConcurrency);
+        Assert.assertEquals("/data/warc", webCrawlDef.replayArchive);
     }
 }
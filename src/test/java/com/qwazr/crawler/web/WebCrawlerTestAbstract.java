@@ -18,13 +18,20 @@ package com.qwazr.crawler.web;
 import com.qwazr.crawler.CrawlerServer;
 import com.qwazr.crawler.common.CrawlCollectorTest;
 import com.qwazr.crawler.common.CrawlHelpers;
+import com.qwazr.crawler.common.CrawlPhase;
+import com.qwazr.crawler.common.CrawlResult;
+import com.qwazr.crawler.common.CrawlSessionMetrics;
 import com.qwazr.crawler.common.CrawlSessionStatus;
+import com.qwazr.crawler.common.StorageProfile;
+import com.qwazr.crawler.web.warc.WarcCrawlCollectorFactory;
+import com.qwazr.crawler.web.warc.WarcIndex;
 import com.qwazr.utils.FileUtils;
 import com.qwazr.utils.RandomUtils;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -113,15 +120,78 @@ public abstract class WebCrawlerTestAbstract {
 
     @Test
     @Order(300)
-    public void test300SimpleCrawlAndRecrawl() throws InterruptedException {
+    public void test300SimpleCrawlAndRecrawl() throws InterruptedException, IOException {
         final WebCrawlDefinition webCrawlDefinition = getNewWebCrawl().setEntryUrl(WebAppTestServer.URL).build();
         final String sessionName = newCrawlSession(webCrawlDefinition);
         //Crawl
         crawlTest(sessionName, webCrawlDefinition, 7, 1, 1);
+        // Check the metrics
+        final CrawlSessionMetrics metrics = service.getSessionMetrics(sessionName);
+        assertThat(metrics, notNullValue());
+        Assert.assertTrue(metrics.phases.get(CrawlPhase.ttfb.name()).count > 0);
+        Assert.assertTrue(metrics.phases.get(CrawlPhase.frontier.name()).count > 0);
+        Assert.assertTrue(metrics.phases.get(CrawlPhase.db_commit.name()).count > 0);
+        // Check the host statistics
+        final Map<String, HostStatistics.Snapshot> hosts = service.getSessionHosts(sessionName);
+        assertThat(hosts, notNullValue());
+        final HostStatistics.Snapshot host = hosts.get(URI.create(WebAppTestServer.URL).getHost());
+        assertThat(host, notNullValue());
+        Assert.assertTrue(host.requests > 0);
+        // Check the results, page by page
+        final List<CrawlResult> results = CrawlHelpers.getResults(sessionName, service, null, null);
+        Assert.assertTrue(results.size() >= 7);
+        final List<CrawlResult> firstPage = CrawlHelpers.getResults(sessionName, service, null, 3);
+        assertThat(firstPage, equalTo(results.subList(0, 3)));
+        final List<CrawlResult> nextPage =
+                CrawlHelpers.getResults(sessionName, service, firstPage.get(2).item, 1000);
+        assertThat(nextPage, equalTo(results.subList(3, results.size())));
         // Recrawl
         crawlTest(sessionName, webCrawlDefinition, 7, 1, 1);
     }
 
+    @Test
+    @Order(320)
+    public void test320ConcurrentFetch() throws InterruptedException {
+        final WebCrawlDefinition webCrawlDefinition = getNewWebCrawl()
+                .setEntryUrl(WebAppTestServer.URL)
+                .setFetchConcurrency(4)
+                .build();
+        crawlTest(webCrawlDefinition, 7, 1, 1);
+    }
+
+    @Test
+    @Order(330)
+    public void test330TemporaryStorage() throws InterruptedException {
+        final WebCrawlDefinition webCrawlDefinition = getNewWebCrawl()
+                .setEntryUrl(WebAppTestServer.URL)
+                .setStorageProfile(StorageProfile.temporary)
+                .build();
+        crawlTest(webCrawlDefinition, 7, 1, 1);
+    }
+
+    @Test
+    @Order(340)
+    public void test340WarcArchiveAndReplay() throws InterruptedException, IOException {
+        final Path warcDirectory = Files.createTempDirectory(tempDatDir, "warc");
+        final WebCrawlDefinition.Builder webCrawl = getNewWebCrawl().setEntryUrl(WebAppTestServer.URL);
+        webCrawl.variable(WarcCrawlCollectorFactory.WARC_DIRECTORY, warcDirectory.toString());
+        webCrawl.crawlCollectorFactoryClass(WarcCrawlCollectorFactory.class);
+        final CrawlSessionStatus<?> status = crawlTest(webCrawl.build(), 7, 1, 1);
+        final Map<String, WarcIndex.Entry> archived = WarcIndex.read(warcDirectory);
+        Assert.assertTrue(archived.size() >= status.crawled);
+
+        // The same crawl replayed from the archive, without the network
+        final WebCrawlDefinition replayCrawl = getNewWebCrawl()
+                .setEntryUrl(WebAppTestServer.URL)
+                .setReplayArchive(warcDirectory.toString())
+                .build();
+        final String sessionName = newCrawlSession(replayCrawl);
+        service.runSession(sessionName);
+        final CrawlSessionStatus<?> replayStatus = CrawlHelpers.crawlWait(sessionName, service);
+        Assert.assertEquals(status.crawled, replayStatus.crawled);
+        Assert.assertEquals(status.redirect, replayStatus.redirect);
+    }
+
     @Test
     @Order(350)
     public void test350CrawlGetWebRequest() throws InterruptedException {
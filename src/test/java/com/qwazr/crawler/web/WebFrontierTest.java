@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+
+public class WebFrontierTest {
+
+    private final static String URL1 = "http://www.example.com/1.html";
+    private final static String URL2 = "http://www.example.com/2.html";
+    private final static String URL3 = "http://www.example.com/3.html";
+    private final static String SITEMAP_URL = "http://www.example.com/sitemap.html";
+
+    private void checkFrontier(final WebFrontier frontier) {
+        Assert.assertNull(frontier.next());
+        Assert.assertEquals(-1, frontier.firstRetryTime());
+        Assert.assertTrue(frontier.isEmpty());
+
+        Assert.assertTrue(frontier.add(URL2, 2));
+        Assert.assertFalse(frontier.isEmpty());
+        Assert.assertTrue(frontier.add(URL1, 1));
+        Assert.assertFalse(frontier.add(URL1, 3));
+        Assert.assertTrue(frontier.addSitemap(SITEMAP_URL, 5, 0));
+        Assert.assertFalse(frontier.addSitemap(URL2, 0, 0));
+
+        // The sitemap first, then the lowest depth. A URL is given until it is claimed
+        Assert.assertEquals(Pair.of(SITEMAP_URL, 0), frontier.next());
+        Assert.assertEquals(Pair.of(SITEMAP_URL, 0), frontier.next());
+        Assert.assertTrue(frontier.setCrawled(SITEMAP_URL, 0));
+        Assert.assertEquals(Pair.of(URL1, 1), frontier.next());
+        Assert.assertEquals(Pair.of(URL1, 1), frontier.next());
+        Assert.assertTrue(frontier.setCrawled(URL1, 1));
+        Assert.assertFalse(frontier.setCrawled(URL1, 1));
+        Assert.assertTrue(frontier.isCrawled(URL1));
+        Assert.assertFalse(frontier.add(URL1, 1));
+
+        // A failed URL comes back once its retry is due
+        Assert.assertEquals(Pair.of(URL2, 2), frontier.next());
+        Assert.assertTrue(frontier.setCrawled(URL2, 2));
+        Assert.assertEquals(0, frontier.getAttempts(URL2));
+        frontier.retry(URL2, 2, 1, 1000);
+        Assert.assertFalse(frontier.isCrawled(URL2));
+        Assert.assertFalse(frontier.add(URL2, 2));
+        Assert.assertEquals(1, frontier.getAttempts(URL2));
+        Assert.assertEquals(1000, frontier.firstRetryTime());
+        Assert.assertNull(frontier.next());
+        Assert.assertFalse(frontier.isEmpty());
+        Assert.assertFalse(frontier.promoteRetries(999));
+        Assert.assertTrue(frontier.promoteRetries(1000));
+        Assert.assertEquals(-1, frontier.firstRetryTime());
+
+        // A lower depth added later comes first
+        Assert.assertTrue(frontier.add(URL3, 0));
+        Assert.assertEquals(Pair.of(URL3, 0), frontier.next());
+        Assert.assertTrue(frontier.setCrawled(URL3, 0));
+        Assert.assertEquals(Pair.of(URL2, 2), frontier.next());
+        Assert.assertTrue(frontier.setCrawled(URL2, 2));
+        Assert.assertNull(frontier.next());
+        Assert.assertTrue(frontier.isEmpty());
+    }
+
+    @Test
+    public void mapDbFrontier() {
+        try (final DB db = DBMaker.memoryDB().make()) {
+            checkFrontier(new MapDbWebFrontier(db));
+        }
+    }
+
+    @Test
+    public void mapDbFrontierCollisions() {
+        // Every URL has the same hash: the frontier still tells them apart
+        try (final DB db = DBMaker.memoryDB().make()) {
+            checkFrontier(new MapDbWebFrontier(db, uriString -> 42L));
+        }
+    }
+
+    @Test
+    public void mapDbFrontierReopened() throws IOException {
+        final Path dbFile = Files.createTempFile("frontier", ".db");
+        Files.delete(dbFile);
+        try {
+            try (final DB db = DBMaker.fileDB(dbFile.toFile()).make()) {
+                final WebFrontier frontier = new MapDbWebFrontier(db);
+                Assert.assertTrue(frontier.add(URL1, 1));
+                Assert.assertTrue(frontier.setCrawled(URL1, 1));
+                frontier.retry(URL1, 1, 1, 1000);
+                Assert.assertTrue(frontier.add(URL2, 2));
+                Assert.assertTrue(frontier.addSitemap(SITEMAP_URL, 0, 0));
+                Assert.assertEquals(Pair.of(SITEMAP_URL, 0), frontier.next());
+            }
+            // The next run of a resumed session finds the URLs to crawl and the retries
+            try (final DB db = DBMaker.fileDB(dbFile.toFile()).make()) {
+                final WebFrontier frontier = new MapDbWebFrontier(db);
+                Assert.assertFalse(frontier.isEmpty());
+                Assert.assertEquals(1, frontier.getAttempts(URL1));
+                Assert.assertEquals(1000, frontier.firstRetryTime());
+                // The sitemap URL given before the end of the previous run was not claimed
+                Assert.assertEquals(Pair.of(SITEMAP_URL, 0), frontier.next());
+                Assert.assertTrue(frontier.setCrawled(SITEMAP_URL, 0));
+                Assert.assertEquals(Pair.of(URL2, 2), frontier.next());
+                Assert.assertTrue(frontier.promoteRetries(1000));
+                Assert.assertFalse(frontier.add(URL1, 1));
+            }
+        } finally {
+            Files.deleteIfExists(dbFile);
+        }
+    }
+
+    @Test
+    public void memoryFrontier() {
+        checkFrontier(new MemoryWebFrontier());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.driver;
+
+import okhttp3.Dns;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingDnsTest {
+
+    private final ConcurrentHashMap<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+    private final Dns resolver = hostname -> {
+        lookups.computeIfAbsent(hostname, h -> new AtomicInteger()).incrementAndGet();
+        if (hostname.endsWith(".invalid"))
+            throw new UnknownHostException(hostname);
+        return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[]{127, 0, 0, 1}));
+    };
+
+    private int lookups(final String hostname) {
+        final AtomicInteger count = lookups.get(hostname);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    public void positiveAndNegativeCache() throws UnknownHostException, InterruptedException {
+        try (final CachingDns dns = new CachingDns(resolver, 60_000, 50, 100, 1)) {
+            for (int i = 0; i < 3; i++) {
+                final List<InetAddress> addresses = dns.lookup("www.example.com");
+                Assert.assertEquals("127.0.0.1", addresses.get(0).getHostAddress());
+            }
+            Assert.assertEquals(1, lookups("www.example.com"));
+            Assert.assertEquals(1, dns.getMisses());
+            Assert.assertEquals(2, dns.getHits());
+
+            for (int i = 0; i < 2; i++) {
+                try {
+                    dns.lookup("host.invalid");
+                    Assert.fail("UnknownHostException expected");
+                } catch (UnknownHostException e) {
+                    Assert.assertEquals("host.invalid", e.getMessage());
+                }
+            }
+            Assert.assertEquals(1, lookups("host.invalid"));
+
+            // The negative entry expires first
+            Thread.sleep(100);
+            try {
+                dns.lookup("host.invalid");
+                Assert.fail("UnknownHostException expected");
+            } catch (UnknownHostException e) {
+                Assert.assertEquals(2, lookups("host.invalid"));
+            }
+            dns.lookup("www.example.com");
+            Assert.assertEquals(1, lookups("www.example.com"));
+        }
+    }
+
+    @Test
+    public void prefetch() throws UnknownHostException, InterruptedException {
+        try (final CachingDns dns = new CachingDns(resolver, 60_000, 60_000, 100, 2)) {
+            dns.prefetch("a.example.com");
+            dns.prefetch("a.example.com");
+            dns.prefetch("b.example.com");
+            final long timeout = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (lookups("b.example.com") == 0 && System.currentTimeMillis() < timeout)
+                Thread.sleep(10);
+            Assert.assertEquals(2, dns.getPrefetches());
+            Assert.assertNotNull(dns.lookup("a.example.com"));
+            Assert.assertNotNull(dns.lookup("b.example.com"));
+            Assert.assertEquals(1, lookups("a.example.com"));
+            Assert.assertEquals(1, lookups("b.example.com"));
+        }
+    }
+
+    @Test
+    public void lookupDoesNotWaitForQueuedPrefetch() throws UnknownHostException, InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Dns slowResolver = hostname -> {
+            if (hostname.startsWith("slow.")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return resolver.lookup(hostname);
+        };
+        try (final CachingDns dns = new CachingDns(slowResolver, 60_000, 60_000, 10_000, 1)) {
+            // The only prefetch thread is busy, the next prefetches wait in the queue
+            dns.prefetch("slow.example.com");
+            for (int i = 0; i < CachingDns.PREFETCH_QUEUE_SIZE + 10; i++)
+                dns.prefetch("host" + i + ".example.com");
+            // The prefetches beyond the queue are dropped, not resolved by the caller
+            Assert.assertEquals(CachingDns.PREFETCH_QUEUE_SIZE + 1, dns.getPrefetches());
+            Assert.assertEquals(0, lookups("host" + (CachingDns.PREFETCH_QUEUE_SIZE + 5) + ".example.com"));
+
+            // A queued host is resolved by the lookup itself
+            Assert.assertNotNull(dns.lookup("host0.example.com"));
+            Assert.assertEquals(1, lookups("host0.example.com"));
+            // So is a dropped one
+            Assert.assertNotNull(dns.lookup("host" + (CachingDns.PREFETCH_QUEUE_SIZE + 5) + ".example.com"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void closeForgetsQueuedPrefetches() throws UnknownHostException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Dns slowResolver = hostname -> {
+            if (hostname.startsWith("slow.")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return resolver.lookup(hostname);
+        };
+        final CachingDns dns = new CachingDns(slowResolver, 60_000, 60_000, 100, 1);
+        try {
+            dns.prefetch("slow.example.com");
+            dns.prefetch("queued.example.com");
+            dns.close();
+            // The queued prefetch is forgotten, the lookup does not wait for it
+            Assert.assertNotNull(dns.lookup("queued.example.com"));
+            Assert.assertEquals(1, lookups("queued.example.com"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void bounded() throws UnknownHostException {
+        try (final CachingDns dns = new CachingDns(resolver, 60_000, 60_000, 10, 1)) {
+            for (int i = 0; i < 100; i++)
+                dns.lookup("host" + i + ".example.com");
+            Assert.assertTrue(dns.size() <= 11);
+        }
+    }
+
+    @Test
+    public void evictsToLowWaterMark() throws UnknownHostException {
+        try (final CachingDns dns = new CachingDns(resolver, 60_000, 60_000, 100, 1)) {
+            for (int i = 0; i <= 100; i++)
+                dns.lookup("host" + i + ".example.com");
+            // The eviction leaves some room for the next hosts, and keeps the host just resolved
+            Assert.assertEquals(90, dns.size());
+            final int resolved = lookups("host100.example.com");
+            dns.lookup("host100.example.com");
+            Assert.assertEquals(resolved, lookups("host100.example.com"));
+            for (int i = 101; i < 111; i++)
+                dns.lookup("host" + i + ".example.com");
+            Assert.assertEquals(100, dns.size());
+        }
+    }
+}
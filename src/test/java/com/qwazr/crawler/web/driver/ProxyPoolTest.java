@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.driver;
+
+import com.qwazr.crawler.web.ProxyDefinition;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ProxyPoolTest {
+
+    private final static Proxy PROXY1 = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy1", 3128));
+    private final static Proxy PROXY2 = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy2", 3128));
+    private final static Proxy PROXY3 = new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved("proxy3", 1080));
+
+    private final static List<Proxy> PROXIES = Arrays.asList(PROXY1, PROXY2, PROXY3);
+
+    private static URI uri(final String host) {
+        return URI.create("http://" + host + "/");
+    }
+
+    @Test
+    public void roundRobin() {
+        final ProxyPool pool = new ProxyPool(PROXIES, null);
+        final Set<Proxy> firsts = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            final List<Proxy> selection = pool.select(uri("www.example.com"));
+            Assert.assertEquals(3, selection.size());
+            firsts.add(selection.get(0));
+        }
+        Assert.assertEquals(new HashSet<>(PROXIES), firsts);
+    }
+
+    @Test
+    public void stickyHost() {
+        final ProxyPool pool = new ProxyPool(PROXIES, ProxyDefinition.Selection.sticky_host);
+        final Set<Proxy> used = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            final Proxy proxy = pool.select(uri("host" + i + ".example.com")).get(0);
+            Assert.assertEquals(proxy, pool.select(uri("host" + i + ".example.com")).get(0));
+            used.add(proxy);
+        }
+        // The hosts are spread over the proxies
+        Assert.assertEquals(3, used.size());
+    }
+
+    @Test
+    public void leastLoaded() {
+        final ProxyPool pool = new ProxyPool(PROXIES, ProxyDefinition.Selection.least_loaded);
+        for (int i = 0; i < 10; i++) {
+            pool.get(PROXY1).success(2000);
+            pool.get(PROXY2).success(20);
+            pool.get(PROXY3).success(50);
+        }
+        Assert.assertEquals(PROXY2, pool.select(uri("www.example.com")).get(0));
+        pool.get(PROXY2).error(System.currentTimeMillis());
+        pool.get(PROXY2).error(System.currentTimeMillis());
+        Assert.assertEquals(PROXY3, pool.select(uri("www.example.com")).get(0));
+    }
+
+    @Test
+    public void ejection() {
+        final ProxyPool pool = new ProxyPool(PROXIES, ProxyDefinition.Selection.least_loaded);
+        for (int i = 0; i < ProxyPool.MAX_CONSECUTIVE_ERRORS; i++)
+            pool.connectFailed(uri("www.example.com"), PROXY1.address(), new IOException("Connection refused"));
+        for (int i = 0; i < 10; i++)
+            Assert.assertFalse(pool.select(uri("host" + i + ".example.com")).contains(PROXY1));
+
+        // When every proxy is ejected, the pool still returns one proxy
+        for (int i = 0; i < ProxyPool.MAX_CONSECUTIVE_ERRORS; i++) {
+            pool.connectFailed(uri("www.example.com"), PROXY2.address(), new IOException("Connection refused"));
+            pool.connectFailed(uri("www.example.com"), PROXY3.address(), new IOException("Connection refused"));
+        }
+        Assert.assertEquals(Arrays.asList(PROXY1), pool.select(uri("www.example.com")));
+    }
+
+    @Test
+    public void proxyErrors() {
+        Assert.assertTrue(ProxyPool.isProxyError(407));
+        // A bad gateway from the origin server does not eject the proxy
+        Assert.assertFalse(ProxyPool.isProxyError(502));
+        Assert.assertFalse(ProxyPool.isProxyError(504));
+        Assert.assertFalse(ProxyPool.isProxyError(200));
+    }
+}
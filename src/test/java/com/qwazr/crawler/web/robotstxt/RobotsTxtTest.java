@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public class RobotsTxtTest {
 
@@ -82,4 +83,17 @@ public class RobotsTxtTest {
         checkAllowDisallow("http://example.com/", "/$", "/", RobotsTxt.Status.ALLOW);
         checkAllowDisallow("http://example.com/page.htm", "/$", "/", RobotsTxt.Status.DISALLOW);
     }
+
+    @Test
+    public void sitemapTests() throws IOException {
+        final RobotsTxt robotsTxt = new RobotsTxt(IOUtils.toInputStream(
+                "Sitemap: http://example.com/sitemap.xml\nuser-agent: *\nDisallow: /private\n" +
+                        "sitemap:https://example.com:8080/news.xml.gz\nSitemap: http://example.com/sitemap.xml",
+                StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        Assert.assertEquals(
+                Arrays.asList("http://example.com/sitemap.xml", "https://example.com:8080/news.xml.gz"),
+                robotsTxt.getSitemaps());
+        Assert.assertEquals(RobotsTxt.Status.DISALLOW,
+                robotsTxt.getStatus(URI.create("http://example.com/private/page"), "ua"));
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.sitemap;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class SitemapParserTest {
+
+    private final static String URLSET = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+            "<url><loc> http://example.com/ </loc><lastmod>2021-01-31</lastmod><priority>1.0</priority></url>\n" +
+            "<url><loc>http://example.com/page?a=1&amp;b=2</loc>" +
+            "<lastmod>2021-01-31T18:00:15+01:00</lastmod><changefreq>daily</changefreq></url>\n" +
+            "<url><loc>http://example.com/old</loc><lastmod>yesterday</lastmod><priority>high</priority></url>\n" +
+            "</urlset>";
+
+    private final static String INDEX = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n" +
+            "<sitemap><loc>http://example.com/sitemap1.xml.gz</loc></sitemap>\n" +
+            "<sitemap><loc>http://example.com/sitemap2.xml.gz</loc><lastmod>2021-01-31</lastmod></sitemap>\n" +
+            "</sitemapindex>";
+
+    private final List<SitemapUrl> urls = new ArrayList<>();
+    private final List<String> sitemaps = new ArrayList<>();
+    private final SitemapParser parser = new SitemapParser(urls::add, sitemaps::add);
+
+    @Test
+    public void urlset() throws IOException {
+        Assert.assertEquals(3, parser.parse(new ByteArrayInputStream(URLSET.getBytes(StandardCharsets.UTF_8))));
+        Assert.assertTrue(sitemaps.isEmpty());
+        Assert.assertEquals(3, urls.size());
+
+        Assert.assertEquals("http://example.com/", urls.get(0).loc);
+        Assert.assertEquals(Long.valueOf(1612051200000L), urls.get(0).lastmod);
+        Assert.assertEquals(Float.valueOf(1.0F), urls.get(0).priority);
+
+        Assert.assertEquals("http://example.com/page?a=1&b=2", urls.get(1).loc);
+        Assert.assertEquals(Long.valueOf(1612112415000L), urls.get(1).lastmod);
+        Assert.assertNull(urls.get(1).priority);
+
+        Assert.assertNull(urls.get(2).lastmod);
+        Assert.assertNull(urls.get(2).priority);
+    }
+
+    @Test
+    public void gzipSitemapIndex() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(INDEX.getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(2, parser.parse(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertTrue(urls.isEmpty());
+        assertThat(sitemaps, equalTo(Arrays.asList("http://example.com/sitemap1.xml.gz",
+                "http://example.com/sitemap2.xml.gz")));
+    }
+
+    @Test
+    public void wrongDocument() {
+        try {
+            parser.parse(new ByteArrayInputStream("<urlset><url>".getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("IOException expected");
+        } catch (IOException e) {
+            Assert.assertTrue(urls.isEmpty());
+        }
+    }
+
+    @Test
+    public void rank() {
+        final long now = System.currentTimeMillis();
+        final SitemapUrl high = new SitemapUrl("http://example.com/a", null, 0.9F);
+        final SitemapUrl fresh = new SitemapUrl("http://example.com/b", now - TimeUnit.HOURS.toMillis(1), null);
+        final SitemapUrl old = new SitemapUrl("http://example.com/c", now - TimeUnit.DAYS.toMillis(400), null);
+        final SitemapUrl unknown = new SitemapUrl("http://example.com/d", null, null);
+        assertThat(high.getRank(now), lessThan(fresh.getRank(now)));
+        assertThat(fresh.getRank(now), lessThan(old.getRank(now)));
+        assertThat(old.getRank(now), lessThan(unknown.getRank(now)));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.warc;
+
+import com.qwazr.crawler.web.WebRequestDefinition;
+import com.qwazr.crawler.web.driver.DriverInterface;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class WarcReplayDriverTest {
+
+    private final static String INDEX = "http://localhost:9190/index.html";
+    private final static String MOVED = "http://localhost:9190/moved.html";
+    private final static String HTML = "<html><body><a href=\"page1.html\">Page 1</a></body></html>";
+
+    private static Path directory;
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        directory = Files.createTempDirectory("warc");
+        try (final WarcWriter writer = new WarcWriter(directory, "test", 1024 * 1024)) {
+            writer.writeExchange(INDEX, new WarcWriterTest.BodyMock(200, "OK", HTML));
+            writer.writeExchange(MOVED, new WarcWriterTest.BodyMock(301, "Moved Permanently", null, INDEX));
+        }
+    }
+
+    private static String read(final DriverInterface.Content content) throws IOException {
+        try (final InputStream input = content.getInput()) {
+            return IOUtils.toString(input, StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void replay() throws IOException {
+        try (final DriverInterface driver = new WarcReplayDriver(directory, null)) {
+            try (final DriverInterface.Body body = driver.body(WebRequestDefinition.of(INDEX).build())) {
+                assertThat(body.getResponseCode(), equalTo(200));
+                assertThat(body.getStatusLine(), equalTo("HTTP/1.1 200 OK"));
+                assertThat(body.getContentType(), equalTo("text/html"));
+                assertThat(body.getContentEncoding(), nullValue());
+                assertThat(body.getContentLength(), equalTo((long) HTML.length()));
+                Assert.assertTrue(body.isSuccessful());
+                Assert.assertFalse(body.getContent().isTruncated());
+                // The content can be read several times
+                assertThat(read(body.getContent()), equalTo(HTML));
+                assertThat(read(body.getContent()), equalTo(HTML));
+                assertThat(body.getHtmlDocument().select("a").attr("abs:href"),
+                        equalTo("http://localhost:9190/page1.html"));
+            }
+            try (final DriverInterface.Body body = driver.body(WebRequestDefinition.of(MOVED).build())) {
+                assertThat(body.getResponseCode(), equalTo(301));
+                assertThat(body.getRedirectLocation(), equalTo(INDEX));
+            }
+            try (final DriverInterface.Body body = driver.body(
+                    WebRequestDefinition.of("http://localhost:9190/missing.html").build())) {
+                assertThat(body.getResponseCode(), equalTo(404));
+                assertThat(body.getContent(), nullValue());
+            }
+            assertThat(driver.head(WebRequestDefinition.of(INDEX).build()).getResponseCode(), equalTo(200));
+        }
+    }
+
+    @Test
+    public void filter() throws IOException {
+        try (final DriverInterface driver = new WarcReplayDriver(directory, 6L)) {
+            try (final DriverInterface.Body body = driver.body(WebRequestDefinition.of(INDEX).build(),
+                    head -> DriverInterface.ContentAction.TRUNCATE)) {
+                Assert.assertTrue(body.getContent().isTruncated());
+                assertThat(read(body.getContent()), equalTo("<html>"));
+            }
+            try (final DriverInterface.Body body = driver.body(WebRequestDefinition.of(INDEX).build(),
+                    head -> DriverInterface.ContentAction.CANCEL)) {
+                assertThat(body.getResponseCode(), equalTo(200));
+                assertThat(body.getContent(), nullValue());
+            }
+        }
+    }
+}
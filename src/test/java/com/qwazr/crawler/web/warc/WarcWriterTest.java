@@ -0,0 +1,242 @@
+/*
+ * Copyright 2017-2021 Emmanuel Keller / QWAZR
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.qwazr.crawler.web.warc;
+
+import com.qwazr.crawler.web.driver.DriverInterface;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import org.apache.commons.io.IOUtils;
+import org.jsoup.nodes.Document;
+import org.junit.Assert;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+public class WarcWriterTest {
+
+    @Test
+    public void writeAndIndex() throws IOException {
+        final Path directory = Files.createTempDirectory("warc");
+        try (final WarcWriter writer = new WarcWriter(directory, "test", 1024 * 1024)) {
+            writer.writeExchange("http://localhost:9190/index.html?q=1",
+                    new BodyMock(200, "OK", "<html><body>Hello</body></html>"));
+            writer.writeExchange("http://localhost:9190/missing.html", new BodyMock(404, "Not Found", null));
+            assertThat(writer.getRecords(), equalTo(5L));
+            assertThat(writer.getFiles(), equalTo(1));
+        }
+
+        final Map<String, WarcIndex.Entry> entries = WarcIndex.read(directory);
+        assertThat(entries.size(), equalTo(2));
+
+        final WarcIndex.Entry entry = entries.get("http://localhost:9190/index.html?q=1");
+        assertThat(entry.statusCode, equalTo(200));
+        final String record = readRecord(directory, entry);
+        assertThat(record, containsString("WARC-Type: response\r\n"));
+        assertThat(record, containsString("WARC-Target-URI: http://localhost:9190/index.html?q=1\r\n"));
+        assertThat(record, containsString("HTTP/1.1 200 OK\r\n"));
+        assertThat(record, containsString("Content-Type: text/html\r\n"));
+        assertThat(record, containsString("Content-Length: 31\r\n\r\n<html><body>Hello</body></html>\r\n\r\n"));
+        Assert.assertFalse(record.contains("Content-Encoding"));
+
+        final WarcIndex.Entry missing = entries.get("http://localhost:9190/missing.html");
+        assertThat(missing.statusCode, equalTo(404));
+        assertThat(readRecord(directory, missing), containsString("HTTP/1.1 404 Not Found\r\n"));
+    }
+
+    @Test
+    public void rotation() throws IOException {
+        final Path directory = Files.createTempDirectory("warc");
+        try (final WarcWriter writer = new WarcWriter(directory, "test", 1)) {
+            for (int i = 0; i < 3; i++)
+                writer.writeExchange("http://localhost:9190/page" + i + ".html",
+                        new BodyMock(200, "OK", "page" + i));
+            assertThat(writer.getFiles(), equalTo(3));
+        }
+        final Map<String, WarcIndex.Entry> entries = WarcIndex.read(directory);
+        assertThat(entries.size(), equalTo(3));
+        for (int i = 0; i < 3; i++) {
+            final WarcIndex.Entry entry = entries.get("http://localhost:9190/page" + i + ".html");
+            assertThat(readRecord(directory, entry), containsString("\r\n\r\npage" + i + "\r\n\r\n"));
+        }
+    }
+
+    @Test
+    public void requestBlock() {
+        final String request = new String(
+                WarcWriter.requestBlock("http://localhost:9190/path/page.html?q=1", new BodyMock(200, "OK", null)),
+                StandardCharsets.UTF_8);
+        assertThat(request, equalTo("GET /path/page.html?q=1 HTTP/1.1\r\n" + "Host: localhost:9190\r\n" +
+                "User-Agent: QWAZR\r\n" + "\r\n"));
+    }
+
+    @Test
+    public void indexFileName() {
+        assertThat(WarcIndex.indexFileName("crawl-00001.warc.gz"), equalTo("crawl-00001.idx"));
+    }
+
+    private static String readRecord(final Path directory, final WarcIndex.Entry entry) throws IOException {
+        try (final SeekableByteChannel channel = Files.newByteChannel(directory.resolve(entry.file))) {
+            channel.position(entry.offset);
+            final byte[] member = IOUtils.toByteArray(Channels.newInputStream(channel), entry.length);
+            try (final InputStream input = new GZIPInputStream(new ByteArrayInputStream(member))) {
+                return IOUtils.toString(input, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    static final class BodyMock implements DriverInterface.Body, DriverInterface.Content {
+
+        private final int code;
+        private final String message;
+        private final byte[] content;
+        private final String location;
+
+        BodyMock(final int code, final String message, final String content, final String location) {
+            this.code = code;
+            this.message = message;
+            this.content = content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+            this.location = location;
+        }
+
+        BodyMock(final int code, final String message, final String content) {
+            this(code, message, content, null);
+        }
+
+        @Override
+        public String getUrl() {
+            return null;
+        }
+
+        @Override
+        public int getResponseCode() {
+            return code;
+        }
+
+        @Override
+        public Long getContentLength() {
+            return content == null ? null : (long) content.length;
+        }
+
+        @Override
+        public String getContentType() {
+            return "text/html";
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return "gzip";
+        }
+
+        @Override
+        public List<String> getHeaders(final String name) {
+            return getHeaderFields().get(name);
+        }
+
+        @Override
+        public String getFirstHeader(final String name) {
+            final List<String> values = getHeaders(name);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+
+        @Override
+        public String getRedirectLocation() {
+            return location;
+        }
+
+        @Override
+        public boolean isSuccessful() {
+            return code == 200;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return "GET";
+        }
+
+        @Override
+        public Map<String, List<String>> getRequestHeaderFields() {
+            return Collections.singletonMap("User-Agent", Collections.singletonList("QWAZR"));
+        }
+
+        @Override
+        public String getStatusLine() {
+            return "HTTP/1.1 " + code + ' ' + message;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            final Map<String, List<String>> headers = new LinkedHashMap<>();
+            headers.put("Content-Type", Collections.singletonList(getContentType()));
+            headers.put("Content-Encoding", Collections.singletonList(getContentEncoding()));
+            if (location != null)
+                headers.put("Location", Collections.singletonList(location));
+            return headers;
+        }
+
+        @Override
+        public DriverInterface.Content getContent() {
+            return content == null ? null : this;
+        }
+
+        @Override
+        public Document getHtmlDocument() {
+            return null;
+        }
+
+        @Override
+        public InputStream getInput() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public Charset getCharset() {
+            return StandardCharsets.UTF_8;
+        }
+
+        @Override
+        public String getCharsetName() {
+            return StandardCharsets.UTF_8.name();
+        }
+
+        @Override
+        public boolean isTruncated() {
+            return false;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}